@@ -0,0 +1,191 @@
+package org.checkerframework.benchmarks;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TreeScanner;
+import com.sun.tools.javac.api.JavacTaskImpl;
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+/**
+ * One group of files of the {@link Corpus}, parsed and attributed. The trees stay attributed after
+ * the compilation, so benchmarks can run parts of the framework on them repeatedly.
+ */
+public class AnalyzedCorpus {
+
+    /** A method of the corpus that has a body, together with its enclosing class. */
+    public static class MethodInCorpus {
+        /** The processing environment of the compilation that attributed the method. */
+        public final ProcessingEnvironment env;
+        /** The compilation unit that contains the method. */
+        public final CompilationUnitTree root;
+        /** The innermost class that contains the method. */
+        public final ClassTree classTree;
+        /** The method. */
+        public final MethodTree method;
+
+        MethodInCorpus(
+                ProcessingEnvironment env,
+                CompilationUnitTree root,
+                ClassTree classTree,
+                MethodTree method) {
+            this.env = env;
+            this.root = root;
+            this.classTree = classTree;
+            this.method = method;
+        }
+    }
+
+    /** The processing environment of the compilation. */
+    public final ProcessingEnvironment env;
+
+    /** The compilation units of the files, in the order of the corpus list. */
+    public final List<CompilationUnitTree> roots;
+
+    /** The number of errors that the compilation reported. */
+    public final int errors;
+
+    /** The diagnostics and other output of the compilation. */
+    public final String output;
+
+    private AnalyzedCorpus(
+            ProcessingEnvironment env, List<CompilationUnitTree> roots, int errors, String output) {
+        this.env = env;
+        this.roots = roots;
+        this.errors = errors;
+        this.output = output;
+    }
+
+    /**
+     * Parses and attributes the given files, running {@code processor} on them if it is non-null.
+     *
+     * @param files the files to compile together
+     * @param processor the annotation processor, usually a checker, or null to run none
+     * @param extraOptions additional compiler options
+     * @return the analyzed files
+     */
+    public static AnalyzedCorpus analyze(
+            List<File> files, /*@Nullable*/ Processor processor, String... extraOptions) {
+        List<String> options =
+                processor == null
+                        ? Corpus.compilerOptions(append(extraOptions, "-proc:none"))
+                        : Corpus.compilerOptions(extraOptions);
+        StringWriter out = new StringWriter();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        JavacTask task = Corpus.newTask(files, options, out, diagnostics);
+        if (processor != null) {
+            task.setProcessors(Collections.singletonList(processor));
+        }
+        List<CompilationUnitTree> roots = new ArrayList<>();
+        try {
+            for (CompilationUnitTree root : task.parse()) {
+                roots.add(root);
+            }
+            task.analyze();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot compile " + files, e);
+        }
+        int errors = 0;
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors++;
+            }
+            out.append(diagnostic.toString()).append(System.lineSeparator());
+        }
+        ProcessingEnvironment env =
+                JavacProcessingEnvironment.instance(((JavacTaskImpl) task).getContext());
+        return new AnalyzedCorpus(env, Collections.unmodifiableList(roots), errors, out.toString());
+    }
+
+    /**
+     * Analyzes every group of files of the corpus, without running a processor. Fails if the
+     * corpus does not compile.
+     *
+     * @return the analyzed groups of the corpus
+     */
+    public static List<AnalyzedCorpus> analyzeAll() {
+        List<AnalyzedCorpus> result = new ArrayList<>();
+        for (List<File> group : Corpus.compilationGroups()) {
+            AnalyzedCorpus corpus = analyze(group, null);
+            if (corpus.errors != 0) {
+                throw new IllegalStateException(
+                        "The corpus does not compile:" + System.lineSeparator() + corpus.output);
+            }
+            result.add(corpus);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the methods with a body in the compilation units of this corpus, including the
+     * methods of nested, local, and anonymous classes.
+     *
+     * @return the methods with a body
+     */
+    public List<MethodInCorpus> methods() {
+        final List<MethodInCorpus> methods = new ArrayList<>();
+        for (final CompilationUnitTree root : roots) {
+            new TreeScanner<Void, Void>() {
+                private final Deque<ClassTree> classes = new ArrayDeque<>();
+
+                @Override
+                public Void visitClass(ClassTree tree, Void p) {
+                    classes.push(tree);
+                    try {
+                        return super.visitClass(tree, p);
+                    } finally {
+                        classes.pop();
+                    }
+                }
+
+                @Override
+                public Void visitMethod(MethodTree tree, Void p) {
+                    if (tree.getBody() != null) {
+                        methods.add(new MethodInCorpus(env, root, classes.peek(), tree));
+                    }
+                    return super.visitMethod(tree, p);
+                }
+            }.scan(root, null);
+        }
+        return methods;
+    }
+
+    /**
+     * Returns the methods with a body of all the given analyzed groups.
+     *
+     * @param corpora analyzed groups of the corpus
+     * @return the methods with a body, in the order of the groups
+     */
+    public static List<MethodInCorpus> allMethods(List<AnalyzedCorpus> corpora) {
+        List<MethodInCorpus> methods = new ArrayList<>();
+        for (AnalyzedCorpus corpus : corpora) {
+            methods.addAll(corpus.methods());
+        }
+        return methods;
+    }
+
+    private static String[] append(String[] options, String option) {
+        String[] result = new String[options.length + 1];
+        System.arraycopy(options, 0, result, 0, options.length);
+        result[options.length] = option;
+        return result;
+    }
+}
@@ -0,0 +1,69 @@
+package org.checkerframework.benchmarks;
+
+import com.sun.source.util.JavacTask;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures end-to-end runs of a checker: compiles every group of files of the corpus with the
+ * checker, up to and including type-checking, as {@code javac -processor} would. Each iteration
+ * is a single run over the whole corpus.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class CheckerBenchmark {
+
+    /** The checker to run. */
+    @Param({
+        "org.checkerframework.checker.nullness.NullnessChecker",
+        "org.checkerframework.checker.index.IndexChecker"
+    })
+    public String checker;
+
+    /** Whether to pass -ApersistentStores, which changes the maps of the dataflow stores. */
+    @Param({"false", "true"})
+    public boolean persistentStores;
+
+    /**
+     * Runs the checker over the corpus.
+     *
+     * @return the number of errors reported by the checker, which should not change between runs
+     */
+    @Benchmark
+    public int check() throws IOException {
+        int errors = 0;
+        for (List<File> group : Corpus.compilationGroups()) {
+            List<String> options =
+                    persistentStores
+                            ? Corpus.compilerOptions("-processor", checker, "-ApersistentStores")
+                            : Corpus.compilerOptions("-processor", checker);
+            DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+            JavacTask task = Corpus.newTask(group, options, new StringWriter(), diagnostics);
+            task.analyze();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                    errors++;
+                }
+            }
+        }
+        return errors;
+    }
+}
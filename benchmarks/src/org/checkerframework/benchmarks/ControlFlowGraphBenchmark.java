@@ -0,0 +1,42 @@
+package org.checkerframework.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.checkerframework.dataflow.cfg.CFGBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link CFGBuilder#run}: builds the control-flow graph of every method of the corpus,
+ * without the annotations or assertion settings of a checker.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ControlFlowGraphBenchmark {
+
+    /** The analyzed groups of the corpus, which own the trees of {@link #methods}. */
+    private List<AnalyzedCorpus> corpora;
+
+    /** The methods of the corpus. */
+    private List<AnalyzedCorpus.MethodInCorpus> methods;
+
+    @Setup
+    public void setUp() {
+        corpora = AnalyzedCorpus.analyzeAll();
+        methods = AnalyzedCorpus.allMethods(corpora);
+    }
+
+    @Benchmark
+    public void buildAll(Blackhole bh) {
+        for (AnalyzedCorpus.MethodInCorpus m : methods) {
+            bh.consume(CFGBuilder.build(m.root, m.env, m.method, m.classTree));
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package org.checkerframework.benchmarks;
+
+import com.sun.source.util.JavacTask;
+import com.sun.tools.javac.api.JavacTool;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.tools.DiagnosticListener;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+/**
+ * The fixed corpus of Java files that the benchmarks compile: the files of {@code
+ * checker/tests/all-systems} listed in {@code benchmarks/corpus.txt}.
+ *
+ * <p>The location of the corpus is given by two system properties, which the {@code run} target of
+ * {@code benchmarks/build.xml} sets: {@value #CORPUS_DIR_PROPERTY}, the all-systems directory, and
+ * {@value #CORPUS_LIST_PROPERTY}, the list of files. As in the per-directory tests, the files of
+ * each directory are compiled together and separately from those of other directories.
+ *
+ * <p>The regex-heavy corpus, the files of {@code checker/tests/regex} listed in {@code
+ * benchmarks/regex-corpus.txt}, is given in the same way by {@value #REGEX_CORPUS_DIR_PROPERTY}
+ * and {@value #REGEX_CORPUS_LIST_PROPERTY}.
+ */
+public class Corpus {
+
+    /** The system property that holds the directory that contains the files of the corpus. */
+    public static final String CORPUS_DIR_PROPERTY = "benchmarks.corpus.dir";
+
+    /** The system property that holds the file that lists the files of the corpus. */
+    public static final String CORPUS_LIST_PROPERTY = "benchmarks.corpus.list";
+
+    /** The system property that holds the directory that contains the regex-heavy corpus. */
+    public static final String REGEX_CORPUS_DIR_PROPERTY = "benchmarks.regex.corpus.dir";
+
+    /** The system property that holds the file that lists the files of the regex-heavy corpus. */
+    public static final String REGEX_CORPUS_LIST_PROPERTY = "benchmarks.regex.corpus.list";
+
+    /** The system property that holds the annotated JDK, as for the tests. */
+    public static final String JDK_JAR_PROPERTY = "JDK_JAR";
+
+    /** The groups of files that are compiled together, computed on first use. */
+    private static /*@Nullable*/ List<List<File>> compilationGroups = null;
+
+    /** The groups of files of the regex-heavy corpus, computed on first use. */
+    private static /*@Nullable*/ List<List<File>> regexCompilationGroups = null;
+
+    private Corpus() {
+        throw new AssertionError("Class Corpus cannot be instantiated.");
+    }
+
+    /**
+     * Returns the files of the corpus, grouped by directory, in the order of the corpus list.
+     *
+     * @return the groups of files that are compiled together
+     */
+    public static synchronized List<List<File>> compilationGroups() {
+        if (compilationGroups == null) {
+            compilationGroups =
+                    readCompilationGroups(CORPUS_DIR_PROPERTY, CORPUS_LIST_PROPERTY);
+        }
+        return compilationGroups;
+    }
+
+    /**
+     * Returns the files of the regex-heavy corpus, grouped by directory, in the order of its list.
+     *
+     * @return the groups of files that are compiled together
+     */
+    public static synchronized List<List<File>> regexCompilationGroups() {
+        if (regexCompilationGroups == null) {
+            regexCompilationGroups =
+                    readCompilationGroups(REGEX_CORPUS_DIR_PROPERTY, REGEX_CORPUS_LIST_PROPERTY);
+        }
+        return regexCompilationGroups;
+    }
+
+    /**
+     * Reads a corpus list.
+     *
+     * @param dirProperty the system property that holds the directory of the corpus
+     * @param listProperty the system property that holds the list of files of the corpus
+     */
+    private static List<List<File>> readCompilationGroups(String dirProperty, String listProperty) {
+        File dir = new File(requireProperty(dirProperty));
+        File list = new File(requireProperty(listProperty));
+        Map<File, List<File>> groups = new LinkedHashMap<>();
+        try (BufferedReader reader =
+                new BufferedReader(
+                        new InputStreamReader(
+                                new FileInputStream(list), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                File file = new File(dir, line);
+                if (!file.isFile()) {
+                    throw new IllegalStateException(
+                            "Corpus file " + file + " listed in " + list + " does not exist");
+                }
+                List<File> group = groups.get(file.getParentFile());
+                if (group == null) {
+                    group = new ArrayList<>();
+                    groups.put(file.getParentFile(), group);
+                }
+                group.add(file);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read the corpus list " + list, e);
+        }
+        List<List<File>> result = new ArrayList<>();
+        for (List<File> group : groups.values()) {
+            result.add(Collections.unmodifiableList(group));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private static String requireProperty(String name) {
+        String value = System.getProperty(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalStateException(
+                    "System property " + name + " is not set; run the benchmarks with ant run");
+        }
+        return value;
+    }
+
+    /**
+     * Returns the options with which the corpus is compiled, followed by {@code extraOptions}.
+     *
+     * @param extraOptions additional options, for example a {@code -processor} option
+     * @return the compiler options
+     */
+    public static List<String> compilerOptions(String... extraOptions) {
+        List<String> options = new ArrayList<>();
+        String jdkJar = System.getProperty(JDK_JAR_PROPERTY);
+        if (jdkJar != null && !jdkJar.isEmpty()) {
+            options.add("-Xbootclasspath/p:" + jdkJar);
+        }
+        options.add("-source");
+        options.add("8");
+        options.add("-nowarn");
+        options.add("-Xmaxerrs");
+        options.add("100000");
+        options.addAll(Arrays.asList(extraOptions));
+        return options;
+    }
+
+    /**
+     * Creates a compilation task for the given files. Call {@link JavacTask#analyze()}, and not
+     * {@link JavacTask#call()}, to run it: the benchmarks need the attributed trees, which code
+     * generation would desugar, and no class files.
+     *
+     * @param files the files to compile
+     * @param options the compiler options, usually obtained from {@link #compilerOptions}
+     * @param out where the compiler writes output that is not a diagnostic
+     * @param diagnostics the listener for the diagnostics of the compilation
+     * @return the new task
+     */
+    public static JavacTask newTask(
+            List<File> files,
+            List<String> options,
+            Writer out,
+            DiagnosticListener<? super JavaFileObject> diagnostics) {
+        JavacTool compiler = JavacTool.create();
+        StandardJavaFileManager fileManager =
+                compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8);
+        Iterable<? extends JavaFileObject> javaFiles = fileManager.getJavaFileObjectsFromFiles(files);
+        return compiler.getTask(out, fileManager, diagnostics, options, null, javaFiles);
+    }
+}
@@ -0,0 +1,61 @@
+package org.checkerframework.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.processing.ProcessingEnvironment;
+import org.checkerframework.dataflow.analysis.Analysis;
+import org.checkerframework.dataflow.cfg.CFGBuilder;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.constantpropagation.Constant;
+import org.checkerframework.dataflow.constantpropagation.ConstantPropagationStore;
+import org.checkerframework.dataflow.constantpropagation.ConstantPropagationTransfer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link Analysis#performAnalysis}: runs the constant propagation of the dataflow
+ * framework over the control-flow graph of every method of the corpus. The graphs are built once,
+ * before the measurements.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DataflowAnalysisBenchmark {
+
+    /** The analyzed groups of the corpus, which own the trees of {@link #graphs}. */
+    private List<AnalyzedCorpus> corpora;
+
+    /** The control-flow graphs of the methods of the corpus. */
+    private List<ControlFlowGraph> graphs;
+
+    /** The processing environment of each graph in {@link #graphs}. */
+    private List<ProcessingEnvironment> envs;
+
+    @Setup
+    public void setUp() {
+        corpora = AnalyzedCorpus.analyzeAll();
+        graphs = new ArrayList<>();
+        envs = new ArrayList<>();
+        for (AnalyzedCorpus.MethodInCorpus m : AnalyzedCorpus.allMethods(corpora)) {
+            graphs.add(CFGBuilder.build(m.root, m.env, m.method, m.classTree));
+            envs.add(m.env);
+        }
+    }
+
+    @Benchmark
+    public void analyzeAll(Blackhole bh) {
+        for (int i = 0; i < graphs.size(); i++) {
+            Analysis<Constant, ConstantPropagationStore, ConstantPropagationTransfer> analysis =
+                    new Analysis<>(envs.get(i), new ConstantPropagationTransfer());
+            analysis.performAnalysis(graphs.get(i));
+            bh.consume(analysis.getResult());
+        }
+    }
+}
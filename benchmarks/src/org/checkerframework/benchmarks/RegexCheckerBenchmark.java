@@ -0,0 +1,56 @@
+package org.checkerframework.benchmarks;
+
+import com.sun.source.util.JavacTask;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures end-to-end runs of the Regex Checker over the regex-heavy corpus, whose string
+ * literals, concatenations, and calls to {@code Pattern.compile} are typed by compiling regular
+ * expressions. Each iteration is a single run over the whole corpus.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class RegexCheckerBenchmark {
+
+    /**
+     * Runs the Regex Checker over the regex-heavy corpus.
+     *
+     * @return the number of errors reported by the checker, which should not change between runs
+     */
+    @Benchmark
+    public int check() throws IOException {
+        int errors = 0;
+        for (List<File> group : Corpus.regexCompilationGroups()) {
+            List<String> options =
+                    Corpus.compilerOptions(
+                            "-processor", "org.checkerframework.checker.regex.RegexChecker");
+            DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+            JavacTask task = Corpus.newTask(group, options, new StringWriter(), diagnostics);
+            task.analyze();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                    errors++;
+                }
+            }
+        }
+        return errors;
+    }
+}
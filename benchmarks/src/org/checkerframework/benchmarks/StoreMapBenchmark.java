@@ -0,0 +1,95 @@
+package org.checkerframework.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.checkerframework.dataflow.util.PersistentHashMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the two maps that can back a {@link
+ * org.checkerframework.framework.flow.CFAbstractStore}: {@link HashMap}, the default, and {@link
+ * PersistentHashMap}, which is used with -ApersistentStores. The operations are those that a
+ * transfer function performs on a store: copy it and update one entry, and look up entries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StoreMapBenchmark {
+
+    /** The kind of map. */
+    @Param({"HashMap", "PersistentHashMap"})
+    public String map;
+
+    /** The number of entries of the map. */
+    @Param({"8", "64", "512"})
+    public int size;
+
+    /** The map that is copied and queried. */
+    private Map<Integer, String> base;
+
+    /** The keys of {@link #base}. */
+    private Integer[] keys;
+
+    /** The index of the key that the next update changes. */
+    private int next = 0;
+
+    @Setup
+    public void setUp() {
+        if (map.equals("HashMap")) {
+            base = new HashMap<>();
+        } else if (map.equals("PersistentHashMap")) {
+            base = new PersistentHashMap<>();
+        } else {
+            throw new IllegalArgumentException("Unknown map: " + map);
+        }
+        keys = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            // Spread the keys like the hash codes of flow expressions.
+            keys[i] = i * 0x9E3779B9;
+            base.put(keys[i], "value" + i);
+        }
+    }
+
+    /** Copies {@link #base} as {@code CFAbstractStore.copyMap} does. */
+    private Map<Integer, String> copy() {
+        if (base instanceof PersistentHashMap) {
+            return ((PersistentHashMap<Integer, String>) base).copy();
+        }
+        return new HashMap<>(base);
+    }
+
+    private Integer nextKey() {
+        next = (next + 1) % size;
+        return keys[next];
+    }
+
+    @Benchmark
+    public Map<Integer, String> copyAndPut() {
+        Map<Integer, String> copy = copy();
+        copy.put(nextKey(), "updated");
+        return copy;
+    }
+
+    @Benchmark
+    public Map<Integer, String> copyAndRemove() {
+        Map<Integer, String> copy = copy();
+        copy.remove(nextKey());
+        return copy;
+    }
+
+    @Benchmark
+    public void getAll(Blackhole bh) {
+        for (Integer key : keys) {
+            bh.consume(base.get(key));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.checkerframework.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import org.checkerframework.checker.nullness.NullnessChecker;
+import org.checkerframework.framework.stub.StubParser;
+import org.checkerframework.framework.type.AnnotatedTypeFactory;
+import org.checkerframework.framework.type.AnnotatedTypeMirror;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link StubParser#parse}: parses a stub file of the framework completely, as for a
+ * checker that has no stub index, using the type factory of the Nullness Checker.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StubParserBenchmark {
+
+    /** The stub file to parse, as a resource name. */
+    @Param({
+        "/org/checkerframework/common/basetype/flow.astub",
+        "/org/checkerframework/common/value/statically-executable.astub"
+    })
+    public String stubFile;
+
+    /** The checked corpus, which owns the type factory. */
+    private AnalyzedCorpus corpus;
+
+    /** The type factory that the stub parser uses. */
+    private AnnotatedTypeFactory factory;
+
+    /** The contents of {@link #stubFile}. */
+    private byte[] contents;
+
+    @Setup
+    public void setUp() throws IOException {
+        NullnessChecker checker = new NullnessChecker();
+        corpus = AnalyzedCorpus.analyze(Corpus.compilationGroups().get(0), checker);
+        factory = checker.getTypeFactory();
+        try (InputStream in = StubParser.class.getResourceAsStream(stubFile)) {
+            if (in == null) {
+                throw new IllegalStateException("Stub file " + stubFile + " not found");
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            contents = out.toByteArray();
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole bh) {
+        Map<Element, AnnotatedTypeMirror> atypes = new HashMap<>();
+        Map<String, Set<AnnotationMirror>> declAnnos = new HashMap<>();
+        StubParser parser =
+                new StubParser(
+                        stubFile,
+                        new ByteArrayInputStream(contents),
+                        factory,
+                        factory.getProcessingEnv());
+        parser.parse(atypes, declAnnos);
+        bh.consume(atypes);
+        bh.consume(declAnnos);
+    }
+}
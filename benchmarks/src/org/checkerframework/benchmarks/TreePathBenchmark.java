@@ -0,0 +1,183 @@
+package org.checkerframework.benchmarks;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreeScanner;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+import org.checkerframework.framework.util.TreePathCacher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the path lookups of {@link TreePathCacher}, as {@code AnnotatedTypeFactory.getPath}
+ * performs them while a compilation unit is type-checked: a fresh cacher answers a shuffled sample
+ * of the trees of one large file, followed by trees that are not in the file, like the trees that
+ * the Checker Framework creates itself. The same lookups are also answered by {@link
+ * ScanningTreePathCacher}, the previous implementation, which scanned the compilation unit from the
+ * root for every tree that it had not seen yet.
+ *
+ * <p>The file is {@code AnnotatedTypeFactory.java} unless the {@value #LARGE_FILE_PROPERTY} system
+ * property names another one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TreePathBenchmark {
+
+    /** The system property that names the large file. */
+    public static final String LARGE_FILE_PROPERTY = "benchmarks.large.file";
+
+    /** The number of lookups of trees that are not in the file. */
+    private static final int MISSES = 50;
+
+    /** Every how many trees of the file, in scan order, one is looked up. */
+    @Param({"1", "20"})
+    public int stride;
+
+    /** The parsed file. */
+    private CompilationUnitTree root;
+
+    /** The trees that are looked up, in the order in which they are looked up. */
+    private List<Tree> targets;
+
+    @Setup
+    public void setUp() throws IOException {
+        String fileName = System.getProperty(LARGE_FILE_PROPERTY);
+        if (fileName == null || fileName.isEmpty()) {
+            throw new IllegalStateException(
+                    "Set the system property " + LARGE_FILE_PROPERTY + " to a Java file.");
+        }
+        File file = new File(fileName);
+        root = parse(file);
+        List<Tree> trees = allTrees(root);
+        targets = new ArrayList<>();
+        for (int i = 0; i < trees.size(); i += stride) {
+            targets.add(trees.get(i));
+        }
+        Collections.shuffle(targets, new Random(42));
+        // The trees of another parse of the same file are not in root.
+        List<Tree> others = allTrees(parse(file));
+        for (int i = 0; i < MISSES; i++) {
+            targets.add(others.get(i * others.size() / MISSES));
+        }
+    }
+
+    /** Parses a file, without attributing it. */
+    private static CompilationUnitTree parse(File file) throws IOException {
+        JavacTask task =
+                Corpus.newTask(
+                        Collections.singletonList(file),
+                        Corpus.compilerOptions("-proc:none"),
+                        new StringWriter(),
+                        new DiagnosticCollector<JavaFileObject>());
+        return task.parse().iterator().next();
+    }
+
+    /** Returns the trees of a compilation unit in scan order. */
+    private static List<Tree> allTrees(CompilationUnitTree root) {
+        final List<Tree> trees = new ArrayList<>();
+        new TreeScanner<Void, Void>() {
+            @Override
+            public Void scan(Tree tree, Void p) {
+                if (tree != null) {
+                    trees.add(tree);
+                }
+                return super.scan(tree, p);
+            }
+        }.scan(root, null);
+        return trees;
+    }
+
+    @Benchmark
+    public void index(Blackhole bh) {
+        TreePathCacher cacher = new TreePathCacher();
+        for (Tree target : targets) {
+            bh.consume(cacher.getPath(root, target));
+        }
+    }
+
+    @Benchmark
+    public void scan(Blackhole bh) {
+        ScanningTreePathCacher cacher = new ScanningTreePathCacher();
+        for (Tree target : targets) {
+            bh.consume(cacher.getPath(root, target));
+        }
+    }
+
+    /**
+     * The implementation of {@link TreePathCacher} before it indexed the whole compilation unit: it
+     * caches the paths of the trees that it has scanned, but scans from the root again for every
+     * other tree.
+     */
+    private static class ScanningTreePathCacher extends TreeScanner<TreePath, Tree> {
+
+        private final Map<Tree, TreePath> foundPaths = new HashMap<>();
+
+        private TreePath path;
+
+        TreePath getPath(CompilationUnitTree root, Tree target) {
+            if (foundPaths.containsKey(target)) {
+                return foundPaths.get(target);
+            }
+            TreePath path = new TreePath(root);
+            if (path.getLeaf() == target) {
+                return path;
+            }
+            try {
+                this.scan(path, target);
+            } catch (Result result) {
+                return result.path;
+            }
+            return null;
+        }
+
+        private static class Result extends Error {
+            private static final long serialVersionUID = 1L;
+            final TreePath path;
+
+            Result(TreePath path) {
+                this.path = path;
+            }
+        }
+
+        @Override
+        public TreePath scan(Tree tree, Tree target) {
+            TreePath prev = path;
+            if (tree != null && foundPaths.get(tree) == null) {
+                TreePath current = new TreePath(path, tree);
+                foundPaths.put(tree, current);
+                path = current;
+            } else {
+                this.path = foundPaths.get(tree);
+            }
+            if (tree == target) {
+                throw new Result(path);
+            }
+            try {
+                return super.scan(tree, target);
+            } finally {
+                this.path = prev;
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package org.checkerframework.benchmarks;
+
+import com.sun.source.tree.AssignmentTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.NewClassTree;
+import com.sun.source.tree.ReturnTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.TreeScanner;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.checkerframework.checker.nullness.NullnessChecker;
+import org.checkerframework.framework.type.AnnotatedTypeFactory;
+import org.checkerframework.framework.type.AnnotatedTypeMirror;
+import org.checkerframework.framework.type.DefaultTypeHierarchy;
+import org.checkerframework.framework.type.GenericAnnotatedTypeFactory;
+import org.checkerframework.framework.type.TypeHierarchy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link AnnotatedTypeFactory#getAnnotatedType(Tree)} and {@link
+ * DefaultTypeHierarchy#isSubtype} for the type factory of the Nullness Checker, after the checker
+ * has checked the corpus.
+ *
+ * <p>The trees are queried in the order in which {@link
+ * org.checkerframework.common.basetype.BaseTypeVisitor} queries them: each class before the code
+ * it contains, so that dataflow analysis is performed first. The queries are the declarations and
+ * initializers of variables, the sides of assignments, method invocations and their arguments,
+ * object creations, and returned expressions. The subtype checks are the ones for the variable
+ * initializations and assignments of the corpus.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TypeFactoryBenchmark {
+
+    /** The queries of one compilation unit. */
+    private static class QueriesInRoot {
+        /** The type factory of the checker that checked the compilation unit. */
+        final GenericAnnotatedTypeFactory<?, ?, ?, ?> factory;
+        /** The compilation unit. */
+        final CompilationUnitTree root;
+        /** The trees to pass to getAnnotatedType, in order. */
+        final List<Tree> trees = new ArrayList<>();
+
+        QueriesInRoot(GenericAnnotatedTypeFactory<?, ?, ?, ?> factory, CompilationUnitTree root) {
+            this.factory = factory;
+            this.root = root;
+        }
+    }
+
+    /** The checked groups of the corpus, which own the trees of {@link #queries}. */
+    private List<AnalyzedCorpus> corpora;
+
+    /** The getAnnotatedType queries of each compilation unit. */
+    private List<QueriesInRoot> queries;
+
+    /** The subtype checks; each entry holds a subtype followed by its supertype. */
+    private List<AnnotatedTypeMirror[]> subtypeChecks;
+
+    /** The type hierarchy of each subtype check in {@link #subtypeChecks}. */
+    private List<TypeHierarchy> hierarchies;
+
+    @Setup
+    public void setUp() {
+        corpora = new ArrayList<>();
+        queries = new ArrayList<>();
+        subtypeChecks = new ArrayList<>();
+        hierarchies = new ArrayList<>();
+        for (List<File> group : Corpus.compilationGroups()) {
+            NullnessChecker checker = new NullnessChecker();
+            AnalyzedCorpus corpus = AnalyzedCorpus.analyze(group, checker);
+            corpora.add(corpus);
+            GenericAnnotatedTypeFactory<?, ?, ?, ?> factory = checker.getTypeFactory();
+            for (CompilationUnitTree root : corpus.roots) {
+                queries.add(collectQueries(factory, root));
+            }
+        }
+    }
+
+    /**
+     * Collects the getAnnotatedType queries of {@code root}, and the subtype checks of its variable
+     * initializations and assignments.
+     */
+    private QueriesInRoot collectQueries(
+            final GenericAnnotatedTypeFactory<?, ?, ?, ?> factory, CompilationUnitTree root) {
+        final QueriesInRoot result = new QueriesInRoot(factory, root);
+        final TypeHierarchy hierarchy = factory.getTypeHierarchy();
+        factory.setRoot(root);
+        new TreeScanner<Void, Void>() {
+            @Override
+            public Void visitClass(ClassTree tree, Void p) {
+                // Performs dataflow analysis of the class.
+                factory.getAnnotatedType(tree);
+                result.trees.add(tree);
+                return super.visitClass(tree, p);
+            }
+
+            @Override
+            public Void visitVariable(VariableTree tree, Void p) {
+                result.trees.add(tree);
+                if (tree.getInitializer() != null) {
+                    result.trees.add(tree.getInitializer());
+                    addSubtypeCheck(tree.getInitializer(), tree);
+                }
+                return super.visitVariable(tree, p);
+            }
+
+            @Override
+            public Void visitAssignment(AssignmentTree tree, Void p) {
+                result.trees.add(tree.getVariable());
+                result.trees.add(tree.getExpression());
+                addSubtypeCheck(tree.getExpression(), tree.getVariable());
+                return super.visitAssignment(tree, p);
+            }
+
+            @Override
+            public Void visitMethodInvocation(MethodInvocationTree tree, Void p) {
+                result.trees.add(tree);
+                result.trees.addAll(tree.getArguments());
+                return super.visitMethodInvocation(tree, p);
+            }
+
+            @Override
+            public Void visitNewClass(NewClassTree tree, Void p) {
+                result.trees.add(tree);
+                return super.visitNewClass(tree, p);
+            }
+
+            @Override
+            public Void visitReturn(ReturnTree tree, Void p) {
+                if (tree.getExpression() != null) {
+                    result.trees.add(tree.getExpression());
+                }
+                return super.visitReturn(tree, p);
+            }
+
+            private void addSubtypeCheck(ExpressionTree value, Tree variable) {
+                subtypeChecks.add(
+                        new AnnotatedTypeMirror[] {
+                            factory.getAnnotatedType(value), factory.getAnnotatedType(variable)
+                        });
+                hierarchies.add(hierarchy);
+            }
+        }.scan(root, null);
+        return result;
+    }
+
+    @Benchmark
+    public void getAnnotatedType(Blackhole bh) {
+        for (QueriesInRoot q : queries) {
+            // Clears the caches and the dataflow results of the previous compilation unit.
+            q.factory.setRoot(q.root);
+            for (Tree tree : q.trees) {
+                bh.consume(q.factory.getAnnotatedType(tree));
+            }
+        }
+    }
+
+    @Benchmark
+    public void isSubtype(Blackhole bh) {
+        for (int i = 0; i < subtypeChecks.size(); i++) {
+            AnnotatedTypeMirror[] check = subtypeChecks.get(i);
+            bh.consume(hierarchies.get(i).isSubtype(check[0], check[1]));
+        }
+    }
+}
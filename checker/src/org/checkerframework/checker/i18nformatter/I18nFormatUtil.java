@@ -154,7 +154,7 @@ public class I18nFormatUtil {
             "", "short", "medium", "long", "full"
         };
 
-        public static I18nConversion[] parse(String pattern) {
+        public static synchronized I18nConversion[] parse(String pattern) {
             MessageFormatParser.categories = new ArrayList<I18nConversionCategory>();
             MessageFormatParser.argumentIndices = new ArrayList<Integer>();
             MessageFormatParser.locale = Locale.getDefault(Locale.Category.FORMAT);
@@ -7,6 +7,7 @@ import com.sun.source.tree.LiteralTree;
 import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.Tree;
 import java.lang.annotation.Annotation;
+import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -40,6 +41,7 @@ import org.checkerframework.framework.util.GraphQualifierHierarchy;
 import org.checkerframework.framework.util.MultiGraphQualifierHierarchy.MultiGraphFactory;
 import org.checkerframework.javacutil.AnnotationBuilder;
 import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.TreeUtils;
 
 /**
@@ -104,6 +106,25 @@ public class RegexAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
     protected final AnnotationMirror REGEX, REGEXBOTTOM, PARTIALREGEX, POLYREGEX;
     protected final ExecutableElement regexValueElement;
 
+    /** The maximum number of strings whose group counts and scans are cached. */
+    private static final int CACHE_SIZE = 500;
+
+    /** Stands for a string that is not a regular expression in {@link #groupCounts}. */
+    private static final int NOT_A_REGEX = -1;
+
+    /**
+     * The group count of each recently checked string, or {@link #NOT_A_REGEX}. Dataflow asks for
+     * the types of the same literals and concatenations many times, and each would otherwise
+     * compile the string again.
+     */
+    private final Map<String, Integer> groupCounts =
+            CollectionUtils.createLRUCache(CACHE_SIZE, "RegexAnnotatedTypeFactory.groupCounts");
+
+    /** The scan of each recently concatenated partial regular expression. */
+    private final Map<String, RegexScan> partialRegexScans =
+            CollectionUtils.createLRUCache(
+                    CACHE_SIZE, "RegexAnnotatedTypeFactory.partialRegexScans");
+
     // TODO use? private TypeMirror[] legalReferenceTypes;
 
     public RegexAnnotatedTypeFactory(BaseTypeChecker checker) {
@@ -237,18 +258,41 @@ public class RegexAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
     }
 
     /**
-     * This method is a copy of RegexUtil.isRegex. We cannot directly use RegexUtil, because it uses
-     * type annotations which cannot be used in IDEs (yet).
+     * Returns the number of groups in the given String, or {@link #NOT_A_REGEX} if it is not a
+     * regular expression. Each String is compiled only once while it is in the cache.
      */
-    @SuppressWarnings("purity") // the checker cannot prove that the method is pure, but it is
-    @Pure
-    private static boolean isRegex(String s) {
-        try {
-            Pattern.compile(s);
-        } catch (PatternSyntaxException e) {
-            return false;
+    private int getGroupCountIfRegex(String s) {
+        Integer groupCount = groupCounts.get(s);
+        if (groupCount == null) {
+            try {
+                groupCount = Pattern.compile(s).matcher("").groupCount();
+            } catch (PatternSyntaxException e) {
+                groupCount = NOT_A_REGEX;
+            }
+            groupCounts.put(s, groupCount);
+        }
+        return groupCount;
+    }
+
+    /**
+     * Returns the number of groups in the concatenation of two partial regular expressions, or
+     * {@link #NOT_A_REGEX} if it is not a regular expression. The concatenation is only compiled
+     * if a scan of its parentheses and brackets, which continues the cached scan of {@code left},
+     * does not show that it is invalid. So, in a chain of concatenations that only opens groups,
+     * no prefix is compiled.
+     */
+    private int getGroupCountOfConcatenation(String left, String right) {
+        String concat = left + right;
+        RegexScan leftScan = partialRegexScans.get(left);
+        if (leftScan == null) {
+            leftScan = RegexScan.EMPTY.append(left);
+        }
+        RegexScan scan = leftScan.append(right);
+        partialRegexScans.put(concat, scan);
+        if (scan.isCertainlyInvalid()) {
+            return NOT_A_REGEX;
         }
-        return true;
+        return getGroupCountIfRegex(concat);
     }
 
     @Override
@@ -295,8 +339,8 @@ public class RegexAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
                     regex = Character.toString((Character) tree.getValue());
                 }
                 if (regex != null) {
-                    if (isRegex(regex)) {
-                        int groupCount = getGroupCount(regex);
+                    int groupCount = getGroupCountIfRegex(regex);
+                    if (groupCount != NOT_A_REGEX) {
                         type.addAnnotation(createRegexAnnotation(groupCount));
                     } else {
                         type.addAnnotation(createPartialRegexAnnotation(regex));
@@ -337,12 +381,11 @@ public class RegexAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
                 } else if (lExprPart && rExprPart) {
                     String lRegex = getPartialRegexValue(lExpr);
                     String rRegex = getPartialRegexValue(rExpr);
-                    String concat = lRegex + rRegex;
-                    if (isRegex(concat)) {
-                        int groupCount = getGroupCount(concat);
+                    int groupCount = getGroupCountOfConcatenation(lRegex, rRegex);
+                    if (groupCount != NOT_A_REGEX) {
                         type.addAnnotation(createRegexAnnotation(groupCount));
                     } else {
-                        type.addAnnotation(createPartialRegexAnnotation(concat));
+                        type.addAnnotation(createPartialRegexAnnotation(lRegex + rRegex));
                     }
                 } else if (lExprRE && rExprPart) {
                     String rRegex = getPartialRegexValue(rExpr);
@@ -502,4 +545,138 @@ public class RegexAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
         //            return super.visitNewArray(tree, type);
         //        }
     }
+
+    /**
+     * The state of a left-to-right scan of the parentheses and brackets of a string, which tells
+     * whether the string is certainly not a regular expression because it has an unmatched
+     * parenthesis, an unclosed character class, or a trailing backslash. A scan is continued with
+     * {@link #append}, so the scan of a concatenation does not rescan its left operand.
+     *
+     * <p>The scan is conservative: when it meets a construct that could change how the rest of the
+     * string is parsed, such as a comment or the braces of {@code \p{...}}, it gives up, and the
+     * string must be compiled.
+     */
+    private static final class RegexScan {
+
+        /** The scan of the empty string. */
+        static final RegexScan EMPTY = new RegexScan(0, false, false, false, false, 0, false);
+
+        /** The number of groups that are open. */
+        final int depth;
+
+        /** Whether a closing parenthesis without an open group has been seen. */
+        final boolean invalid;
+
+        /** Whether the scan gave up; then the string may or may not be a regular expression. */
+        final boolean unknown;
+
+        /** Whether the last character is an unescaped backslash. */
+        final boolean escaped;
+
+        /** Whether the scan is between {@code \Q} and {@code \E}. */
+        final boolean quoted;
+
+        /**
+         * Whether the scan is in a character class: 0 if not, 1 just after its {@code [}, 2 just
+         * after its {@code [^}, and 3 after its first character.
+         */
+        final int inClass;
+
+        /**
+         * Whether the last character is an escaped letter that may be followed by a brace, like
+         * the {@code p} of {@code \p{Alpha}}, or a backslash within {@code \Q...\E}.
+         */
+        final boolean pending;
+
+        RegexScan(
+                int depth,
+                boolean invalid,
+                boolean unknown,
+                boolean escaped,
+                boolean quoted,
+                int inClass,
+                boolean pending) {
+            this.depth = depth;
+            this.invalid = invalid;
+            this.unknown = unknown;
+            this.escaped = escaped;
+            this.quoted = quoted;
+            this.inClass = inClass;
+            this.pending = pending;
+        }
+
+        /** Returns the scan of the scanned string followed by {@code s}. */
+        RegexScan append(String s) {
+            int depth = this.depth;
+            boolean escaped = this.escaped;
+            boolean quoted = this.quoted;
+            int inClass = this.inClass;
+            boolean pending = this.pending;
+            for (int i = 0; i < s.length() && !invalid && !unknown; i++) {
+                char c = s.charAt(i);
+                if (quoted) {
+                    // Only \E ends a quotation.
+                    if (pending && c == 'E') {
+                        quoted = false;
+                        pending = false;
+                    } else {
+                        pending = c == '\\';
+                    }
+                    continue;
+                }
+                if (pending) {
+                    pending = false;
+                    if (c == '{' || c == '<') {
+                        return new RegexScan(depth, false, true, false, false, inClass, false);
+                    }
+                }
+                if (escaped) {
+                    escaped = false;
+                    if (inClass != 0) {
+                        inClass = 3;
+                    }
+                    if (c == 'Q') {
+                        quoted = true;
+                    } else if (c == 'c') {
+                        // \c takes the next character, whatever it is.
+                        return new RegexScan(depth, false, true, false, false, inClass, false);
+                    } else {
+                        pending = "pPxkNbB".indexOf(c) != -1;
+                    }
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (inClass != 0) {
+                    if (c == '^' && inClass == 1) {
+                        inClass = 2;
+                    } else if (c == '[' || (c == ']' && inClass != 3)) {
+                        // Nested classes and a leading ] are parsed differently by different JDKs.
+                        return new RegexScan(depth, false, true, false, false, inClass, false);
+                    } else {
+                        inClass = c == ']' ? 0 : 3;
+                    }
+                } else if (c == '#') {
+                    // The rest of the line is a comment if the (?x) flag is set.
+                    return new RegexScan(depth, false, true, false, false, inClass, false);
+                } else if (c == '(') {
+                    depth++;
+                } else if (c == ')') {
+                    if (depth == 0) {
+                        return new RegexScan(depth, true, false, false, false, inClass, false);
+                    }
+                    depth--;
+                } else if (c == '[') {
+                    inClass = 1;
+                }
+            }
+            if (invalid || unknown) {
+                return this;
+            }
+            return new RegexScan(depth, false, false, escaped, quoted, inClass, pending);
+        }
+
+        /** Returns true if the scanned string is certainly not a regular expression. */
+        boolean isCertainlyInvalid() {
+            return invalid || (!unknown && (depth > 0 || inClass != 0 || escaped));
+        }
+    }
 }
@@ -61,11 +61,12 @@ public class UnitsAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
      */
     private Map<String, UnitsRelations> unitsRel;
 
-    private static final Map<String, Class<? extends Annotation>> externalQualsMap =
+    // Kept per factory: the annotations belong to one compilation, and compilations may run
+    // concurrently in one JVM.
+    private final Map<String, Class<? extends Annotation>> externalQualsMap =
             new HashMap<String, Class<? extends Annotation>>();
 
-    private static final Map<String, AnnotationMirror> aliasMap =
-            new HashMap<String, AnnotationMirror>();
+    private final Map<String, AnnotationMirror> aliasMap = new HashMap<String, AnnotationMirror>();
 
     public UnitsAnnotatedTypeFactory(BaseTypeChecker checker) {
         // use true to enable flow inference, false to disable it
@@ -18,4 +18,21 @@ public class PartialRegex {
         // :: error: (assignment.type.incompatible)
         @Regex String fail3 = l + r + r;
     }
+
+    void concatenations() {
+        String open = "[(";
+        String close = ")]";
+        String escape = "\\";
+        String quote = "(\\Q(";
+
+        @Regex String inClass = open + close;
+        @Regex String escaped = "(" + escape + ")" + ")";
+        @Regex String quoted = quote + "\\E)";
+        // :: error: (assignment.type.incompatible)
+        @Regex String fail1 = open + ")";
+        // :: error: (assignment.type.incompatible)
+        @Regex String fail2 = "(" + escape + ")";
+        // :: error: (assignment.type.incompatible)
+        @Regex String fail3 = quote + ")";
+    }
 }
@@ -11,14 +11,12 @@ import com.sun.source.tree.Tree;
 import com.sun.source.tree.UnaryTree;
 import com.sun.source.tree.VariableTree;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
-import java.util.PriorityQueue;
 import java.util.Set;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.Element;
@@ -68,17 +66,22 @@ public class Analysis<
     /** Instance of the types utility. */
     protected final Types types;
 
-    /** Then stores before every basic block (assumed to be 'no information' if not present). */
-    protected IdentityHashMap<Block, S> thenStores;
+    /*
+     * The per-block information below is stored in arrays indexed by
+     * ControlFlowGraph.getBlockIndex.
+     */
+
+    /** Then stores before every basic block (assumed to be 'no information' if null). */
+    protected S[] thenStores;
 
-    /** Else stores before every basic block (assumed to be 'no information' if not present). */
-    protected IdentityHashMap<Block, S> elseStores;
+    /** Else stores before every basic block (assumed to be 'no information' if null). */
+    protected S[] elseStores;
 
     /**
      * Number of times every block has been analyzed since the last time widening was applied. Null,
      * if maxCountBeforeWidening is -1 which implies widening isn't used for this analysis.
      */
-    protected IdentityHashMap<Block, Integer> blockCount;
+    protected int[] blockCount;
 
     /**
      * Number of times a block can be analyzed before widening. -1 implies that widening shouldn't
@@ -86,10 +89,11 @@ public class Analysis<
      */
     protected final int maxCountBeforeWidening;
 
-    /**
-     * The transfer inputs before every basic block (assumed to be 'no information' if not present).
-     */
-    protected IdentityHashMap<Block, TransferInput<A, S>> inputs;
+    /** The transfer inputs before every basic block (assumed to be 'no information' if null). */
+    protected TransferInput<A, S>[] inputs;
+
+    /** Number of times every block has been taken from the worklist and analyzed. */
+    protected int[] visitCounts;
 
     /** The stores after every return statement. */
     protected IdentityHashMap<ReturnNode, TransferResult<A, S>> storesAtReturnStatements;
@@ -185,6 +189,7 @@ public class Analysis<
 
         while (!worklist.isEmpty()) {
             Block b = worklist.poll();
+            visitCounts[cfg.getBlockIndex(b)]++;
 
             switch (b.getType()) {
                 case REGULAR_BLOCK:
@@ -425,12 +430,15 @@ public class Analysis<
     }
 
     /** Initialize the analysis with a new control flow graph. */
+    @SuppressWarnings("unchecked") // generic array creation
     protected void init(ControlFlowGraph cfg) {
         this.cfg = cfg;
-        thenStores = new IdentityHashMap<>();
-        elseStores = new IdentityHashMap<>();
-        blockCount = maxCountBeforeWidening == -1 ? null : new IdentityHashMap<Block, Integer>();
-        inputs = new IdentityHashMap<>();
+        int blocks = cfg.getBlockCount();
+        thenStores = (S[]) new Store<?>[blocks];
+        elseStores = (S[]) new Store<?>[blocks];
+        blockCount = maxCountBeforeWidening == -1 ? null : new int[blocks];
+        inputs = (TransferInput<A, S>[]) new TransferInput<?, ?>[blocks];
+        visitCounts = new int[blocks];
         storesAtReturnStatements = new IdentityHashMap<>();
         worklist = new Worklist(cfg);
         nodeValues = new IdentityHashMap<>();
@@ -462,17 +470,16 @@ public class Analysis<
             // nothing to do
         }
         S initialStore = transferFunction.initialStore(underlyingAST, parameters);
-        Block entry = cfg.getEntryBlock();
-        thenStores.put(entry, initialStore);
-        elseStores.put(entry, initialStore);
-        inputs.put(entry, new TransferInput<>(null, this, initialStore));
+        int entry = cfg.getBlockIndex(cfg.getEntryBlock());
+        thenStores[entry] = initialStore;
+        elseStores[entry] = initialStore;
+        inputs[entry] = new TransferInput<>(null, this, initialStore);
     }
 
     /**
      * Add a basic block to the worklist. If {@code b} is already present, the method does nothing.
      */
     protected void addToWorklist(Block b) {
-        // TODO: use a more efficient way to check if b is already present
         if (!worklist.contains(b)) {
             worklist.add(b);
         }
@@ -484,19 +491,17 @@ public class Analysis<
      */
     protected void addStoreBefore(
             Block b, Node node, S s, Store.Kind kind, boolean addBlockToWorklist) {
-        S thenStore = getStoreBefore(b, Store.Kind.THEN);
-        S elseStore = getStoreBefore(b, Store.Kind.ELSE);
+        int index = cfg.getBlockIndex(b);
+        S thenStore = thenStores[index];
+        S elseStore = elseStores[index];
         boolean shouldWiden = false;
         if (blockCount != null) {
-            Integer count = blockCount.get(b);
-            if (count == null) {
-                count = 0;
-            }
+            int count = blockCount[index];
             shouldWiden = count >= maxCountBeforeWidening;
             if (shouldWiden) {
-                blockCount.put(b, 0);
+                blockCount[index] = 0;
             } else {
-                blockCount.put(b, count + 1);
+                blockCount[index] = count + 1;
             }
         }
 
@@ -506,9 +511,10 @@ public class Analysis<
                     // Update the then store
                     S newThenStore = mergeStores(s, thenStore, shouldWiden);
                     if (!newThenStore.equals(thenStore)) {
-                        thenStores.put(b, newThenStore);
+                        thenStores[index] = newThenStore;
                         if (elseStore != null) {
-                            inputs.put(b, new TransferInput<>(node, this, newThenStore, elseStore));
+                            inputs[index] =
+                                    new TransferInput<>(node, this, newThenStore, elseStore);
                             addBlockToWorklist = true;
                         }
                     }
@@ -519,9 +525,10 @@ public class Analysis<
                     // Update the else store
                     S newElseStore = mergeStores(s, elseStore, shouldWiden);
                     if (!newElseStore.equals(elseStore)) {
-                        elseStores.put(b, newElseStore);
+                        elseStores[index] = newElseStore;
                         if (thenStore != null) {
-                            inputs.put(b, new TransferInput<>(node, this, thenStore, newElseStore));
+                            inputs[index] =
+                                    new TransferInput<>(node, this, thenStore, newElseStore);
                             addBlockToWorklist = true;
                         }
                     }
@@ -532,9 +539,9 @@ public class Analysis<
                     // Currently there is only one regular store
                     S newStore = mergeStores(s, thenStore, shouldWiden);
                     if (!newStore.equals(thenStore)) {
-                        thenStores.put(b, newStore);
-                        elseStores.put(b, newStore);
-                        inputs.put(b, new TransferInput<>(node, this, newStore));
+                        thenStores[index] = newStore;
+                        elseStores[index] = newStore;
+                        inputs[index] = new TransferInput<>(node, this, newStore);
                         addBlockToWorklist = true;
                     }
                 } else {
@@ -542,18 +549,18 @@ public class Analysis<
 
                     S newThenStore = mergeStores(s, thenStore, shouldWiden);
                     if (!newThenStore.equals(thenStore)) {
-                        thenStores.put(b, newThenStore);
+                        thenStores[index] = newThenStore;
                         storeChanged = true;
                     }
 
                     S newElseStore = mergeStores(s, elseStore, shouldWiden);
                     if (!newElseStore.equals(elseStore)) {
-                        elseStores.put(b, newElseStore);
+                        elseStores[index] = newElseStore;
                         storeChanged = true;
                     }
 
                     if (storeChanged) {
-                        inputs.put(b, new TransferInput<>(node, this, newThenStore, newElseStore));
+                        inputs[index] = new TransferInput<>(node, this, newThenStore, newElseStore);
                         addBlockToWorklist = true;
                     }
                 }
@@ -577,31 +584,25 @@ public class Analysis<
     /**
      * A worklist is a priority queue of blocks in which the order is given by depth-first ordering
      * to place non-loop predecessors ahead of successors.
+     *
+     * <p>The worklist is a bit set of block indices (see {@link ControlFlowGraph#getBlockIndex}),
+     * as the indices follow the depth-first ordering.
      */
     protected static class Worklist {
 
-        /** Map all blocks in the CFG to their depth-first order. */
-        protected IdentityHashMap<Block, Integer> depthFirstOrder;
+        /** The control flow graph whose blocks are in the worklist. */
+        protected final ControlFlowGraph cfg;
 
-        /** Comparator to allow priority queue to order blocks by their depth-first order. */
-        public class DFOComparator implements Comparator<Block> {
-            @Override
-            public int compare(Block b1, Block b2) {
-                return depthFirstOrder.get(b1) - depthFirstOrder.get(b2);
-            }
-        }
+        /** All blocks of the CFG, ordered by index. */
+        protected final List<Block> blocks;
 
-        /** The backing priority queue. */
-        protected PriorityQueue<Block> queue;
+        /** The indices of the blocks in the worklist. */
+        protected final BitSet queue;
 
         public Worklist(ControlFlowGraph cfg) {
-            depthFirstOrder = new IdentityHashMap<>();
-            int count = 1;
-            for (Block b : cfg.getDepthFirstOrderedBlocks()) {
-                depthFirstOrder.put(b, count++);
-            }
-
-            queue = new PriorityQueue<Block>(11, new DFOComparator());
+            this.cfg = cfg;
+            this.blocks = cfg.getIndexedBlocks();
+            this.queue = new BitSet(blocks.size());
         }
 
         public boolean isEmpty() {
@@ -609,20 +610,29 @@ public class Analysis<
         }
 
         public boolean contains(Block block) {
-            return queue.contains(block);
+            return queue.get(cfg.getBlockIndex(block));
         }
 
         public void add(Block block) {
-            queue.add(block);
+            queue.set(cfg.getBlockIndex(block));
         }
 
-        public Block poll() {
-            return queue.poll();
+        public /*@Nullable*/ Block poll() {
+            int index = queue.nextSetBit(0);
+            if (index < 0) {
+                return null;
+            }
+            queue.clear(index);
+            return blocks.get(index);
         }
 
         @Override
         public String toString() {
-            return "Worklist(" + queue + ")";
+            List<Block> queued = new ArrayList<>();
+            for (int i = queue.nextSetBit(0); i >= 0; i = queue.nextSetBit(i + 1)) {
+                queued.add(blocks.get(i));
+            }
+            return "Worklist(" + queued + ")";
         }
     }
 
@@ -639,30 +649,27 @@ public class Analysis<
      *     b}.
      */
     protected /*@Nullable*/ TransferInput<A, S> getInputBefore(Block b) {
-        return inputs.get(b);
+        int index = cfg.getBlockIndex(b);
+        return index < 0 ? null : inputs[index];
     }
 
     /** @return the store corresponding to the location right before the basic block {@code b}. */
     protected /*@Nullable*/ S getStoreBefore(Block b, Store.Kind kind) {
+        int index = cfg.getBlockIndex(b);
+        if (index < 0) {
+            return null;
+        }
         switch (kind) {
             case THEN:
-                return readFromStore(thenStores, b);
+                return thenStores[index];
             case ELSE:
-                return readFromStore(elseStores, b);
+                return elseStores[index];
             default:
                 assert false;
                 return null;
         }
     }
 
-    /**
-     * Read the {@link Store} for a particular basic block from a map of stores (or {@code null} if
-     * none exists yet).
-     */
-    protected static <S> /*@Nullable*/ S readFromStore(Map<Block, S> stores, Block b) {
-        return stores.get(b);
-    }
-
     /** Is the analysis currently running? */
     public boolean isRunning() {
         return isRunning;
@@ -741,15 +748,33 @@ public class Analysis<
         return result;
     }
 
+    /**
+     * Returns the number of times that the fixpoint iteration analyzed each block of the control
+     * flow graph. A block is analyzed again whenever the store before it changes.
+     *
+     * @return the number of times each block was analyzed, indexed by {@link
+     *     ControlFlowGraph#getBlockIndex}
+     */
+    public int[] getBlockVisitCounts() {
+        return visitCounts.clone();
+    }
+
     public AnalysisResult<A, S> getResult() {
         assert !isRunning;
         IdentityHashMap<Tree, Node> treeLookup = cfg.getTreeLookup();
         IdentityHashMap<UnaryTree, AssignmentNode> unaryAssignNodeLookup =
                 cfg.getUnaryAssignNodeLookup();
         IdentityHashMap<Tree, List<Tree>> generatedTreesLookup = cfg.getGeneratedTreesLookup();
+        IdentityHashMap<Block, TransferInput<A, S>> inputsByBlock = new IdentityHashMap<>();
+        for (Block b : cfg.getIndexedBlocks()) {
+            TransferInput<A, S> input = inputs[cfg.getBlockIndex(b)];
+            if (input != null) {
+                inputsByBlock.put(b, input);
+            }
+        }
         return new AnalysisResult<>(
                 nodeValues,
-                inputs,
+                inputsByBlock,
                 treeLookup,
                 unaryAssignNodeLookup,
                 finalLocalValues,
@@ -761,9 +786,9 @@ public class Analysis<
      *     method cannot exit through the regular exit block).
      */
     public /*@Nullable*/ S getRegularExitStore() {
-        SpecialBlock regularExitBlock = cfg.getRegularExitBlock();
-        if (inputs.containsKey(regularExitBlock)) {
-            S regularExitStore = inputs.get(regularExitBlock).getRegularStore();
+        TransferInput<A, S> regularExitInput = getInputBefore(cfg.getRegularExitBlock());
+        if (regularExitInput != null) {
+            S regularExitStore = regularExitInput.getRegularStore();
             return regularExitStore;
         } else {
             return null;
@@ -771,7 +796,8 @@ public class Analysis<
     }
 
     public S getExceptionalExitStore() {
-        S exceptionalExitStore = inputs.get(cfg.getExceptionalExitBlock()).getRegularStore();
+        S exceptionalExitStore =
+                getInputBefore(cfg.getExceptionalExitBlock()).getRegularStore();
         return exceptionalExitStore;
     }
 }
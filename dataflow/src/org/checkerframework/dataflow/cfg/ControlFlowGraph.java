@@ -8,6 +8,7 @@ import com.sun.source.tree.ClassTree;
 import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.tree.UnaryTree;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashSet;
@@ -18,6 +19,7 @@ import java.util.Queue;
 import java.util.Set;
 import org.checkerframework.dataflow.cfg.block.Block;
 import org.checkerframework.dataflow.cfg.block.Block.BlockType;
+import org.checkerframework.dataflow.cfg.block.BlockImpl;
 import org.checkerframework.dataflow.cfg.block.ConditionalBlock;
 import org.checkerframework.dataflow.cfg.block.ExceptionBlock;
 import org.checkerframework.dataflow.cfg.block.SingleSuccessorBlock;
@@ -69,6 +71,14 @@ public class ControlFlowGraph {
     /** Map from AST {@link Tree}s to generated {@link Tree}s. */
     protected final IdentityHashMap<Tree, List<Tree>> generatedTreesLookupMap;
 
+    /**
+     * The blocks reachable from the entry block, in reverse depth-first postorder, such that the
+     * block at position i has index i. Null until the blocks are numbered.
+     *
+     * @see #getBlockIndex(Block)
+     */
+    protected /*@Nullable*/ List<Block> indexedBlocks;
+
     public ControlFlowGraph(
             SpecialBlock entryBlock,
             SpecialBlockImpl regularExitBlock,
@@ -195,6 +205,56 @@ public class ControlFlowGraph {
         return dfsOrderResult;
     }
 
+    /**
+     * Returns the blocks reachable from the entry block, each exactly once, in reverse depth-first
+     * postorder. The position of a block in this list is its index; see {@link
+     * #getBlockIndex(Block)}.
+     *
+     * @return the reachable blocks, ordered by index
+     */
+    public List<Block> getIndexedBlocks() {
+        if (indexedBlocks == null) {
+            List<Block> dfsOrder = getDepthFirstOrderedBlocks();
+            // A block may occur several times; use the position of its last occurrence.
+            IdentityHashMap<Block, Integer> lastOccurrence = new IdentityHashMap<>();
+            int pos = 0;
+            for (Block b : dfsOrder) {
+                lastOccurrence.put(b, pos++);
+            }
+            List<Block> blocks = new ArrayList<>(lastOccurrence.size());
+            pos = 0;
+            for (Block b : dfsOrder) {
+                if (lastOccurrence.get(b) == pos++) {
+                    ((BlockImpl) b).setIndex(blocks.size());
+                    blocks.add(b);
+                }
+            }
+            indexedBlocks = Collections.unmodifiableList(blocks);
+        }
+        return indexedBlocks;
+    }
+
+    /**
+     * Returns the index of a block of this graph. The indices of the blocks reachable from the entry
+     * block are dense (from 0 to {@link #getBlockCount()}{@code - 1}) and follow the reverse
+     * depth-first postorder, which places non-loop predecessors ahead of their successors. Indices
+     * can be used to store per-block information in arrays rather than maps.
+     *
+     * @param b a block of this graph
+     * @return the index of {@code b}, or -1 if {@code b} is not reachable from the entry block
+     */
+    public int getBlockIndex(Block b) {
+        if (indexedBlocks == null) {
+            getIndexedBlocks();
+        }
+        return ((BlockImpl) b).getIndex();
+    }
+
+    /** @return the number of blocks that are reachable from the entry block */
+    public int getBlockCount() {
+        return getIndexedBlocks().size();
+    }
+
     /**
      * Get a list of all successor Blocks for cur
      *
@@ -23,6 +23,14 @@ public abstract class BlockImpl implements Block {
     /** The set of predecessors. */
     protected Set<BlockImpl> predecessors;
 
+    /**
+     * The position of this block in the reverse postorder of its control flow graph, or -1 if it
+     * has not been numbered.
+     *
+     * @see org.checkerframework.dataflow.cfg.ControlFlowGraph#getBlockIndex(Block)
+     */
+    protected int index = -1;
+
     /** @return a fresh identifier */
     private static long uniqueID() {
         return lastId++;
@@ -37,6 +45,22 @@ public abstract class BlockImpl implements Block {
         return id;
     }
 
+    /** @return the position of this block in the reverse postorder of its graph, or -1 */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Sets the position of this block in the reverse postorder of its graph; -1 marks the block as
+     * unnumbered. Only {@link org.checkerframework.dataflow.cfg.ControlFlowGraph} should call this
+     * method, when it numbers its blocks.
+     *
+     * @param index the position of this block, or -1
+     */
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
     @Override
     public BlockType getType() {
         return type;
@@ -0,0 +1,527 @@
+package org.checkerframework.dataflow.util;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A hash map whose {@link #copy()} operation takes constant time.
+ *
+ * <p>The entries are kept in a hash array mapped trie. A copy shares all trie nodes with the
+ * original map; afterwards, an update to either map copies only the nodes on the path from the root
+ * to the updated entry (copy-on-write), so each update costs O(log n). Nodes created by a map since
+ * its last copy are not shared and are updated in place.
+ *
+ * <p>Two maps that share their root node have the same entries; {@link #sharesStructureWith} can
+ * be used to detect this without comparing entries.
+ *
+ * <p>Like {@link java.util.HashMap}, this class permits {@code null} keys and values and is not
+ * thread-safe. The map must not be modified while iterating over it, except through the {@code
+ * remove} method of an iterator.
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+    /** Number of hash bits consumed by each level of the trie. */
+    private static final int BITS = 5;
+
+    /** Mask that selects the hash bits of one level of the trie. */
+    private static final int MASK = (1 << BITS) - 1;
+
+    /** Result of a lookup that did not find the key; distinct from any value. */
+    private static final Object NOT_FOUND = new Object();
+
+    /** Stand-in for the {@code null} key, as {@code null} marks sub-nodes in the trie. */
+    private static final Object NULL_KEY = new Object();
+
+    /** The root of the trie. */
+    private Node root;
+
+    /** The number of entries in this map. */
+    private int size;
+
+    /**
+     * The token identifying the trie nodes that belong exclusively to this map and therefore may be
+     * updated in place. A new token is created whenever nodes become shared.
+     */
+    private Object edit;
+
+    /** Creates an empty map. */
+    public PersistentHashMap() {
+        this(BitmapNode.EMPTY, 0);
+    }
+
+    /** Creates a map that shares the given trie. */
+    private PersistentHashMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+        this.edit = new Object();
+    }
+
+    /**
+     * Returns a copy of this map in constant time. The copy and this map share their trie until
+     * either of them is updated.
+     *
+     * @return a copy of this map
+     */
+    public PersistentHashMap<K, V> copy() {
+        // All current nodes are now shared, so neither map may update them in place any longer.
+        edit = new Object();
+        return new PersistentHashMap<>(root, size);
+    }
+
+    /**
+     * Returns true if this map and {@code other} share their trie, which implies that they contain
+     * the same entries. A result of false does not imply that the entries differ.
+     *
+     * @param other the map to compare with
+     * @return true if this map and {@code other} are known to contain the same entries
+     */
+    public boolean sharesStructureWith(PersistentHashMap<?, ?> other) {
+        return root == other.root;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        Object k = maskNull(key);
+        return root.find(0, hash(k), k) != NOT_FOUND;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public /*@Nullable*/ V get(Object key) {
+        Object k = maskNull(key);
+        Object result = root.find(0, hash(k), k);
+        return result == NOT_FOUND ? null : (V) result;
+    }
+
+    @Override
+    public /*@Nullable*/ V put(K key, V value) {
+        Object k = maskNull(key);
+        Change change = new Change();
+        root = root.put(edit, 0, hash(k), k, value, change);
+        if (change.sizeChanged) {
+            size++;
+        }
+        return change.oldValue();
+    }
+
+    @Override
+    public /*@Nullable*/ V remove(Object key) {
+        Object k = maskNull(key);
+        Change change = new Change();
+        Node newRoot = root.remove(edit, 0, hash(k), k, change);
+        root = newRoot == null ? BitmapNode.EMPTY : newRoot;
+        if (change.sizeChanged) {
+            size--;
+        }
+        return change.oldValue();
+    }
+
+    @Override
+    public void clear() {
+        root = BitmapNode.EMPTY;
+        size = 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof PersistentHashMap && sharesStructureWith((PersistentHashMap<?, ?>) o)) {
+            return true;
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public void clear() {
+                PersistentHashMap.this.clear();
+            }
+        };
+    }
+
+    /** Iterates over the entries of the trie as it was when the iterator was created. */
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        /** Node arrays that are not completely visited yet; see {@link Node#array}. */
+        private final Deque<Object[]> arrays = new ArrayDeque<>();
+
+        /** The index of the next key in the array on top of {@link #arrays}. */
+        private final Deque<Integer> positions = new ArrayDeque<>();
+
+        /** The next entry to return, or null if there are no more entries. */
+        private Map.Entry<K, V> next;
+
+        /** The key of the entry that was returned last, for {@link #remove}. */
+        private Object lastKey = NOT_FOUND;
+
+        /** Whether the iterated trie has been detached from in-place updates of the map. */
+        private boolean detached = false;
+
+        EntryIterator() {
+            arrays.push(root.array);
+            positions.push(0);
+            advance();
+        }
+
+        /** Sets {@link #next} to the next entry in the trie, or null. */
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while (!arrays.isEmpty()) {
+                Object[] array = arrays.peek();
+                int pos = positions.pop();
+                if (pos >= array.length) {
+                    arrays.pop();
+                    continue;
+                }
+                positions.push(pos + 2);
+                Object key = array[pos];
+                Object value = array[pos + 1];
+                if (key == null) {
+                    arrays.push(((Node) value).array);
+                    positions.push(0);
+                } else {
+                    next = new SimpleImmutableEntry<>((K) unmaskNull(key), (V) value);
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<K, V> result = next;
+            lastKey = result.getKey();
+            advance();
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            if (lastKey == NOT_FOUND) {
+                throw new IllegalStateException();
+            }
+            if (!detached) {
+                // Make the map copy the nodes this iterator is still traversing.
+                edit = new Object();
+                detached = true;
+            }
+            PersistentHashMap.this.remove(lastKey);
+            lastKey = NOT_FOUND;
+        }
+    }
+
+    /** Returns the object that represents {@code key} in the trie. */
+    private static Object maskNull(Object key) {
+        return key == null ? NULL_KEY : key;
+    }
+
+    /** Returns the key represented by {@code key} in the trie. */
+    private static /*@Nullable*/ Object unmaskNull(Object key) {
+        return key == NULL_KEY ? null : key;
+    }
+
+    /** Returns the hash of a (masked) key, with the high bits spread into the low bits. */
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /** Returns the bit that represents {@code hash} in a bitmap node at the given shift. */
+    private static int bitpos(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    /** Records the effect of an update on the map. */
+    private static class Change {
+        /** Whether an entry was added or removed. */
+        boolean sizeChanged = false;
+
+        /** The value previously associated with the key, or {@link #NOT_FOUND}. */
+        Object oldValue = NOT_FOUND;
+
+        @SuppressWarnings("unchecked")
+        <V> /*@Nullable*/ V oldValue() {
+            return oldValue == NOT_FOUND ? null : (V) oldValue;
+        }
+    }
+
+    /**
+     * A node of the trie. Its array holds key/value pairs; a pair whose key is {@code null} holds a
+     * sub-node instead of a value.
+     */
+    private abstract static class Node {
+        /** The map edit token that may update this node in place, or null. */
+        final Object edit;
+
+        /** The key/value pairs of this node. */
+        Object[] array;
+
+        Node(Object edit, Object[] array) {
+            this.edit = edit;
+            this.array = array;
+        }
+
+        /** Returns the value for {@code key}, or {@link #NOT_FOUND}. */
+        abstract Object find(int shift, int hash, Object key);
+
+        /** Returns the node that results from associating {@code key} with {@code value}. */
+        abstract Node put(
+                Object edit, int shift, int hash, Object key, Object value, Change change);
+
+        /** Returns the node that results from removing {@code key}, or null if it is empty. */
+        abstract /*@Nullable*/ Node remove(
+                Object edit, int shift, int hash, Object key, Change change);
+
+        /** Returns an array equal to {@link #array} that this node may modify for {@code edit}. */
+        Object[] editableArray(Object edit) {
+            return this.edit == edit ? array : array.clone();
+        }
+    }
+
+    /** An inner node of the trie, whose entries are selected by {@link #BITS} bits of the hash. */
+    private static final class BitmapNode extends Node {
+        /** The empty node, which is shared by all maps. */
+        static final BitmapNode EMPTY = new BitmapNode(null, 0, new Object[0]);
+
+        /** The hash fragments for which this node has an entry or a sub-node. */
+        int bitmap;
+
+        BitmapNode(Object edit, int bitmap, Object[] array) {
+            super(edit, array);
+            this.bitmap = bitmap;
+        }
+
+        /** Returns the index in {@link #array} of the pair for {@code bit}. */
+        private int index(int bit) {
+            return 2 * Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int bit = bitpos(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return NOT_FOUND;
+            }
+            int idx = index(bit);
+            Object k = array[idx];
+            if (k == null) {
+                return ((Node) array[idx + 1]).find(shift + BITS, hash, key);
+            }
+            return k == key || k.equals(key) ? array[idx + 1] : NOT_FOUND;
+        }
+
+        @Override
+        Node put(Object edit, int shift, int hash, Object key, Object value, Change change) {
+            int bit = bitpos(hash, shift);
+            int idx = index(bit);
+            if ((bitmap & bit) == 0) {
+                change.sizeChanged = true;
+                int length = array.length;
+                Object[] newArray = new Object[length + 2];
+                System.arraycopy(array, 0, newArray, 0, idx);
+                newArray[idx] = key;
+                newArray[idx + 1] = value;
+                System.arraycopy(array, idx, newArray, idx + 2, length - idx);
+                return update(edit, bitmap | bit, newArray);
+            }
+            Object k = array[idx];
+            Object v = array[idx + 1];
+            if (k == null) {
+                Node sub = ((Node) v).put(edit, shift + BITS, hash, key, value, change);
+                return sub == v ? this : set(edit, idx, null, sub);
+            }
+            if (k == key || k.equals(key)) {
+                change.oldValue = v;
+                return v == value ? this : set(edit, idx, k, value);
+            }
+            change.sizeChanged = true;
+            Node sub = createNode(edit, shift + BITS, k, v, hash, key, value);
+            return set(edit, idx, null, sub);
+        }
+
+        @Override
+        /*@Nullable*/ Node remove(Object edit, int shift, int hash, Object key, Change change) {
+            int bit = bitpos(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int idx = index(bit);
+            Object k = array[idx];
+            Object v = array[idx + 1];
+            if (k == null) {
+                Node sub = ((Node) v).remove(edit, shift + BITS, hash, key, change);
+                if (sub == v) {
+                    return this;
+                }
+                if (sub != null) {
+                    return set(edit, idx, null, sub);
+                }
+            } else if (k == key || k.equals(key)) {
+                change.oldValue = v;
+                change.sizeChanged = true;
+            } else {
+                return this;
+            }
+            if (bitmap == bit) {
+                return null;
+            }
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, idx);
+            System.arraycopy(array, idx + 2, newArray, idx, array.length - idx - 2);
+            return update(edit, bitmap ^ bit, newArray);
+        }
+
+        /** Returns a node like this one, with the pair at {@code idx} replaced. */
+        private BitmapNode set(Object edit, int idx, Object key, Object value) {
+            Object[] newArray = editableArray(edit);
+            newArray[idx] = key;
+            newArray[idx + 1] = value;
+            return update(edit, bitmap, newArray);
+        }
+
+        /** Returns a node with the given contents, reusing this node if possible. */
+        private BitmapNode update(Object edit, int newBitmap, Object[] newArray) {
+            if (this.edit == edit) {
+                bitmap = newBitmap;
+                array = newArray;
+                return this;
+            }
+            return new BitmapNode(edit, newBitmap, newArray);
+        }
+
+        /** Creates a node at the given shift that contains two distinct keys. */
+        private static Node createNode(
+                Object edit, int shift, Object k1, Object v1, int h2, Object k2, Object v2) {
+            int h1 = hash(k1);
+            if (h1 == h2) {
+                return new CollisionNode(edit, h1, new Object[] {k1, v1, k2, v2});
+            }
+            // The hashes differ in some bit, so the recursion ends before the shift exceeds 30.
+            Change ignored = new Change();
+            return EMPTY.put(edit, shift, h1, k1, v1, ignored)
+                    .put(edit, shift, h2, k2, v2, ignored);
+        }
+    }
+
+    /** A leaf of the trie that holds keys whose hashes are all equal. */
+    private static final class CollisionNode extends Node {
+        /** The hash of all keys in this node. */
+        final int hash;
+
+        CollisionNode(Object edit, int hash, Object[] array) {
+            super(edit, array);
+            this.hash = hash;
+        }
+
+        /** Returns the index in {@link #array} of {@code key}, or -1. */
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == key || array[i].equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            if (hash != this.hash) {
+                return NOT_FOUND;
+            }
+            int idx = indexOf(key);
+            return idx < 0 ? NOT_FOUND : array[idx + 1];
+        }
+
+        @Override
+        Node put(Object edit, int shift, int hash, Object key, Object value, Change change) {
+            if (hash != this.hash) {
+                // Nest this node in a bitmap node that distinguishes the two hashes.
+                return new BitmapNode(edit, bitpos(this.hash, shift), new Object[] {null, this})
+                        .put(edit, shift, hash, key, value, change);
+            }
+            int idx = indexOf(key);
+            if (idx >= 0) {
+                change.oldValue = array[idx + 1];
+                if (array[idx + 1] == value) {
+                    return this;
+                }
+                Object[] newArray = editableArray(edit);
+                newArray[idx + 1] = value;
+                return update(edit, newArray);
+            }
+            change.sizeChanged = true;
+            Object[] newArray = new Object[array.length + 2];
+            System.arraycopy(array, 0, newArray, 0, array.length);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            return update(edit, newArray);
+        }
+
+        @Override
+        /*@Nullable*/ Node remove(Object edit, int shift, int hash, Object key, Change change) {
+            if (hash != this.hash) {
+                return this;
+            }
+            int idx = indexOf(key);
+            if (idx < 0) {
+                return this;
+            }
+            change.oldValue = array[idx + 1];
+            change.sizeChanged = true;
+            if (array.length == 2) {
+                return null;
+            }
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, idx);
+            System.arraycopy(array, idx + 2, newArray, idx, array.length - idx - 2);
+            return update(edit, newArray);
+        }
+
+        /** Returns a node with the given contents, reusing this node if possible. */
+        private CollisionNode update(Object edit, Object[] newArray) {
+            if (this.edit == edit) {
+                array = newArray;
+                return this;
+            }
+            return new CollisionNode(edit, hash, newArray);
+        }
+    }
+}
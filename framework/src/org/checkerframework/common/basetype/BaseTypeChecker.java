@@ -15,6 +15,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -28,6 +29,7 @@ import javax.tools.Diagnostic;
 import org.checkerframework.common.reflection.MethodValChecker;
 import org.checkerframework.dataflow.cfg.CFGVisualizer;
 import org.checkerframework.framework.qual.SubtypeOf;
+import org.checkerframework.framework.source.ResultCache;
 import org.checkerframework.framework.source.SourceChecker;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
 import org.checkerframework.framework.type.GenericAnnotatedTypeFactory;
@@ -431,6 +433,28 @@ public abstract class BaseTypeChecker extends SourceChecker implements BaseTypeC
         return subcheckers;
     }
 
+    /**
+     * Maps each subchecker to its position in {@link #getSubcheckers()}, so that messages can be
+     * sorted without searching the list. Computed on first use.
+     */
+    private IdentityHashMap<BaseTypeChecker, Integer> subcheckerIndices = null;
+
+    /**
+     * Returns the position of {@code checker} in the order in which checkers run: its index in
+     * {@link #getSubcheckers()}, or the number of subcheckers for this checker itself, which runs
+     * last.
+     */
+    private int getRunOrder(BaseTypeChecker checker) {
+        if (subcheckerIndices == null) {
+            subcheckerIndices = new IdentityHashMap<>();
+            for (BaseTypeChecker subchecker : getSubcheckers()) {
+                subcheckerIndices.put(subchecker, subcheckerIndices.size());
+            }
+        }
+        Integer index = subcheckerIndices.get(checker);
+        return index == null ? getSubcheckers().size() : index;
+    }
+
     /**
      * Sort by position at which the error will be printed, then by the order in which the checkers
      * run, then by kind of message, and finally by the message string.
@@ -446,16 +470,8 @@ public abstract class BaseTypeChecker extends SourceChecker implements BaseTypeC
 
                     // Sort by order in which the checkers are run. (All the subcheckers in
                     // followed by the checker.)
-                    int o1Index = BaseTypeChecker.this.getSubcheckers().indexOf(o1.checker);
-                    int o2Index = BaseTypeChecker.this.getSubcheckers().indexOf(o2.checker);
-                    if (o1Index != o2Index) {
-                        if (o1Index == -1) {
-                            o1Index = BaseTypeChecker.this.getSubcheckers().size();
-                        }
-                        if (o2Index == -1) {
-                            o2Index = BaseTypeChecker.this.getSubcheckers().size();
-                        }
-                        return Integer.compare(o1Index, o2Index);
+                    if (o1.checker != o2.checker) {
+                        return Integer.compare(getRunOrder(o1.checker), getRunOrder(o2.checker));
                     }
 
                     int kind = o1.kind.compareTo(o2.kind);
@@ -470,6 +486,35 @@ public abstract class BaseTypeChecker extends SourceChecker implements BaseTypeC
     // AbstractTypeProcessor delegation
     @Override
     public void typeProcess(TypeElement element, TreePath tree) {
+        ResultCache resultCache = parentChecker == null ? getResultCache() : null;
+        if (resultCache == null) {
+            typeProcessUncached(element, tree);
+            return;
+        }
+
+        // Classes are only cached and replayed if no Java errors have been issued for them; see
+        // SourceChecker#typeProcess.
+        Log log = Log.instance(((JavacProcessingEnvironment) processingEnv).getContext());
+        int errorsBefore = log.nerrors;
+        if (errorsBefore == this.errsOnLastExit && resultCache.replay(element, tree)) {
+            this.errsOnLastExit = log.nerrors;
+            return;
+        }
+        boolean record = errorsBefore == this.errsOnLastExit;
+        if (record) {
+            resultCache.startRecording(element, tree);
+        }
+        try {
+            typeProcessUncached(element, tree);
+        } finally {
+            if (record) {
+                resultCache.stopRecording(log.nerrors - errorsBefore);
+            }
+        }
+    }
+
+    /** Type-checks a class with this checker and its subcheckers, without the result cache. */
+    private void typeProcessUncached(TypeElement element, TreePath tree) {
         if (getSubcheckers().size() > 0) {
             messageStore = new TreeSet<>(checkerMessageComparator);
         }
@@ -487,6 +532,9 @@ public abstract class BaseTypeChecker extends SourceChecker implements BaseTypeC
         Context context = ((JavacProcessingEnvironment) processingEnv).getContext();
         Log log = Log.instance(context);
 
+        // The subcheckers run one after the other, in dependency order, on the compiler's thread
+        // (see AbstractTypeProcessor): they share javac's symbol table and type utilities, which
+        // are not thread-safe, and a checker may query the type factories of its subcheckers.
         int nerrorsOfAllPreviousCheckers = this.errsOnLastExit;
         for (BaseTypeChecker subchecker : getSubcheckers()) {
             subchecker.errsOnLastExit = nerrorsOfAllPreviousCheckers;
@@ -686,6 +734,21 @@ public abstract class BaseTypeChecker extends SourceChecker implements BaseTypeC
         return false;
     }
 
+    @Override
+    protected void printStats() {
+        super.printStats();
+        System.out.println(
+                getClass().getSimpleName()
+                        + " type factory: "
+                        + getTypeFactory().getCacheCopyStatistics());
+        for (BaseTypeChecker checker : getSubcheckers()) {
+            System.out.println(
+                    checker.getClass().getSimpleName()
+                            + " type factory: "
+                            + checker.getTypeFactory().getCacheCopyStatistics());
+        }
+    }
+
     @Override
     protected void shutdownHook() {
         super.shutdownHook();
@@ -82,6 +82,7 @@ import org.checkerframework.framework.flow.CFAbstractStore;
 import org.checkerframework.framework.flow.CFAbstractValue;
 import org.checkerframework.framework.qual.DefaultQualifier;
 import org.checkerframework.framework.qual.Unused;
+import org.checkerframework.framework.source.CheckProfiler;
 import org.checkerframework.framework.source.Result;
 import org.checkerframework.framework.source.SourceVisitor;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
@@ -261,6 +262,23 @@ public class BaseTypeVisitor<Factory extends GenericAnnotatedTypeFactory<?, ?, ?
         if (tree != null && getCurrentPath() != null) {
             this.visitorState.setPath(new TreePath(getCurrentPath(), tree));
         }
+        if (tree != null && tree.getKind() == Tree.Kind.METHOD) {
+            CheckProfiler profiler = checker.getCheckProfiler();
+            if (profiler != null) {
+                // Measured here rather than in visitMethod to include the overriding methods of
+                // subclasses.
+                Object frame =
+                        profiler.start(
+                                CheckProfiler.Phase.VISITOR,
+                                checker,
+                                profiler.methodName((MethodTree) tree));
+                try {
+                    return super.scan(tree, p);
+                } finally {
+                    profiler.stop(frame);
+                }
+            }
+        }
         return super.scan(tree, p);
     }
 
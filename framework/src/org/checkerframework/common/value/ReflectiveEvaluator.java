@@ -4,14 +4,19 @@ import com.sun.source.tree.MemberSelectTree;
 import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.NewClassTree;
 import com.sun.source.tree.Tree;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Name;
@@ -21,14 +26,40 @@ import javax.lang.model.type.TypeMirror;
 import org.checkerframework.common.basetype.BaseTypeChecker;
 import org.checkerframework.framework.source.Result;
 import org.checkerframework.framework.util.PluginUtil;
+import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ElementUtils;
 import org.checkerframework.javacutil.TreeUtils;
 import org.checkerframework.javacutil.TypesUtils;
 
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
 public class ReflectiveEvaluator {
     private BaseTypeChecker checker;
     private boolean reportWarnings;
 
+    /** The maximum number of evaluated invocations whose results are remembered. */
+    private static final int INVOCATION_CACHE_SIZE = 1000;
+
+    /** The method that each invoked method element was resolved to, or the failure to do so. */
+    private final Map<ExecutableElement, ResolvedMethod> resolvedMethods = new HashMap<>();
+
+    /** The constructor that each invoked constructor element was resolved to. */
+    private final Map<ExecutableElement, Constructor<?>> resolvedConstructors = new HashMap<>();
+
+    /**
+     * The results of evaluated invocations of methods and constructors. The methods are
+     * statically executable, so an invocation with equal receiver and arguments has an equal
+     * result.
+     */
+    private final Map<Invocation, Object> invocationResults =
+            CollectionUtils.createLRUCache(
+                    INVOCATION_CACHE_SIZE, "ReflectiveEvaluator.invocationResults");
+
+    /** Stands for a null result in {@link #invocationResults}. */
+    private static final Object NULL_RESULT = new Object();
+
     public ReflectiveEvaluator(
             BaseTypeChecker checker, ValueAnnotatedTypeFactory factory, boolean reportWarnings) {
         this.checker = checker;
@@ -46,10 +77,11 @@ public class ReflectiveEvaluator {
      */
     public List<?> evaluateMethodCall(
             List<List<?>> allArgValues, List<?> receiverValues, MethodInvocationTree tree) {
-        Method method = getMethodObject(tree);
-        if (method == null) {
+        ResolvedMethod resolved = getMethodObject(tree);
+        if (resolved == null) {
             return null;
         }
+        Method method = resolved.method;
 
         if (receiverValues == null) {
             // Method does not have a receiver
@@ -79,8 +111,16 @@ public class ReflectiveEvaluator {
         List<Object> results = new ArrayList<>();
         for (Object[] arguments : listOfArguments) {
             for (Object receiver : receiverValues) {
+                Invocation invocation = new Invocation(method, receiver, arguments);
+                Object cached = invocationResults.get(invocation);
+                if (cached != null) {
+                    results.add(cached == NULL_RESULT ? null : cached);
+                    continue;
+                }
                 try {
-                    results.add(method.invoke(receiver, arguments));
+                    Object result = invoke(resolved, receiver, arguments);
+                    invocationResults.put(invocation, result == null ? NULL_RESULT : result);
+                    results.add(result);
                 } catch (InvocationTargetException e) {
                     if (reportWarnings) {
                         checker.report(
@@ -126,6 +166,99 @@ public class ReflectiveEvaluator {
         return results;
     }
 
+    /**
+     * Invokes the method with the given receiver and arguments, through its method handle if the
+     * arguments are valid for it, and otherwise through {@link Method#invoke}. Like {@link
+     * Method#invoke}, wraps the exceptions thrown by the method in an {@link
+     * InvocationTargetException}.
+     */
+    private static Object invoke(
+            ResolvedMethod resolved, /*@Nullable*/ Object receiver, Object[] arguments)
+            throws Throwable {
+        Method method = resolved.method;
+        boolean isStatic = Modifier.isStatic(method.getModifiers());
+        if (resolved.handle == null
+                || !(isStatic || method.getDeclaringClass().isInstance(receiver))
+                || !areValidArguments(method.getParameterTypes(), arguments)) {
+            // Method.invoke reports the problem.
+            return method.invoke(receiver, arguments);
+        }
+        int argumentCount = arguments == null ? 0 : arguments.length;
+        Object[] handleArguments;
+        if (isStatic) {
+            handleArguments = argumentCount == 0 ? new Object[0] : arguments;
+        } else {
+            handleArguments = new Object[argumentCount + 1];
+            handleArguments[0] = receiver;
+            if (argumentCount != 0) {
+                System.arraycopy(arguments, 0, handleArguments, 1, argumentCount);
+            }
+        }
+        try {
+            return (Object) resolved.handle.invokeExact(handleArguments);
+        } catch (ExceptionInInitializerError e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+
+    /**
+     * Returns true if {@link Method#invoke} accepts {@code arguments} for parameters of the given
+     * types, that is, if each argument is an instance of its parameter type, or can be unboxed and
+     * widened to it if the parameter type is primitive.
+     */
+    private static boolean areValidArguments(Class<?>[] parameterTypes, Object[] arguments) {
+        int argumentCount = arguments == null ? 0 : arguments.length;
+        if (argumentCount != parameterTypes.length) {
+            return false;
+        }
+        for (int i = 0; i < argumentCount; i++) {
+            Class<?> type = parameterTypes[i];
+            Object argument = arguments[i];
+            if (type.isPrimitive()) {
+                if (argument == null || !isWideningConversion(argument.getClass(), type)) {
+                    return false;
+                }
+            } else if (argument != null && !type.isInstance(argument)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if a value of the wrapper class {@code boxed} can be unboxed and converted to
+     * the primitive type {@code primitive} by an identity or widening primitive conversion.
+     */
+    private static boolean isWideningConversion(Class<?> boxed, Class<?> primitive) {
+        if (boxed == Boolean.class) {
+            return primitive == boolean.class;
+        }
+        int to = numericRank(boxPrimitives(primitive));
+        if (boxed == Character.class) {
+            return primitive == char.class || to >= numericRank(Integer.class);
+        }
+        int from = numericRank(boxed);
+        return from != -1 && from <= to;
+    }
+
+    /**
+     * Returns the position of a numeric wrapper class in the order of the widening primitive
+     * conversions, from Byte to Double, or -1 for other classes.
+     */
+    private static int numericRank(Class<?> boxed) {
+        List<Class<?>> order =
+                Arrays.<Class<?>>asList(
+                        Byte.class,
+                        Short.class,
+                        Integer.class,
+                        Long.class,
+                        Float.class,
+                        Double.class);
+        return order.indexOf(boxed);
+    }
+
     /**
      * This method normalizes an array of arguments to a varargs method by changing the arguments
      * associated with the varargs parameter into an array.
@@ -158,13 +291,31 @@ public class ReflectiveEvaluator {
 
     /**
      * Method for reflectively obtaining a method object so it can (potentially) be statically
-     * executed by the checker for constant propagation
+     * executed by the checker for constant propagation. The method of each element is only looked
+     * up once; a failure to look it up is reported at every invocation.
      *
-     * @return the Method object corresponding to the method being invoke in tree
+     * @return the Method object corresponding to the method being invoke in tree, or null if it
+     *     could not be found
      */
-    private Method getMethodObject(MethodInvocationTree tree) {
+    private ResolvedMethod getMethodObject(MethodInvocationTree tree) {
+        ExecutableElement ele = TreeUtils.elementFromUse(tree);
+        ResolvedMethod resolved = resolvedMethods.get(ele);
+        if (resolved == null) {
+            resolved = resolveMethod(tree, ele);
+            resolvedMethods.put(ele, resolved);
+        }
+        if (resolved.failure != null) {
+            if (reportWarnings) {
+                checker.report(resolved.failure, tree);
+            }
+            return null;
+        }
+        return resolved;
+    }
+
+    /** Looks up the method of {@code ele}, which is invoked in {@code tree}. */
+    private ResolvedMethod resolveMethod(MethodInvocationTree tree, ExecutableElement ele) {
         try {
-            ExecutableElement ele = TreeUtils.elementFromUse(tree);
             Name clazz =
                     TypesUtils.getQualifiedName((DeclaredType) ele.getEnclosingElement().asType());
             List<Class<?>> paramClzz = getParameterClasses(tree, ele);
@@ -175,33 +326,38 @@ public class ReflectiveEvaluator {
             if (!method.isAccessible()) {
                 method.setAccessible(true);
             }
-            return method;
+            return new ResolvedMethod(method, getMethodHandle(method), null);
         } catch (ClassNotFoundException | UnsupportedClassVersionError | NoClassDefFoundError e) {
-            if (reportWarnings) {
-                checker.report(
-                        Result.warning(
-                                "class.find.failed",
-                                (TreeUtils.elementFromUse(tree)).getEnclosingElement()),
-                        tree);
-            }
-            return null;
-
+            return new ResolvedMethod(
+                    null, null, Result.warning("class.find.failed", ele.getEnclosingElement()));
         } catch (Throwable e) {
             // The class we attempted to getMethod from inside the
             // call to getMethodObject.
-            Element classElem = TreeUtils.elementFromUse(tree).getEnclosingElement();
+            Element classElem = ele.getEnclosingElement();
 
             if (classElem == null) {
-                if (reportWarnings) {
-                    checker.report(Result.warning("method.find.failed"), tree);
-                }
+                return new ResolvedMethod(null, null, Result.warning("method.find.failed"));
             } else {
-                if (reportWarnings) {
-                    checker.report(Result.warning("method.find.failed.in.class", classElem), tree);
-                }
+                return new ResolvedMethod(
+                        null, null, Result.warning("method.find.failed.in.class", classElem));
             }
+        }
+    }
+
+    /**
+     * Returns a method handle that invokes {@code method} with the receiver, for an instance
+     * method, followed by the arguments in one array, or null if there is no such handle. A
+     * varargs method takes its variable arguments as one array.
+     */
+    private static /*@Nullable*/ MethodHandle getMethodHandle(Method method) {
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.lookup().unreflect(method).asFixedArity();
+        } catch (IllegalAccessException e) {
             return null;
         }
+        return handle.asType(handle.type().generic())
+                .asSpreader(Object[].class, handle.type().parameterCount());
     }
 
     private List<Class<?>> getParameterClasses(Tree tree, ExecutableElement ele)
@@ -295,8 +451,16 @@ public class ReflectiveEvaluator {
 
         List<Object> results = new ArrayList<>();
         for (Object[] arguments : listOfArguments) {
+            Invocation invocation = new Invocation(constructor, null, arguments);
+            Object cached = invocationResults.get(invocation);
+            if (cached != null) {
+                results.add(cached);
+                continue;
+            }
             try {
-                results.add(constructor.newInstance(arguments));
+                Object result = constructor.newInstance(arguments);
+                invocationResults.put(invocation, result);
+                results.add(result);
             } catch (Throwable e) {
                 if (reportWarnings) {
                     checker.report(
@@ -315,9 +479,13 @@ public class ReflectiveEvaluator {
     private Constructor<?> getConstructorObject(NewClassTree tree, TypeMirror typeToCreate)
             throws ClassNotFoundException, NoSuchMethodException {
         ExecutableElement ele = TreeUtils.elementFromUse(tree);
-        List<Class<?>> paramClasses = getParameterClasses(tree, ele);
-        Class<?> recClass = boxPrimitives(ValueCheckerUtils.getClassFromType(typeToCreate));
-        Constructor<?> constructor = recClass.getConstructor(paramClasses.toArray(new Class<?>[0]));
+        Constructor<?> constructor = resolvedConstructors.get(ele);
+        if (constructor == null) {
+            List<Class<?>> paramClasses = getParameterClasses(tree, ele);
+            Class<?> recClass = boxPrimitives(ValueCheckerUtils.getClassFromType(typeToCreate));
+            constructor = recClass.getConstructor(paramClasses.toArray(new Class<?>[0]));
+            resolvedConstructors.put(ele, constructor);
+        }
         return constructor;
     }
     /**
@@ -344,4 +512,64 @@ public class ReflectiveEvaluator {
         }
         return type;
     }
+
+    /** A method that was looked up for an invoked method element, or the failure to do so. */
+    private static final class ResolvedMethod {
+        /** The method, or null if it could not be looked up. */
+        final Method method;
+
+        /**
+         * The method handle of {@link #method}, as returned by {@link #getMethodHandle}, or null.
+         */
+        final /*@Nullable*/ MethodHandle handle;
+
+        /** The warning that explains why the method could not be looked up, or null. */
+        final /*@Nullable*/ Result failure;
+
+        ResolvedMethod(
+                Method method, /*@Nullable*/ MethodHandle handle, /*@Nullable*/ Result failure) {
+            this.method = method;
+            this.handle = handle;
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * An invocation of a method or constructor with a receiver and arguments. Arguments that are
+     * arrays, such as the variable arguments of a varargs method, are compared by their elements.
+     */
+    private static final class Invocation {
+        /** The invoked method or constructor. */
+        final Object executable;
+
+        /** The receiver, or null for a static method or a constructor. */
+        final /*@Nullable*/ Object receiver;
+
+        /** The arguments, or null if there are none. */
+        final Object /*@Nullable*/ [] arguments;
+
+        Invocation(Object executable, /*@Nullable*/ Object receiver, Object[] arguments) {
+            this.executable = executable;
+            this.receiver = receiver;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Invocation)) {
+                return false;
+            }
+            Invocation other = (Invocation) obj;
+            return executable.equals(other.executable)
+                    && Arrays.deepEquals(
+                            new Object[] {receiver, arguments},
+                            new Object[] {other.receiver, other.arguments});
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * executable.hashCode()
+                    + Arrays.deepHashCode(new Object[] {receiver, arguments});
+        }
+    }
 }
@@ -0,0 +1,131 @@
+package org.checkerframework.common.value;
+
+import java.util.Set;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.type.TypeMirror;
+import org.checkerframework.common.value.util.IntervalSet;
+import org.checkerframework.dataflow.util.HashCodeUtils;
+import org.checkerframework.framework.flow.CFValue;
+import org.checkerframework.javacutil.TypesUtils;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+/**
+ * The abstract value of the Value Checker. In addition to its annotations, the value of an
+ * integral expression may hold an {@link IntervalSet} of the values of the expression, when the
+ * annotations cannot express them precisely: for example, the least upper bound of
+ * {@code @IntVal({0, 1, 2, 3, 4, 5})} and {@code @IntVal({100, 101, 102, 103, 104, 105})} is
+ * {@code @IntRange(from = 0, to = 105)}, but its interval set is {0..5, 100..105}. The interval set
+ * is used by the transfer function and is converted to an annotation when the value is reported.
+ */
+public class ValueAbstractValue extends CFValue {
+
+    /**
+     * The values of this, if they are more precise than {@link #getAnnotations()}; null otherwise.
+     */
+    private final /*@Nullable*/ IntervalSet intervals;
+
+    public ValueAbstractValue(
+            ValueAnalysis analysis,
+            Set<AnnotationMirror> annotations,
+            TypeMirror underlyingType,
+            /*@Nullable*/ IntervalSet intervals) {
+        super(analysis, annotations, underlyingType);
+        this.intervals = intervals;
+    }
+
+    /**
+     * Returns the integral values of this, or null if they are unknown.
+     *
+     * @return the interval set of this if it has one, otherwise the values of its {@code @IntVal},
+     *     {@code @IntRange}, or {@code @BottomVal} annotation
+     */
+    public /*@Nullable*/ IntervalSet getIntervals() {
+        if (intervals != null) {
+            return intervals;
+        }
+        ValueAnnotatedTypeFactory factory = ((ValueAnalysis) analysis).getTypeFactory();
+        return factory.getIntervalSet(
+                factory.getQualifierHierarchy()
+                        .findAnnotationInHierarchy(getAnnotations(), factory.UNKNOWNVAL));
+    }
+
+    /**
+     * Computes the least upper bound of the annotations, and, if the annotations lose precision,
+     * the union of the interval sets of both values.
+     */
+    @Override
+    public CFValue leastUpperBound(/*@Nullable*/ CFValue other) {
+        CFValue lub = super.leastUpperBound(other);
+        if (lub == this
+                || !(other instanceof ValueAbstractValue)
+                || !TypesUtils.isIntegral(lub.getUnderlyingType())) {
+            return lub;
+        }
+        ValueAnalysis valueAnalysis = (ValueAnalysis) analysis;
+        if (!valueAnalysis.getTypeFactory().isIntRange(lub.getAnnotations())) {
+            // An @IntVal or @UnknownVal least upper bound is either exact or hopeless.
+            return lub;
+        }
+        IntervalSet mine = getIntervals();
+        IntervalSet theirs = ((ValueAbstractValue) other).getIntervals();
+        if (mine == null || theirs == null) {
+            return lub;
+        }
+        return valueAnalysis.createAbstractValue(
+                lub.getAnnotations(), lub.getUnderlyingType(), mine.union(theirs));
+    }
+
+    /**
+     * Computes the most specific annotations, and the intersection of the interval sets of both
+     * values, which describe the same expression.
+     */
+    @Override
+    public CFValue mostSpecific(/*@Nullable*/ CFValue other, /*@Nullable*/ CFValue backup) {
+        CFValue result = super.mostSpecific(other, backup);
+        if (result == null
+                || result == this
+                || !(other instanceof ValueAbstractValue)
+                || !TypesUtils.isIntegral(result.getUnderlyingType())) {
+            return result;
+        }
+        IntervalSet mine = getIntervals();
+        IntervalSet theirs = ((ValueAbstractValue) other).getIntervals();
+        IntervalSet both;
+        if (mine == null) {
+            both = theirs;
+        } else if (theirs == null) {
+            both = mine;
+        } else {
+            both = mine.intersect(theirs);
+        }
+        if (both == null) {
+            return result;
+        }
+        return ((ValueAnalysis) analysis)
+                .createAbstractValue(result.getAnnotations(), result.getUnderlyingType(), both);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!super.equals(obj)) {
+            return false;
+        }
+        IntervalSet otherIntervals =
+                obj instanceof ValueAbstractValue ? ((ValueAbstractValue) obj).intervals : null;
+        return intervals == null ? otherIntervals == null : intervals.equals(otherIntervals);
+    }
+
+    @Override
+    public int hashCode() {
+        return HashCodeUtils.hash(super.hashCode(), intervals);
+    }
+
+    @Override
+    public String toString() {
+        String result = super.toString();
+        return intervals == null ? result : result + ", intervals=" + intervals;
+    }
+}
@@ -0,0 +1,93 @@
+package org.checkerframework.common.value;
+
+import java.util.List;
+import java.util.Set;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.common.value.util.IntervalSet;
+import org.checkerframework.framework.flow.CFAbstractValue;
+import org.checkerframework.framework.flow.CFAnalysis;
+import org.checkerframework.framework.flow.CFValue;
+import org.checkerframework.javacutil.Pair;
+
+/**
+ * The analysis class for the Value Checker. It creates {@link ValueAbstractValue}s, which can
+ * carry the values of integral expressions more precisely than their annotations.
+ */
+public class ValueAnalysis extends CFAnalysis {
+
+    public ValueAnalysis(
+            BaseTypeChecker checker,
+            ValueAnnotatedTypeFactory factory,
+            List<Pair<VariableElement, CFValue>> fieldValues) {
+        super(checker, factory, fieldValues);
+    }
+
+    // Not a field of this class: the superclass constructor creates the transfer function, which
+    // calls this method before the fields of this class are initialized.
+    @Override
+    public ValueAnnotatedTypeFactory getTypeFactory() {
+        return (ValueAnnotatedTypeFactory) super.getTypeFactory();
+    }
+
+    @Override
+    public CFValue createAbstractValue(
+            Set<AnnotationMirror> annotations, TypeMirror underlyingType) {
+        if (!CFAbstractValue.validateSet(annotations, underlyingType, qualifierHierarchy)) {
+            return null;
+        }
+        return new ValueAbstractValue(this, annotations, underlyingType, null);
+    }
+
+    /**
+     * Returns an abstract value with the given annotations whose integral values are {@code
+     * intervals}.
+     *
+     * @param annotations the annotations of the value; they must include all values of {@code
+     *     intervals}
+     * @param underlyingType the type of the value
+     * @param intervals the values of the value
+     * @return a new abstract value, or null if the annotations are not valid for the type
+     */
+    public CFValue createAbstractValue(
+            Set<AnnotationMirror> annotations, TypeMirror underlyingType, IntervalSet intervals) {
+        if (!isMorePrecise(intervals)) {
+            return createAbstractValue(annotations, underlyingType);
+        }
+        if (!CFAbstractValue.validateSet(annotations, underlyingType, qualifierHierarchy)) {
+            return null;
+        }
+        return new ValueAbstractValue(this, annotations, underlyingType, intervals);
+    }
+
+    /**
+     * Returns an abstract value with the given annotation whose integral values are {@code
+     * intervals}.
+     *
+     * @param anno the annotation of the value; it must include all values of {@code intervals}
+     * @param underlyingType the type of the value
+     * @param intervals the values of the value
+     * @return a new abstract value, or null if the annotation is not valid for the type
+     */
+    public CFValue createSingleAnnotationValue(
+            AnnotationMirror anno, TypeMirror underlyingType, IntervalSet intervals) {
+        CFValue value = createSingleAnnotationValue(anno, underlyingType);
+        if (value == null || !isMorePrecise(intervals)) {
+            return value;
+        }
+        return new ValueAbstractValue(this, value.getAnnotations(), underlyingType, intervals);
+    }
+
+    /**
+     * Returns true if {@code intervals} is more precise than any annotation, that is, if it
+     * consists of several intervals and has more than {@link ValueAnnotatedTypeFactory#MAX_VALUES}
+     * values. Otherwise, the annotation created from it describes it exactly, and the abstract
+     * value does not need to keep it.
+     */
+    private static boolean isMorePrecise(IntervalSet intervals) {
+        return intervals.intervalCount() > 1
+                && intervals.isWiderThan(ValueAnnotatedTypeFactory.MAX_VALUES);
+    }
+}
@@ -45,6 +45,7 @@ import org.checkerframework.common.value.qual.PolyValue;
 import org.checkerframework.common.value.qual.StaticallyExecutable;
 import org.checkerframework.common.value.qual.StringVal;
 import org.checkerframework.common.value.qual.UnknownVal;
+import org.checkerframework.common.value.util.IntervalSet;
 import org.checkerframework.common.value.util.NumberUtils;
 import org.checkerframework.common.value.util.Range;
 import org.checkerframework.dataflow.analysis.FlowExpressions;
@@ -247,6 +248,11 @@ public class ValueAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
         return newSet;
     }
 
+    @Override
+    protected ValueAnalysis createFlowAnalysis(List<Pair<VariableElement, CFValue>> fieldValues) {
+        return new ValueAnalysis(checker, this, fieldValues);
+    }
+
     @Override
     public CFTransfer createFlowTransferFunction(
             CFAbstractAnalysis<CFValue, CFStore, CFTransfer> analysis) {
@@ -1751,6 +1757,36 @@ public class ValueAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
         }
     }
 
+    /**
+     * Create an {@code @IntVal} or {@code @IntRange} annotation from the interval set. The result
+     * is an {@code @IntVal} if the set has at most MAX_VALUES values, and otherwise an
+     * {@code @IntRange} from its least to its greatest value. May return BOTTOMVAL or UNKNOWNVAL.
+     */
+    public AnnotationMirror createIntValOrRangeAnnotation(IntervalSet intervals) {
+        if (intervals.intervalCount() <= 1 || intervals.isWiderThan(MAX_VALUES)) {
+            return createIntRangeAnnotation(intervals.toRange());
+        }
+        return createIntValAnnotation(intervals.toValues());
+    }
+
+    /**
+     * Returns the values that an {@code @IntVal}, {@code @IntRange}, or {@code @BottomVal}
+     * annotation stands for, or null if the annotation is null or of another kind, such as {@code
+     * UnknownVal}.
+     */
+    public IntervalSet getIntervalSet(AnnotationMirror anno) {
+        if (anno == null) {
+            return null;
+        } else if (AnnotationUtils.areSameByClass(anno, BottomVal.class)) {
+            return IntervalSet.EMPTY;
+        } else if (AnnotationUtils.areSameByClass(anno, IntVal.class)) {
+            return IntervalSet.of(getIntValues(anno));
+        } else if (isIntRange(anno)) {
+            return IntervalSet.of(getRange(anno));
+        }
+        return null;
+    }
+
     /**
      * Creates the special {@link IntRangeFromPositive} annotation, which is only used as an alias
      * for the Index Checker's {@link org.checkerframework.checker.index.qual.Positive} annotation.
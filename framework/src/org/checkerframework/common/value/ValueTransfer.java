@@ -17,6 +17,7 @@ import org.checkerframework.common.value.qual.DoubleVal;
 import org.checkerframework.common.value.qual.IntVal;
 import org.checkerframework.common.value.qual.StringVal;
 import org.checkerframework.common.value.qual.UnknownVal;
+import org.checkerframework.common.value.util.IntervalSet;
 import org.checkerframework.common.value.util.NumberMath;
 import org.checkerframework.common.value.util.NumberUtils;
 import org.checkerframework.common.value.util.Range;
@@ -328,6 +329,21 @@ public class ValueTransfer extends CFTransfer {
         return atypefactory.isIntRange(value.getAnnotations());
     }
 
+    /**
+     * Returns the values of an integral node as an interval set, or null if the node is not
+     * integral or its values are unknown.
+     */
+    private IntervalSet getIntervals(Node subNode, CFValue value) {
+        if (value == null || !TypesUtils.isIntegral(subNode.getType())) {
+            return null;
+        }
+        IntervalSet intervals =
+                value instanceof ValueAbstractValue
+                        ? ((ValueAbstractValue) value).getIntervals()
+                        : atypefactory.getIntervalSet(getValueAnnotation(value));
+        return intervals == null ? null : intervals.castTo(subNode.getType().getKind());
+    }
+
     /** a helper function to determine if this node is annotated with @UnknownVal */
     private boolean isIntegralUnknownVal(Node node, AnnotationMirror anno) {
         return AnnotationUtils.areSameByClass(anno, UnknownVal.class)
@@ -349,6 +365,27 @@ public class ValueTransfer extends CFTransfer {
         return new RegularTransferResult<>(newResultValue, result.getRegularStore());
     }
 
+    /**
+     * Create a new transfer result based on the original result and the values of an integral
+     * operation. The values are only converted to an annotation; the new abstract value also keeps
+     * them if the annotation cannot express them.
+     *
+     * @param result the original result
+     * @param resultIntervals the values of the operation
+     * @return the new transfer result
+     */
+    private TransferResult<CFValue, CFStore> createNewResult(
+            TransferResult<CFValue, CFStore> result, IntervalSet resultIntervals) {
+        AnnotationMirror resultAnno = atypefactory.createIntValOrRangeAnnotation(resultIntervals);
+        CFValue newResultValue =
+                ((ValueAnalysis) analysis)
+                        .createSingleAnnotationValue(
+                                resultAnno,
+                                result.getResultValue().getUnderlyingType(),
+                                resultIntervals);
+        return new RegularTransferResult<>(newResultValue, result.getRegularStore());
+    }
+
     /** Create a boolean transfer result. */
     private TransferResult<CFValue, CFStore> createNewResultBoolean(
             CFStore thenStore,
@@ -635,6 +672,47 @@ public class ValueTransfer extends CFTransfer {
         }
     }
 
+    /**
+     * Calculate the possible values after an addition, subtraction, or multiplication of two
+     * integral type nodes, on their interval sets. Returns null if the operation is another one or
+     * if the values of an operand are unknown; then the annotations of the operands are used
+     * instead.
+     */
+    private IntervalSet calculateIntervalsBinaryOp(
+            Node leftNode,
+            Node rightNode,
+            NumericalBinaryOps op,
+            TransferInput<CFValue, CFStore> p) {
+        IntervalSet lefts = getIntervals(leftNode, p.getValueOfSubNode(leftNode));
+        if (lefts == null) {
+            return null;
+        }
+        IntervalSet rights = getIntervals(rightNode, p.getValueOfSubNode(rightNode));
+        if (rights == null) {
+            return null;
+        }
+        IntervalSet results;
+        switch (op) {
+            case ADDITION:
+                results = lefts.plus(rights);
+                break;
+            case SUBTRACTION:
+                results = lefts.minus(rights);
+                break;
+            case MULTIPLICATION:
+                results = lefts.times(rights);
+                break;
+            default:
+                return null;
+        }
+        // Any integral type with less than 32 bits would be promoted to 32-bit int type during
+        // operations.
+        return leftNode.getType().getKind() == TypeKind.LONG
+                        || rightNode.getType().getKind() == TypeKind.LONG
+                ? results
+                : results.castTo(TypeKind.INT);
+    }
+
     /** Calculate the result range after a binary operation between two numerical type nodes */
     private Range calculateRangeBinaryOp(
             Node leftNode,
@@ -762,6 +840,12 @@ public class ValueTransfer extends CFTransfer {
     public TransferResult<CFValue, CFStore> visitNumericalAddition(
             NumericalAdditionNode n, TransferInput<CFValue, CFStore> p) {
         TransferResult<CFValue, CFStore> transferResult = super.visitNumericalAddition(n, p);
+        IntervalSet resultIntervals =
+                calculateIntervalsBinaryOp(
+                        n.getLeftOperand(), n.getRightOperand(), NumericalBinaryOps.ADDITION, p);
+        if (resultIntervals != null) {
+            return createNewResult(transferResult, resultIntervals);
+        }
         AnnotationMirror resultAnno =
                 calculateNumericalBinaryOp(
                         n.getLeftOperand(), n.getRightOperand(), NumericalBinaryOps.ADDITION, p);
@@ -772,6 +856,12 @@ public class ValueTransfer extends CFTransfer {
     public TransferResult<CFValue, CFStore> visitNumericalSubtraction(
             NumericalSubtractionNode n, TransferInput<CFValue, CFStore> p) {
         TransferResult<CFValue, CFStore> transferResult = super.visitNumericalSubtraction(n, p);
+        IntervalSet resultIntervals =
+                calculateIntervalsBinaryOp(
+                        n.getLeftOperand(), n.getRightOperand(), NumericalBinaryOps.SUBTRACTION, p);
+        if (resultIntervals != null) {
+            return createNewResult(transferResult, resultIntervals);
+        }
         AnnotationMirror resultAnno =
                 calculateNumericalBinaryOp(
                         n.getLeftOperand(), n.getRightOperand(), NumericalBinaryOps.SUBTRACTION, p);
@@ -782,6 +872,15 @@ public class ValueTransfer extends CFTransfer {
     public TransferResult<CFValue, CFStore> visitNumericalMultiplication(
             NumericalMultiplicationNode n, TransferInput<CFValue, CFStore> p) {
         TransferResult<CFValue, CFStore> transferResult = super.visitNumericalMultiplication(n, p);
+        IntervalSet resultIntervals =
+                calculateIntervalsBinaryOp(
+                        n.getLeftOperand(),
+                        n.getRightOperand(),
+                        NumericalBinaryOps.MULTIPLICATION,
+                        p);
+        if (resultIntervals != null) {
+            return createNewResult(transferResult, resultIntervals);
+        }
         AnnotationMirror resultAnno =
                 calculateNumericalBinaryOp(
                         n.getLeftOperand(),
@@ -923,6 +1022,35 @@ public class ValueTransfer extends CFTransfer {
         }
     }
 
+    /**
+     * Calculate the possible values after a unary plus or minus of an integral type node, on its
+     * interval set. Returns null if the operation is another one or if the values of the operand
+     * are unknown; then the annotation of the operand is used instead.
+     */
+    private IntervalSet calculateIntervalsUnaryOp(
+            Node operand, NumericalUnaryOps op, TransferInput<CFValue, CFStore> p) {
+        IntervalSet values = getIntervals(operand, p.getValueOfSubNode(operand));
+        if (values == null) {
+            return null;
+        }
+        IntervalSet results;
+        switch (op) {
+            case PLUS:
+                results = values;
+                break;
+            case MINUS:
+                results = values.unaryMinus();
+                break;
+            default:
+                return null;
+        }
+        // Any integral type with less than 32 bits would be promoted to 32-bit int type during
+        // operations.
+        return operand.getType().getKind() == TypeKind.LONG
+                ? results
+                : results.castTo(TypeKind.INT);
+    }
+
     /** Calculate the result range after a unary operation of a numerical type node */
     private Range calculateRangeUnaryOp(
             Node operand, NumericalUnaryOps op, TransferInput<CFValue, CFStore> p) {
@@ -984,6 +1112,11 @@ public class ValueTransfer extends CFTransfer {
     public TransferResult<CFValue, CFStore> visitNumericalMinus(
             NumericalMinusNode n, TransferInput<CFValue, CFStore> p) {
         TransferResult<CFValue, CFStore> transferResult = super.visitNumericalMinus(n, p);
+        IntervalSet resultIntervals =
+                calculateIntervalsUnaryOp(n.getOperand(), NumericalUnaryOps.MINUS, p);
+        if (resultIntervals != null) {
+            return createNewResult(transferResult, resultIntervals);
+        }
         AnnotationMirror resultAnno =
                 calculateNumericalUnaryOp(n.getOperand(), NumericalUnaryOps.MINUS, p);
         return createNewResult(transferResult, resultAnno);
@@ -993,6 +1126,11 @@ public class ValueTransfer extends CFTransfer {
     public TransferResult<CFValue, CFStore> visitNumericalPlus(
             NumericalPlusNode n, TransferInput<CFValue, CFStore> p) {
         TransferResult<CFValue, CFStore> transferResult = super.visitNumericalPlus(n, p);
+        IntervalSet resultIntervals =
+                calculateIntervalsUnaryOp(n.getOperand(), NumericalUnaryOps.PLUS, p);
+        if (resultIntervals != null) {
+            return createNewResult(transferResult, resultIntervals);
+        }
         AnnotationMirror resultAnno =
                 calculateNumericalUnaryOp(n.getOperand(), NumericalUnaryOps.PLUS, p);
         return createNewResult(transferResult, resultAnno);
@@ -1037,7 +1175,15 @@ public class ValueTransfer extends CFTransfer {
             // complexity of comparing a list of values to a range. (This could be implemented in
             // the future.)
             return refineIntRanges(
-                    leftNode, leftAnno, rightNode, rightAnno, op, thenStore, elseStore);
+                    leftNode,
+                    leftValue,
+                    leftAnno,
+                    rightNode,
+                    rightValue,
+                    rightAnno,
+                    op,
+                    thenStore,
+                    elseStore);
         }
         List<Boolean> resultValues = new ArrayList<>();
 
@@ -1108,12 +1254,15 @@ public class ValueTransfer extends CFTransfer {
 
     /**
      * Calculates the result of a binary comparison on a pair of intRange annotations, and refines
-     * annotations appropriately.
+     * annotations appropriately. If the values of an operand are known as an interval set, its
+     * refined annotation only includes the values of the set.
      */
     private List<Boolean> refineIntRanges(
             Node leftNode,
+            CFValue leftValue,
             AnnotationMirror leftAnno,
             Node rightNode,
+            CFValue rightValue,
             AnnotationMirror rightAnno,
             ComparisonOperators op,
             CFStore thenStore,
@@ -1169,10 +1318,14 @@ public class ValueTransfer extends CFTransfer {
                 throw new RuntimeException("this is impossible, but javac issues a warning");
         }
 
-        createAnnotationFromRangeAndAddToStore(thenStore, thenRightRange, rightNode);
-        createAnnotationFromRangeAndAddToStore(thenStore, thenLeftRange, leftNode);
-        createAnnotationFromRangeAndAddToStore(elseStore, elseRightRange, rightNode);
-        createAnnotationFromRangeAndAddToStore(elseStore, elseLeftRange, leftNode);
+        IntervalSet leftIntervals = getIntervals(leftNode, leftValue);
+        IntervalSet rightIntervals = getIntervals(rightNode, rightValue);
+        createAnnotationFromRangeAndAddToStore(
+                thenStore, thenRightRange, rightIntervals, rightNode);
+        createAnnotationFromRangeAndAddToStore(thenStore, thenLeftRange, leftIntervals, leftNode);
+        createAnnotationFromRangeAndAddToStore(
+                elseStore, elseRightRange, rightIntervals, rightNode);
+        createAnnotationFromRangeAndAddToStore(elseStore, elseLeftRange, leftIntervals, leftNode);
 
         // TODO: Refine the type of the comparison.
         return null;
@@ -1192,10 +1345,14 @@ public class ValueTransfer extends CFTransfer {
     /**
      * Takes a range and creates the appropriate annotation from it, then combines that annotation
      * with the existing annotation on the node. The resulting annotation is inserted into the
-     * store.
+     * store. If {@code intervals} is non-null, only its values within the range are kept.
      */
-    private void createAnnotationFromRangeAndAddToStore(CFStore store, Range range, Node node) {
-        AnnotationMirror anno = atypefactory.createIntRangeAnnotation(range);
+    private void createAnnotationFromRangeAndAddToStore(
+            CFStore store, Range range, IntervalSet intervals, Node node) {
+        AnnotationMirror anno =
+                intervals == null
+                        ? atypefactory.createIntRangeAnnotation(range)
+                        : atypefactory.createIntValOrRangeAnnotation(intervals.intersect(range));
         addAnnotationToStore(store, anno, node);
     }
 
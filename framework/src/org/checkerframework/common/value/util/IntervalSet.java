@@ -0,0 +1,568 @@
+package org.checkerframework.common.value.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.lang.model.type.TypeKind;
+
+/**
+ * An IntervalSet is a set of 64-bit integral values represented as a sorted list of disjoint,
+ * non-adjacent intervals. It is the value domain in which the Value Checker evaluates integral
+ * arithmetic: unlike a {@link Range}, it can represent a set such as {0..5, 1000..1005} without
+ * losing the gap between its parts, and unlike a list of boxed values, its size does not depend on
+ * the number of values. IntervalSets are immutable.
+ *
+ * <p>The bounds are stored in one {@code long[]}, the lower bound of the i-th interval at index 2i
+ * and its upper bound at index 2i+1. An IntervalSet has at most {@link #MAX_INTERVALS} intervals;
+ * an operation that would produce more merges the intervals that are separated by the smallest
+ * gaps.
+ */
+public final class IntervalSet {
+
+    /** The maximum number of intervals in an IntervalSet. */
+    public static final int MAX_INTERVALS = 10;
+
+    /**
+     * The maximum number of products that {@link #times} computes one by one for a pair of
+     * intervals; larger intervals are multiplied by their bounds.
+     */
+    private static final long MAX_ENUMERATED_PRODUCTS = 100;
+
+    /** The empty set. */
+    public static final IntervalSet EMPTY = new IntervalSet(new long[0]);
+
+    /** The set of all 64-bit values. */
+    public static final IntervalSet EVERYTHING = of(Long.MIN_VALUE, Long.MAX_VALUE);
+
+    /** The bounds of the intervals, in increasing order; see the class documentation. */
+    private final long[] bounds;
+
+    private IntervalSet(long[] bounds) {
+        this.bounds = bounds;
+    }
+
+    /**
+     * Returns the set of the values between {@code from} and {@code to}, inclusive.
+     *
+     * @param from the lower bound (inclusive)
+     * @param to the upper bound (inclusive)
+     * @return the set that contains exactly the interval [from, to]
+     */
+    public static IntervalSet of(long from, long to) {
+        if (!(from <= to)) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid IntervalSet: %s %s", from, to));
+        }
+        return new IntervalSet(new long[] {from, to});
+    }
+
+    /**
+     * Returns the set of the values in the given range.
+     *
+     * @param range a range
+     * @return the set that contains exactly the values of {@code range}
+     */
+    public static IntervalSet of(Range range) {
+        if (range.isNothing()) {
+            return EMPTY;
+        }
+        return of(range.from, range.to);
+    }
+
+    /**
+     * Returns the set of the given values. If they are spread over more than {@link
+     * #MAX_INTERVALS} intervals, the result also contains some values between them.
+     *
+     * @param values integral values; duplicates are allowed and the values may be in any order
+     * @return a set that contains {@code values}
+     */
+    public static IntervalSet of(List<? extends Number> values) {
+        Builder builder = new Builder(values.size());
+        for (Number value : values) {
+            builder.add(value.longValue(), value.longValue());
+        }
+        return builder.build();
+    }
+
+    /** Returns true if this set contains no value. */
+    public boolean isEmpty() {
+        return bounds.length == 0;
+    }
+
+    /** Returns the number of intervals of this set. */
+    public int intervalCount() {
+        return bounds.length / 2;
+    }
+
+    /** Returns the lower bound of the {@code i}-th interval of this set. */
+    public long lowerBound(int i) {
+        return bounds[2 * i];
+    }
+
+    /** Returns the upper bound of the {@code i}-th interval of this set. */
+    public long upperBound(int i) {
+        return bounds[2 * i + 1];
+    }
+
+    /** Returns true if {@code value} is contained in this set. */
+    public boolean contains(long value) {
+        for (int i = 0; i < bounds.length; i += 2) {
+            if (value < bounds[i]) {
+                return false;
+            } else if (value <= bounds[i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if this set contains more than {@code count} values.
+     *
+     * @param count a non-negative number of values
+     * @return true if this set has more than {@code count} elements
+     */
+    public boolean isWiderThan(long count) {
+        long remaining = count;
+        for (int i = 0; i < bounds.length; i += 2) {
+            // The width minus one of an interval is correct when read as an unsigned number.
+            long widthMinusOne = bounds[i + 1] - bounds[i];
+            if (Long.compareUnsigned(widthMinusOne, remaining) >= 0) {
+                return true;
+            }
+            remaining -= widthMinusOne + 1;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the smallest range that contains this set.
+     *
+     * @return the range from the least to the greatest value of this set, or {@link Range#NOTHING}
+     *     if this set is empty
+     */
+    public Range toRange() {
+        if (isEmpty()) {
+            return Range.NOTHING;
+        }
+        return new Range(bounds[0], bounds[bounds.length - 1]);
+    }
+
+    /**
+     * Returns the values of this set, in increasing order. Should only be called on sets that are
+     * not {@link #isWiderThan wider than} a small number of values.
+     *
+     * @return the values of this set
+     */
+    public List<Long> toValues() {
+        List<Long> values = new ArrayList<>();
+        for (int i = 0; i < bounds.length; i += 2) {
+            for (long value = bounds[i]; ; value++) {
+                values.add(value);
+                if (value == bounds[i + 1]) {
+                    break;
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Returns the union of this set and the given set.
+     *
+     * @param right a set to union with this set
+     * @return a set that contains the values of both sets
+     */
+    public IntervalSet union(IntervalSet right) {
+        if (this.isEmpty() || this.equals(right)) {
+            return right;
+        } else if (right.isEmpty()) {
+            return this;
+        }
+        Builder builder = new Builder(intervalCount() + right.intervalCount());
+        builder.addAll(this);
+        builder.addAll(right);
+        return builder.build();
+    }
+
+    /**
+     * Returns the values of this set that are also contained in the given range.
+     *
+     * @param range the range to intersect with this set
+     * @return the intersection of this set and {@code range}
+     */
+    public IntervalSet intersect(Range range) {
+        if (range.isNothing()) {
+            return EMPTY;
+        }
+        Builder builder = new Builder(intervalCount());
+        for (int i = 0; i < bounds.length; i += 2) {
+            long from = Math.max(bounds[i], range.from);
+            long to = Math.min(bounds[i + 1], range.to);
+            if (from <= to) {
+                builder.add(from, to);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the values of this set that are also contained in the given set.
+     *
+     * @param right the set to intersect with this set
+     * @return the intersection of both sets
+     */
+    public IntervalSet intersect(IntervalSet right) {
+        if (this.equals(right)) {
+            return this;
+        }
+        Builder builder = new Builder(intervalCount() + right.intervalCount());
+        for (int i = 0; i < bounds.length; i += 2) {
+            for (int j = 0; j < right.bounds.length; j += 2) {
+                long from = Math.max(bounds[i], right.bounds[j]);
+                long to = Math.min(bounds[i + 1], right.bounds[j + 1]);
+                if (from <= to) {
+                    builder.add(from, to);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the set of the values resulting from adding an arbitrary value in the specified set
+     * to an arbitrary value in this set. Overflow is handled as in {@link Range#plus}.
+     *
+     * @param right the set to be added to this set
+     * @return the sums of the values of both sets
+     */
+    public IntervalSet plus(IntervalSet right) {
+        Builder builder = new Builder(intervalCount() * right.intervalCount());
+        for (int i = 0; i < bounds.length; i += 2) {
+            long a = bounds[i];
+            long b = bounds[i + 1];
+            for (int j = 0; j < right.bounds.length; j += 2) {
+                long c = right.bounds[j];
+                long d = right.bounds[j + 1];
+                long from = a + c;
+                long to = b + d;
+                if (a == b && c == d) {
+                    // A single value overflows as in Java.
+                    builder.add(from, from);
+                } else if (((a ^ from) & (c ^ from)) < 0 || ((b ^ to) & (d ^ to)) < 0) {
+                    builder.add(new Range(a, b).plus(new Range(c, d)));
+                } else {
+                    builder.add(from, to);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the set of the values resulting from subtracting an arbitrary value in the specified
+     * set from an arbitrary value in this set. Overflow is handled as in {@link Range#minus}.
+     *
+     * @param right the set to be subtracted from this set
+     * @return the differences of the values of both sets
+     */
+    public IntervalSet minus(IntervalSet right) {
+        Builder builder = new Builder(intervalCount() * right.intervalCount());
+        for (int i = 0; i < bounds.length; i += 2) {
+            long a = bounds[i];
+            long b = bounds[i + 1];
+            for (int j = 0; j < right.bounds.length; j += 2) {
+                long c = right.bounds[j];
+                long d = right.bounds[j + 1];
+                long from = a - d;
+                long to = b - c;
+                if (a == b && c == d) {
+                    // A single value overflows as in Java.
+                    builder.add(from, from);
+                } else if (((a ^ d) & (a ^ from)) < 0 || ((b ^ c) & (b ^ to)) < 0) {
+                    builder.add(new Range(a, b).minus(new Range(c, d)));
+                } else {
+                    builder.add(from, to);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the set of the values resulting from multiplying an arbitrary value in the specified
+     * set by an arbitrary value in this set. Overflow is handled as in {@link Range#times}.
+     *
+     * @param right the set to be multiplied by this set
+     * @return the products of the values of both sets
+     */
+    public IntervalSet times(IntervalSet right) {
+        Builder builder = new Builder(intervalCount() * right.intervalCount());
+        for (int i = 0; i < bounds.length; i += 2) {
+            long a = bounds[i];
+            long b = bounds[i + 1];
+            for (int j = 0; j < right.bounds.length; j += 2) {
+                long c = right.bounds[j];
+                long d = right.bounds[j + 1];
+                if (Long.compareUnsigned(b - a, MAX_ENUMERATED_PRODUCTS) < 0
+                        && Long.compareUnsigned(d - c, MAX_ENUMERATED_PRODUCTS) < 0
+                        && (b - a + 1) * (d - c + 1) <= MAX_ENUMERATED_PRODUCTS) {
+                    // The products of two intervals are not an interval in general; for example,
+                    // the products of {1, 2} and {1, 2} are {1, 2, 4}. Each product overflows as
+                    // in Java.
+                    for (long x = a; ; x++) {
+                        for (long y = c; ; y++) {
+                            builder.add(x * y, x * y);
+                            if (y == d) {
+                                break;
+                            }
+                        }
+                        if (x == b) {
+                            break;
+                        }
+                    }
+                } else if (isWithinInteger(a, b) && isWithinInteger(c, d)) {
+                    // Integer.MAX_VALUE^2 is still a bit less than Long.MAX_VALUE.
+                    long ac = a * c;
+                    long ad = a * d;
+                    long bc = b * c;
+                    long bd = b * d;
+                    builder.add(
+                            Math.min(Math.min(ac, ad), Math.min(bc, bd)),
+                            Math.max(Math.max(ac, ad), Math.max(bc, bd)));
+                } else {
+                    builder.add(new Range(a, b).times(new Range(c, d)));
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the set of the values resulting from applying the unary minus operation to the values
+     * of this set. Overflow is handled as in {@link Range#unaryMinus}.
+     *
+     * @return the negated values of this set
+     */
+    public IntervalSet unaryMinus() {
+        Builder builder = new Builder(intervalCount());
+        for (int i = bounds.length - 2; i >= 0; i -= 2) {
+            long a = bounds[i];
+            long b = bounds[i + 1];
+            if (a == Long.MIN_VALUE) {
+                builder.add(new Range(a, b).unaryMinus());
+            } else {
+                builder.add(-b, -a);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Converts this set to the values of the given primitive type, as a Java narrowing conversion
+     * would. For {@code int}, {@code short}, and {@code byte}, a value that does not fit in the
+     * type wraps around; if {@link Range#IGNORE_OVERFLOW} is true, intervals that contain more than
+     * one value are instead clamped to the bounds of the type, as in {@link Range#intRange}. Values
+     * of other types are left unchanged, as in {@link NumberUtils#castRange}.
+     *
+     * @param kind the primitive type to convert to
+     * @return the values of this set as values of {@code kind}
+     */
+    public IntervalSet castTo(TypeKind kind) {
+        long min;
+        long max;
+        switch (kind) {
+            case INT:
+                min = Integer.MIN_VALUE;
+                max = Integer.MAX_VALUE;
+                break;
+            case SHORT:
+                min = Short.MIN_VALUE;
+                max = Short.MAX_VALUE;
+                break;
+            case BYTE:
+                min = Byte.MIN_VALUE;
+                max = Byte.MAX_VALUE;
+                break;
+            default:
+                return this;
+        }
+        if (isEmpty() || (bounds[0] >= min && bounds[bounds.length - 1] <= max)) {
+            return this;
+        }
+        long widthMinusOne = max - min;
+        Builder builder = new Builder(intervalCount() + 1);
+        for (int i = 0; i < bounds.length; i += 2) {
+            long a = bounds[i];
+            long b = bounds[i + 1];
+            if (a >= min && b <= max) {
+                builder.add(a, b);
+            } else if (Range.IGNORE_OVERFLOW && a != b) {
+                long from = Math.min(Math.max(a, min), max);
+                long to = Math.max(Math.min(b, max), min);
+                builder.add(from, to);
+            } else if (Long.compareUnsigned(b - a, widthMinusOne) >= 0) {
+                builder.add(min, max);
+            } else {
+                long from = narrow(a, kind);
+                long to = narrow(b, kind);
+                if (from <= to) {
+                    builder.add(from, to);
+                } else {
+                    builder.add(from, max);
+                    builder.add(min, to);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /** Converts {@code value} to {@code kind}, which is {@code int}, {@code short}, or byte. */
+    private static long narrow(long value, TypeKind kind) {
+        switch (kind) {
+            case INT:
+                return (int) value;
+            case SHORT:
+                return (short) value;
+            default:
+                return (byte) value;
+        }
+    }
+
+    /** Returns true if the interval [from, to] only contains values of type {@code int}. */
+    private static boolean isWithinInteger(long from, long to) {
+        return Integer.MIN_VALUE <= from && to <= Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof IntervalSet) {
+            return Arrays.equals(bounds, ((IntervalSet) obj).bounds);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(bounds);
+    }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) {
+            return "{}";
+        }
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < bounds.length; i += 2) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(bounds[i]);
+            if (bounds[i] != bounds[i + 1]) {
+                sb.append("..").append(bounds[i + 1]);
+            }
+        }
+        return sb.append("}").toString();
+    }
+
+    /**
+     * Collects intervals in any order and builds the IntervalSet of their union. The intervals may
+     * overlap.
+     */
+    private static final class Builder {
+        /** The lower bounds of the collected intervals. */
+        private long[] froms;
+
+        /** The upper bounds of the collected intervals, at the same indices as {@link #froms}. */
+        private long[] tos;
+
+        /** The number of collected intervals. */
+        private int size = 0;
+
+        Builder(int expectedIntervals) {
+            froms = new long[Math.max(expectedIntervals, 1)];
+            tos = new long[froms.length];
+        }
+
+        void add(long from, long to) {
+            if (size == froms.length) {
+                froms = Arrays.copyOf(froms, 2 * size);
+                tos = Arrays.copyOf(tos, 2 * size);
+            }
+            froms[size] = from;
+            tos[size] = to;
+            size++;
+        }
+
+        void addAll(IntervalSet set) {
+            for (int i = 0; i < set.bounds.length; i += 2) {
+                add(set.bounds[i], set.bounds[i + 1]);
+            }
+        }
+
+        void add(Range range) {
+            if (!range.isNothing()) {
+                add(range.from, range.to);
+            }
+        }
+
+        IntervalSet build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            // The union of the intervals only depends on the sorted lower bounds and the sorted
+            // upper bounds: a sweep over both counts the intervals that contain each point.
+            Arrays.sort(froms, 0, size);
+            Arrays.sort(tos, 0, size);
+            long[] result = new long[2 * size];
+            int count = 0;
+            int open = 0;
+            int i = 0;
+            int j = 0;
+            while (j < size) {
+                if (i < size && froms[i] <= tos[j]) {
+                    if (open++ == 0) {
+                        long from = froms[i];
+                        if (count > 0 && result[count - 1] == from - 1) {
+                            // Adjacent to the previous interval.
+                            count--;
+                        } else {
+                            result[count++] = from;
+                        }
+                    }
+                    i++;
+                } else {
+                    if (--open == 0) {
+                        result[count++] = tos[j];
+                    }
+                    j++;
+                }
+            }
+            while (count > 2 * MAX_INTERVALS) {
+                count = mergeSmallestGap(result, count);
+            }
+            return new IntervalSet(Arrays.copyOf(result, count));
+        }
+
+        /**
+         * Merges the two neighbouring intervals that are separated by the smallest gap, among the
+         * first {@code count} bounds of {@code bounds}, which are sorted and disjoint.
+         *
+         * @return the new number of bounds
+         */
+        private static int mergeSmallestGap(long[] bounds, int count) {
+            int smallest = 1;
+            for (int i = 3; i < count - 1; i += 2) {
+                // Differences of bounds are correct when read as unsigned numbers.
+                if (Long.compareUnsigned(
+                                bounds[i + 1] - bounds[i], bounds[smallest + 1] - bounds[smallest])
+                        < 0) {
+                    smallest = i;
+                }
+            }
+            // Removes the upper bound at index smallest and the lower bound after it.
+            System.arraycopy(bounds, smallest + 2, bounds, smallest, count - smallest - 2);
+            return count - 2;
+        }
+    }
+}
@@ -60,6 +60,9 @@ public abstract class CFAbstractAnalysis<
     /** Initial abstract types for fields. */
     protected final List<Pair<VariableElement, V>> fieldValues;
 
+    /** Whether stores keep their information in persistent maps; see {@link #usePersistentStores}. */
+    private final boolean persistentStores;
+
     public CFAbstractAnalysis(
             BaseTypeChecker checker,
             GenericAnnotatedTypeFactory<V, S, T, ? extends CFAbstractAnalysis<V, S, T>> factory,
@@ -72,6 +75,7 @@ public abstract class CFAbstractAnalysis<
         this.checker = checker;
         this.transferFunction = createTransferFunction();
         this.fieldValues = fieldValues;
+        this.persistentStores = checker.hasOption("persistentStores");
     }
 
     public CFAbstractAnalysis(
@@ -89,6 +93,23 @@ public abstract class CFAbstractAnalysis<
         return fieldValues;
     }
 
+    /**
+     * Whether the stores of this analysis should keep their information in {@link
+     * org.checkerframework.dataflow.util.PersistentHashMap}s, which can be copied in constant time,
+     * instead of in {@link java.util.HashMap}s. This pays off for large methods, where the analysis
+     * copies big stores between blocks.
+     *
+     * <p>By default, persistent stores are used if the {@code -ApersistentStores} command-line
+     * option is supplied; as with any option, it can be restricted to a single checker by prefixing
+     * it with the checker's name. Subclasses may override this method to choose the
+     * representation for their checker.
+     *
+     * @return true if stores should use persistent maps
+     */
+    public boolean usePersistentStores() {
+        return persistentStores;
+    }
+
     /** @return the transfer function to be used by the analysis */
     public T createTransferFunction() {
         return atypeFactory.createFlowTransferFunction(this);
@@ -5,6 +5,7 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 */
 
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -30,6 +31,7 @@ import org.checkerframework.dataflow.cfg.node.MethodInvocationNode;
 import org.checkerframework.dataflow.cfg.node.Node;
 import org.checkerframework.dataflow.cfg.node.ThisLiteralNode;
 import org.checkerframework.dataflow.qual.SideEffectFree;
+import org.checkerframework.dataflow.util.PersistentHashMap;
 import org.checkerframework.dataflow.util.PurityUtils;
 import org.checkerframework.framework.qual.MonotonicQualifier;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
@@ -50,6 +52,10 @@ import org.checkerframework.javacutil.Pair;
  * BaseTypeVisitor#getFlowExpressionContextFromNode(Node) needs to be updated. Failing to do so may
  * result in silent failures that are time consuming to debug.
  *
+ * <p>The maps that hold the information are {@link HashMap}s, or {@link PersistentHashMap}s if
+ * {@link CFAbstractAnalysis#usePersistentStores()} returns true. Always create and copy them with
+ * {@link #createMap()} and {@link #copyMap(Map)}.
+ *
  * @author Charlie Garrett
  * @author Stefan Heule
  */
@@ -62,7 +68,7 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
     protected final CFAbstractAnalysis<V, S, ?> analysis;
 
     /** Information collected about local variables (including method arguments). */
-    protected final Map<FlowExpressions.LocalVariable, V> localVariableValues;
+    protected Map<FlowExpressions.LocalVariable, V> localVariableValues;
 
     /** Information collected about the current object. */
     protected V thisValue;
@@ -101,27 +107,62 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
 
     public CFAbstractStore(CFAbstractAnalysis<V, S, ?> analysis, boolean sequentialSemantics) {
         this.analysis = analysis;
-        localVariableValues = new HashMap<>();
+        localVariableValues = createMap();
         thisValue = null;
-        fieldValues = new HashMap<>();
-        methodValues = new HashMap<>();
-        arrayValues = new HashMap<>();
-        classValues = new HashMap<>();
+        fieldValues = createMap();
+        methodValues = createMap();
+        arrayValues = createMap();
+        classValues = createMap();
         this.sequentialSemantics = sequentialSemantics;
     }
 
     /** Copy constructor. */
     protected CFAbstractStore(CFAbstractStore<V, S> other) {
         this.analysis = other.analysis;
-        localVariableValues = new HashMap<>(other.localVariableValues);
+        localVariableValues = copyMap(other.localVariableValues);
         thisValue = other.thisValue;
-        fieldValues = new HashMap<>(other.fieldValues);
-        methodValues = new HashMap<>(other.methodValues);
-        arrayValues = new HashMap<>(other.arrayValues);
-        classValues = new HashMap<>(other.classValues);
+        fieldValues = copyMap(other.fieldValues);
+        methodValues = copyMap(other.methodValues);
+        arrayValues = copyMap(other.arrayValues);
+        classValues = copyMap(other.classValues);
         sequentialSemantics = other.sequentialSemantics;
     }
 
+    /**
+     * Returns a new, empty map to hold information about one kind of expression. The map is a
+     * {@link PersistentHashMap} if {@link CFAbstractAnalysis#usePersistentStores()} is true.
+     */
+    protected <K> Map<K, V> createMap() {
+        if (analysis.usePersistentStores()) {
+            return new PersistentHashMap<>();
+        }
+        return new HashMap<>();
+    }
+
+    /**
+     * Returns a copy of {@code map}, which was created by {@link #createMap()}. Copying a {@link
+     * PersistentHashMap} takes constant time.
+     */
+    protected static <K, W> Map<K, W> copyMap(Map<K, W> map) {
+        if (map instanceof PersistentHashMap) {
+            return ((PersistentHashMap<K, W>) map).copy();
+        }
+        return new HashMap<>(map);
+    }
+
+    /**
+     * Returns true if {@code a} and {@code b} are known to have the same entries without comparing
+     * them, because they are the same map or share their structure.
+     */
+    private static boolean isSameMap(Map<?, ?> a, Map<?, ?> b) {
+        if (a == b) {
+            return true;
+        }
+        return a instanceof PersistentHashMap
+                && b instanceof PersistentHashMap
+                && ((PersistentHashMap<?, ?>) a).sharesStructureWith((PersistentHashMap<?, ?>) b);
+    }
+
     /**
      * Set the abstract value of a method parameter (only adds the information to the store, does
      * not remove any other knowledge). Any previous information is erased; this method should only
@@ -189,8 +230,12 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
         if (!(analysis.checker.hasOption("assumeSideEffectFree")
                 || isSideEffectFree(atypeFactory, method))) {
             // update field values
-            Map<FlowExpressions.FieldAccess, V> newFieldValues = new HashMap<>();
-            for (Entry<FlowExpressions.FieldAccess, V> e : fieldValues.entrySet()) {
+            // The map must not be changed while iterating over it, except by it.remove().
+            Map<FlowExpressions.FieldAccess, V> updatedFieldValues = new HashMap<>();
+            for (Iterator<Entry<FlowExpressions.FieldAccess, V>> it =
+                            fieldValues.entrySet().iterator();
+                    it.hasNext(); ) {
+                Entry<FlowExpressions.FieldAccess, V> e = it.next();
                 FlowExpressions.FieldAccess fieldAccess = e.getKey();
                 V otherVal = e.getValue();
 
@@ -217,19 +262,16 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
                 if (newOtherVal != null) {
                     // keep information for all hierarchies where we had a
                     // monotone annotation.
-                    newFieldValues.put(fieldAccess, newOtherVal);
+                    updatedFieldValues.put(fieldAccess, newOtherVal);
                     continue;
                 }
 
                 // case 2:
                 if (!fieldAccess.isUnmodifiableByOtherCode()) {
-                    continue; // remove information completely
+                    it.remove(); // remove information completely
                 }
-
-                // keep information
-                newFieldValues.put(fieldAccess, otherVal);
             }
-            fieldValues = newFieldValues;
+            fieldValues.putAll(updatedFieldValues);
 
             // update method values
             methodValues.clear();
@@ -590,13 +632,17 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
      *     abstract value is not known).
      */
     protected void removeConflicting(FlowExpressions.FieldAccess fieldAccess, /*@Nullable*/ V val) {
-        Map<FlowExpressions.FieldAccess, V> newFieldValues = new HashMap<>();
-        for (Entry<FlowExpressions.FieldAccess, V> e : fieldValues.entrySet()) {
+        // The map must not be changed while iterating over it, except by it.remove().
+        Map<FlowExpressions.FieldAccess, V> updatedFieldValues = new HashMap<>();
+        for (Iterator<Entry<FlowExpressions.FieldAccess, V>> it = fieldValues.entrySet().iterator();
+                it.hasNext(); ) {
+            Entry<FlowExpressions.FieldAccess, V> e = it.next();
             FlowExpressions.FieldAccess otherFieldAccess = e.getKey();
             V otherVal = e.getValue();
             // case 2:
             if (otherFieldAccess.getReceiver().containsModifiableAliasOf(this, fieldAccess)) {
-                continue; // remove information completely
+                it.remove(); // remove information completely
+                continue;
             }
             // case 1:
             if (fieldAccess.getField().equals(otherFieldAccess.getField())) {
@@ -604,33 +650,26 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
                     if (!otherFieldAccess.isFinal()) {
                         if (val != null) {
                             V newVal = val.leastUpperBound(otherVal);
-                            newFieldValues.put(otherFieldAccess, newVal);
+                            updatedFieldValues.put(otherFieldAccess, newVal);
                         } else {
-                            // remove information completely
+                            it.remove(); // remove information completely
                         }
-                        continue;
                     }
                 }
             }
-            // information is save to be carried over
-            newFieldValues.put(otherFieldAccess, otherVal);
         }
-        fieldValues = newFieldValues;
+        fieldValues.putAll(updatedFieldValues);
 
-        Map<FlowExpressions.ArrayAccess, V> newArrayValues = new HashMap<>();
-        for (Entry<ArrayAccess, V> e : arrayValues.entrySet()) {
-            FlowExpressions.ArrayAccess otherArrayAccess = e.getKey();
-            V otherVal = e.getValue();
+        for (Iterator<Entry<FlowExpressions.ArrayAccess, V>> it = arrayValues.entrySet().iterator();
+                it.hasNext(); ) {
+            FlowExpressions.ArrayAccess otherArrayAccess = it.next().getKey();
             if (otherArrayAccess.containsModifiableAliasOf(this, fieldAccess)) {
-                // remove information completely
-                continue;
+                it.remove(); // remove information completely
             }
-            newArrayValues.put(otherArrayAccess, otherVal);
         }
-        arrayValues = newArrayValues;
 
         // case 3:
-        methodValues = new HashMap<>();
+        methodValues.clear();
     }
 
     /**
@@ -653,42 +692,36 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
      *     abstract value is not known).
      */
     protected void removeConflicting(FlowExpressions.ArrayAccess arrayAccess, /*@Nullable*/ V val) {
-        Map<FlowExpressions.ArrayAccess, V> newArrayValues = new HashMap<>();
-        for (Entry<FlowExpressions.ArrayAccess, V> e : arrayValues.entrySet()) {
-            FlowExpressions.ArrayAccess otherArrayAccess = e.getKey();
-            V otherVal = e.getValue();
+        for (Iterator<Entry<FlowExpressions.ArrayAccess, V>> it = arrayValues.entrySet().iterator();
+                it.hasNext(); ) {
+            FlowExpressions.ArrayAccess otherArrayAccess = it.next().getKey();
             // case 1:
             if (otherArrayAccess.containsModifiableAliasOf(this, arrayAccess)) {
-                continue; // remove information completely
+                it.remove(); // remove information completely
+                continue;
             }
             if (canAlias(arrayAccess.getReceiver(), otherArrayAccess.getReceiver())) {
                 // TODO: one could be less strict here, and only raise the
                 // abstract value
                 // for all array expressions with potentially aliasing receivers
-                continue; // remove information completely
+                it.remove(); // remove information completely
+                continue;
             }
             // information is save to be carried over
-            newArrayValues.put(otherArrayAccess, otherVal);
         }
-        arrayValues = newArrayValues;
 
         // case 2:
-        Map<FlowExpressions.FieldAccess, V> newFieldValues = new HashMap<>();
-        for (Entry<FieldAccess, V> e : fieldValues.entrySet()) {
-            FlowExpressions.FieldAccess otherFieldAccess = e.getKey();
-            V otherVal = e.getValue();
-            Receiver receiver = otherFieldAccess.getReceiver();
+        for (Iterator<Entry<FlowExpressions.FieldAccess, V>> it = fieldValues.entrySet().iterator();
+                it.hasNext(); ) {
+            Receiver receiver = it.next().getKey().getReceiver();
             if (receiver.containsModifiableAliasOf(this, arrayAccess)
                     && receiver.containsOfClass(ArrayAccess.class)) {
-                // remove information completely
-                continue;
+                it.remove(); // remove information completely
             }
-            newFieldValues.put(otherFieldAccess, otherVal);
         }
-        fieldValues = newFieldValues;
 
         // case 3:
-        methodValues = new HashMap<>();
+        methodValues.clear();
     }
 
     /**
@@ -705,39 +738,33 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
      * </ol>
      */
     protected void removeConflicting(LocalVariable var) {
-        Map<FlowExpressions.FieldAccess, V> newFieldValues = new HashMap<>();
-        for (Entry<FlowExpressions.FieldAccess, V> e : fieldValues.entrySet()) {
-            FlowExpressions.FieldAccess otherFieldAccess = e.getKey();
+        for (Iterator<FlowExpressions.FieldAccess> it = fieldValues.keySet().iterator();
+                it.hasNext(); ) {
+            FlowExpressions.FieldAccess otherFieldAccess = it.next();
             // case 1:
             if (otherFieldAccess.containsSyntacticEqualReceiver(var)) {
-                continue;
+                it.remove();
             }
-            newFieldValues.put(otherFieldAccess, e.getValue());
         }
-        fieldValues = newFieldValues;
 
-        Map<FlowExpressions.ArrayAccess, V> newArrayValues = new HashMap<>();
-        for (Entry<FlowExpressions.ArrayAccess, V> e : arrayValues.entrySet()) {
-            FlowExpressions.ArrayAccess otherArrayAccess = e.getKey();
+        for (Iterator<FlowExpressions.ArrayAccess> it = arrayValues.keySet().iterator();
+                it.hasNext(); ) {
+            FlowExpressions.ArrayAccess otherArrayAccess = it.next();
             // case 2:
             if (otherArrayAccess.containsSyntacticEqualReceiver(var)) {
-                continue;
+                it.remove();
             }
-            newArrayValues.put(otherArrayAccess, e.getValue());
         }
-        arrayValues = newArrayValues;
 
-        Map<FlowExpressions.MethodCall, V> newMethodValues = new HashMap<>();
-        for (Entry<FlowExpressions.MethodCall, V> e : methodValues.entrySet()) {
-            FlowExpressions.MethodCall otherMethodAccess = e.getKey();
+        for (Iterator<FlowExpressions.MethodCall> it = methodValues.keySet().iterator();
+                it.hasNext(); ) {
+            FlowExpressions.MethodCall otherMethodAccess = it.next();
             // case 3:
             if (otherMethodAccess.containsSyntacticEqualReceiver(var)
                     || otherMethodAccess.containsSyntacticEqualParameter(var)) {
-                continue;
+                it.remove();
             }
-            newMethodValues.put(otherMethodAccess, e.getValue());
         }
-        methodValues = newMethodValues;
     }
 
     /**
@@ -800,21 +827,11 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
     private S upperBound(S other, boolean shouldWiden) {
         S newStore = analysis.createEmptyStore(sequentialSemantics);
 
-        for (Entry<FlowExpressions.LocalVariable, V> e : other.localVariableValues.entrySet()) {
-            // local variables that are only part of one store, but not the
-            // other are discarded, as one of store implicitly contains 'top'
-            // for that variable.
-            FlowExpressions.LocalVariable localVar = e.getKey();
-            if (localVariableValues.containsKey(localVar)) {
-                V otherVal = e.getValue();
-                V thisVal = localVariableValues.get(localVar);
-                V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
-
-                if (mergedVal != null) {
-                    newStore.localVariableValues.put(localVar, mergedVal);
-                }
-            }
-        }
+        // local variables that are only part of one store, but not the
+        // other are discarded, as one of store implicitly contains 'top'
+        // for that variable.
+        newStore.localVariableValues =
+                upperBoundOfMaps(localVariableValues, other.localVariableValues, shouldWiden);
 
         // information about the current object
         {
@@ -826,60 +843,42 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
             }
         }
 
-        for (Entry<FlowExpressions.FieldAccess, V> e : other.fieldValues.entrySet()) {
-            // information about fields that are only part of one store, but not
-            // the other are discarded, as one store implicitly contains 'top'
-            // for that field.
-            FlowExpressions.FieldAccess el = e.getKey();
-            if (fieldValues.containsKey(el)) {
-                V otherVal = e.getValue();
-                V thisVal = fieldValues.get(el);
-                V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
-                if (mergedVal != null) {
-                    newStore.fieldValues.put(el, mergedVal);
-                }
-            }
-        }
-        for (Entry<FlowExpressions.ArrayAccess, V> e : other.arrayValues.entrySet()) {
-            // information about arrays that are only part of one store, but not
-            // the other are discarded, as one store implicitly contains 'top'
-            // for that array access.
-            FlowExpressions.ArrayAccess el = e.getKey();
-            if (arrayValues.containsKey(el)) {
-                V otherVal = e.getValue();
-                V thisVal = arrayValues.get(el);
-                V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
-                if (mergedVal != null) {
-                    newStore.arrayValues.put(el, mergedVal);
-                }
-            }
-        }
-        for (Entry<MethodCall, V> e : other.methodValues.entrySet()) {
-            // information about methods that are only part of one store, but
-            // not the other are discarded, as one store implicitly contains
-            // 'top' for that field.
-            FlowExpressions.MethodCall el = e.getKey();
-            if (methodValues.containsKey(el)) {
-                V otherVal = e.getValue();
-                V thisVal = methodValues.get(el);
-                V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
-                if (mergedVal != null) {
-                    newStore.methodValues.put(el, mergedVal);
-                }
-            }
-        }
-        for (Entry<FlowExpressions.ClassName, V> e : other.classValues.entrySet()) {
-            FlowExpressions.ClassName el = e.getKey();
-            if (classValues.containsKey(el)) {
+        // information about fields, arrays, methods, and classes that are only
+        // part of one store, but not the other are discarded, as one store
+        // implicitly contains 'top' for that expression.
+        newStore.fieldValues = upperBoundOfMaps(fieldValues, other.fieldValues, shouldWiden);
+        newStore.arrayValues = upperBoundOfMaps(arrayValues, other.arrayValues, shouldWiden);
+        newStore.methodValues = upperBoundOfMaps(methodValues, other.methodValues, shouldWiden);
+        newStore.classValues = upperBoundOfMaps(classValues, other.classValues, shouldWiden);
+        return newStore;
+    }
+
+    /**
+     * Returns a new map that contains the upper bound of the values of the keys that are in both
+     * {@code thisMap} and {@code otherMap}.
+     */
+    private <K> Map<K, V> upperBoundOfMaps(
+            Map<K, V> thisMap, Map<K, V> otherMap, boolean shouldWiden) {
+        if (!shouldWiden && isSameMap(thisMap, otherMap)) {
+            // The least upper bound of a value with itself is the value.
+            return copyMap(thisMap);
+        }
+        Map<K, V> result = createMap();
+        for (Entry<K, V> e : otherMap.entrySet()) {
+            K key = e.getKey();
+            V thisVal = thisMap.get(key);
+            if (thisVal != null) {
                 V otherVal = e.getValue();
-                V thisVal = classValues.get(el);
-                V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
+                V mergedVal =
+                        (!shouldWiden && thisVal == otherVal)
+                                ? thisVal
+                                : upperBoundOfValues(otherVal, thisVal, shouldWiden);
                 if (mergedVal != null) {
-                    newStore.classValues.put(el, mergedVal);
+                    result.put(key, mergedVal);
                 }
             }
         }
-        return newStore;
+        return result;
     }
 
     private V upperBoundOfValues(V otherVal, V thisVal, boolean shouldWiden) {
@@ -893,34 +892,24 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
      * equals predicate.
      */
     protected boolean supersetOf(CFAbstractStore<V, S> other) {
-        for (Entry<FlowExpressions.LocalVariable, V> e : other.localVariableValues.entrySet()) {
-            FlowExpressions.LocalVariable key = e.getKey();
-            if (!localVariableValues.containsKey(key)
-                    || !localVariableValues.get(key).equals(e.getValue())) {
-                return false;
-            }
-        }
-        for (Entry<FlowExpressions.FieldAccess, V> e : other.fieldValues.entrySet()) {
-            FlowExpressions.FieldAccess key = e.getKey();
-            if (!fieldValues.containsKey(key) || !fieldValues.get(key).equals(e.getValue())) {
-                return false;
-            }
-        }
-        for (Entry<FlowExpressions.ArrayAccess, V> e : other.arrayValues.entrySet()) {
-            FlowExpressions.ArrayAccess key = e.getKey();
-            if (!arrayValues.containsKey(key) || !arrayValues.get(key).equals(e.getValue())) {
-                return false;
-            }
+        return supersetOf(localVariableValues, other.localVariableValues)
+                && supersetOf(fieldValues, other.fieldValues)
+                && supersetOf(arrayValues, other.arrayValues)
+                && supersetOf(methodValues, other.methodValues)
+                && supersetOf(classValues, other.classValues);
+    }
+
+    /** Returns true iff {@code thisMap} contains all entries of {@code otherMap}. */
+    private static <K, W> boolean supersetOf(Map<K, W> thisMap, Map<K, W> otherMap) {
+        if (isSameMap(thisMap, otherMap)) {
+            return true;
         }
-        for (Entry<MethodCall, V> e : other.methodValues.entrySet()) {
-            FlowExpressions.MethodCall key = e.getKey();
-            if (!methodValues.containsKey(key) || !methodValues.get(key).equals(e.getValue())) {
-                return false;
-            }
+        if (otherMap.size() > thisMap.size()) {
+            return false;
         }
-        for (Entry<FlowExpressions.ClassName, V> e : other.classValues.entrySet()) {
-            FlowExpressions.ClassName key = e.getKey();
-            if (!classValues.containsKey(key) || !classValues.get(key).equals(e.getValue())) {
+        for (Entry<K, W> e : otherMap.entrySet()) {
+            W thisVal = thisMap.get(e.getKey());
+            if (thisVal == null || !(thisVal == e.getValue() || thisVal.equals(e.getValue()))) {
                 return false;
             }
         }
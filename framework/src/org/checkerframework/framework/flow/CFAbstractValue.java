@@ -24,6 +24,7 @@ import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedWildcard
 import org.checkerframework.framework.type.QualifierHierarchy;
 import org.checkerframework.framework.util.AnnotatedTypes;
 import org.checkerframework.framework.util.PluginUtil;
+import org.checkerframework.framework.util.SmallAnnotationMirrorSet;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.InternalUtils;
 import org.checkerframework.javacutil.TypesUtils;
@@ -206,7 +207,7 @@ public abstract class CFAbstractValue<V extends CFAbstractValue<V>> implements A
             mostSpecifTypeMirror = this.getUnderlyingType();
         }
 
-        Set<AnnotationMirror> mostSpecific = AnnotationUtils.createAnnotationSet();
+        Set<AnnotationMirror> mostSpecific = new SmallAnnotationMirrorSet();
         MostSpecificVisitor ms =
                 new MostSpecificVisitor(
                         mostSpecifTypeMirror,
@@ -332,7 +333,7 @@ public abstract class CFAbstractValue<V extends CFAbstractValue<V>> implements A
             return v;
         }
         ProcessingEnvironment processingEnv = analysis.getTypeFactory().getProcessingEnv();
-        Set<AnnotationMirror> lub = AnnotationUtils.createAnnotationSet();
+        Set<AnnotationMirror> lub = new SmallAnnotationMirrorSet();
         TypeMirror lubTypeMirror =
                 InternalUtils.leastUpperBound(
                         processingEnv, this.getUnderlyingType(), other.getUnderlyingType());
@@ -4,12 +4,20 @@ import com.sun.source.tree.AssertTree;
 import com.sun.source.tree.ClassTree;
 import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.LambdaExpressionTree;
 import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.tree.VariableTree;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.VariableElement;
 import org.checkerframework.common.basetype.BaseTypeChecker;
@@ -19,7 +27,9 @@ import org.checkerframework.dataflow.cfg.UnderlyingAST;
 import org.checkerframework.framework.source.SourceChecker;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
 import org.checkerframework.framework.type.AnnotatedTypeMirror;
+import org.checkerframework.javacutil.AnnotationProvider;
 import org.checkerframework.javacutil.ErrorReporter;
+import org.checkerframework.javacutil.Pair;
 import org.checkerframework.javacutil.TreeUtils;
 
 /**
@@ -48,22 +58,160 @@ public class CFCFGBuilder extends CFGBuilder {
         this.factory = factory;
     }
 
-    /** Build the control flow graph of some code. */
+    /**
+     * A control-flow graph, together with everything about its construction that depends on the
+     * checker that built it. Stored in the {@link ControlFlowGraphCache}.
+     */
+    static class SharedGraph {
+        /** The graph; set once the graph has been built. */
+        ControlFlowGraph cfg;
+
+        /** The value of {@link #assumeAssertionsEnabled} of the builder. */
+        final boolean assumeAssertionsEnabled;
+
+        /** The value of {@link #assumeAssertionsDisabled} of the builder. */
+        final boolean assumeAssertionsDisabled;
+
+        /**
+         * False if the graph contains trees whose types were computed by the type factory of the
+         * builder, so that the graph cannot be used by other checkers.
+         */
+        boolean shareable = true;
+
+        /**
+         * The result of {@link #assumeAssertionsActivatedForAssertTree} for each assert statement
+         * in the code.
+         */
+        final Map<AssertTree, Boolean> assumeAssertionsActivated = new HashMap<>();
+
+        /**
+         * The declaration annotations that the graph construction looked up, and whether they were
+         * present.
+         */
+        final List<Pair<Element, Class<? extends Annotation>>> declAnnotationQueries =
+                new ArrayList<>();
+
+        /** The results of the queries in {@link #declAnnotationQueries}, in the same order. */
+        final List<Boolean> declAnnotationResults = new ArrayList<>();
+
+        /** The artificial trees created for the graph, and the element that encloses each. */
+        final Map<Tree, Element> artificialTrees = new IdentityHashMap<>();
+
+        /** The classes declared in the code. */
+        final List<ClassTree> declaredClasses = new ArrayList<>();
+
+        /** The lambdas declared in the code. */
+        final List<LambdaExpressionTree> declaredLambdas = new ArrayList<>();
+
+        SharedGraph(boolean assumeAssertionsEnabled, boolean assumeAssertionsDisabled) {
+            this.assumeAssertionsEnabled = assumeAssertionsEnabled;
+            this.assumeAssertionsDisabled = assumeAssertionsDisabled;
+        }
+    }
+
+    /** The graph that is being built by {@link #run}. */
+    private SharedGraph current;
+
+    /**
+     * Build the control flow graph of some code, or reuse the graph that another checker built for
+     * the same code if it does not depend on the checker.
+     */
     @Override
     public ControlFlowGraph run(
             CompilationUnitTree root, ProcessingEnvironment env, UnderlyingAST underlyingAST) {
         declaredClasses.clear();
         declaredLambdas.clear();
 
+        ControlFlowGraphCache cache = checker.getControlFlowGraphCache();
+        SharedGraph shared = cache.get(root, underlyingAST);
+        if (shared != null && canReuse(shared)) {
+            for (Map.Entry<Tree, Element> artificialTree : shared.artificialTrees.entrySet()) {
+                factory.setPathHack(artificialTree.getKey(), artificialTree.getValue());
+            }
+            declaredClasses.addAll(shared.declaredClasses);
+            declaredLambdas.addAll(shared.declaredLambdas);
+            cache.recordReuse();
+            return shared.cfg;
+        }
+
+        current = new SharedGraph(assumeAssertionsEnabled, assumeAssertionsDisabled);
         CFTreeBuilder builder = new CFTreeBuilder(env);
         PhaseOneResult phase1result =
                 new CFCFGTranslationPhaseOne()
-                        .process(root, env, underlyingAST, exceptionalExitLabel, builder, factory);
+                        .process(
+                                root,
+                                env,
+                                underlyingAST,
+                                exceptionalExitLabel,
+                                builder,
+                                new RecordingAnnotationProvider(current));
         ControlFlowGraph phase2result = new CFGTranslationPhaseTwo().process(phase1result);
         ControlFlowGraph phase3result = CFGTranslationPhaseThree.process(phase2result);
+
+        current.cfg = phase3result;
+        current.declaredClasses.addAll(declaredClasses);
+        current.declaredLambdas.addAll(declaredLambdas);
+        cache.put(root, current);
+        current = null;
         return phase3result;
     }
 
+    /**
+     * Returns true if building the graph of {@code shared} with this builder would give the same
+     * graph.
+     */
+    private boolean canReuse(SharedGraph shared) {
+        if (shared.assumeAssertionsEnabled != assumeAssertionsEnabled
+                || shared.assumeAssertionsDisabled != assumeAssertionsDisabled) {
+            return false;
+        }
+        for (Map.Entry<AssertTree, Boolean> assertion :
+                shared.assumeAssertionsActivated.entrySet()) {
+            if (assumeAssertionsActivatedForAssertTree(checker, assertion.getKey())
+                    != assertion.getValue()) {
+                return false;
+            }
+        }
+        for (int i = 0; i < shared.declAnnotationQueries.size(); i++) {
+            Pair<Element, Class<? extends Annotation>> query = shared.declAnnotationQueries.get(i);
+            boolean present = factory.getDeclAnnotation(query.first, query.second) != null;
+            if (present != shared.declAnnotationResults.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Looks up annotations with the type factory of the builder, and records the declaration
+     * annotation lookups in a {@link SharedGraph}.
+     */
+    private class RecordingAnnotationProvider implements AnnotationProvider {
+        /** The graph that records the lookups. */
+        private final SharedGraph graph;
+
+        RecordingAnnotationProvider(SharedGraph graph) {
+            this.graph = graph;
+        }
+
+        @Override
+        public AnnotationMirror getDeclAnnotation(Element elt, Class<? extends Annotation> anno) {
+            AnnotationMirror result = factory.getDeclAnnotation(elt, anno);
+            graph.declAnnotationQueries.add(
+                    Pair.<Element, Class<? extends Annotation>>of(elt, anno));
+            graph.declAnnotationResults.add(result != null);
+            return result;
+        }
+
+        @Override
+        public AnnotationMirror getAnnotationMirror(
+                Tree tree, Class<? extends Annotation> target) {
+            // Annotations on trees depend on the checker, so do not share the graph.
+            graph.shareable = false;
+            return factory.getAnnotationMirror(tree, target);
+        }
+    }
+
     /*
      * Given a SourceChecker and an AssertTree, returns whether the AssertTree
      * uses an @AssumeAssertion string that is relevant to the SourceChecker.
@@ -89,7 +237,9 @@ public class CFCFGBuilder extends CFGBuilder {
 
         @Override
         protected boolean assumeAssertionsEnabledFor(AssertTree tree) {
-            if (assumeAssertionsActivatedForAssertTree(checker, tree)) {
+            boolean activated = assumeAssertionsActivatedForAssertTree(checker, tree);
+            current.assumeAssertionsActivated.put(tree, activated);
+            if (activated) {
                 return true;
             }
             return super.assumeAssertionsEnabledFor(tree);
@@ -102,11 +252,13 @@ public class CFCFGBuilder extends CFGBuilder {
             if (enclosingMethod != null) {
                 Element methodElement = TreeUtils.elementFromDeclaration(enclosingMethod);
                 factory.setPathHack(tree, methodElement);
+                current.artificialTrees.put(tree, methodElement);
             } else {
                 ClassTree enclosingClass = TreeUtils.enclosingClass(getCurrentPath());
                 if (enclosingClass != null) {
                     Element classElement = TreeUtils.elementFromDeclaration(enclosingClass);
                     factory.setPathHack(tree, classElement);
+                    current.artificialTrees.put(tree, classElement);
                 }
             }
         }
@@ -114,6 +266,9 @@ public class CFCFGBuilder extends CFGBuilder {
         @Override
         protected VariableTree createEnhancedForLoopIteratorVariable(
                 MethodInvocationTree iteratorCall, VariableElement variableElement) {
+            // The variable has the annotated type of this checker, so the graph cannot be
+            // used by other checkers.
+            current.shareable = false;
             // We do not want to cache flow-insensitive types
             // retrieved during CFG building.
             boolean oldShouldCache = factory.shouldCache;
@@ -138,6 +293,9 @@ public class CFCFGBuilder extends CFGBuilder {
         @Override
         protected VariableTree createEnhancedForLoopArrayVariable(
                 ExpressionTree expression, VariableElement variableElement) {
+            // The variable has the annotated type of this checker, so the graph cannot be
+            // used by other checkers.
+            current.shareable = false;
             // We do not want to cache flow-insensitive types
             // retrieved during CFG building.
             boolean oldShouldCache = factory.shouldCache;
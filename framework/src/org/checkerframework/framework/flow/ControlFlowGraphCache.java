@@ -0,0 +1,92 @@
+package org.checkerframework.framework.flow;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.Tree;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import org.checkerframework.dataflow.cfg.UnderlyingAST;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+/**
+ * The control-flow graphs built for the current compilation unit, shared by a checker and all the
+ * checkers that it calls: the subcheckers of a compound checker and the members of an aggregate
+ * checker. Each of these checkers analyzes the same methods, and most of their control-flow graphs
+ * are identical, so each graph is only built once.
+ *
+ * <p>A graph can depend on the checker that builds it, for example through the {@code
+ * AssumeAssertion} warning keys of the checker. {@link CFCFGBuilder} records these dependencies
+ * with each graph and only reuses a graph if they are the same for the checker that looks it up.
+ *
+ * @see org.checkerframework.framework.source.SourceChecker#getControlFlowGraphCache()
+ */
+public class ControlFlowGraphCache {
+
+    /** The compilation unit that contains the code of the graphs in {@link #graphs}. */
+    private /*@Nullable*/ CompilationUnitTree root = null;
+
+    /** The graphs of the current compilation unit, by the code they represent. */
+    private final Map<Tree, CFCFGBuilder.SharedGraph> graphs = new IdentityHashMap<>();
+
+    /** The number of graphs that were built. */
+    private long built = 0;
+
+    /** The number of times that a graph was reused instead of built. */
+    private long reused = 0;
+
+    /**
+     * Returns the graph for the given code, or null if there is none. Forgets the graphs of other
+     * compilation units.
+     *
+     * @param root the compilation unit that contains the code
+     * @param ast the code
+     * @return the graph for {@code ast}, or null if it has not been built or cannot be shared
+     */
+    /*@Nullable*/ CFCFGBuilder.SharedGraph get(CompilationUnitTree root, UnderlyingAST ast) {
+        setRoot(root);
+        CFCFGBuilder.SharedGraph graph = graphs.get(ast.getCode());
+        if (graph != null && graph.cfg.getUnderlyingAST().getKind() != ast.getKind()) {
+            return null;
+        }
+        return graph;
+    }
+
+    /**
+     * Adds a newly built graph.
+     *
+     * @param root the compilation unit that contains the code of the graph
+     * @param graph the graph
+     */
+    void put(CompilationUnitTree root, CFCFGBuilder.SharedGraph graph) {
+        setRoot(root);
+        built++;
+        if (graph.shareable) {
+            graphs.put(graph.cfg.getUnderlyingAST().getCode(), graph);
+        }
+    }
+
+    /** Records that a graph from this cache was used instead of building a new one. */
+    void recordReuse() {
+        reused++;
+    }
+
+    /** Forgets the graphs of the previous compilation unit if {@code root} is a different one. */
+    private void setRoot(CompilationUnitTree root) {
+        if (this.root != root) {
+            graphs.clear();
+            this.root = root;
+        }
+    }
+
+    /**
+     * Returns a description of how many graphs were built and reused. Used by the -AresourceStats
+     * option.
+     *
+     * @return a one-line description of the number of graphs built and reused
+     */
+    public String getStatistics() {
+        return "control-flow graphs built: " + built + ", reused: " + reused;
+    }
+}
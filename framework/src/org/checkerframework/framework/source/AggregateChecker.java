@@ -123,6 +123,9 @@ public abstract class AggregateChecker extends SourceChecker {
         for (SourceChecker checker : checkers) {
             checker.typeProcessingOver();
         }
+        // The checkers share the caches, statistics, and profile of this checker, which reports
+        // them.
+        super.typeProcessingOver();
     }
 
     @Override
@@ -0,0 +1,482 @@
+package org.checkerframework.framework.source;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.MethodTree;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import org.checkerframework.javacutil.ElementUtils;
+import org.checkerframework.javacutil.ErrorReporter;
+import org.checkerframework.javacutil.TreeUtils;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+/**
+ * Records the time and the memory allocation of type-checking for each top-level class and each
+ * method, split into control-flow graph construction, dataflow analysis, and the checks of the
+ * visitor. Used by the {@code -AprofileCheck} option.
+ *
+ * <p>Every measured piece of work is a frame that is started with {@link #start} and ended with
+ * {@link #stop}. Frames nest, and each frame is charged only for the time and allocation that its
+ * nested frames do not account for: for example, the dataflow analysis that the visitor of a class
+ * triggers is charged to dataflow and not to the visitor.
+ *
+ * <p>Allocation is measured per thread with {@code com.sun.management.ThreadMXBean}; it is
+ * reported as 0 if the JVM does not support that.
+ *
+ * @see SourceChecker#getCheckProfiler()
+ */
+public class CheckProfiler {
+
+    /** A phase of type-checking. */
+    public enum Phase {
+        /** Construction of control-flow graphs. */
+        CFG("CFG construction", "cfg"),
+        /** The fixpoint iteration of dataflow analysis. */
+        DATAFLOW("dataflow", "dataflow"),
+        /** The checks of the visitor, for example BaseTypeVisitor. */
+        VISITOR("visitor", "visitor");
+
+        /** The name of the phase in the report. */
+        final String description;
+
+        /** The name of the phase in the JSON file. */
+        final String key;
+
+        Phase(String description, String key) {
+            this.description = description;
+            this.key = key;
+        }
+    }
+
+    /** The measurements of one member (or the class-level code of a class) for one checker. */
+    private static class Record {
+        /** The simple name of the checker. */
+        final String checker;
+        /** The binary name of the top-level class that contains the member. */
+        final String topLevelClass;
+        /** The name of the member. */
+        final String member;
+        /** The time spent in each phase, in nanoseconds, indexed by {@link Phase#ordinal()}. */
+        final long[] nanos = new long[Phase.values().length];
+        /** The bytes allocated in each phase, indexed by {@link Phase#ordinal()}. */
+        final long[] bytes = new long[Phase.values().length];
+        /** The number of dataflow analyses, for the method and each of its lambdas. */
+        int analyses = 0;
+        /** The number of blocks of all the analyzed control-flow graphs. */
+        long blocks = 0;
+        /** The number of times a block was analyzed, summed over all blocks. */
+        long blockVisits = 0;
+        /** The largest number of times that a single block was analyzed. */
+        int maxBlockVisits = 0;
+
+        Record(String checker, String topLevelClass, String member) {
+            this.checker = checker;
+            this.topLevelClass = topLevelClass;
+            this.member = member;
+        }
+
+        long totalNanos() {
+            long total = 0;
+            for (long n : nanos) {
+                total += n;
+            }
+            return total;
+        }
+
+        long totalBytes() {
+            long total = 0;
+            for (long b : bytes) {
+                total += b;
+            }
+            return total;
+        }
+
+        void add(Record other) {
+            for (int i = 0; i < nanos.length; i++) {
+                nanos[i] += other.nanos[i];
+                bytes[i] += other.bytes[i];
+            }
+            analyses += other.analyses;
+            blocks += other.blocks;
+            blockVisits += other.blockVisits;
+            maxBlockVisits = Math.max(maxBlockVisits, other.maxBlockVisits);
+        }
+    }
+
+    /** A piece of work that is being measured. */
+    private static class Frame {
+        final Phase phase;
+        final Record record;
+        final long startNanos;
+        final long startBytes;
+        /** The time spent in nested frames that have ended. */
+        long nestedNanos = 0;
+        /** The bytes allocated in nested frames that have ended. */
+        long nestedBytes = 0;
+
+        Frame(Phase phase, Record record, long startNanos, long startBytes) {
+            this.phase = phase;
+            this.record = record;
+            this.startNanos = startNanos;
+            this.startBytes = startBytes;
+        }
+    }
+
+    /** Orders records by decreasing total time. */
+    private static final Comparator<Record> BY_TIME =
+            new Comparator<Record>() {
+                @Override
+                public int compare(Record r1, Record r2) {
+                    return Long.compare(r2.totalNanos(), r1.totalNanos());
+                }
+            };
+
+    /** Used to compute binary names. */
+    private final Elements elements;
+
+    /** The file to which {@link #writeReport} writes the JSON report. */
+    private final File jsonFile;
+
+    /** The number of classes and methods to list in the printed report. */
+    private final int topN;
+
+    /** Measures allocation, or null if the JVM cannot. */
+    private final /*@Nullable*/ com.sun.management.ThreadMXBean allocationBean;
+
+    /** The records, by checker and member. */
+    private final Map<String, Record> records = new HashMap<>();
+
+    /** The frames that have started and not ended, innermost first. */
+    private final Deque<Frame> frames = new ArrayDeque<>();
+
+    /** The binary name of the top-level class that is being checked. */
+    private String topLevelClass = "";
+
+    /**
+     * Creates a profiler.
+     *
+     * @param elements the element utilities of the compilation
+     * @param jsonFile the file to which to write the JSON report
+     * @param topN the number of classes and methods to list in the printed report
+     */
+    public CheckProfiler(Elements elements, File jsonFile, int topN) {
+        this.elements = elements;
+        this.jsonFile = jsonFile;
+        this.topN = topN;
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocationBean = null;
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            allocationBean = (com.sun.management.ThreadMXBean) bean;
+            if (!allocationBean.isThreadAllocatedMemorySupported()) {
+                allocationBean = null;
+            } else if (!allocationBean.isThreadAllocatedMemoryEnabled()) {
+                allocationBean.setThreadAllocatedMemoryEnabled(true);
+            }
+        }
+        this.allocationBean = allocationBean;
+    }
+
+    /**
+     * Sets the top-level class that is being checked, to which the following frames belong.
+     *
+     * @param type the top-level class
+     */
+    public void setTopLevelClass(TypeElement type) {
+        topLevelClass = elements.getBinaryName(type).toString();
+    }
+
+    /**
+     * Returns the name under which the code of the given class that is not part of a method is
+     * reported: field initializers, initializer blocks, and the checks of the class declaration.
+     *
+     * @param tree a class
+     * @return the binary name of the class
+     */
+    public String className(ClassTree tree) {
+        return elements.getBinaryName(TreeUtils.elementFromDeclaration(tree)).toString();
+    }
+
+    /**
+     * Returns the name under which the given method is reported.
+     *
+     * @param tree a method
+     * @return the binary name of the class of the method, followed by its signature
+     */
+    public String methodName(MethodTree tree) {
+        ExecutableElement method = TreeUtils.elementFromDeclaration(tree);
+        return elements.getBinaryName(ElementUtils.enclosingClass(method)) + "." + method;
+    }
+
+    /**
+     * Starts measuring a piece of work. Every call must be followed by a call to {@link #stop}
+     * with the returned frame.
+     *
+     * @param phase the phase of the work
+     * @param checker the checker that does the work
+     * @param member the name of the member that the work is for, from {@link #methodName} or
+     *     {@link #className}
+     * @return the frame that represents the work
+     */
+    public Object start(Phase phase, SourceChecker checker, String member) {
+        String checkerName = checker.getClass().getSimpleName();
+        String key = checkerName + ' ' + member;
+        Record record = records.get(key);
+        if (record == null) {
+            record = new Record(checkerName, topLevelClass, member);
+            records.put(key, record);
+        }
+        Frame frame = new Frame(phase, record, System.nanoTime(), allocatedBytes());
+        frames.push(frame);
+        return frame;
+    }
+
+    /**
+     * Stops measuring the given piece of work. Frames nested in it that have not been stopped, for
+     * example because of an exception, are stopped as well.
+     *
+     * @param frame the frame returned by {@link #start}
+     */
+    public void stop(Object frame) {
+        if (!frames.contains(frame)) {
+            ErrorReporter.errorAbort("CheckProfiler.stop: frame is not running");
+        }
+        long nanos = System.nanoTime();
+        long bytes = allocatedBytes();
+        Frame ended;
+        do {
+            ended = frames.pop();
+            long totalNanos = nanos - ended.startNanos;
+            long totalBytes = bytes - ended.startBytes;
+            int phase = ended.phase.ordinal();
+            ended.record.nanos[phase] += totalNanos - ended.nestedNanos;
+            ended.record.bytes[phase] += totalBytes - ended.nestedBytes;
+            Frame outer = frames.peek();
+            if (outer != null) {
+                outer.nestedNanos += totalNanos;
+                outer.nestedBytes += totalBytes;
+            }
+        } while (ended != frame);
+    }
+
+    /**
+     * Records the number of times that the dataflow analysis of the innermost running frame
+     * analyzed each block of its control-flow graph.
+     *
+     * @param visitCounts the number of times each block was analyzed, from {@link
+     *     org.checkerframework.dataflow.analysis.Analysis#getBlockVisitCounts()}
+     */
+    public void recordBlockVisits(int[] visitCounts) {
+        Frame frame = frames.peek();
+        if (frame == null) {
+            ErrorReporter.errorAbort("CheckProfiler.recordBlockVisits: no frame is running");
+            return; // dead code
+        }
+        Record record = frame.record;
+        record.analyses++;
+        record.blocks += visitCounts.length;
+        for (int count : visitCounts) {
+            record.blockVisits += count;
+            record.maxBlockVisits = Math.max(record.maxBlockVisits, count);
+        }
+    }
+
+    /** Returns the number of bytes allocated by the current thread so far, or 0 if unknown. */
+    private long allocatedBytes() {
+        if (allocationBean == null) {
+            return 0;
+        }
+        return allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Prints the classes and methods that took the most time to standard output, writes all
+     * measurements to the JSON file, and then forgets them.
+     */
+    public void writeReport() {
+        List<Record> members = new ArrayList<>(records.values());
+        Collections.sort(members, BY_TIME);
+        Map<String, Record> classMap = new HashMap<>();
+        Record total = new Record("", "", "");
+        for (Record record : members) {
+            Record classRecord = classMap.get(record.topLevelClass);
+            if (classRecord == null) {
+                classRecord = new Record("", record.topLevelClass, record.topLevelClass);
+                classMap.put(record.topLevelClass, classRecord);
+            }
+            classRecord.add(record);
+            total.add(record);
+        }
+        List<Record> classes = new ArrayList<>(classMap.values());
+        Collections.sort(classes, BY_TIME);
+
+        System.out.print(formatReport(total, classes, members));
+        try {
+            writeJson(total, classes, members);
+        } catch (IOException e) {
+            System.out.println(
+                    "-AprofileCheck: cannot write " + jsonFile + ": " + e.getMessage());
+        }
+        records.clear();
+    }
+
+    /** Returns the printed report: the totals per phase and the top classes and methods. */
+    private String formatReport(Record total, List<Record> classes, List<Record> members) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(
+                String.format(
+                        "Check profile: %d ms, %d MB allocated%n",
+                        millis(total.totalNanos()), megabytes(total.totalBytes())));
+        for (Phase phase : Phase.values()) {
+            sb.append(
+                    String.format(
+                            "  %-17s %8d ms %5.1f%% %8d MB%n",
+                            phase.description,
+                            millis(total.nanos[phase.ordinal()]),
+                            percent(total.nanos[phase.ordinal()], total.totalNanos()),
+                            megabytes(total.bytes[phase.ordinal()])));
+        }
+        sb.append(
+                String.format(
+                        "  dataflow: %d analyses, %d blocks, %d block visits%n",
+                        total.analyses, total.blocks, total.blockVisits));
+
+        sb.append(String.format("Top %d top-level classes by time:%n", topN));
+        sb.append(header("class"));
+        for (Record record : classes.subList(0, Math.min(topN, classes.size()))) {
+            sb.append(formatRow(record, record.member));
+        }
+        sb.append(String.format("Top %d methods by time:%n", topN));
+        sb.append(header("checker: method"));
+        for (Record record : members.subList(0, Math.min(topN, members.size()))) {
+            sb.append(formatRow(record, record.checker + ": " + record.member));
+        }
+        return sb.toString();
+    }
+
+    /** The format of a line of the tables of the printed report. */
+    private static final String ROW_FORMAT = "%8s %8s %8s %8s %8s %9s %5s  %s%n";
+
+    private static String header(String name) {
+        return String.format(
+                ROW_FORMAT, "ms", "cfg ms", "flow ms", "visit ms", "MB", "visits", "max", name);
+    }
+
+    private static String formatRow(Record record, String name) {
+        return String.format(
+                ROW_FORMAT,
+                millis(record.totalNanos()),
+                millis(record.nanos[Phase.CFG.ordinal()]),
+                millis(record.nanos[Phase.DATAFLOW.ordinal()]),
+                millis(record.nanos[Phase.VISITOR.ordinal()]),
+                megabytes(record.totalBytes()),
+                record.blockVisits,
+                record.maxBlockVisits,
+                name);
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1000000;
+    }
+
+    private static long megabytes(long bytes) {
+        return bytes / (1024 * 1024);
+    }
+
+    private static double percent(long part, long whole) {
+        return whole == 0 ? 0 : 100.0 * part / whole;
+    }
+
+    /** Writes all measurements to {@link #jsonFile}. */
+    private void writeJson(Record total, List<Record> classes, List<Record> members)
+            throws IOException {
+        try (PrintWriter out =
+                new PrintWriter(
+                        new OutputStreamWriter(
+                                new FileOutputStream(jsonFile), StandardCharsets.UTF_8))) {
+            out.println("{");
+            out.println("  \"allocationMeasured\": " + (allocationBean != null) + ",");
+            out.println("  \"total\": " + jsonRecord(total, false) + ",");
+            writeJsonArray(out, "classes", classes, false);
+            out.println(",");
+            writeJsonArray(out, "methods", members, true);
+            out.println();
+            out.println("}");
+        }
+    }
+
+    private static void writeJsonArray(
+            PrintWriter out, String name, Collection<Record> records, boolean isMember) {
+        out.print("  \"" + name + "\": [");
+        String separator = "\n    ";
+        for (Record record : records) {
+            out.print(separator);
+            out.print(jsonRecord(record, isMember));
+            separator = ",\n    ";
+        }
+        out.print(records.isEmpty() ? "]" : "\n  ]");
+    }
+
+    private static String jsonRecord(Record record, boolean isMember) {
+        StringBuilder sb = new StringBuilder("{");
+        if (isMember) {
+            sb.append("\"checker\": ").append(jsonString(record.checker)).append(", ");
+            sb.append("\"class\": ").append(jsonString(record.topLevelClass)).append(", ");
+            sb.append("\"member\": ").append(jsonString(record.member)).append(", ");
+        } else if (!record.member.isEmpty()) {
+            sb.append("\"class\": ").append(jsonString(record.member)).append(", ");
+        }
+        sb.append("\"nanos\": ").append(jsonPhases(record.nanos)).append(", ");
+        sb.append("\"bytes\": ").append(jsonPhases(record.bytes)).append(", ");
+        sb.append("\"analyses\": ").append(record.analyses).append(", ");
+        sb.append("\"blocks\": ").append(record.blocks).append(", ");
+        sb.append("\"blockVisits\": ").append(record.blockVisits).append(", ");
+        sb.append("\"maxBlockVisits\": ").append(record.maxBlockVisits);
+        return sb.append("}").toString();
+    }
+
+    private static String jsonPhases(long[] values) {
+        StringBuilder sb = new StringBuilder("{");
+        long total = 0;
+        for (Phase phase : Phase.values()) {
+            long value = values[phase.ordinal()];
+            sb.append('"').append(phase.key).append("\": ").append(value).append(", ");
+            total += value;
+        }
+        return sb.append("\"total\": ").append(total).append("}").toString();
+    }
+
+    private static String jsonString(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -0,0 +1,579 @@
+package org.checkerframework.framework.source;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.SourcePositions;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+import com.sun.tools.javac.code.Attribute;
+import com.sun.tools.javac.code.Symbol;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import org.checkerframework.javacutil.ErrorReporter;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+/**
+ * A cache of the diagnostics that a checker issued for each top-level class, which persists between
+ * compilations. It is enabled by the {@code -AresultCache=file} command-line option.
+ *
+ * <p>For each top-level class, the cache records the diagnostics issued for the class, a hash of
+ * the source code of its compilation unit, and a fingerprint of every type whose elements the
+ * checker looked up through the {@link
+ * org.checkerframework.framework.type.AnnotatedTypeFactory}. The fingerprint of a type from source
+ * code is a hash of its compilation unit; the fingerprint of a type from a class file is a hash of
+ * the signatures and annotations of its members. If none of these changed, and the checker was run
+ * with the same options, the cached diagnostics are reissued and the class is not type-checked
+ * again.
+ *
+ * <p>Stub files that are part of the checker are covered by a fingerprint of the checker's jar
+ * file, and stub files passed with {@code -Astubs} by their modification time. Information that a
+ * checker obtains without going through the AnnotatedTypeFactory, such as the bodies of other
+ * classes, is not tracked.
+ *
+ * <p>Only the checker that is run by the compiler (not a subchecker) has a cache; see {@link
+ * SourceChecker#getResultCache()}.
+ */
+public class ResultCache {
+
+    /** A diagnostic issued for a class, with the position of the tree or element it is about. */
+    private static class CachedMessage implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final Diagnostic.Kind kind;
+        final String message;
+        /** The start position of the tree, in the compilation unit. */
+        final long start;
+        /** The end position of the tree, in the compilation unit. */
+        final long end;
+        /** The kind of the tree, to tell apart trees with the same positions. */
+        final Tree.Kind treeKind;
+        /** True if the message was issued for the element declared by the tree. */
+        final boolean onElement;
+
+        CachedMessage(
+                Diagnostic.Kind kind,
+                String message,
+                long start,
+                long end,
+                Tree.Kind treeKind,
+                boolean onElement) {
+            this.kind = kind;
+            this.message = message;
+            this.start = start;
+            this.end = end;
+            this.treeKind = treeKind;
+            this.onElement = onElement;
+        }
+
+        /** Returns the key of the tree in the map built by {@link #treesByPosition}. */
+        String positionKey() {
+            return positionKey(start, end, treeKind);
+        }
+
+        static String positionKey(long start, long end, Tree.Kind treeKind) {
+            return start + ":" + end + ":" + treeKind;
+        }
+    }
+
+    /** The cached results for a top-level class. */
+    private static class CachedClass implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        /** The hash of the options and of the checker; see {@link #configurationHash}. */
+        final String configurationHash;
+        /** The hash of the source code of the compilation unit of the class. */
+        final String sourceHash;
+        /** The fingerprints of the types that the class depends on, by qualified name. */
+        final Map<String, String> dependencies;
+        /** The diagnostics issued for the class, in the order in which they were issued. */
+        final List<CachedMessage> messages;
+
+        CachedClass(
+                String configurationHash,
+                String sourceHash,
+                Map<String, String> dependencies,
+                List<CachedMessage> messages) {
+            this.configurationHash = configurationHash;
+            this.sourceHash = sourceHash;
+            this.dependencies = dependencies;
+            this.messages = messages;
+        }
+    }
+
+    /** The file that stores the cache. */
+    private final File file;
+
+    /** The checker that owns the cache. */
+    private final SourceChecker checker;
+
+    private final ProcessingEnvironment env;
+    private final Trees trees;
+
+    /** The hash of the options and of the checker; see {@link #configurationHash}. */
+    private final String configurationHash;
+
+    /** The cache entries, by {@link #key}. Read from {@link #file} when first needed. */
+    private /*@Nullable*/ Map<String, CachedClass> entries = null;
+
+    /** The entries that were added in this compilation and have not been saved yet. */
+    private final Map<String, CachedClass> updatedEntries = new HashMap<>();
+
+    /** The source hashes of the compilation units seen in this compilation. */
+    private final Map<CompilationUnitTree, String> sourceHashes = new IdentityHashMap<>();
+
+    /** The key of the class whose results are being recorded, or null if none is. */
+    private /*@Nullable*/ String recordingKey = null;
+
+    /** The compilation unit of the class whose results are being recorded. */
+    private /*@Nullable*/ CompilationUnitTree recordingRoot = null;
+
+    /** The diagnostics issued for the class whose results are being recorded. */
+    private final List<CachedMessage> recordedMessages = new ArrayList<>();
+
+    /** The types that the class whose results are being recorded depends on. */
+    private final Set<TypeElement> recordedDependencies = new HashSet<>();
+
+    /** False if the results of the class that is being recorded cannot be cached. */
+    private boolean recordingCacheable = false;
+
+    /**
+     * Creates a result cache for {@code checker}.
+     *
+     * @param checker the checker that is run by the compiler
+     * @param file the file that stores the cache; it need not exist
+     */
+    public ResultCache(SourceChecker checker, File file) {
+        this.checker = checker;
+        this.file = file;
+        this.env = checker.getProcessingEnvironment();
+        this.trees = Trees.instance(env);
+        this.configurationHash = configurationHash();
+    }
+
+    /** Returns the key of the cache entry of {@code element}. */
+    private String key(TypeElement element) {
+        return checker.getClass().getName() + " " + element.getQualifiedName();
+    }
+
+    /**
+     * Reissues the cached diagnostics for a top-level class, if the class and its dependencies
+     * have not changed since they were cached.
+     *
+     * @param element the class
+     * @param path the path to the class
+     * @return true if the cached diagnostics were reissued, in which case the class need not be
+     *     type-checked
+     */
+    public boolean replay(TypeElement element, TreePath path) {
+        CachedClass cached = getEntries().get(key(element));
+        if (cached == null
+                || !cached.configurationHash.equals(configurationHash)
+                || !cached.sourceHash.equals(sourceHash(path.getCompilationUnit()))) {
+            return false;
+        }
+        for (Map.Entry<String, String> dependency : cached.dependencies.entrySet()) {
+            TypeElement type = env.getElementUtils().getTypeElement(dependency.getKey());
+            if (type == null || !dependency.getValue().equals(fingerprint(type))) {
+                return false;
+            }
+        }
+
+        CompilationUnitTree root = path.getCompilationUnit();
+        Map<String, TreePath> paths = cached.messages.isEmpty() ? null : treesByPosition(root);
+        List<TreePath> messagePaths = new ArrayList<>(cached.messages.size());
+        for (CachedMessage message : cached.messages) {
+            TreePath messagePath = paths.get(message.positionKey());
+            if (messagePath == null) {
+                return false;
+            }
+            messagePaths.add(messagePath);
+        }
+        for (int i = 0; i < cached.messages.size(); i++) {
+            CachedMessage message = cached.messages.get(i);
+            TreePath messagePath = messagePaths.get(i);
+            Element messageElement = message.onElement ? trees.getElement(messagePath) : null;
+            if (messageElement != null) {
+                env.getMessager().printMessage(message.kind, message.message, messageElement);
+            } else {
+                trees.printMessage(message.kind, message.message, messagePath.getLeaf(), root);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Starts recording the results of type-checking a top-level class.
+     *
+     * @param element the class
+     * @param path the path to the class
+     */
+    public void startRecording(TypeElement element, TreePath path) {
+        recordingKey = key(element);
+        recordingRoot = path.getCompilationUnit();
+        recordingCacheable = true;
+        recordedMessages.clear();
+        recordedDependencies.clear();
+    }
+
+    /**
+     * Stops recording the results of type-checking a top-level class, and caches them unless they
+     * are incomplete.
+     *
+     * @param errorCount the number of errors that the compiler reported while the class was
+     *     type-checked. If it differs from the number of recorded errors, then some errors (such as
+     *     Java errors or crashes) were not recorded, and the results are not cached.
+     */
+    public void stopRecording(int errorCount) {
+        if (recordingKey == null) {
+            return;
+        }
+        int recordedErrors = 0;
+        for (CachedMessage message : recordedMessages) {
+            if (message.kind == Diagnostic.Kind.ERROR) {
+                recordedErrors++;
+            }
+        }
+        String sourceHash = sourceHash(recordingRoot);
+        if (recordingCacheable && recordedErrors == errorCount && sourceHash != null) {
+            Map<String, String> dependencies = new TreeMap<>();
+            for (TypeElement dependency : recordedDependencies) {
+                String fingerprint = fingerprint(dependency);
+                if (fingerprint == null) {
+                    recordingCacheable = false;
+                    break;
+                }
+                dependencies.put(dependency.getQualifiedName().toString(), fingerprint);
+            }
+            if (recordingCacheable) {
+                CachedClass cached =
+                        new CachedClass(
+                                configurationHash,
+                                sourceHash,
+                                dependencies,
+                                new ArrayList<>(recordedMessages));
+                getEntries().put(recordingKey, cached);
+                updatedEntries.put(recordingKey, cached);
+            }
+        }
+        recordingKey = null;
+        recordingRoot = null;
+        recordedMessages.clear();
+        recordedDependencies.clear();
+    }
+
+    /**
+     * Records that the class being type-checked depends on {@code elt}.
+     *
+     * @param elt an element that was looked up by the AnnotatedTypeFactory
+     */
+    public void addDependency(Element elt) {
+        if (recordingKey == null) {
+            return;
+        }
+        Element topLevel = elt;
+        while (topLevel.getEnclosingElement() != null
+                && topLevel.getEnclosingElement().getKind() != ElementKind.PACKAGE) {
+            topLevel = topLevel.getEnclosingElement();
+        }
+        if (topLevel instanceof TypeElement) {
+            recordedDependencies.add((TypeElement) topLevel);
+        }
+    }
+
+    /**
+     * Records a diagnostic about a tree.
+     *
+     * @param kind the kind of the diagnostic
+     * @param message the text of the diagnostic
+     * @param source the tree that the diagnostic is about
+     * @param root the compilation unit of {@code source}
+     */
+    public void recordMessage(
+            Diagnostic.Kind kind, String message, Tree source, CompilationUnitTree root) {
+        recordMessage(kind, message, source, root, false);
+    }
+
+    /**
+     * Records a diagnostic about an element.
+     *
+     * @param kind the kind of the diagnostic
+     * @param message the text of the diagnostic
+     * @param source the element that the diagnostic is about
+     */
+    public void recordMessage(Diagnostic.Kind kind, String message, Element source) {
+        if (recordingKey == null) {
+            return;
+        }
+        TreePath path = trees.getPath(source);
+        if (path == null) {
+            recordingCacheable = false;
+            return;
+        }
+        recordMessage(kind, message, path.getLeaf(), path.getCompilationUnit(), true);
+    }
+
+    private void recordMessage(
+            Diagnostic.Kind kind,
+            String message,
+            Tree source,
+            CompilationUnitTree root,
+            boolean onElement) {
+        if (recordingKey == null) {
+            return;
+        }
+        SourcePositions positions = trees.getSourcePositions();
+        long start = positions.getStartPosition(root, source);
+        long end = positions.getEndPosition(root, source);
+        if (root != recordingRoot || start < 0) {
+            recordingCacheable = false;
+            return;
+        }
+        recordedMessages.add(
+                new CachedMessage(kind, message, start, end, source.getKind(), onElement));
+    }
+
+    /** Prevents the results of the class that is being type-checked from being cached. */
+    public void recordFailure() {
+        recordingCacheable = false;
+    }
+
+    /** Maps the trees in {@code root} to their paths, by {@link CachedMessage#positionKey}. */
+    private Map<String, TreePath> treesByPosition(final CompilationUnitTree root) {
+        final SourcePositions positions = trees.getSourcePositions();
+        final Map<String, TreePath> result = new HashMap<>();
+        new TreePathScanner<Void, Void>() {
+            @Override
+            public Void scan(Tree tree, Void p) {
+                if (tree != null) {
+                    String key =
+                            CachedMessage.positionKey(
+                                    positions.getStartPosition(root, tree),
+                                    positions.getEndPosition(root, tree),
+                                    tree.getKind());
+                    if (!result.containsKey(key)) {
+                        result.put(key, new TreePath(getCurrentPath(), tree));
+                    }
+                }
+                return super.scan(tree, p);
+            }
+        }.scan(root, null);
+        return result;
+    }
+
+    /** Returns the hash of the source code of {@code root}, or null if it cannot be read. */
+    private /*@Nullable*/ String sourceHash(CompilationUnitTree root) {
+        if (sourceHashes.containsKey(root)) {
+            return sourceHashes.get(root);
+        }
+        String hash;
+        try {
+            hash = hash(root.getSourceFile().getCharContent(true));
+        } catch (IOException e) {
+            hash = null;
+        }
+        sourceHashes.put(root, hash);
+        return hash;
+    }
+
+    /**
+     * Returns the fingerprint of a top-level type: the source hash of its compilation unit if it
+     * is compiled from source, otherwise a hash of the signatures and annotations of its members.
+     */
+    private /*@Nullable*/ String fingerprint(TypeElement type) {
+        TreePath path = trees.getPath(type);
+        if (path != null) {
+            String sourceHash = sourceHash(path.getCompilationUnit());
+            return sourceHash == null ? null : "source " + sourceHash;
+        }
+        StringBuilder signature = new StringBuilder();
+        appendSignature(signature, type);
+        return "class " + hash(signature);
+    }
+
+    /** Appends the signature and annotations of {@code elt} and of its members to {@code sb}. */
+    private static void appendSignature(StringBuilder sb, Element elt) {
+        sb.append(elt.getKind())
+                .append(' ')
+                .append(elt.getModifiers())
+                .append(' ')
+                .append(elt)
+                .append(' ')
+                .append(elt.asType())
+                .append(' ')
+                .append(elt.getAnnotationMirrors());
+        if (elt instanceof Symbol) {
+            // For a type from a class file, neither asType() nor getAnnotationMirrors() contains
+            // the type annotations, such as those on the return type of a method.
+            for (Attribute.TypeCompound anno : ((Symbol) elt).getRawTypeAttributes()) {
+                sb.append(' ').append(anno).append(' ').append(anno.position);
+            }
+        }
+        if (elt instanceof VariableElement) {
+            sb.append(" = ").append(((VariableElement) elt).getConstantValue());
+        } else if (elt instanceof ExecutableElement) {
+            ExecutableElement method = (ExecutableElement) elt;
+            appendTypeParameters(sb, method.getTypeParameters());
+            for (VariableElement param : method.getParameters()) {
+                sb.append(" param ").append(param.getAnnotationMirrors());
+            }
+            sb.append(" receiver ").append(method.getReceiverType());
+        } else if (elt instanceof TypeElement) {
+            TypeElement type = (TypeElement) elt;
+            appendTypeParameters(sb, type.getTypeParameters());
+            sb.append(" extends ").append(type.getSuperclass());
+            for (TypeMirror iface : type.getInterfaces()) {
+                sb.append(" implements ").append(iface);
+            }
+        }
+        sb.append('\n');
+        if (elt instanceof TypeElement) {
+            for (Element member : elt.getEnclosedElements()) {
+                appendSignature(sb, member);
+            }
+        }
+    }
+
+    private static void appendTypeParameters(
+            StringBuilder sb, List<? extends TypeParameterElement> typeParameters) {
+        for (TypeParameterElement typeParameter : typeParameters) {
+            sb.append(" <")
+                    .append(typeParameter)
+                    .append(typeParameter.getAnnotationMirrors())
+                    .append(" extends ")
+                    .append(typeParameter.getBounds())
+                    .append('>');
+        }
+    }
+
+    /**
+     * Returns a hash of everything other than the source code that affects the results of the
+     * checker: the checker, its options, the jar file that contains the Checker Framework, and the
+     * stub files passed with {@code -Astubs}.
+     */
+    private String configurationHash() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(checker.getClass().getName()).append('\n');
+        sb.append(new TreeMap<>(env.getOptions())).append('\n');
+        CodeSource codeSource = ResultCache.class.getProtectionDomain().getCodeSource();
+        URL location = codeSource == null ? null : codeSource.getLocation();
+        if (location != null && "file".equals(location.getProtocol())) {
+            appendFileStamp(sb, new File(location.getPath()));
+        }
+        String stubs = checker.getOption("stubs");
+        if (stubs != null) {
+            for (String stub : stubs.split(File.pathSeparator)) {
+                appendFileStamp(sb, new File(stub));
+            }
+        }
+        return hash(sb);
+    }
+
+    private static void appendFileStamp(StringBuilder sb, File f) {
+        sb.append(f).append(' ').append(f.lastModified()).append(' ').append(f.length());
+        sb.append('\n');
+    }
+
+    /** Returns a hex-encoded SHA-256 hash of {@code s}. */
+    private static String hash(CharSequence s) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            ErrorReporter.errorAbort("ResultCache: SHA-256 is not available", e);
+            return null; // dead code
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest(s.toString().getBytes(StandardCharsets.UTF_8))) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /** Returns the cache entries, reading them from {@link #file} if necessary. */
+    private Map<String, CachedClass> getEntries() {
+        if (entries == null) {
+            entries = read();
+        }
+        return entries;
+    }
+
+    /**
+     * Reads the cache entries from {@link #file}. Returns an empty map if the file does not exist
+     * or cannot be read; the cache is then rebuilt.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, CachedClass> read() {
+        if (!file.exists()) {
+            return new HashMap<>();
+        }
+        try (ObjectInputStream in =
+                new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return (Map<String, CachedClass>) in.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * Writes the entries that were added in this compilation to {@link #file}. Entries that were
+     * written to the file by other compilations in the meantime are kept.
+     */
+    public void save() {
+        if (updatedEntries.isEmpty()) {
+            return;
+        }
+        Map<String, CachedClass> merged = read();
+        merged.putAll(updatedEntries);
+        File dir = file.getAbsoluteFile().getParentFile();
+        try {
+            if (dir != null) {
+                dir.mkdirs();
+            }
+            File tmp = File.createTempFile("resultcache", ".tmp", dir);
+            try (ObjectOutputStream out =
+                    new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeObject(merged);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            updatedEntries.clear();
+        } catch (IOException e) {
+            checker.message(
+                    Diagnostic.Kind.WARNING, "Could not write result cache %s: %s", file, e);
+        }
+    }
+}
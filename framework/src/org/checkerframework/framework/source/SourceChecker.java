@@ -16,6 +16,7 @@ import com.sun.source.util.Trees;
 import com.sun.tools.javac.processing.JavacProcessingEnvironment;
 import com.sun.tools.javac.util.Context;
 import com.sun.tools.javac.util.Log;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.management.ManagementFactory;
@@ -48,6 +49,7 @@ import javax.lang.model.util.Types;
 import javax.tools.Diagnostic;
 import javax.tools.Diagnostic.Kind;
 import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.framework.flow.ControlFlowGraphCache;
 import org.checkerframework.framework.qual.AnnotatedFor;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
 import org.checkerframework.framework.util.CFContext;
@@ -56,6 +58,7 @@ import org.checkerframework.framework.util.OptionConfiguration;
 import org.checkerframework.javacutil.AbstractTypeProcessor;
 import org.checkerframework.javacutil.AnnotationProvider;
 import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.CacheStatistics;
 import org.checkerframework.javacutil.ElementUtils;
 import org.checkerframework.javacutil.ErrorHandler;
 import org.checkerframework.javacutil.ErrorReporter;
@@ -310,8 +313,28 @@ import org.checkerframework.javacutil.TreeUtils;
     // Set the cache size for caches in AnnotatedTypeFactory
     "atfCacheSize",
 
-    // Sets AnnotatedTypeFactory shouldCache to false
-    "atfDoNotCache"
+    // Sets AnnotatedTypeFactory shouldCache to false and disables the subtype cache of
+    // DefaultTypeHierarchy
+    "atfDoNotCache",
+
+    // Whether dataflow stores keep their information in persistent (structurally shared) maps,
+    // which makes copying a store cheap for large methods
+    // org.checkerframework.framework.flow.CFAbstractAnalysis.usePersistentStores()
+    "persistentStores",
+
+    // File in which to cache the diagnostics of each class between compilations; classes whose
+    // source and dependencies did not change are not type-checked again
+    // org.checkerframework.framework.source.ResultCache
+    "resultCache",
+
+    // Whether to measure the time and allocation of CFG construction, dataflow analysis, and the
+    // visitor for each class and method, and report the slowest ones at the end of the
+    // compilation. The optional value is the JSON file for all measurements.
+    // org.checkerframework.framework.source.CheckProfiler
+    "profileCheck",
+
+    // The number of classes and methods listed by -AprofileCheck; the default is 20
+    "profileCheckTop"
 })
 public abstract class SourceChecker extends AbstractTypeProcessor
         implements ErrorHandler, CFContext, OptionConfiguration {
@@ -421,6 +444,30 @@ public abstract class SourceChecker extends AbstractTypeProcessor
      */
     protected SourceChecker parentChecker = null;
 
+    /**
+     * The cache of results between compilations, or null if there is none. Only set for the checker
+     * that calls all others; use {@link #getResultCache()}.
+     */
+    private /*@Nullable*/ ResultCache resultCache = null;
+
+    /** True if {@link #resultCache} has been initialized. */
+    private boolean resultCacheInitialized = false;
+
+    /**
+     * The control-flow graphs shared by this checker and the checkers that it calls. Only set for
+     * the checker that calls all others; use {@link #getControlFlowGraphCache()}.
+     */
+    private /*@Nullable*/ ControlFlowGraphCache controlFlowGraphCache = null;
+
+    /**
+     * The profiler shared by this checker and the checkers that it calls, or null if there is
+     * none. Only set for the checker that calls all others; use {@link #getCheckProfiler()}.
+     */
+    private /*@Nullable*/ CheckProfiler checkProfiler = null;
+
+    /** True if {@link #checkProfiler} has been initialized. */
+    private boolean checkProfilerInitialized = false;
+
     /** List of upstream checker names. Includes the current checker. */
     protected List<String> upstreamCheckerNames = null;
 
@@ -466,6 +513,76 @@ public abstract class SourceChecker extends AbstractTypeProcessor
         return upstreamCheckerNames;
     }
 
+    /**
+     * Returns the cache of results between compilations, which is shared by this checker and the
+     * checkers that it calls. Returns null unless the {@code -AresultCache} command-line option is
+     * given.
+     *
+     * @return the cache of results between compilations, or null
+     */
+    public /*@Nullable*/ ResultCache getResultCache() {
+        if (parentChecker != null) {
+            return parentChecker.getResultCache();
+        }
+        if (!resultCacheInitialized && processingEnv != null) {
+            resultCacheInitialized = true;
+            String file = getOption("resultCache");
+            if (file != null) {
+                resultCache = new ResultCache(this, new File(file));
+            }
+        }
+        return resultCache;
+    }
+
+    /**
+     * Returns the control-flow graphs of the current compilation unit, which are shared by this
+     * checker and the checkers that it calls.
+     *
+     * @return the cache of control-flow graphs
+     */
+    public ControlFlowGraphCache getControlFlowGraphCache() {
+        if (parentChecker != null) {
+            return parentChecker.getControlFlowGraphCache();
+        }
+        if (controlFlowGraphCache == null) {
+            controlFlowGraphCache = new ControlFlowGraphCache();
+        }
+        return controlFlowGraphCache;
+    }
+
+    /**
+     * Returns the profiler shared by this checker and the checkers that it calls. Returns null
+     * unless the {@code -AprofileCheck} command-line option is given.
+     *
+     * @return the profiler, or null
+     */
+    public /*@Nullable*/ CheckProfiler getCheckProfiler() {
+        if (parentChecker != null) {
+            return parentChecker.getCheckProfiler();
+        }
+        if (!checkProfilerInitialized && processingEnv != null) {
+            checkProfilerInitialized = true;
+            if (hasOption("profileCheck")) {
+                String file = getOption("profileCheck");
+                int topN = 20;
+                String top = getOption("profileCheckTop");
+                if (top != null) {
+                    try {
+                        topN = Integer.parseInt(top);
+                    } catch (NumberFormatException e) {
+                        userErrorAbort("-AprofileCheckTop must be a number, not " + top);
+                    }
+                }
+                checkProfiler =
+                        new CheckProfiler(
+                                processingEnv.getElementUtils(),
+                                new File(file == null ? "check-profile.json" : file),
+                                topN);
+            }
+        }
+        return checkProfiler;
+    }
+
     /** @return the {@link CFContext} used by this checker */
     public CFContext getContext() {
         return this;
@@ -750,6 +867,9 @@ public abstract class SourceChecker extends AbstractTypeProcessor
     }
 
     private void logCheckerError(CheckerError ce) {
+        if (processingEnv != null && getResultCache() != null) {
+            getResultCache().recordFailure();
+        }
         if (ce.getMessage() == null) {
             final String stackTrace = formatStackTrace(ce.getStackTrace());
             ErrorReporter.errorAbort(
@@ -810,6 +930,8 @@ public abstract class SourceChecker extends AbstractTypeProcessor
     public void typeProcessingStart() {
         try {
             super.typeProcessingStart();
+            // Before initChecker, which creates the caches of the type factories.
+            CacheStatistics.setEnabled(hasOption("resourceStats"));
             initChecker();
             if (this.messager == null) {
                 messager = processingEnv.getMessager();
@@ -864,7 +986,7 @@ public abstract class SourceChecker extends AbstractTypeProcessor
      * of the JVM.
      */
     protected boolean shouldAddShutdownHook() {
-        return hasOption("resourceStats");
+        return hasOption("resourceStats") || hasOption("resultCache");
     }
 
     /**
@@ -878,6 +1000,11 @@ public abstract class SourceChecker extends AbstractTypeProcessor
             // call the super implementations.
             printStats();
         }
+        // typeProcessingOver is not called if there are errors, so save the results here.
+        ResultCache resultCache = getResultCache();
+        if (resultCache != null) {
+            resultCache.save();
+        }
     }
 
     /** Print resource usage statistics */
@@ -890,6 +1017,25 @@ public abstract class SourceChecker extends AbstractTypeProcessor
         }
     }
 
+    @Override
+    public void typeProcessingOver() {
+        ResultCache resultCache = getResultCache();
+        if (parentChecker == null && resultCache != null) {
+            resultCache.save();
+        }
+        if (parentChecker == null && hasOption("resourceStats")) {
+            if (controlFlowGraphCache != null) {
+                System.out.println(controlFlowGraphCache.getStatistics());
+            }
+            System.out.print(CacheStatistics.formatTable());
+            CacheStatistics.resetAll();
+        }
+        if (parentChecker == null && checkProfiler != null) {
+            checkProfiler.writeReport();
+        }
+        super.typeProcessingOver();
+    }
+
     /** Output the warning about source level at most once. */
     private boolean warnedAboutSourceLevel = false;
 
@@ -965,6 +1111,17 @@ public abstract class SourceChecker extends AbstractTypeProcessor
         }
 
         // Visit the attributed tree.
+        CheckProfiler profiler = getCheckProfiler();
+        Object profileFrame = null;
+        if (profiler != null) {
+            profiler.setTopLevelClass(e);
+            // Work on the class that is not part of a method is charged to the class itself.
+            profileFrame =
+                    profiler.start(
+                            CheckProfiler.Phase.VISITOR,
+                            this,
+                            processingEnv.getElementUtils().getBinaryName(e).toString());
+        }
         try {
             visitor.visit(p);
         } catch (CheckerError ce) {
@@ -972,6 +1129,9 @@ public abstract class SourceChecker extends AbstractTypeProcessor
         } catch (Throwable t) {
             logCheckerError(wrapThrowableAsCheckerError("SourceChecker.typeProcess", t, p));
         } finally {
+            if (profiler != null) {
+                profiler.stop(profileFrame);
+            }
             // Also add possibly deferred diagnostics, which will get published back in
             // AbstractTypeProcessor.
             this.errsOnLastExit = log.nerrors;
@@ -1174,6 +1334,10 @@ public abstract class SourceChecker extends AbstractTypeProcessor
 
         if (source instanceof Element) {
             messager.printMessage(kind, messageText, (Element) source);
+            ResultCache resultCache = getResultCache();
+            if (resultCache != null) {
+                resultCache.recordMessage(kind, messageText, (Element) source);
+            }
         } else if (source instanceof Tree) {
             printMessage(kind, messageText, (Tree) source, currentRoot);
         } else {
@@ -1189,6 +1353,10 @@ public abstract class SourceChecker extends AbstractTypeProcessor
     protected void printMessage(
             Diagnostic.Kind kind, String message, Tree source, CompilationUnitTree root) {
         Trees.instance(processingEnv).printMessage(kind, message, source, root);
+        ResultCache resultCache = getResultCache();
+        if (resultCache != null) {
+            resultCache.recordMessage(kind, message, source, root);
+        }
     }
 
     /**
@@ -43,8 +43,15 @@ import com.github.javaparser.ast.type.ReferenceType;
 import com.github.javaparser.ast.type.Type;
 import com.github.javaparser.ast.type.TypeParameter;
 import com.github.javaparser.ast.type.WildcardType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -76,6 +83,7 @@ import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedWildcard
 import org.checkerframework.framework.type.visitor.AnnotatedTypeMerger;
 import org.checkerframework.javacutil.AnnotationBuilder;
 import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ElementUtils;
 import org.checkerframework.javacutil.ErrorReporter;
 import org.checkerframework.javacutil.Pair;
@@ -105,7 +113,23 @@ public class StubParser {
     /** The file being parsed (makes error messages more informative). */
     private final String filename;
 
+    /**
+     * The parsed stub file. It may be shared with other StubParsers (see {@link
+     * #parsedStubUnits}), so it must not be modified.
+     */
     private final StubUnit stubUnit;
+
+    /** The maximum number of parsed stub files to retain in {@link #parsedStubUnits}. */
+    private static final int PARSED_STUB_UNITS_CACHE_SIZE = 100;
+
+    /**
+     * Parsed stub files, keyed by a hash of their contents. A stub file that is read by several
+     * checkers (such as flow.astub, which is read by every subchecker of a compound checker) or by
+     * several compilations in the same JVM is parsed only once. The values are soft references, so
+     * the garbage collector may reclaim them when memory is low. Guarded by itself.
+     */
+    private static final Map<String, SoftReference<StubUnit>> parsedStubUnits =
+            CollectionUtils.createLRUCache(PARSED_STUB_UNITS_CACHE_SIZE);
     private final ProcessingEnvironment processingEnv;
     private final AnnotatedTypeFactory atypeFactory;
     private final Elements elements;
@@ -175,7 +199,7 @@ public class StubParser {
         }
         StubUnit parsedStubUnit;
         try {
-            parsedStubUnit = JavaParser.parseStubUnit(inputStream);
+            parsedStubUnit = parseStubUnit(inputStream);
         } catch (ParseProblemException e) {
             StringBuilder message =
                     new StringBuilder(
@@ -220,6 +244,59 @@ public class StubParser {
         this.fromStubFile = AnnotationBuilder.fromClass(elements, FromStubFile.class);
     }
 
+    /**
+     * Parses the stub file in {@code inputStream}, or returns the result of parsing a stub file
+     * with the same contents earlier in this JVM.
+     *
+     * @param inputStream the stub file
+     * @return the parsed stub file
+     * @throws IOException if the stub file cannot be read
+     * @throws ParseProblemException if the stub file cannot be parsed
+     */
+    private static StubUnit parseStubUnit(InputStream inputStream) throws IOException {
+        byte[] contents = readAllBytes(inputStream);
+        String key = contentHash(contents);
+        synchronized (parsedStubUnits) {
+            SoftReference<StubUnit> ref = parsedStubUnits.get(key);
+            StubUnit cached = ref == null ? null : ref.get();
+            if (cached != null) {
+                return cached;
+            }
+        }
+        // Parsing failures are not cached, so that every checker reports them.
+        StubUnit parsed = JavaParser.parseStubUnit(new ByteArrayInputStream(contents));
+        synchronized (parsedStubUnits) {
+            parsedStubUnits.put(key, new SoftReference<>(parsed));
+        }
+        return parsed;
+    }
+
+    private static byte[] readAllBytes(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /** Returns a hex-encoded SHA-256 hash of {@code contents}. */
+    private static String contentHash(byte[] contents) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            ErrorReporter.errorAbort("StubParser: SHA-256 is not available", e);
+            return null; // dead code
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest(contents)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
     /** All annotations defined in the package. Keys are simple names. */
     private Map<String, AnnotationMirror> annosInPackage(PackageElement packageElement) {
         return createImportedAnnotationsMap(
@@ -386,6 +463,55 @@ public class StubParser {
         parse(this.stubUnit, atypes, declAnnos);
     }
 
+    /**
+     * Parses the package annotations of the stub file, and adds its type declarations to {@code
+     * index}, which parses them on demand. Side-effects the arguments.
+     *
+     * @param index the index of unparsed type declarations
+     * @param declAnnos declaration annotations from the stub files
+     */
+    public void index(StubTypeIndex index, Map<String, Set<AnnotationMirror>> declAnnos) {
+        if (stubUnit == null) {
+            // stubUnit is null if there was a problem parsing the astub file
+            return;
+        }
+        for (CompilationUnit cu : stubUnit.getCompilationUnits()) {
+            String packageName = null;
+            if (cu.getPackageDeclaration().isPresent()) {
+                packageName = cu.getPackageDeclaration().get().getNameAsString();
+                theCompilationUnit = cu;
+                parsePackage(cu.getPackageDeclaration().get(), null, declAnnos);
+            }
+            if (cu.getTypes() != null) {
+                for (TypeDeclaration<?> typeDeclaration : cu.getTypes()) {
+                    String typeName =
+                            (packageName == null ? "" : packageName + ".")
+                                    + typeDeclaration.getNameAsString();
+                    index.add(this, cu, typeName, typeDeclaration);
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses a top-level type declaration that was added to a {@link StubTypeIndex} by {@link
+     * #index}. Side-effects the arguments.
+     */
+    void parse(
+            CompilationUnit cu,
+            TypeDeclaration<?> typeDecl,
+            Map<Element, AnnotatedTypeMirror> atypes,
+            Map<String, Set<AnnotationMirror>> declAnnos) {
+        theCompilationUnit = cu;
+        String packageName = null;
+        List<AnnotationExpr> packageAnnos = null;
+        if (cu.getPackageDeclaration().isPresent()) {
+            packageName = cu.getPackageDeclaration().get().getNameAsString();
+            packageAnnos = cu.getPackageDeclaration().get().getAnnotations();
+        }
+        parse(typeDecl, packageName, packageAnnos, atypes, declAnnos);
+    }
+
     private void parse(
             StubUnit index,
             Map<Element, AnnotatedTypeMirror> atypes,
@@ -660,21 +786,20 @@ public class StubParser {
             ExecutableElement elt,
             Map<Element, AnnotatedTypeMirror> atypes,
             Map<String, Set<AnnotationMirror>> declAnnos) {
-        // Switch annotations between method declaration and type.
-        NodeList<AnnotationExpr> list = decl.getType().getAnnotations();
-        decl.getType().setAnnotations(decl.getAnnotations());
-        decl.setAnnotations(list);
+        // Switch annotations between method declaration and type. The parsed stub unit may be
+        // shared with other StubParsers (see parsedStubUnits), so it is not modified.
+        NodeList<AnnotationExpr> returnTypeAnnos = decl.getAnnotations();
 
-        annotateDecl(declAnnos, elt, decl.getAnnotations());
-        // StubParser parses all annotations in type annotation position as type annotations
         annotateDecl(declAnnos, elt, decl.getType().getAnnotations());
+        // StubParser parses all annotations in type annotation position as type annotations
+        annotateDecl(declAnnos, elt, returnTypeAnnos);
         addDeclAnnotations(declAnnos, elt);
 
         AnnotatedExecutableType methodType = atypeFactory.fromElement(elt);
         annotateTypeParameters(
                 decl, elt, atypes, methodType.getTypeVariables(), decl.getTypeParameters());
         typeParameters.addAll(methodType.getTypeVariables());
-        annotate(methodType.getReturnType(), decl.getType());
+        annotate(methodType.getReturnType(), decl.getType(), returnTypeAnnos);
 
         List<Parameter> params = decl.getParameters();
         List<? extends VariableElement> paramElts = elt.getParameters();
@@ -688,18 +813,19 @@ public class StubParser {
             annotateDecl(declAnnos, paramElt, param.getAnnotations());
             annotateDecl(declAnnos, paramElt, param.getType().getAnnotations());
 
-            // Duplicate parameter annotations to the type.
-            param.getType().setAnnotations(param.getAnnotations());
-
+            // Use the parameter annotations as the annotations of the type.
             if (param.isVarArgs()) {
                 assert paramType.getKind() == TypeKind.ARRAY;
                 // The "type" of param is actually the component type of the vararg.
                 // For example, "Object..." the type would be "Object".
-                annotate(((AnnotatedArrayType) paramType).getComponentType(), param.getType());
+                annotate(
+                        ((AnnotatedArrayType) paramType).getComponentType(),
+                        param.getType(),
+                        param.getAnnotations());
                 // The "VarArgsAnnotations" are those just before "...".
                 annotate(paramType, param.getVarArgsAnnotations());
             } else {
-                annotate(paramType, param.getType());
+                annotate(paramType, param.getType(), param.getAnnotations());
             }
         }
 
@@ -784,7 +910,8 @@ public class StubParser {
         return arrays;
     }
 
-    private void annotateAsArray(AnnotatedArrayType atype, ReferenceType typeDef) {
+    private void annotateAsArray(
+            AnnotatedArrayType atype, ReferenceType typeDef, List<AnnotationExpr> typeDefAnnos) {
         List<AnnotatedTypeMirror> arrayTypes = arrayAllComponents(atype);
         assert typeDef.getArrayLevel() == arrayTypes.size() - 1
                         ||
@@ -815,7 +942,7 @@ public class StubParser {
 
         // handle generic type on base
         handleExistingAnnotations(arrayTypes.get(arrayTypes.size() - 1), typeDef);
-        annotate(arrayTypes.get(arrayTypes.size() - 1), typeDef.getAnnotations());
+        annotate(arrayTypes.get(arrayTypes.size() - 1), typeDefAnnos);
     }
 
     private ClassOrInterfaceType unwrapDeclaredType(Type type) {
@@ -829,8 +956,18 @@ public class StubParser {
     }
 
     private void annotate(AnnotatedTypeMirror atype, Type typeDef) {
+        annotate(atype, typeDef, typeDef.getAnnotations());
+    }
+
+    /**
+     * Annotates {@code atype} according to {@code typeDef}, using {@code typeDefAnnos} instead of
+     * the annotations of {@code typeDef} itself. The annotations of nested types are taken from
+     * {@code typeDef}.
+     */
+    private void annotate(
+            AnnotatedTypeMirror atype, Type typeDef, List<AnnotationExpr> typeDefAnnos) {
         if (atype.getKind() == TypeKind.ARRAY) {
-            annotateAsArray((AnnotatedArrayType) atype, (ReferenceType) typeDef);
+            annotateAsArray((AnnotatedArrayType) atype, (ReferenceType) typeDef, typeDefAnnos);
             return;
         }
 
@@ -861,12 +998,12 @@ public class StubParser {
             WildcardType wildcardDef = (WildcardType) typeDef;
             if (wildcardDef.getExtendedType().isPresent()) {
                 annotate(wildcardType.getExtendsBound(), wildcardDef.getExtendedType().get());
-                annotate(wildcardType.getSuperBound(), typeDef.getAnnotations());
+                annotate(wildcardType.getSuperBound(), typeDefAnnos);
             } else if (wildcardDef.getSuperType().isPresent()) {
                 annotate(wildcardType.getSuperBound(), wildcardDef.getSuperType().get());
-                annotate(wildcardType.getExtendsBound(), typeDef.getAnnotations());
+                annotate(wildcardType.getExtendsBound(), typeDefAnnos);
             } else {
-                annotate(atype, typeDef.getAnnotations());
+                annotate(atype, typeDefAnnos);
             }
         } else if (atype.getKind() == TypeKind.TYPEVAR) {
             // Add annotations from the declaration of the TypeVariable
@@ -878,8 +1015,8 @@ public class StubParser {
                 }
             }
         }
-        if (typeDef.getAnnotations() != null && atype.getKind() != TypeKind.WILDCARD) {
-            annotate(atype, typeDef.getAnnotations());
+        if (typeDefAnnos != null && atype.getKind() != TypeKind.WILDCARD) {
+            annotate(atype, typeDefAnnos);
         }
     }
 
@@ -897,9 +1034,10 @@ public class StubParser {
             AnnotatedTypeMirror paramType = methodType.getParameterTypes().get(i);
             Parameter param = decl.getParameters().get(i);
             if (param.getAnnotations() != null) {
-                param.getType().setAnnotations(param.getAnnotations());
+                annotate(paramType, param.getType(), param.getAnnotations());
+            } else {
+                annotate(paramType, param.getType());
             }
-            annotate(paramType, param.getType());
         }
 
         if (methodType.getReceiverType() == null
@@ -1346,7 +1484,8 @@ public class StubParser {
         }
     }
 
-    private static final Set<String> warnings = new HashSet<String>();
+    private static final Set<String> warnings =
+            Collections.synchronizedSet(new HashSet<String>());
 
     /**
      * Issues the given warning about missing elements, only if it has not been previously issued
@@ -0,0 +1,282 @@
+package org.checkerframework.framework.stub;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.EnumDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import org.checkerframework.framework.type.AnnotatedTypeMirror;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+/**
+ * The type declarations of stub files that have not been parsed yet, indexed by the
+ * fully-qualified name of their top-level type. {@link StubParser#index} fills the index, and
+ * {@link #parse(Element, Map, Map)} parses the type declarations that may annotate an element the
+ * first time the element is looked up.
+ *
+ * <p>A stub file may annotate a member that a type inherits from a supertype. The member's element
+ * is then declared by the supertype, not by the type in the stub file. Therefore, the index also
+ * records the simple names of the members of each type declaration, and {@link #parse(Element,
+ * Map, Map)} parses every type declaration that declares a member with the name of the element.
+ *
+ * <p>Later stub files override earlier ones. Before a type declaration is parsed, every pending
+ * type declaration that comes earlier in the stub files and may annotate the same elements is
+ * parsed, too, so that no type declaration is parsed after one that should override it.
+ */
+public class StubTypeIndex {
+
+    /** A type declaration from a stub file that has not been parsed yet. */
+    static class PendingType {
+        /** The StubParser for the stub file that contains the type declaration. */
+        final StubParser parser;
+        /** The compilation unit that contains the type declaration. */
+        final CompilationUnit compilationUnit;
+        /** The fully-qualified name of the type. */
+        final String typeName;
+        /** The top-level type declaration. */
+        final TypeDeclaration<?> typeDecl;
+        /** The simple names of the members of the type and of its nested types. */
+        final Set<String> memberNames;
+        /** The position of the type declaration among all stub files. */
+        final int order;
+
+        PendingType(
+                StubParser parser,
+                CompilationUnit compilationUnit,
+                String typeName,
+                TypeDeclaration<?> typeDecl,
+                Set<String> memberNames,
+                int order) {
+            this.parser = parser;
+            this.compilationUnit = compilationUnit;
+            this.typeName = typeName;
+            this.typeDecl = typeDecl;
+            this.memberNames = memberNames;
+            this.order = order;
+        }
+    }
+
+    /** Orders pending types the way the stub files were read. */
+    private static final Comparator<PendingType> ORDER =
+            new Comparator<PendingType>() {
+                @Override
+                public int compare(PendingType t1, PendingType t2) {
+                    return Integer.compare(t1.order, t2.order);
+                }
+            };
+
+    /**
+     * The unparsed type declarations, by fully-qualified name of the top-level type. A type may be
+     * declared in more than one stub file.
+     */
+    private final Map<String, List<PendingType>> pendingTypes = new HashMap<>();
+
+    /**
+     * The unparsed type declarations that declare a member (or a member of a nested type) with a
+     * given simple name.
+     */
+    private final Map<String, List<PendingType>> typesByMemberName = new HashMap<>();
+
+    /** The number of type declarations added so far. */
+    private int size = 0;
+
+    /** Returns true if all type declarations have been parsed. */
+    public boolean isEmpty() {
+        return pendingTypes.isEmpty();
+    }
+
+    /**
+     * Adds a top-level type declaration of a stub file to the index.
+     *
+     * @param parser the StubParser for the stub file
+     * @param compilationUnit the compilation unit that contains {@code typeDecl}
+     * @param typeName the fully-qualified name of the type
+     * @param typeDecl the type declaration
+     */
+    void add(
+            StubParser parser,
+            CompilationUnit compilationUnit,
+            String typeName,
+            TypeDeclaration<?> typeDecl) {
+        Set<String> memberNames = new HashSet<>();
+        addMemberNames(typeDecl, memberNames);
+        PendingType type =
+                new PendingType(parser, compilationUnit, typeName, typeDecl, memberNames, size++);
+        addToIndex(pendingTypes, typeName, type);
+        for (String memberName : memberNames) {
+            addToIndex(typesByMemberName, memberName, type);
+        }
+    }
+
+    /** Adds the simple names of the members of {@code typeDecl} to {@code memberNames}. */
+    private static void addMemberNames(TypeDeclaration<?> typeDecl, Set<String> memberNames) {
+        for (BodyDeclaration<?> member : typeDecl.getMembers()) {
+            if (member instanceof MethodDeclaration) {
+                memberNames.add(((MethodDeclaration) member).getNameAsString());
+            } else if (member instanceof FieldDeclaration) {
+                for (VariableDeclarator var : ((FieldDeclaration) member).getVariables()) {
+                    memberNames.add(var.getNameAsString());
+                }
+            } else if (member instanceof ClassOrInterfaceDeclaration
+                    || member instanceof EnumDeclaration) {
+                TypeDeclaration<?> nested = (TypeDeclaration<?>) member;
+                memberNames.add(nested.getNameAsString());
+                addMemberNames(nested, memberNames);
+            }
+        }
+    }
+
+    private static void addToIndex(
+            Map<String, List<PendingType>> index, String key, PendingType type) {
+        List<PendingType> types = index.get(key);
+        if (types == null) {
+            types = new ArrayList<>(1);
+            index.put(key, types);
+        }
+        types.add(type);
+    }
+
+    private static void removeFromIndex(
+            Map<String, List<PendingType>> index, String key, PendingType type) {
+        List<PendingType> types = index.get(key);
+        if (types != null && types.remove(type) && types.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    /**
+     * Parses the type declarations that may contain annotations for {@code elt}, and removes them
+     * from the index: those of the top-level type that encloses {@code elt}, those that declare a
+     * member with the same name as the member of a type that is, or encloses, {@code elt}, and the
+     * earlier type declarations that may annotate the same elements as one of these.
+     *
+     * @param elt the element that is about to be looked up
+     * @param atypes annotated types from the stub files; side-effected by this method
+     * @param declAnnos declaration annotations from the stub files; side-effected by this method
+     */
+    public void parse(
+            Element elt,
+            Map<Element, AnnotatedTypeMirror> atypes,
+            Map<String, Set<AnnotationMirror>> declAnnos) {
+        if (pendingTypes.isEmpty()) {
+            return;
+        }
+        /*@Nullable*/ Element member = null;
+        /*@Nullable*/ TypeElement topLevelType = null;
+        for (Element e = elt; e != null; e = e.getEnclosingElement()) {
+            Element enclosing = e.getEnclosingElement();
+            if (enclosing == null || enclosing.getKind() == ElementKind.PACKAGE) {
+                if (e instanceof TypeElement) {
+                    topLevelType = (TypeElement) e;
+                }
+                break;
+            }
+            if (member == null
+                    && (enclosing.getKind().isClass() || enclosing.getKind().isInterface())) {
+                member = e;
+            }
+        }
+
+        List<PendingType> toParse = new ArrayList<>();
+        Set<PendingType> selected = new HashSet<>();
+        if (topLevelType != null) {
+            select(
+                    pendingTypes.get(topLevelType.getQualifiedName().toString()),
+                    Integer.MAX_VALUE,
+                    selected,
+                    toParse);
+        }
+        if (member != null) {
+            select(
+                    typesByMemberName.get(member.getSimpleName().toString()),
+                    Integer.MAX_VALUE,
+                    selected,
+                    toParse);
+        }
+        // A type declaration that comes earlier in the stub files and that may annotate the same
+        // elements has to be parsed first; otherwise it would override the later one when it is
+        // parsed.
+        for (int i = 0; i < toParse.size(); i++) {
+            PendingType type = toParse.get(i);
+            select(pendingTypes.get(type.typeName), type.order, selected, toParse);
+            for (String memberName : type.memberNames) {
+                select(typesByMemberName.get(memberName), type.order, selected, toParse);
+            }
+        }
+
+        for (PendingType type : toParse) {
+            removeFromIndex(pendingTypes, type.typeName, type);
+            for (String memberName : type.memberNames) {
+                removeFromIndex(typesByMemberName, memberName, type);
+            }
+        }
+        parse(toParse, atypes, declAnnos);
+    }
+
+    /**
+     * Adds the types in {@code candidates} that come before {@code order} in the stub files to
+     * {@code toParse}, unless they have been selected already.
+     */
+    private static void select(
+            /*@Nullable*/ List<PendingType> candidates,
+            int order,
+            Set<PendingType> selected,
+            List<PendingType> toParse) {
+        if (candidates == null) {
+            return;
+        }
+        for (PendingType candidate : candidates) {
+            if (candidate.order < order && selected.add(candidate)) {
+                toParse.add(candidate);
+            }
+        }
+    }
+
+    /**
+     * Parses all type declarations in the index, and empties the index.
+     *
+     * @param atypes annotated types from the stub files; side-effected by this method
+     * @param declAnnos declaration annotations from the stub files; side-effected by this method
+     */
+    public void parseAll(
+            Map<Element, AnnotatedTypeMirror> atypes,
+            Map<String, Set<AnnotationMirror>> declAnnos) {
+        List<PendingType> toParse = new ArrayList<>();
+        for (List<PendingType> types : pendingTypes.values()) {
+            toParse.addAll(types);
+        }
+        pendingTypes.clear();
+        typesByMemberName.clear();
+        parse(toParse, atypes, declAnnos);
+    }
+
+    /** Parses the given type declarations in the order in which they appear in the stub files. */
+    private static void parse(
+            List<PendingType> toParse,
+            Map<Element, AnnotatedTypeMirror> atypes,
+            Map<String, Set<AnnotationMirror>> declAnnos) {
+        // Later stub files override earlier ones, so the order matters.
+        Collections.sort(toParse, ORDER);
+        for (PendingType type : toParse) {
+            type.parser.parse(type.compilationUnit, type.typeDecl, atypes, declAnnos);
+        }
+    }
+}
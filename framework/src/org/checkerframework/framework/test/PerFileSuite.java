@@ -55,6 +55,7 @@ public class PerFileSuite extends Suite {
         for (Object[] parameters : parametersList) {
             runners.add(new PerParameterSetTestRunner(javaTestClass, parameters));
         }
+        TestScheduler.configure(this, javaTestClass);
     }
 
     /** Returns a list of one-element arrays, each containing a Java File. */
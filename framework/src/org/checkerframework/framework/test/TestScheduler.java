@@ -0,0 +1,92 @@
+package org.checkerframework.framework.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.runners.ParentRunner;
+import org.junit.runners.model.RunnerScheduler;
+
+/**
+ * Runs the children of a {@link PerDirectorySuite} or {@link PerFileSuite} on several threads, so
+ * that independent test directories or files are type-checked concurrently. The number of threads
+ * is the value of the {@value #THREADS_PROPERTY} system property; by default, children run one
+ * after the other on the calling thread, as in any other suite.
+ *
+ * <p>The children of one suite belong to the same test class and therefore run the same checkers
+ * with the same options, which is what makes them safe to run concurrently: checker options that
+ * are kept in static fields, such as {@code Range.IGNORE_OVERFLOW}, have the same value for all of
+ * them. Different test classes still run one after the other.
+ */
+class TestScheduler implements RunnerScheduler {
+
+    /** The system property that holds the number of threads on which to run tests. */
+    static final String THREADS_PROPERTY = "tests.threads";
+
+    /** The threads that run the children. */
+    private final ExecutorService executor;
+
+    /** The children that have been scheduled. Only accessed by the thread that runs the suite. */
+    private final List<Future<?>> scheduled = new ArrayList<>();
+
+    private TestScheduler(final String suiteName, int threads) {
+        this.executor =
+                Executors.newFixedThreadPool(
+                        threads,
+                        new ThreadFactory() {
+                            private final AtomicInteger count = new AtomicInteger();
+
+                            @Override
+                            public Thread newThread(Runnable runnable) {
+                                Thread thread =
+                                        new Thread(
+                                                runnable,
+                                                suiteName + "-" + count.incrementAndGet());
+                                thread.setDaemon(true);
+                                return thread;
+                            }
+                        });
+    }
+
+    /**
+     * Makes {@code suite} run its children concurrently if the {@value #THREADS_PROPERTY} system
+     * property asks for more than one thread.
+     *
+     * @param suite a suite whose children are independent
+     * @param testClass the test class of the suite, which names the threads
+     */
+    static void configure(ParentRunner<?> suite, Class<?> testClass) {
+        int threads = Integer.getInteger(THREADS_PROPERTY, 1);
+        if (threads > 1) {
+            suite.setScheduler(new TestScheduler(testClass.getSimpleName(), threads));
+        }
+    }
+
+    @Override
+    public void schedule(Runnable childStatement) {
+        scheduled.add(executor.submit(childStatement));
+    }
+
+    @Override
+    public void finished() {
+        try {
+            for (Future<?> child : scheduled) {
+                child.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        } catch (ExecutionException e) {
+            // A child reports its failures to the RunNotifier, so this is a failure of JUnit.
+            executor.shutdownNow();
+            throw new RuntimeException(e.getCause());
+        } finally {
+            scheduled.clear();
+            executor.shutdown();
+        }
+    }
+}
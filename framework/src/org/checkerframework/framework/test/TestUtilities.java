@@ -414,7 +414,8 @@ public class TestUtilities {
 
     public static void ensureDirectoryExists(File path) {
         if (!path.exists()) {
-            if (!path.mkdirs()) {
+            // Another test that runs concurrently may have created the directory.
+            if (!path.mkdirs() && !path.isDirectory()) {
                 throw new RuntimeException("Could not make directory: " + path.getAbsolutePath());
             }
         }
@@ -1,6 +1,7 @@
 package org.checkerframework.framework.test;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
@@ -16,6 +17,21 @@ import org.checkerframework.framework.util.PluginUtil;
 /** Used by the Checker Framework test suite to run the framework and generate a test result. */
 public class TypecheckExecutor {
 
+    /** The compiler that runs all tests. */
+    private static final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+
+    /**
+     * The file manager of the last compilation on each thread, together with the options of that
+     * compilation. javac applies path options such as {@code -classpath} and {@code
+     * -Xbootclasspath/p:} to the file manager, so a file manager is only reused for the same
+     * options. Reusing it lets consecutive tests share the open archives of the file manager and
+     * the contents of the files that it has already read, instead of reading the annotated JDK
+     * and the classpath again for every test. File managers are not thread-safe, so each thread
+     * has its own.
+     */
+    private static final ThreadLocal<CachedFileManager> fileManagers =
+            new ThreadLocal<CachedFileManager>();
+
     public TypecheckExecutor() {}
 
     /** Runs a typechecking test using the given configuration and returns the test result */
@@ -34,12 +50,6 @@ public class TypecheckExecutor {
         final StringWriter javacOutput = new StringWriter();
         DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
 
-        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
-        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
-        Iterable<? extends JavaFileObject> javaFiles =
-                fileManager.getJavaFileObjects(
-                        configuration.getTestSourceFiles().toArray(new File[] {}));
-
         // Even though the method compiler.getTask takes a list of processors, it fails if
         // processors are passed this way with the message:
         // error: Class names, 'org.checkerframework.checker.interning.InterningChecker', are only
@@ -60,6 +70,11 @@ public class TypecheckExecutor {
         nonJvmOptions.add("100000");
         options.addAll(nonJvmOptions);
 
+        StandardJavaFileManager fileManager = getFileManager(options);
+        Iterable<? extends JavaFileObject> javaFiles =
+                fileManager.getJavaFileObjects(
+                        configuration.getTestSourceFiles().toArray(new File[] {}));
+
         if (configuration.shouldEmitDebugInfo()) {
             System.out.println("Running test using the following invocation:");
             System.out.println(
@@ -93,6 +108,38 @@ public class TypecheckExecutor {
                 diagnostics.getDiagnostics());
     }
 
+    /**
+     * Returns a file manager for a compilation with the given options: the one of the previous
+     * compilation on this thread if it had the same options, otherwise a new one.
+     */
+    private static StandardJavaFileManager getFileManager(List<String> options) {
+        CachedFileManager cached = fileManagers.get();
+        if (cached != null && cached.options.equals(options)) {
+            return cached.fileManager;
+        }
+        if (cached != null) {
+            try {
+                cached.fileManager.close();
+            } catch (IOException e) {
+                // The file manager is no longer used, so a failure to close it does not matter.
+            }
+        }
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        fileManagers.set(new CachedFileManager(new ArrayList<String>(options), fileManager));
+        return fileManager;
+    }
+
+    /** A file manager and the options of the compilation that last used it. */
+    private static class CachedFileManager {
+        final List<String> options;
+        final StandardJavaFileManager fileManager;
+
+        CachedFileManager(List<String> options, StandardJavaFileManager fileManager) {
+            this.options = options;
+            this.fileManager = fileManager;
+        }
+    }
+
     /**
      * Reads the expected diagnostics for the given configuration and creates a TypecheckResult
      * which contains all of the missing and expected diagnostics
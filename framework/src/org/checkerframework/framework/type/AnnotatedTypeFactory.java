@@ -82,8 +82,10 @@ import org.checkerframework.framework.qual.PolymorphicQualifier;
 import org.checkerframework.framework.qual.StubFiles;
 import org.checkerframework.framework.qual.SubtypeOf;
 import org.checkerframework.framework.source.Result;
+import org.checkerframework.framework.source.ResultCache;
 import org.checkerframework.framework.source.SourceChecker;
 import org.checkerframework.framework.stub.StubParser;
+import org.checkerframework.framework.stub.StubTypeIndex;
 import org.checkerframework.framework.stub.StubResource;
 import org.checkerframework.framework.stub.StubUtil;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedArrayType;
@@ -226,6 +228,25 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
     // Not final, because it is assigned in postInit().
     private Map<String, Set<AnnotationMirror>> declAnnosFromStubFiles;
 
+    /**
+     * The cache of results between compilations, which records the elements looked up by this
+     * factory as dependencies of the class being type-checked; null if there is none.
+     */
+    private final /*@Nullable*/ ResultCache resultCache;
+
+    /**
+     * The type declarations in stub files that have not been parsed yet. The annotations of a type
+     * are read from the stub files the first time one of its elements is looked up; see {@link
+     * #parseStubFilesFor(Element)}.
+     */
+    private final StubTypeIndex stubTypeIndex = new StubTypeIndex();
+
+    /**
+     * True while type declarations from {@link #stubTypeIndex} are parsed. Stub file annotations
+     * are not used, and results are not cached, until parsing is done.
+     */
+    private boolean parsingStubTypes = false;
+
     /**
      * A cache used to store elements whose declaration annotations have already been stored by
      * calling the method {@link #getDeclAnnotations(Element)}.
@@ -288,6 +309,15 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      */
     public boolean shouldCache;
 
+    /**
+     * The number of deep copies of cached types that were returned to clients of the caches. The
+     * cached types themselves are frozen; see {@link AnnotatedTypeMirror#frozenCopy()}.
+     */
+    private long cachedTypeCopies = 0;
+
+    /** The number of cached types that were shared with read-only clients instead of copied. */
+    private long cachedTypeCopiesAvoided = 0;
+
     /** Size of LRU cache if one isn't specified using the atfCacheSize option. */
     private static final int DEFAULT_CACHE_SIZE = 300;
 
@@ -309,6 +339,12 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
     /** Mapping from an Element to the source Tree of the declaration. */
     private final Map<Element, Tree> elementToTreeCache;
 
+    /**
+     * Mapping from a receiver type and a member to the type of the member as a member of the
+     * receiver, before {@link #postAsMemberOf} is applied; see {@link #getCachedMemberType}.
+     */
+    private final Map<Pair<StructuralAtmKey, Element>, AnnotatedTypeMirror> memberTypeCache;
+
     /**
      * Whether to ignore uninferred type arguments. This is a temporary flag to work around Issue
      * 979.
@@ -345,19 +381,29 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         this.fromStubFile = AnnotationBuilder.fromClass(elements, FromStubFile.class);
 
         this.cacheDeclAnnos = new HashMap<Element, Set<AnnotationMirror>>();
+        this.resultCache = checker.getResultCache();
 
         this.shouldCache = !checker.hasOption("atfDoNotCache");
         if (shouldCache) {
             int cacheSize = getCacheSize();
-            this.classAndMethodTreeCache = CollectionUtils.createLRUCache(cacheSize);
-            this.fromTreeCache = CollectionUtils.createLRUCache(cacheSize);
-            this.elementCache = CollectionUtils.createLRUCache(cacheSize);
-            this.elementToTreeCache = CollectionUtils.createLRUCache(cacheSize);
+            String cachePrefix = getClass().getSimpleName() + ".";
+            this.classAndMethodTreeCache =
+                    CollectionUtils.createLRUCache(
+                            cacheSize, cachePrefix + "classAndMethodTreeCache");
+            this.fromTreeCache =
+                    CollectionUtils.createLRUCache(cacheSize, cachePrefix + "fromTreeCache");
+            this.elementCache =
+                    CollectionUtils.createLRUCache(cacheSize, cachePrefix + "elementCache");
+            this.elementToTreeCache =
+                    CollectionUtils.createLRUCache(cacheSize, cachePrefix + "elementToTreeCache");
+            this.memberTypeCache =
+                    CollectionUtils.createLRUCache(cacheSize, cachePrefix + "memberTypeCache");
         } else {
             this.classAndMethodTreeCache = null;
             this.fromTreeCache = null;
             this.elementCache = null;
             this.elementToTreeCache = null;
+            this.memberTypeCache = null;
         }
 
         this.typeFormatter = createAnnotatedTypeFormatter();
@@ -521,6 +567,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             elementToTreeCache.clear();
             fromTreeCache.clear();
             classAndMethodTreeCache.clear();
+            memberTypeCache.clear();
 
             // There is no need to clear the following cache, it is limited by cache size and it
             // contents won't change between compilation units.
@@ -963,7 +1010,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             return null; // dead code
         }
         if (shouldCache && classAndMethodTreeCache.containsKey(tree)) {
-            return classAndMethodTreeCache.get(tree).deepCopy();
+            return copyCachedType(classAndMethodTreeCache.get(tree));
         }
 
         AnnotatedTypeMirror type;
@@ -986,7 +1033,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         if (TreeUtils.isClassTree(tree) || tree.getKind() == Tree.Kind.METHOD) {
             // Don't cache VARIABLE
             if (shouldCache) {
-                classAndMethodTreeCache.put(tree, type.deepCopy());
+                classAndMethodTreeCache.put(tree, type.frozenCopy());
             }
         } else {
             // No caching otherwise
@@ -1059,13 +1106,17 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      * @return AnnotatedTypeMirror of the element with explicitly-written and stub file annotations
      */
     public AnnotatedTypeMirror fromElement(Element elt) {
+        if (resultCache != null) {
+            resultCache.addDependency(elt);
+        }
         if (shouldCache && elementCache.containsKey(elt)) {
-            return elementCache.get(elt).deepCopy();
+            return copyCachedType(elementCache.get(elt));
         }
         if (elt.getKind() == ElementKind.PACKAGE) {
             return toAnnotatedType(elt.asType(), false);
         }
         AnnotatedTypeMirror type;
+        boolean useStubFiles = parseStubFilesFor(elt);
 
         // Because of a bug in Java 8, annotations on type parameters are not stored in elements,
         // so get explicit annotations from the tree. (This bug has been fixed in Java 9.)
@@ -1074,10 +1125,9 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         // returned.
         Tree decl = declarationFromElement(elt);
 
-        if (decl == null && typesFromStubFiles != null && typesFromStubFiles.containsKey(elt)) {
+        if (decl == null && useStubFiles && typesFromStubFiles.containsKey(elt)) {
             type = typesFromStubFiles.get(elt).deepCopy();
-        } else if (decl == null
-                && (typesFromStubFiles == null || !typesFromStubFiles.containsKey(elt))) {
+        } else if (decl == null && (!useStubFiles || !typesFromStubFiles.containsKey(elt))) {
             type = toAnnotatedType(elt.asType(), ElementUtils.isTypeDeclaration(elt));
             ElementAnnotationApplier.apply(type, elt, this);
 
@@ -1101,15 +1151,160 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             type = null; // dead code
         }
 
-        // Caching is disabled if typesFromStubFiles == null, because calls to this
+        // Caching is disabled while stub files are read, because calls to this
         // method before the stub files are fully read can return incorrect
         // results.
-        if (shouldCache && typesFromStubFiles != null) {
-            elementCache.put(elt, type.deepCopy());
+        if (shouldCache && useStubFiles) {
+            elementCache.put(elt, type.frozenCopy());
         }
         return type;
     }
 
+    /**
+     * Returns the same type as {@link #fromElement(Element)}, but shares the cached type instead of
+     * copying it if there is one. The result must not be modified; if it is shared, it is frozen
+     * (see {@link AnnotatedTypeMirror#isFrozen()}). Use this method when only reading the result,
+     * for example its primary annotations.
+     *
+     * @param elt the element
+     * @return AnnotatedTypeMirror of the element with explicitly-written and stub file annotations;
+     *     must not be modified
+     */
+    public AnnotatedTypeMirror fromElementReadOnly(Element elt) {
+        if (shouldCache && elementCache.containsKey(elt)) {
+            if (resultCache != null) {
+                resultCache.addDependency(elt);
+            }
+            cachedTypeCopiesAvoided++;
+            return elementCache.get(elt);
+        }
+        return fromElement(elt);
+    }
+
+    /**
+     * Returns a copy of a type from one of the caches, which the caller may modify.
+     *
+     * @param cached a frozen type from one of the caches
+     * @return a deep copy of {@code cached}
+     */
+    private AnnotatedTypeMirror copyCachedType(AnnotatedTypeMirror cached) {
+        cachedTypeCopies++;
+        return cached.deepCopy();
+    }
+
+    /**
+     * Returns the type of {@code member} as a member of {@code receiver}, as computed by {@link
+     * AnnotatedTypes#asMemberOf} before it applies {@link #postAsMemberOf}, if a type has been
+     * cached for an equal receiver type and the same member by {@link #cacheMemberType} since the
+     * compilation unit was set. Receiver types are compared by their structure, see {@link
+     * StructuralAtmKey}.
+     *
+     * <p>{@link #postAsMemberOf} is not part of the cached type because it may depend on the state
+     * of the factory, for example on the tree that is being type-checked.
+     *
+     * @param receiver the annotated type of the receiver
+     * @param member a field, method, or constructor
+     * @return a copy of the cached type, or null if there is none
+     */
+    public /*@Nullable*/ AnnotatedTypeMirror getCachedMemberType(
+            AnnotatedTypeMirror receiver, Element member) {
+        Pair<StructuralAtmKey, Element> key = memberTypeKey(receiver, member);
+        if (key == null) {
+            return null;
+        }
+        AnnotatedTypeMirror cached = memberTypeCache.get(key);
+        if (cached == null) {
+            return null;
+        }
+        if (resultCache != null) {
+            resultCache.addDependency(member);
+            addCachedTypeDependencies(key.first);
+        }
+        return copyCachedType(cached);
+    }
+
+    /**
+     * Caches the type of {@code member} as a member of {@code receiver}, before {@link
+     * #postAsMemberOf} is applied, for {@link #getCachedMemberType}. Does nothing if the type
+     * cannot be cached, for example because {@code receiver} contains a type variable.
+     *
+     * @param receiver the annotated type of the receiver
+     * @param member a field, method, or constructor
+     * @param memberType the type of {@code member} as a member of {@code receiver}
+     */
+    public void cacheMemberType(
+            AnnotatedTypeMirror receiver, Element member, AnnotatedTypeMirror memberType) {
+        Pair<StructuralAtmKey, Element> key = memberTypeKey(receiver, member);
+        if (key != null) {
+            memberTypeCache.put(key, memberType.frozenCopy());
+        }
+    }
+
+    /**
+     * Records in the {@link ResultCache} the dependencies that a computation on the type of {@code
+     * key} would record: the classes of the declared types in the type and their supertypes. Called
+     * when the result of such a computation is taken from a cache instead, because the cache may
+     * have been filled while another class was type-checked.
+     *
+     * @param key the key of a type on which a cached result depends
+     */
+    void addCachedTypeDependencies(StructuralAtmKey key) {
+        if (resultCache == null) {
+            return;
+        }
+        for (TypeElement element : key.getTypeElements()) {
+            resultCache.addDependency(element);
+            for (TypeElement supertype : ElementUtils.getSuperTypes(elements, element)) {
+                resultCache.addDependency(supertype);
+            }
+        }
+    }
+
+    /**
+     * Returns the key of {@link #memberTypeCache} for a receiver and a member, or null if the type
+     * of the member must not be cached.
+     */
+    private /*@Nullable*/ Pair<StructuralAtmKey, Element> memberTypeKey(
+            AnnotatedTypeMirror receiver, Element member) {
+        // The types of members of type variables and wildcards are found through their bounds,
+        // which are cached as receivers themselves. The types of static members do not depend on
+        // the receiver, which may be null for them.
+        if (!shouldCache
+                || receiver == null
+                || receiver.getKind() != TypeKind.DECLARED
+                || ElementUtils.isStatic(member)
+                || !areStubTypesAvailable()) {
+            return null;
+        }
+        switch (member.getKind()) {
+            case FIELD:
+            case METHOD:
+            case CONSTRUCTOR:
+                break;
+            default:
+                return null;
+        }
+        StructuralAtmKey receiverKey = StructuralAtmKey.of(receiver, true);
+        if (receiverKey == null) {
+            return null;
+        }
+        return Pair.of(receiverKey, member);
+    }
+
+    /**
+     * Returns a description of how many types were copied out of the caches of this factory, and
+     * how many copies were avoided by sharing frozen cached types. Used by the -AresourceStats
+     * option.
+     *
+     * @return a one-line description of the copy counts
+     */
+    public String getCacheCopyStatistics() {
+        return "copies of cached types: "
+                + cachedTypeCopies
+                + ", copies avoided: "
+                + cachedTypeCopiesAvoided;
+    }
+
     /**
      * Adds @FromByteCode to methods, constructors, and fields declared in class files that are not
      * already annotated with @FromStubFile
@@ -1169,12 +1364,12 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             return null; // dead code
         }
         if (shouldCache && fromTreeCache.containsKey(tree)) {
-            return fromTreeCache.get(tree).deepCopy();
+            return copyCachedType(fromTreeCache.get(tree));
         }
         AnnotatedTypeMirror result = TypeFromTree.fromMember(this, tree);
         annotateInheritedFromClass(result);
         if (shouldCache) {
-            fromTreeCache.put(tree, result.deepCopy());
+            fromTreeCache.put(tree, result.frozenCopy());
         }
         return result;
     }
@@ -1197,7 +1392,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      */
     private AnnotatedTypeMirror fromExpression(ExpressionTree tree) {
         if (shouldCache && fromTreeCache.containsKey(tree)) {
-            return fromTreeCache.get(tree).deepCopy();
+            return copyCachedType(fromTreeCache.get(tree));
         }
 
         AnnotatedTypeMirror result = TypeFromTree.fromExpression(this, tree);
@@ -1205,7 +1400,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         annotateInheritedFromClass(result);
 
         if (shouldCache) {
-            fromTreeCache.put(tree, result.deepCopy());
+            fromTreeCache.put(tree, result.frozenCopy());
         }
         return result;
     }
@@ -1226,14 +1421,14 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      */
     /*package private*/ final AnnotatedTypeMirror fromTypeTree(Tree tree) {
         if (shouldCache && fromTreeCache.containsKey(tree)) {
-            return fromTreeCache.get(tree).deepCopy();
+            return copyCachedType(fromTreeCache.get(tree));
         }
 
         AnnotatedTypeMirror result = TypeFromTree.fromTypeTree(this, tree);
 
         annotateInheritedFromClass(result);
         if (shouldCache) {
-            fromTreeCache.put(tree, result.deepCopy());
+            fromTreeCache.put(tree, result.frozenCopy());
         }
         return result;
     }
@@ -1599,7 +1794,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             // are no annotations from that hierarchy already on the type.
 
             if (classElt != null) {
-                AnnotatedTypeMirror classType = p.fromElement(classElt);
+                AnnotatedTypeMirror classType = p.fromElementReadOnly(classElt);
                 assert classType != null : "Unexpected null type for class element: " + classElt;
 
                 p.annotateInheritedFromClass(type, classType.getAnnotations());
@@ -2666,9 +2861,10 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
     }
 
     /**
-     * Gets the path for the given {@link Tree} under the current root by checking from the
-     * visitor's current path, and only using {@link Trees#getPath(CompilationUnitTree, Tree)}
-     * (which is much slower) only if {@code node} is not found on the current path.
+     * Gets the path for the given {@link Tree} under the current root. The path is looked up in an
+     * index of the current compilation unit, which is built by a single scan of the unit the first
+     * time a path is requested, so use the returned path to find enclosing trees rather than
+     * scanning the compilation unit again.
      *
      * <p>Note that the given Tree has to be within the current compilation unit, otherwise null
      * will be returned.
@@ -2683,49 +2879,19 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
 
         if (node == null) return null;
 
-        if (treePathCache.isCached(node)) {
-            return treePathCache.getPath(root, node);
-        }
-        ;
-
-        TreePath currentPath = visitorState.getPath();
-        if (currentPath == null) {
-            return TreePath.getPath(root, node);
-        }
-
-        // This method uses multiple heuristics to avoid calling
-        // TreePath.getPath()
-
         // If the current path you are visiting is for this node we are done
-        if (currentPath.getLeaf() == node) {
-            return currentPath;
-        }
-
-        // When running on Daikon, we noticed that a lot of calls happened
-        // within a small subtree containing the node we are currently visiting
-
-        // When testing on Daikon, two steps resulted in the best performance
-        if (currentPath.getParentPath() != null) {
-            currentPath = currentPath.getParentPath();
-        }
-        if (currentPath.getLeaf() == node) {
-            return currentPath;
-        }
-        if (currentPath.getParentPath() != null) {
-            currentPath = currentPath.getParentPath();
-        }
-        if (currentPath.getLeaf() == node) {
+        TreePath currentPath = visitorState.getPath();
+        if (currentPath != null && currentPath.getLeaf() == node) {
             return currentPath;
         }
 
-        final TreePath pathWithinSubtree = TreePath.getPath(currentPath, node);
-        if (pathWithinSubtree != null) {
-            return pathWithinSubtree;
+        TreePath path = treePathCache.getPath(root, node);
+        if (path != null) {
+            return path;
         }
 
-        // climb the current path till we see that
-        // Works when getPath called on the enclosing method, enclosing
-        // class
+        // The node is not in the current compilation unit. Climb the current path, in case the
+        // visitor is in another compilation unit.
         TreePath current = currentPath;
         while (current != null) {
             if (current.getLeaf() == node) {
@@ -2733,9 +2899,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             }
             current = current.getParentPath();
         }
-
-        // OK, we give up. Use the cache to look up.
-        return treePathCache.getPath(root, node);
+        return null;
     }
 
     /**
@@ -2804,6 +2968,11 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      * <p>If a type is annotated with a qualifier from the same hierarchy in more than one stub
      * file, the qualifier in the last stub file is applied.
      *
+     * <p>Only package annotations are read right away. The type declarations are recorded in
+     * {@link #stubTypeIndex}, and each type is parsed the first time one of its elements is looked
+     * up. That way, a compilation only pays for the part of the stub files that it uses. If one of
+     * the stub parser debugging options is given, all type declarations are parsed right away.
+     *
      * <p>Sets typesFromStubFiles and declAnnosFromStubFiles by side effect, just before returning.
      */
     protected void parseStubFiles() {
@@ -2822,7 +2991,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             in = checker.getClass().getResourceAsStream("jdk.astub");
             if (in != null) {
                 StubParser stubParser = new StubParser("jdk.astub", in, this, processingEnv);
-                stubParser.parse(typesFromStubFiles, declAnnosFromStubFiles);
+                stubParser.index(stubTypeIndex, declAnnosFromStubFiles);
             }
         }
 
@@ -2831,7 +3000,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         InputStream input = BaseTypeChecker.class.getResourceAsStream("flow.astub");
         if (input != null) {
             StubParser stubParser = new StubParser("flow.astub", input, this, processingEnv);
-            stubParser.parse(typesFromStubFiles, declAnnosFromStubFiles);
+            stubParser.index(stubTypeIndex, declAnnosFromStubFiles);
         }
 
         // Stub files specified via stubs compiler option, stubs system property,
@@ -2862,12 +3031,6 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             Collections.addAll(allStubFiles, stubsOption.split(File.pathSeparator));
         }
 
-        if (allStubFiles.isEmpty()) {
-            this.typesFromStubFiles = typesFromStubFiles;
-            this.declAnnosFromStubFiles = declAnnosFromStubFiles;
-            return;
-        }
-
         // Parse stub files specified via stubs compiler option, stubs system property,
         // stubs env. variable, or @Stubfiles
         for (String stubPath : allStubFiles) {
@@ -2886,7 +3049,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
                 in = checker.getClass().getResourceAsStream(stubPath);
                 if (in != null) {
                     StubParser stubParser = new StubParser(stubPath, in, this, processingEnv);
-                    stubParser.parse(typesFromStubFiles, declAnnosFromStubFiles);
+                    stubParser.index(stubTypeIndex, declAnnosFromStubFiles);
                     // We could handle the stubPath -> continue.
                     continue;
                 }
@@ -2910,14 +3073,55 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
                 }
                 StubParser stubParser =
                         new StubParser(resource.getDescription(), stubStream, this, processingEnv);
-                stubParser.parse(typesFromStubFiles, declAnnosFromStubFiles);
+                stubParser.index(stubTypeIndex, declAnnosFromStubFiles);
             }
         }
 
+        // The stub parser options report problems with every type declaration, so parse them all
+        // right away.
+        if (checker.hasOption("stubWarnIfNotFound")
+                || checker.hasOption("stubWarnIfOverwritesBytecode")
+                || checker.hasOption("stubDebug")) {
+            stubTypeIndex.parseAll(typesFromStubFiles, declAnnosFromStubFiles);
+        }
+
         this.typesFromStubFiles = typesFromStubFiles;
         this.declAnnosFromStubFiles = declAnnosFromStubFiles;
     }
 
+    /**
+     * Returns true if the stub files have been read and are not being parsed, so that types that
+     * are computed now include the annotations from stub files and may be cached.
+     *
+     * @return false while stub files are read
+     */
+    boolean areStubTypesAvailable() {
+        return typesFromStubFiles != null && !parsingStubTypes;
+    }
+
+    /**
+     * Parses the type declarations from stub files that may annotate {@code elt}, unless that has
+     * been done already.
+     *
+     * @param elt an element that is about to be looked up
+     * @return false if stub files are still being read, in which case annotations from stub files
+     *     must not be used for {@code elt}
+     */
+    private boolean parseStubFilesFor(Element elt) {
+        if (typesFromStubFiles == null || parsingStubTypes) {
+            return false;
+        }
+        if (!stubTypeIndex.isEmpty()) {
+            parsingStubTypes = true;
+            try {
+                stubTypeIndex.parse(elt, typesFromStubFiles, declAnnosFromStubFiles);
+            } finally {
+                parsingStubTypes = false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Returns the actual annotation mirror used to annotate this element, whose name equals the
      * passed annotation class, if one exists, or null otherwise.
@@ -3024,6 +3228,9 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      * @param elt the element for which to determine annotations
      */
     public Set<AnnotationMirror> getDeclAnnotations(Element elt) {
+        if (resultCache != null) {
+            resultCache.addDependency(elt);
+        }
         if (cacheDeclAnnos.containsKey(elt)) {
             // Found in cache, return result.
             return cacheDeclAnnos.get(elt);
@@ -3046,10 +3253,11 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             }
         }
 
-        // If declAnnosFromStubFiles == null, return the annotations in the element.
-        if (declAnnosFromStubFiles != null) {
+        // If stub files are being read, return the annotations in the element.
+        if (parseStubFilesFor(elt)) {
             // Adding @FromByteCode annotation to declAnnosFromStubFiles entry with key
-            // elt, if elt is from bytecode.
+            // elt, if elt is from bytecode. This must come after parseStubFilesFor, which has
+            // parsed every stub declaration of elt, including those in subtypes that inherit it.
             addFromByteCode(elt);
 
             // Retrieving annotations from stub files.
@@ -3382,7 +3590,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      */
     private AnnotatedDeclaredType getFunctionalInterfaceType(Tree lambdaTree) {
 
-        Tree parentTree = TreePath.getPath(this.root, lambdaTree).getParentPath().getLeaf();
+        Tree parentTree = getPath(lambdaTree).getParentPath().getLeaf();
         switch (parentTree.getKind()) {
             case PARENTHESIZED:
                 return getFunctionalInterfaceType(parentTree);
@@ -3445,7 +3653,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             case RETURN:
                 Tree enclosing =
                         TreeUtils.enclosingOfKind(
-                                TreePath.getPath(this.root, parentTree),
+                                getPath(parentTree),
                                 new HashSet<>(
                                         Arrays.asList(
                                                 Tree.Kind.METHOD, Tree.Kind.LAMBDA_EXPRESSION)));
@@ -39,6 +39,7 @@ import org.checkerframework.framework.qual.PolyAll;
 import org.checkerframework.framework.type.visitor.AnnotatedTypeMerger;
 import org.checkerframework.framework.type.visitor.AnnotatedTypeVisitor;
 import org.checkerframework.framework.util.AnnotatedTypes;
+import org.checkerframework.framework.util.SmallAnnotationMirrorSet;
 import org.checkerframework.javacutil.AnnotationBuilder;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.ElementUtils;
@@ -144,7 +145,10 @@ public abstract class AnnotatedTypeMirror {
     // the class name of Annotation instead.
     // Caution: Assumes that a type can have at most one AnnotationMirror for
     // any Annotation type. JSR308 is pushing to have this change.
-    protected final Set<AnnotationMirror> annotations = AnnotationUtils.createAnnotationSet();
+    protected final Set<AnnotationMirror> annotations = new SmallAnnotationMirrorSet();
+
+    /** Whether the primary annotations of this type may no longer be changed. */
+    private boolean frozen = false;
 
     /** The explicitly written annotations on this type. */
     // TODO: use this to cache the result once computed? For generic types?
@@ -574,6 +578,7 @@ public abstract class AnnotatedTypeMirror {
      * @param a the annotation to add
      */
     public void addAnnotation(AnnotationMirror a) {
+        checkNotFrozen();
         if (a == null) {
             ErrorReporter.errorAbort(
                     "AnnotatedTypeMirror.addAnnotation: null is not a valid annotation.");
@@ -661,6 +666,7 @@ public abstract class AnnotatedTypeMirror {
         // TODO: however, this also means that if we are annotated with "@I(1)" and
         // remove "@I(2)" it will be removed. Is this what we want?
         // It's currently necessary for the Lock Checker.
+        checkNotFrozen();
         AnnotationMirror anno =
                 AnnotationUtils.getAnnotationByName(annotations, AnnotationUtils.annotationName(a));
         if (anno != null) {
@@ -733,9 +739,57 @@ public abstract class AnnotatedTypeMirror {
      * methods.
      */
     public void clearAnnotations() {
+        checkNotFrozen();
         annotations.clear();
     }
 
+    /**
+     * Returns true if this type is frozen: its primary annotations cannot be changed. Frozen types
+     * are shared by the caches of the {@link AnnotatedTypeFactory}; use {@link #deepCopy()} to
+     * obtain a type that can be modified.
+     *
+     * @return true if this type is frozen
+     * @see #frozenCopy()
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Returns a deep copy of this type in which this type and all of its components are frozen.
+     * Components that are initialized lazily after the copy is made are not frozen.
+     *
+     * @return a frozen deep copy of this type
+     * @see #isFrozen()
+     */
+    public AnnotatedTypeMirror frozenCopy() {
+        final List<AnnotatedTypeMirror> copies = new ArrayList<>();
+        AnnotatedTypeMirror copy =
+                new AnnotatedTypeCopier(true) {
+                    @Override
+                    protected void maybeCopyPrimaryAnnotations(
+                            final AnnotatedTypeMirror source, final AnnotatedTypeMirror dest) {
+                        super.maybeCopyPrimaryAnnotations(source, dest);
+                        copies.add(dest);
+                    }
+                }.visit(this);
+        // Setting the bounds of a type variable changes the annotations of the bounds, so the
+        // copies can only be frozen once the whole type has been copied.
+        for (AnnotatedTypeMirror c : copies) {
+            c.frozen = true;
+        }
+        return copy;
+    }
+
+    /** Aborts if this type is frozen; called by every method that changes {@link #annotations}. */
+    private void checkNotFrozen() {
+        if (frozen) {
+            ErrorReporter.errorAbort(
+                    "AnnotatedTypeMirror: cannot change the annotations of a frozen type: "
+                            + this);
+        }
+    }
+
     @SideEffectFree
     @Override
     public final String toString() {
@@ -44,6 +44,10 @@ import org.checkerframework.checker.nullness.qual.Nullable;
  * <p>To load annotations using this class, their directory structure and package structure must be
  * identical.
  *
+ * <p>The qual package of a checker that was built with the Checker Framework's build contains a
+ * {@link QualifierIndex}, which lists the classes of the package. When the index is found, the
+ * classpath, jar files, and directories are not scanned.
+ *
  * <p>Only annotation classes that have the {@link Target} meta-annotation with the value of {@link
  * ElementType#TYPE_USE} (and optionally {@link ElementType#TYPE_PARAMETER}) are loaded. If it has
  * other {@link ElementType} values, it won't be loaded. Other annotation classes must be manually
@@ -85,8 +89,14 @@ public class AnnotationClassLoader {
      */
     protected final ProcessingEnvironment processingEnv;
 
-    /** The resource URL of the qual directory of a checker class */
-    private final URL resourceURL;
+    /**
+     * The resource URL of the qual directory of a checker class, or null if there is none. Not
+     * computed if the {@link #indexURL} is set.
+     */
+    private final /*@Nullable*/ URL resourceURL;
+
+    /** The URL of the {@link QualifierIndex} of the qual directory, or null if there is none. */
+    private final /*@Nullable*/ URL indexURL;
 
     /**
      * The loaded annotation classes. Call {@link #getLoadedAnnotationClasses} rather than using
@@ -133,7 +143,13 @@ public class AnnotationClassLoader {
 
         ClassLoader applicationClassloader = getAppClassLoader();
 
-        if (applicationClassloader != null) {
+        // The index of the qual package lists its classes, so that the package does not need to
+        // be found and scanned.
+        indexURL = QualifierIndex.find(applicationClassloader, packageNameWithSlashes);
+
+        if (indexURL != null) {
+            resourceURL = null;
+        } else if (applicationClassloader != null) {
             // if the application classloader is accessible, then directly
             // retrieve the resource URL of the qual package
             // resource URLs must use slashes
@@ -474,6 +490,15 @@ public class AnnotationClassLoader {
     public final Set<Class<? extends Annotation>> getLoadedAnnotationClasses() {
         if (loadedAnnotations == null) {
             loadedAnnotations = new LinkedHashSet<Class<? extends Annotation>>();
+            if (indexURL != null) {
+                try {
+                    loadedAnnotations.addAll(loadAnnotationClasses(QualifierIndex.read(indexURL)));
+                } catch (IOException e) {
+                    ErrorReporter.errorAbort(
+                            "AnnotatedTypeLoader: cannot read the qualifier index " + indexURL);
+                }
+                return loadedAnnotations;
+            }
             if (resourceURL == null) {
                 // if there's no resourceURL, then there's nothing we can load
                 return loadedAnnotations;
@@ -9,6 +9,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.TypeElement;
@@ -34,11 +35,16 @@ import org.checkerframework.framework.util.AtmCombo;
 import org.checkerframework.framework.util.PluginUtil;
 import org.checkerframework.framework.util.TypeArgumentMapper;
 import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ErrorReporter;
 import org.checkerframework.javacutil.InternalUtils;
 import org.checkerframework.javacutil.Pair;
 import org.checkerframework.javacutil.TypesUtils;
 
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
 /**
  * Default implementation of TypeHierarchy that implements the JLS specification with minor
  * deviations as outlined by the Checker Framework manual. Changes to the JLS include forbidding
@@ -124,6 +130,18 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Visit
     // currentTop before passing annotations to qualifierHierarchy.
     protected AnnotationMirror currentTop;
 
+    /** The maximum number of results in {@link #subtypeCache}. */
+    private static final int SUBTYPE_CACHE_SIZE = 1000;
+
+    /**
+     * The results of {@link #isSubtype(AnnotatedTypeMirror, AnnotatedTypeMirror, AnnotationMirror)}
+     * for types that contain no type variables and no wildcards, keyed on the structure of the
+     * subtype and the supertype and on the name of the top annotation. Null if the -AatfDoNotCache
+     * option is given.
+     */
+    private final /*@Nullable*/ Map<Pair<Pair<StructuralAtmKey, StructuralAtmKey>, String>, Boolean>
+            subtypeCache;
+
     public DefaultTypeHierarchy(
             final BaseTypeChecker checker,
             final QualifierHierarchy qualifierHierarchy,
@@ -136,6 +154,14 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Visit
 
         this.ignoreRawTypes = ignoreRawTypes;
         this.invariantArrayComponents = invariantArrayComponents;
+
+        if (checker.hasOption("atfDoNotCache")) {
+            this.subtypeCache = null;
+        } else {
+            this.subtypeCache =
+                    CollectionUtils.createLRUCache(
+                            SUBTYPE_CACHE_SIZE, getClass().getSimpleName() + ".subtypeCache");
+        }
     }
 
     public DefaultRawnessComparer createRawnessComparer() {
@@ -168,6 +194,9 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Visit
     /**
      * Returns true if subtype {@literal <:} supertype
      *
+     * <p>If neither type contains a type variable or a wildcard, the result only depends on the
+     * structure of the types, and it is looked up in, or added to, a cache of such results.
+     *
      * @param subtype expected subtype
      * @param supertype expected supertype
      * @param top the hierarchy for which we want to make a comparison
@@ -179,7 +208,48 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Visit
             final AnnotatedTypeMirror supertype,
             final AnnotationMirror top) {
         currentTop = top;
-        return isSubtype(subtype, supertype, new VisitHistory());
+        Pair<Pair<StructuralAtmKey, StructuralAtmKey>, String> key =
+                subtypeCacheKey(subtype, supertype, top);
+        if (key == null) {
+            return isSubtype(subtype, supertype, new VisitHistory());
+        }
+        Boolean cached = subtypeCache.get(key);
+        if (cached != null) {
+            // The result may have been computed while another class was type-checked.
+            AnnotatedTypeFactory factory = checker.getTypeFactory();
+            factory.addCachedTypeDependencies(key.first.first);
+            factory.addCachedTypeDependencies(key.first.second);
+            return cached;
+        }
+        boolean result = isSubtype(subtype, supertype, new VisitHistory());
+        subtypeCache.put(key, result);
+        return result;
+    }
+
+    /**
+     * Returns the key of {@link #subtypeCache} for a subtype check, or null if its result must not
+     * be cached.
+     */
+    private /*@Nullable*/ Pair<Pair<StructuralAtmKey, StructuralAtmKey>, String> subtypeCacheKey(
+            AnnotatedTypeMirror subtype, AnnotatedTypeMirror supertype, AnnotationMirror top) {
+        if (subtypeCache == null) {
+            return null;
+        }
+        // The supertypes of a class may be annotated in stub files, so results are not cached
+        // while the factory is initialized or stub files are read.
+        AnnotatedTypeFactory factory = checker.getTypeFactory();
+        if (factory == null || !factory.areStubTypesAvailable()) {
+            return null;
+        }
+        StructuralAtmKey subtypeKey = StructuralAtmKey.of(subtype, false);
+        if (subtypeKey == null) {
+            return null;
+        }
+        StructuralAtmKey supertypeKey = StructuralAtmKey.of(supertype, false);
+        if (supertypeKey == null) {
+            return null;
+        }
+        return Pair.of(Pair.of(subtypeKey, supertypeKey), AnnotationUtils.annotationName(top));
     }
 
     /**
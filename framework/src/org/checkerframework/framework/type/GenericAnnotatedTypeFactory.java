@@ -81,6 +81,7 @@ import org.checkerframework.framework.qual.MonotonicQualifier;
 import org.checkerframework.framework.qual.RelevantJavaTypes;
 import org.checkerframework.framework.qual.TypeUseLocation;
 import org.checkerframework.framework.qual.Unqualified;
+import org.checkerframework.framework.source.CheckProfiler;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedDeclaredType;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedExecutableType;
 import org.checkerframework.framework.type.treeannotator.ImplicitsTreeAnnotator;
@@ -209,7 +210,9 @@ public abstract class GenericAnnotatedTypeFactory<
 
         if (shouldCache) {
             int cacheSize = getCacheSize();
-            flowResultAnalysisCaches = CollectionUtils.createLRUCache(cacheSize);
+            flowResultAnalysisCaches =
+                    CollectionUtils.createLRUCache(
+                            cacheSize, getClass().getSimpleName() + ".flowResultAnalysisCaches");
         } else {
             flowResultAnalysisCaches = null;
         }
@@ -1088,6 +1091,26 @@ public abstract class GenericAnnotatedTypeFactory<
         }
     }
 
+    /**
+     * Returns the name under which -AprofileCheck reports the analysis of {@code ast}: the method
+     * that contains it, or the class for field initializers and initializer blocks.
+     */
+    private String profileName(CheckProfiler profiler, UnderlyingAST ast) {
+        switch (ast.getKind()) {
+            case METHOD:
+                return profiler.methodName(((CFGMethod) ast).getMethod());
+            case LAMBDA:
+                MethodTree method =
+                        TreeUtils.enclosingMethod(getPath(((CFGLambda) ast).getLambdaTree()));
+                if (method != null) {
+                    return profiler.methodName(method);
+                }
+                return profiler.className(visitorState.getClassTree());
+            default:
+                return profiler.className(((CFGStatement) ast).getClassTree());
+        }
+    }
+
     // Maintain a deque of analyses to accommodate nested classes.
     protected final Deque<FlowAnalysis> analyses;
     // Maintain for every class the store that is used when we analyze initialization code
@@ -1135,8 +1158,19 @@ public abstract class GenericAnnotatedTypeFactory<
             boolean updateInitializationStore,
             boolean isStatic,
             Store lambdaStore) {
+        CheckProfiler profiler = checker.getCheckProfiler();
+        String profileName = null;
+        Object profileFrame = null;
+        if (profiler != null) {
+            profileName = profileName(profiler, ast);
+            profileFrame = profiler.start(CheckProfiler.Phase.CFG, checker, profileName);
+        }
         CFGBuilder builder = new CFCFGBuilder(checker, this);
         ControlFlowGraph cfg = builder.run(root, processingEnv, ast);
+        if (profiler != null) {
+            profiler.stop(profileFrame);
+            profileFrame = profiler.start(CheckProfiler.Phase.DATAFLOW, checker, profileName);
+        }
         FlowAnalysis newAnalysis = createFlowAnalysis(fieldValues);
         TransferFunction transfer = newAnalysis.getTransferFunction();
         if (emptyStore == null) {
@@ -1157,6 +1191,10 @@ public abstract class GenericAnnotatedTypeFactory<
             }
         }
         analyses.getFirst().performAnalysis(cfg);
+        if (profiler != null) {
+            profiler.recordBlockVisits(analyses.getFirst().getBlockVisitCounts());
+            profiler.stop(profileFrame);
+        }
         AnalysisResult<Value, Store> result = analyses.getFirst().getResult();
 
         // store result
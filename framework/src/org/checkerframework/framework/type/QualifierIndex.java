@@ -0,0 +1,200 @@
+package org.checkerframework.framework.type;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+/**
+ * The index of the classes of a qual package, which {@link AnnotationClassLoader} reads instead
+ * of listing the entries of a jar file or the files of a directory. The build writes an index into
+ * every qual package of the compiled classes by running the {@link #main} method of this class.
+ *
+ * <p>An index is a resource named {@value #INDEX_FILE_NAME} in the qual package. It lists the fully
+ * qualified names of the classes of the package and its subpackages, one per line, in the order in
+ * which {@link AnnotationClassLoader} would find them in a directory. Lines that start with {@code
+ * #} are comments.
+ */
+public final class QualifierIndex {
+
+    /** The name of the index resource in a qual package. */
+    public static final String INDEX_FILE_NAME = "qualifier-index.txt";
+
+    /** The name of the last component of a qual package. */
+    private static final String QUAL_DIRECTORY_NAME = "qual";
+
+    /** The suffix of class files. */
+    private static final String CLASS_SUFFIX = ".class";
+
+    private QualifierIndex() {
+        throw new AssertionError("Class QualifierIndex cannot be instantiated.");
+    }
+
+    /**
+     * Returns the index of a qual package, or null if the index cannot be used. An index in a
+     * directory cannot be used if the directory was changed after the index was written, for
+     * example because an IDE compiled a new qualifier without running the build.
+     *
+     * @param classLoader the class loader of the checker, or null for the system class loader
+     * @param packageNameWithSlashes the name of the qual package, with slashes instead of dots
+     * @return the URL of the index, or null if there is none or it is out of date
+     */
+    static /*@Nullable*/ URL find(
+            /*@Nullable*/ ClassLoader classLoader, String packageNameWithSlashes) {
+        String resourceName = packageNameWithSlashes + '/' + INDEX_FILE_NAME;
+        URL index =
+                classLoader != null
+                        ? classLoader.getResource(resourceName)
+                        : ClassLoader.getSystemResource(resourceName);
+        if (index == null || !index.getProtocol().equals("file")) {
+            return index;
+        }
+        File indexFile;
+        try {
+            indexFile = new File(index.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+        File packageDir = indexFile.getParentFile();
+        if (packageDir == null || indexFile.lastModified() < packageDir.lastModified()) {
+            return null;
+        }
+        return index;
+    }
+
+    /**
+     * Reads the class names of an index.
+     *
+     * @param index the URL of an index, as returned by {@link #find}
+     * @return the fully qualified names of the classes in the index
+     * @throws IOException if the index cannot be read
+     */
+    static Set<String> read(URL index) throws IOException {
+        Set<String> classNames = new LinkedHashSet<String>();
+        URLConnection connection = index.openConnection();
+        // Do not keep a jar file open in the cache of the JDK.
+        connection.setUseCaches(false);
+        try (InputStream in = connection.getInputStream();
+                BufferedReader reader =
+                        new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    classNames.add(line);
+                }
+            }
+        }
+        return classNames;
+    }
+
+    /**
+     * Writes an index into every qual package of the given directories of compiled classes.
+     *
+     * @param args the directories of compiled classes, such as the build directory of a project
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: java QualifierIndex classdir...");
+            System.exit(1);
+        }
+        try {
+            for (String arg : args) {
+                writeIndexes(new File(arg), "");
+            }
+        } catch (IOException e) {
+            System.err.println("QualifierIndex: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Writes an index into every qual package within {@code dir}.
+     *
+     * @param dir a directory of compiled classes, or a subdirectory of one
+     * @param packagePrefix the name of the package of {@code dir} followed by a dot, or the empty
+     *     string for a directory of compiled classes
+     */
+    private static void writeIndexes(File dir, String packagePrefix) throws IOException {
+        for (File file : sortedFiles(dir)) {
+            if (!file.isDirectory()) {
+                continue;
+            }
+            String packageName = packagePrefix + file.getName();
+            if (file.getName().equals(QUAL_DIRECTORY_NAME)) {
+                Set<String> classNames = new LinkedHashSet<String>();
+                addClassNames(file, packageName + '.', classNames);
+                writeIndex(new File(file, INDEX_FILE_NAME), packageName, classNames);
+            } else {
+                writeIndexes(file, packageName + '.');
+            }
+        }
+    }
+
+    /**
+     * Adds the names of the classes in {@code dir} and its subdirectories to {@code classNames},
+     * in the order in which {@link AnnotationClassLoader} lists them.
+     */
+    private static void addClassNames(File dir, String packagePrefix, Set<String> classNames) {
+        for (File file : sortedFiles(dir)) {
+            String name = file.getName();
+            if (file.isDirectory()) {
+                addClassNames(file, packagePrefix + name + '.', classNames);
+            } else if (name.endsWith(CLASS_SUFFIX)) {
+                classNames.add(
+                        packagePrefix + name.substring(0, name.length() - CLASS_SUFFIX.length()));
+            }
+        }
+    }
+
+    /** Writes the index of a qual package. */
+    private static void writeIndex(File indexFile, String packageName, Set<String> classNames)
+            throws IOException {
+        try (Writer out =
+                        new OutputStreamWriter(
+                                new FileOutputStream(indexFile), StandardCharsets.UTF_8);
+                PrintWriter writer = new PrintWriter(out)) {
+            writer.println("# The classes of " + packageName + "; generated by QualifierIndex.");
+            for (String className : classNames) {
+                writer.println(className);
+            }
+            if (writer.checkError()) {
+                throw new IOException("cannot write " + indexFile);
+            }
+        }
+    }
+
+    /** Returns the files in {@code dir}, sorted by name. */
+    private static File[] sortedFiles(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(
+                files,
+                new Comparator<File>() {
+                    @Override
+                    public int compare(File o1, File o2) {
+                        return o1.getName().compareTo(o2.getName());
+                    }
+                });
+        return files;
+    }
+}
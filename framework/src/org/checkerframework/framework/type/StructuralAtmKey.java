@@ -0,0 +1,171 @@
+package org.checkerframework.framework.type;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedArrayType;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedDeclaredType;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedWildcardType;
+import org.checkerframework.javacutil.AnnotationUtils;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+/**
+ * A key for the caches of the {@link AnnotatedTypeFactory} that identifies an annotated type by its
+ * structure: two keys are equal if the types have the same kind, the same declared classes, and the
+ * same annotations at every position, at the time the keys were created. A key does not refer to
+ * the annotated type, so the type may be changed after its key has been created.
+ *
+ * <p>Unlike {@link AnnotatedTypeMirror#equals} and {@link AnnotatedTypeMirror#hashCode}, which
+ * compare the underlying types and the string representations of the annotations, a key compares
+ * the elements of declared types and the annotations themselves. Its hash code is computed once,
+ * from the names of the annotations.
+ *
+ * <p>Only types whose structure is determined by their components have keys: a type that contains
+ * a type variable, an executable type, an intersection, or a union has none.
+ */
+final class StructuralAtmKey {
+
+    /**
+     * The components of the type in preorder: for every type, its kind, the number of its primary
+     * annotations, and the annotations, followed by what distinguishes a type of that kind.
+     */
+    private final Object[] parts;
+
+    /** The hash code of {@link #parts}. */
+    private final int hashCode;
+
+    private StructuralAtmKey(Object[] parts, int hashCode) {
+        this.parts = parts;
+        this.hashCode = hashCode;
+    }
+
+    /**
+     * Returns the key of {@code type}, or null if the type has none.
+     *
+     * @param type an annotated type
+     * @param allowWildcards whether a type that contains a wildcard has a key
+     * @return the key of {@code type}, or null if {@code type} contains a type variable, an
+     *     executable, intersection, or union type, or a wildcard that is not allowed
+     */
+    static /*@Nullable*/ StructuralAtmKey of(AnnotatedTypeMirror type, boolean allowWildcards) {
+        List<Object> parts = new ArrayList<>();
+        if (!addParts(type, allowWildcards, parts)) {
+            return null;
+        }
+        int hashCode = 1;
+        for (Object part : parts) {
+            int partHash =
+                    part instanceof AnnotationMirror
+                            ? AnnotationUtils.annotationName((AnnotationMirror) part).hashCode()
+                            : part.hashCode();
+            hashCode = 31 * hashCode + partHash;
+        }
+        return new StructuralAtmKey(parts.toArray(), hashCode);
+    }
+
+    /**
+     * Adds the parts of {@code type} to {@code parts}.
+     *
+     * @return false if {@code type} has no key
+     */
+    private static boolean addParts(
+            /*@Nullable*/ AnnotatedTypeMirror type, boolean allowWildcards, List<Object> parts) {
+        if (type == null) {
+            // An absent enclosing type or wildcard bound.
+            parts.add(TypeKind.NONE);
+            return true;
+        }
+        TypeKind kind = type.getKind();
+        parts.add(kind);
+        parts.add(type.getAnnotationsField().size());
+        // The annotations of a type are sorted, so equal sets are in the same order.
+        parts.addAll(type.getAnnotationsField());
+        switch (kind) {
+            case DECLARED:
+                AnnotatedDeclaredType declared = (AnnotatedDeclaredType) type;
+                parts.add(declared.getUnderlyingType().asElement());
+                parts.add(declared.wasRaw());
+                parts.add(declared.isDeclaration());
+                List<AnnotatedTypeMirror> typeArgs = declared.getTypeArguments();
+                parts.add(typeArgs.size());
+                for (AnnotatedTypeMirror typeArg : typeArgs) {
+                    if (!addParts(typeArg, allowWildcards, parts)) {
+                        return false;
+                    }
+                }
+                return addParts(declared.getEnclosingType(), allowWildcards, parts);
+            case ARRAY:
+                return addParts(
+                        ((AnnotatedArrayType) type).getComponentType(), allowWildcards, parts);
+            case WILDCARD:
+                if (!allowWildcards) {
+                    return false;
+                }
+                AnnotatedWildcardType wildcard = (AnnotatedWildcardType) type;
+                parts.add(wildcard.isUninferredTypeArgument());
+                return addParts(wildcard.getExtendsBound(), allowWildcards, parts)
+                        && addParts(wildcard.getSuperBound(), allowWildcards, parts);
+            case TYPEVAR:
+            case EXECUTABLE:
+            case INTERSECTION:
+            case UNION:
+                return false;
+            default:
+                // Primitive types, void, the null type, and the like are determined by their kind.
+                return true;
+        }
+    }
+
+    /**
+     * Returns the classes and interfaces of the declared types in the type of this key, including
+     * those in type arguments, array components, and enclosing types.
+     *
+     * @return the type elements of the declared types in the type, in preorder
+     */
+    List<TypeElement> getTypeElements() {
+        List<TypeElement> elements = new ArrayList<>();
+        for (Object part : parts) {
+            if (part instanceof TypeElement) {
+                elements.add((TypeElement) part);
+            }
+        }
+        return elements;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof StructuralAtmKey)) {
+            return false;
+        }
+        StructuralAtmKey other = (StructuralAtmKey) obj;
+        if (hashCode != other.hashCode || parts.length != other.parts.length) {
+            return false;
+        }
+        for (int i = 0; i < parts.length; i++) {
+            Object part = parts[i];
+            Object otherPart = other.parts[i];
+            if (part instanceof AnnotationMirror && otherPart instanceof AnnotationMirror) {
+                AnnotationMirror anno = (AnnotationMirror) part;
+                if (!AnnotationUtils.areSame(anno, (AnnotationMirror) otherPart)) {
+                    return false;
+                }
+            } else if (!part.equals(otherPart)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+}
@@ -29,6 +29,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
@@ -125,10 +126,13 @@ public class AnnotatedTypes {
      */
     public static <T extends AnnotatedTypeMirror> T asSuper(
             AnnotatedTypeFactory atypeFactory, AnnotatedTypeMirror type, T superType) {
-        if (asSuperVisitor == null || !asSuperVisitor.sameAnnotatedTypeFactory(atypeFactory)) {
-            asSuperVisitor = new AsSuperVisitor(atypeFactory);
+        // Read the field once: another compilation in this JVM may replace it concurrently.
+        AsSuperVisitor visitor = asSuperVisitor;
+        if (visitor == null || !visitor.sameAnnotatedTypeFactory(atypeFactory)) {
+            visitor = new AsSuperVisitor(atypeFactory);
+            asSuperVisitor = visitor;
         }
-        return asSuperVisitor.asSuper(type, superType);
+        return visitor.asSuper(type, superType);
     }
 
     /** This method identifies wildcard types that are unbound. */
@@ -215,6 +219,8 @@ public class AnnotatedTypes {
      *
      * <p>The result is customized according to the type system semantics, according to {@link
      * AnnotatedTypeFactory#postAsMemberOf( AnnotatedTypeMirror, AnnotatedTypeMirror, Element)}.
+     * The type before that customization is cached by the factory for the current compilation
+     * unit, see {@link AnnotatedTypeFactory#getCachedMemberType}.
      *
      * <p>Note that this method does not currently return (top level) captured types for type
      * parameters, parameters, and return types. Instead, the original wildcard is returned, or
@@ -240,7 +246,11 @@ public class AnnotatedTypes {
             case TYPE_PARAMETER:
                 return atypeFactory.fromElement(elem);
             default:
-                AnnotatedTypeMirror type = asMemberOfImpl(types, atypeFactory, t, elem);
+                AnnotatedTypeMirror type = atypeFactory.getCachedMemberType(t, elem);
+                if (type == null) {
+                    type = asMemberOfImpl(types, atypeFactory, t, elem);
+                    atypeFactory.cacheMemberType(t, elem, type);
+                }
                 if (!ElementUtils.isStatic(elem)) {
                     atypeFactory.postAsMemberOf(type, t, elem);
                 }
@@ -850,12 +860,18 @@ public class AnnotatedTypes {
         return found;
     }
 
-    private static Map<TypeElement, Boolean> isTypeAnnotationCache = new IdentityHashMap<>();
+    /**
+     * Whether an annotation type is a type annotation. Elements are compared by identity, so the
+     * map is weak in order not to retain the elements of earlier compilations in the same JVM.
+     */
+    private static final Map<TypeElement, Boolean> isTypeAnnotationCache =
+            Collections.synchronizedMap(new WeakHashMap<TypeElement, Boolean>());
 
     public static boolean isTypeAnnotation(AnnotationMirror anno, Class<?> cls) {
         TypeElement elem = (TypeElement) anno.getAnnotationType().asElement();
-        if (isTypeAnnotationCache.containsKey(elem)) {
-            return isTypeAnnotationCache.get(elem);
+        Boolean cached = isTypeAnnotationCache.get(elem);
+        if (cached != null) {
+            return cached;
         }
 
         // the annotation is a type annotation if it has the proper ElementTypes in the @Target
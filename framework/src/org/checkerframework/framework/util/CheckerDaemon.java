@@ -0,0 +1,616 @@
+package org.checkerframework.framework.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+/**
+ * A long-running JVM that runs the compiler for {@link CheckerMain}. Without a daemon, every
+ * compilation starts a new JVM, which then loads and JIT-compiles javac and the Checker Framework
+ * and reads the annotated JDK and the stub files again. A daemon keeps all of that warm: checker.jar
+ * is on its classpath, so the classes of the checkers and their static caches, such as the parsed
+ * stub files, survive from one compilation to the next.
+ *
+ * <p>{@link CheckerMain} uses a daemon when it is passed {@value CheckerMain#DAEMON_OPT}. The first
+ * such compilation starts a daemon, and later compilations with the same JVM options, jars, and
+ * working directory send their javac arguments to it over a loopback socket and receive the
+ * output of javac in return. A daemon serves one compilation at a time, and it exits after it has
+ * been idle for {@link #IDLE_TIMEOUT_MILLIS} milliseconds. If no daemon can be used, {@link
+ * CheckerMain} runs the compiler in a new JVM as usual.
+ *
+ * <p>A daemon advertises itself in a file in {@code ~/.checker-framework/daemons}, which contains
+ * its port and a random token that clients must send with every request.
+ */
+public class CheckerDaemon {
+
+    /**
+     * The system property that holds the number of milliseconds after which an idle daemon exits;
+     * the default is one hour.
+     */
+    public static final String IDLE_TIMEOUT_PROPERTY = "checkerframework.daemon.idleTimeout";
+
+    /**
+     * The system property that holds the number of milliseconds that a daemon and its clients wait
+     * for each other; the default is ten seconds.
+     */
+    public static final String REQUEST_TIMEOUT_PROPERTY = "checkerframework.daemon.requestTimeout";
+
+    /** The number of milliseconds after which an idle daemon exits. */
+    public static final int IDLE_TIMEOUT_MILLIS =
+            Integer.getInteger(IDLE_TIMEOUT_PROPERTY, 60 * 60 * 1000);
+
+    /** The number of milliseconds that a client waits for a new daemon to start. */
+    private static final long STARTUP_TIMEOUT_MILLIS = 60 * 1000;
+
+    /** The number of milliseconds between two checks whether a new daemon has started. */
+    private static final long STARTUP_POLL_MILLIS = 100;
+
+    /**
+     * The number of milliseconds that a daemon waits for the next part of a request, and that a
+     * client waits for a connection or for its request to be accepted. A client whose request is
+     * not accepted in time, for example because the daemon is busy with another compilation, runs
+     * the compiler in a new JVM instead.
+     */
+    private static final int REQUEST_TIMEOUT_MILLIS =
+            Integer.getInteger(REQUEST_TIMEOUT_PROPERTY, 10 * 1000);
+
+    /** The maximum length in bytes of a token that a daemon reads, before it knows the client. */
+    private static final int MAX_TOKEN_LENGTH = 64;
+
+    /** The maximum length in bytes of the other strings of a request. */
+    private static final int MAX_STRING_LENGTH = 16 * 1024 * 1024;
+
+    /** The maximum number of javac arguments in a request. */
+    private static final int MAX_ARGUMENT_COUNT = 1024 * 1024;
+
+    /** The maximum number of bytes of output in one frame. */
+    private static final int MAX_FRAME_LENGTH = 64 * 1024;
+
+    /** The directory of the daemon files, relative to the home directory of the user. */
+    private static final String DAEMON_DIRECTORY = ".checker-framework/daemons";
+
+    /** The property of a daemon file that holds the port of the daemon. */
+    private static final String PORT_PROPERTY = "port";
+
+    /** The property of a daemon file that holds the token of the daemon. */
+    private static final String TOKEN_PROPERTY = "token";
+
+    // The kinds of the frames that a daemon sends to a client. Output frames contain a length and
+    // that many bytes, the exit frame contains the exit status of javac, and the other frames are
+    // empty.
+
+    /** The daemon will run the compilation. */
+    private static final int ACCEPTED_FRAME = 0;
+
+    /** Bytes that javac wrote to standard output. */
+    private static final int OUT_FRAME = 1;
+
+    /** Bytes that javac wrote to standard error. */
+    private static final int ERR_FRAME = 2;
+
+    /** The compilation is complete. */
+    private static final int EXIT_FRAME = 3;
+
+    /** The daemon will not run the compilation, because it runs in another working directory. */
+    private static final int REFUSED_FRAME = 4;
+
+    /**
+     * The byte with which a client confirms that it still waits for the compilation, after the
+     * daemon has accepted its request. A client that has timed out has closed the connection
+     * instead, and runs the compiler in a new JVM, so the daemon must not run the compilation too.
+     */
+    private static final int CONFIRMED = 0;
+
+    /** The exit status of javac for an abnormal termination. */
+    private static final int EXIT_ABNORMAL = 4;
+
+    /** The file in which this daemon advertises itself. */
+    private final File daemonFile;
+
+    /** The token that clients must send. */
+    private final String token;
+
+    /** The socket on which this daemon accepts compilation requests. */
+    private final ServerSocket serverSocket;
+
+    /** The working directory of this daemon, which must be that of every client. */
+    private final String workingDirectory;
+
+    private CheckerDaemon(File daemonFile) throws IOException {
+        this.daemonFile = daemonFile;
+        byte[] tokenBytes = new byte[16];
+        new SecureRandom().nextBytes(tokenBytes);
+        this.token = toHex(tokenBytes);
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        this.serverSocket.setSoTimeout(IDLE_TIMEOUT_MILLIS);
+        this.workingDirectory = new File("").getAbsolutePath();
+    }
+
+    /**
+     * Runs a daemon until it has been idle for {@link #IDLE_TIMEOUT_MILLIS} milliseconds. {@link
+     * CheckerMain} starts daemons; they are not meant to be started by hand.
+     *
+     * @param args the name of the file in which the daemon advertises itself
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: java CheckerDaemon daemonfile");
+            System.exit(1);
+        }
+        CheckerDaemon daemon = new CheckerDaemon(new File(args[0]));
+        daemon.advertise();
+        daemon.serve();
+        System.exit(0);
+    }
+
+    /** Writes the daemon file, so that clients can find this daemon. */
+    private void advertise() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(PORT_PROPERTY, Integer.toString(serverSocket.getLocalPort()));
+        properties.setProperty(TOKEN_PROPERTY, token);
+        File tmpFile = new File(daemonFile.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmpFile)) {
+            // Only the owner may read the token.
+            tmpFile.setReadable(false, false);
+            tmpFile.setReadable(true, true);
+            properties.store(out, "CheckerDaemon " + workingDirectory);
+        }
+        Files.move(
+                tmpFile.toPath(),
+                daemonFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Serves compilation requests, one at a time, until this daemon has been idle too long. */
+    private void serve() throws IOException {
+        while (true) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketTimeoutException e) {
+                break;
+            } catch (IOException e) {
+                continue;
+            }
+            try (Socket client = socket) {
+                client.setSoTimeout(REQUEST_TIMEOUT_MILLIS);
+                handle(client);
+            } catch (IOException e) {
+                // The client went away, stalled, or sent a malformed request; wait for the next
+                // one.
+            }
+        }
+        // Do not delete the file of a daemon that replaced this one.
+        Properties properties = readDaemonFile(daemonFile);
+        if (properties != null && token.equals(properties.getProperty(TOKEN_PROPERTY))) {
+            daemonFile.delete();
+        }
+        serverSocket.close();
+    }
+
+    /** Runs the compilation that a client requests, and sends the output of javac to the client. */
+    private void handle(Socket socket) throws IOException {
+        DataInputStream in =
+                new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        final DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        // Check the token before anything else is read, so that a process that does not know it
+        // cannot make this daemon allocate more than a few bytes.
+        byte[] clientToken = readBytes(in, MAX_TOKEN_LENGTH);
+        if (!MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), clientToken)) {
+            return;
+        }
+        String clientDirectory = readString(in);
+        int argCount = in.readInt();
+        if (argCount < 0 || argCount > MAX_ARGUMENT_COUNT) {
+            throw new IOException("invalid argument count " + argCount);
+        }
+        String[] args = new String[argCount];
+        for (int i = 0; i < argCount; i++) {
+            args[i] = readString(in);
+        }
+        if (!workingDirectory.equals(clientDirectory)) {
+            out.writeByte(REFUSED_FRAME);
+            out.flush();
+            return;
+        }
+        out.writeByte(ACCEPTED_FRAME);
+        out.flush();
+        // Do not compile for a client that gave up waiting while this daemon was busy: it runs the
+        // compiler itself, and this compilation would overwrite its output.
+        if (in.read() != CONFIRMED) {
+            return;
+        }
+
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+        PrintStream clientOut = new PrintStream(new FrameOutputStream(out, OUT_FRAME), true);
+        PrintStream clientErr = new PrintStream(new FrameOutputStream(out, ERR_FRAME), true);
+        int exitStatus;
+        System.setOut(clientOut);
+        System.setErr(clientErr);
+        try {
+            exitStatus = com.sun.tools.javac.Main.compile(args, new PrintWriter(clientErr, true));
+        } catch (Throwable t) {
+            t.printStackTrace(clientErr);
+            exitStatus = EXIT_ABNORMAL;
+        } finally {
+            System.setOut(stdout);
+            System.setErr(stderr);
+        }
+        clientOut.flush();
+        clientErr.flush();
+        synchronized (out) {
+            out.writeByte(EXIT_FRAME);
+            out.writeInt(exitStatus);
+            out.flush();
+        }
+    }
+
+    /**
+     * Runs javac in a daemon, starting the daemon if there is none yet. The daemon is identified by
+     * {@code jvmArguments}, the checker jar, and the working directory.
+     *
+     * @param jvmArguments the java command and the JVM options with which to start a daemon,
+     *     including a classpath that contains javac and {@code checkerJar}
+     * @param checkerJar the checker.jar that the daemon has on its classpath
+     * @param compilerArguments the arguments for javac
+     * @param stdout where to write the standard output of javac
+     * @param stderr where to write the standard error of javac
+     * @return the exit status of javac, or null if no daemon could run it
+     */
+    public static /*@Nullable*/ Integer compile(
+            List<String> jvmArguments,
+            File checkerJar,
+            List<String> compilerArguments,
+            PrintStream stdout,
+            PrintStream stderr) {
+        String workingDirectory = new File("").getAbsolutePath();
+        File daemonFile;
+        try {
+            daemonFile = getDaemonFile(jvmArguments, checkerJar, workingDirectory);
+        } catch (IOException e) {
+            return null;
+        }
+        try {
+            Integer exitStatus =
+                    sendRequest(daemonFile, workingDirectory, compilerArguments, stdout, stderr);
+            if (exitStatus != null) {
+                return exitStatus;
+            }
+            if (!ensureDaemon(jvmArguments, daemonFile)) {
+                return null;
+            }
+            return sendRequest(daemonFile, workingDirectory, compilerArguments, stdout, stderr);
+        } catch (SocketTimeoutException e) {
+            // The daemon is busy or stalled; do not replace it.
+            return null;
+        }
+    }
+
+    /**
+     * Starts a daemon for {@code daemonFile} unless one can be reached. Clients that need the same
+     * daemon start it one at a time, holding a lock on a file next to the daemon file.
+     *
+     * @return true if a daemon can be reached
+     */
+    private static boolean ensureDaemon(List<String> jvmArguments, File daemonFile) {
+        File lockFile = new File(daemonFile.getPath() + ".lock");
+        try (RandomAccessFile lockAccess = new RandomAccessFile(lockFile, "rw")) {
+            FileLock lock = lockAccess.getChannel().lock();
+            try {
+                // Another client may have started a daemon while this one waited for the lock.
+                return isReachable(daemonFile) || startDaemon(jvmArguments, daemonFile);
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /** Returns true if the daemon of {@code daemonFile} accepts connections. */
+    private static boolean isReachable(File daemonFile) {
+        Properties properties = readDaemonFile(daemonFile);
+        Integer port = properties == null ? null : getPort(properties);
+        if (port == null) {
+            return false;
+        }
+        try {
+            // The daemon discards a connection that sends no token.
+            connect(port).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the daemon file for the given JVM, checker jar, and working directory. A new
+     * checker.jar gets a new daemon, because its modification time is part of the name.
+     */
+    private static File getDaemonFile(
+            List<String> jvmArguments, File checkerJar, String workingDirectory)
+            throws IOException {
+        File directory = new File(System.getProperty("user.home"), DAEMON_DIRECTORY);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create " + directory);
+        }
+        StringBuilder key = new StringBuilder();
+        for (String arg : jvmArguments) {
+            key.append(arg).append('\0');
+        }
+        key.append(checkerJar.getAbsolutePath()).append('\0');
+        key.append(checkerJar.lastModified()).append('\0');
+        key.append(workingDirectory);
+        byte[] digest;
+        try {
+            digest =
+                    MessageDigest.getInstance("SHA-256")
+                            .digest(key.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        return new File(directory, toHex(digest).substring(0, 32) + ".properties");
+    }
+
+    /**
+     * Starts a daemon and waits until it has written its daemon file.
+     *
+     * @return true if the daemon has started
+     */
+    private static boolean startDaemon(List<String> jvmArguments, File daemonFile) {
+        List<String> command = new ArrayList<String>(jvmArguments);
+        command.add(CheckerDaemon.class.getName());
+        command.add(daemonFile.getAbsolutePath());
+        File logFile = new File(daemonFile.getPath() + ".log");
+        daemonFile.delete();
+        Process process;
+        try {
+            process =
+                    new ProcessBuilder(command)
+                            .redirectErrorStream(true)
+                            .redirectOutput(ProcessBuilder.Redirect.to(logFile))
+                            .start();
+            process.getOutputStream().close();
+        } catch (IOException e) {
+            return false;
+        }
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            if (daemonFile.exists()) {
+                return true;
+            }
+            if (!process.isAlive()) {
+                return false;
+            }
+            try {
+                Thread.sleep(STARTUP_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        process.destroy();
+        return false;
+    }
+
+    /**
+     * Sends a compilation request to the daemon of {@code daemonFile}, and copies the output of
+     * javac to {@code stdout} and {@code stderr}.
+     *
+     * @return the exit status of javac, or null if there is no daemon or it refused the request
+     * @throws SocketTimeoutException if the daemon did not accept the request in time
+     */
+    private static /*@Nullable*/ Integer sendRequest(
+            File daemonFile,
+            String workingDirectory,
+            List<String> compilerArguments,
+            PrintStream stdout,
+            PrintStream stderr)
+            throws SocketTimeoutException {
+        Properties properties = readDaemonFile(daemonFile);
+        if (properties == null) {
+            return null;
+        }
+        String token = properties.getProperty(TOKEN_PROPERTY);
+        Integer port = getPort(properties);
+        if (token == null || port == null) {
+            return null;
+        }
+
+        try (Socket socket = connect(port)) {
+            DataOutputStream out =
+                    new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in =
+                    new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            writeString(out, token);
+            writeString(out, workingDirectory);
+            out.writeInt(compilerArguments.size());
+            for (String arg : compilerArguments) {
+                writeString(out, arg);
+            }
+            out.flush();
+
+            if (in.read() != ACCEPTED_FRAME) {
+                return null;
+            }
+            out.writeByte(CONFIRMED);
+            out.flush();
+            // From now on the compilation has run, at least in part, so it must not be run again.
+            try {
+                // javac may be silent for a long time, but not longer than a daemon stays idle.
+                socket.setSoTimeout(IDLE_TIMEOUT_MILLIS);
+                while (true) {
+                    int kind = in.readUnsignedByte();
+                    if (kind == EXIT_FRAME) {
+                        return in.readInt();
+                    }
+                    byte[] bytes = readBytes(in, MAX_FRAME_LENGTH);
+                    PrintStream target = kind == OUT_FRAME ? stdout : stderr;
+                    target.write(bytes);
+                    target.flush();
+                }
+            } catch (IOException e) {
+                stderr.println("CheckerDaemon: the daemon terminated abnormally: " + e);
+                return EXIT_ABNORMAL;
+            }
+        } catch (SocketTimeoutException e) {
+            throw e;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Connects to the daemon on {@code port}. Reads from the returned socket time out after {@link
+     * #REQUEST_TIMEOUT_MILLIS} milliseconds.
+     */
+    private static Socket connect(int port) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                    REQUEST_TIMEOUT_MILLIS);
+            socket.setSoTimeout(REQUEST_TIMEOUT_MILLIS);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        return socket;
+    }
+
+    /** Returns the port of a daemon file, or null if it has none. */
+    private static /*@Nullable*/ Integer getPort(Properties properties) {
+        try {
+            return Integer.valueOf(properties.getProperty(PORT_PROPERTY, ""));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /** Returns the properties of a daemon file, or null if it cannot be read. */
+    private static /*@Nullable*/ Properties readDaemonFile(File daemonFile) {
+        if (!daemonFile.isFile()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(daemonFile)) {
+            properties.load(in);
+        } catch (IOException e) {
+            return null;
+        }
+        return properties;
+    }
+
+    /** Writes a string as its length in bytes, followed by its bytes in UTF-8. */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /** Reads a string written by {@link #writeString}. */
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(readBytes(in, MAX_STRING_LENGTH), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a length and that many bytes.
+     *
+     * @param maxLength the maximum length that is accepted
+     * @throws IOException if the length is negative or greater than {@code maxLength}, or if the
+     *     bytes cannot be read
+     */
+    private static byte[] readBytes(DataInputStream in, int maxLength) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > maxLength) {
+            throw new IOException("invalid length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /** Returns the lowercase hexadecimal representation of {@code bytes}. */
+    private static String toHex(byte[] bytes) {
+        StringBuilder result = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            result.append(Character.forDigit((b >> 4) & 0xf, 16));
+            result.append(Character.forDigit(b & 0xf, 16));
+        }
+        return result.toString();
+    }
+
+    /** An output stream that sends everything written to it to a client, as frames of one kind. */
+    private static class FrameOutputStream extends OutputStream {
+
+        /** The stream to the client, which is shared by the output streams of a compilation. */
+        private final DataOutputStream out;
+
+        /** The kind of the frames that this stream writes. */
+        private final int kind;
+
+        FrameOutputStream(DataOutputStream out, int kind) {
+            this.out = out;
+            this.kind = kind;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            synchronized (out) {
+                while (len > 0) {
+                    int frameLength = Math.min(len, MAX_FRAME_LENGTH);
+                    out.writeByte(kind);
+                    out.writeInt(frameLength);
+                    out.write(b, off, frameLength);
+                    off += frameLength;
+                    len -= frameLength;
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+    }
+}
@@ -80,6 +80,15 @@ public class CheckerDevelMain extends CheckerMain {
     @Override
     public void assertValidState() {}
 
+    /**
+     * A daemon would load the checkers from checker.jar rather than from the build directories on
+     * the processor path, so it is never used during development.
+     */
+    @Override
+    protected boolean canUseDaemon() {
+        return false;
+    }
+
     @Override
     protected List<String> createRuntimeClasspath(final List<String> argsList) {
         return prependPathOpts(RUNTIME_CP_PROP, new ArrayList<String>());
@@ -17,6 +17,10 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
 /**
  * This class behaves similarly to javac. CheckerMain does the following:
  *
@@ -33,6 +37,9 @@ import java.util.zip.ZipEntry;
  * To debug this class, use the {@code -AoutputArgsToFile=FILENAME} command-line argument or {@code
  * -AoutputArgsToFile=-} to output to standard out.
  *
+ * <p>With the {@value #DAEMON_OPT} option, CheckerMain runs the compiler in a long-running {@link
+ * CheckerDaemon} instead of a new JVM, so that consecutive compilations reuse a warm JVM.
+ *
  * <p>"To run the Checker Framework" really means to run java, where the program being run is a
  * special version of javac, and javac is passed a {@code -processor} command-line argument that
  * mentions a Checker Framework checker. There are 5 relevant classpaths: The classpath and
@@ -58,6 +65,12 @@ public class CheckerMain {
         System.exit(exitStatus);
     }
 
+    /**
+     * The option that makes CheckerMain run the compiler in a {@link CheckerDaemon}, starting one
+     * if necessary.
+     */
+    public static final String DAEMON_OPT = "-daemon";
+
     /** The path to the annotated jdk jar to use */
     protected final File jdkJar;
 
@@ -84,6 +97,9 @@ public class CheckerMain {
 
     private final List<File> argListFiles;
 
+    /** Whether to run the compiler in a {@link CheckerDaemon}. */
+    private final boolean useDaemon;
+
     /**
      * Construct all the relevant file locations and Java version given the path to this jar and a
      * set of directories in which to search for jars.
@@ -94,6 +110,7 @@ public class CheckerMain {
         final File searchPath = checkerJar.getParentFile();
         this.checkerQualJar = new File(searchPath, "checker-qual.jar");
 
+        this.useDaemon = args.remove(DAEMON_OPT);
         replaceShorthandProcessor(args);
         argListFiles = collectArgFiles(args);
 
@@ -127,6 +144,14 @@ public class CheckerMain {
         this.ppOpts.addAll(ppOpts);
     }
 
+    /**
+     * Returns true if the compiler can run in a {@link CheckerDaemon}, which needs a checker.jar to
+     * put on its classpath.
+     */
+    protected boolean canUseDaemon() {
+        return checkerJar.isFile();
+    }
+
     public void addToRuntimeClasspath(List<String> runtimeClasspathOpts) {
         this.runtimeClasspath.addAll(runtimeClasspathOpts);
     }
@@ -367,21 +392,41 @@ public class CheckerMain {
      * classpath
      */
     public List<String> getExecArguments() {
-        List<String> args =
-                new ArrayList<String>(jvmOpts.size() + cpOpts.size() + toolOpts.size() + 7);
+        List<String> args = getJvmArguments(runtimeClasspath);
+        addMainToArgs(args);
+        args.addAll(getCompilerArguments(true));
+        return args;
+    }
+
+    /**
+     * Returns the java command and the JVM options with which to run the compiler.
+     *
+     * @param classpath the runtime classpath of the JVM
+     */
+    private List<String> getJvmArguments(List<String> classpath) {
+        List<String> args = new ArrayList<String>(jvmOpts.size() + 6);
 
         final String java = PluginUtil.getJavaCommand(System.getProperty("java.home"), System.out);
         args.add(java);
 
         args.add("-classpath");
-        args.add(PluginUtil.join(File.pathSeparator, runtimeClasspath));
+        args.add(PluginUtil.join(File.pathSeparator, classpath));
         args.add("-ea");
         // com.sun.tools needs to be enabled separately
         args.add("-ea:com.sun.tools...");
 
         args.addAll(jvmOpts);
+        return args;
+    }
 
-        addMainToArgs(args);
+    /**
+     * Returns the arguments of the compiler.
+     *
+     * @param quotePaths whether to quote paths that contain spaces, which is only necessary when
+     *     the arguments are passed to a new process
+     */
+    private List<String> getCompilerArguments(boolean quotePaths) {
+        List<String> args = new ArrayList<String>(cpOpts.size() + toolOpts.size() + 5);
 
         // No classes on the compilation bootclasspath will be loaded
         // during compilation, but the classes are read by the compiler
@@ -396,12 +441,14 @@ public class CheckerMain {
                         + PluginUtil.join(File.pathSeparator, compilationBootclasspath));
 
         if (!argsListHasClassPath(argListFiles)) {
+            String classpath = PluginUtil.join(File.pathSeparator, cpOpts);
             args.add("-classpath");
-            args.add(quote(PluginUtil.join(File.pathSeparator, cpOpts)));
+            args.add(quotePaths ? quote(classpath) : classpath);
         }
         if (!argsListHasProcessorPath(argListFiles)) {
+            String processorpath = PluginUtil.join(File.pathSeparator, ppOpts);
             args.add("-processorpath");
-            args.add(quote(PluginUtil.join(File.pathSeparator, ppOpts)));
+            args.add(quotePaths ? quote(processorpath) : processorpath);
         }
 
         args.addAll(toolOpts);
@@ -426,10 +473,42 @@ public class CheckerMain {
             }
         }
 
+        if (useDaemon && canUseDaemon()) {
+            Integer exitStatus = invokeDaemon();
+            if (exitStatus != null) {
+                return exitStatus;
+            }
+        }
+
         // Actually invoke the compiler
         return ExecUtil.execute(args.toArray(new String[args.size()]), System.out, System.err);
     }
 
+    /**
+     * Runs the compiler in a {@link CheckerDaemon} whose classpath also contains checker.jar, so
+     * that the checkers are loaded once for all compilations.
+     *
+     * @return the exit status of the compiler, or null if no daemon could run it
+     */
+    private /*@Nullable*/ Integer invokeDaemon() {
+        List<String> daemonClasspath = new ArrayList<String>(runtimeClasspath);
+        daemonClasspath.add(checkerJar.getAbsolutePath());
+
+        List<String> compilerArgs = getCompilerArguments(false);
+        for (int i = 0; i < compilerArgs.size(); i++) {
+            if (compilerArgs.get(i).startsWith("-AoutputArgsToFile=")) {
+                compilerArgs.remove(i);
+                break;
+            }
+        }
+        return CheckerDaemon.compile(
+                getJvmArguments(daemonClasspath),
+                checkerJar,
+                compilerArgs,
+                System.out,
+                System.err);
+    }
+
     private static void outputArgumentsToFile(String outputFilename, List<String> args) {
         if (outputFilename != null) {
             String errorMessage = null;
@@ -40,10 +40,13 @@ public class ContractsUtils {
 
     /** Returns an instance of the {@link ContractsUtils} class. */
     public static ContractsUtils getInstance(GenericAnnotatedTypeFactory<?, ?, ?, ?> factory) {
-        if (instance == null || instance.factory != factory) {
-            instance = new ContractsUtils(factory);
+        // Read the field once: another compilation in this JVM may replace it concurrently.
+        ContractsUtils result = instance;
+        if (result == null || result.factory != factory) {
+            result = new ContractsUtils(factory);
+            instance = result;
         }
-        return instance;
+        return result;
     }
 
     /**
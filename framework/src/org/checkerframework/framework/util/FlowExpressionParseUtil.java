@@ -19,7 +19,9 @@ import com.sun.tools.javac.code.Type;
 import com.sun.tools.javac.code.Type.ArrayType;
 import com.sun.tools.javac.code.Type.ClassType;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.annotation.processing.ProcessingEnvironment;
@@ -51,6 +53,7 @@ import org.checkerframework.dataflow.cfg.node.Node;
 import org.checkerframework.dataflow.cfg.node.ObjectCreationNode;
 import org.checkerframework.framework.source.Result;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
+import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ElementUtils;
 import org.checkerframework.javacutil.InternalUtils;
 import org.checkerframework.javacutil.Pair;
@@ -88,19 +91,71 @@ public class FlowExpressionParseUtil {
     }
 
     // Each of the below patterns is anchored with ^...$.
-    /** Matches a parameter */
+    // This class no longer uses them: it scans the expression string instead.
+    /**
+     * Matches a parameter
+     *
+     * @deprecated not used by this class; will be removed
+     */
+    @Deprecated
     protected static final Pattern parameterPattern = anchored(parameterRegex);
-    /** Matches an identifier */
+    /**
+     * Matches an identifier
+     *
+     * @deprecated not used by this class; will be removed
+     */
+    @Deprecated
     protected static final Pattern identifierPattern = anchored(identifierRegex);
-    /** Matches integer literals */
+    /**
+     * Matches integer literals
+     *
+     * @deprecated not used by this class; will be removed
+     */
+    @Deprecated
     protected static final Pattern intPattern = anchored("[-+]?[0-9]+");
-    /** Matches long literals */
+    /**
+     * Matches long literals
+     *
+     * @deprecated not used by this class; will be removed
+     */
+    @Deprecated
     protected static final Pattern longPattern = anchored("[-+]?[0-9]+[Ll]");
-    /** Matches string literals */
+    /**
+     * Matches string literals
+     *
+     * @deprecated not used by this class; will be removed
+     */
+    @Deprecated
     protected static final Pattern stringPattern = anchored(stringRegex);
-    /** Matches an expression contained in matching start and end parentheses */
+    /**
+     * Matches an expression contained in matching start and end parentheses
+     *
+     * @deprecated not used by this class; will be removed
+     */
+    @Deprecated
     protected static final Pattern parenthesesPattern = anchored("\\((.*)\\)");
 
+    /** The maximum number of expression strings whose syntax is cached. */
+    private static final int PARSE_CACHE_SIZE = 500;
+
+    /**
+     * The syntax of recently parsed expression strings, which does not depend on the context. The
+     * same strings, from the annotations of a method or class, are parsed at every use site.
+     */
+    private static final Map<String, ParsedExpression> parsedExpressions =
+            Collections.synchronizedMap(
+                    CollectionUtils.createLRUCache(
+                            PARSE_CACHE_SIZE, "FlowExpressionParseUtil.parsedExpressions"));
+
+    /**
+     * Like {@link #parsedExpressions}, for strings that are parsed as the member of a receiver.
+     * Literals and parameters cannot be members, so such strings may have a different syntax.
+     */
+    private static final Map<String, ParsedExpression> parsedMembers =
+            Collections.synchronizedMap(
+                    CollectionUtils.createLRUCache(
+                            PARSE_CACHE_SIZE, "FlowExpressionParseUtil.parsedMembers"));
+
     /**
      * Parse a string and return its representation as a {@link Receiver}, or throw an {@link
      * FlowExpressionParseException}.
@@ -128,42 +183,165 @@ public class FlowExpressionParseUtil {
     private static FlowExpressions.Receiver parseHelper(
             String expression, FlowExpressionContext context, TreePath path)
             throws FlowExpressionParseException {
-        expression = expression.trim();
+        ParsedExpression parsed = parseSyntax(expression, context.parsingMember);
+        expression = parsed.expression;
 
         ProcessingEnvironment env = context.checkerContext.getProcessingEnvironment();
         Types types = env.getTypeUtils();
 
-        if (isNullLiteral(expression, context)) {
-            return parseNullLiteral(expression, types);
-        } else if (isIntLiteral(expression, context)) {
-            return parseIntLiteral(expression, types);
-        } else if (isLongLiteral(expression, context)) {
-            return parseLongLiteral(expression, types);
-        } else if (isStringLiteral(expression, context)) {
-            return parseStringLiteral(expression, types, env.getElementUtils());
-        } else if (isThisLiteral(expression, context)) {
-            return parseThis(expression, context);
-        } else if (isSuperLiteral(expression, context)) {
-            return parseSuper(expression, types, context);
-        } else if (isIdentifier(expression, context)) {
-            return parseIdentifier(expression, env, path, context);
-        } else if (isParameter(expression, context)) {
-            return parseParameter(expression, context);
-        } else if (isArray(expression, context)) {
-            return parseArray(expression, context, path);
-        } else if (isMethod(expression, context)) {
-            return parseMethod(expression, context, path, env);
-        } else if (isMemberSelect(expression, context)) {
-            return parseMemberSelect(expression, env, context, path);
-        } else if (isParentheses(expression, context)) {
-            return parseParentheses(expression, context, path);
-        } else {
-            throw constructParserException(expression);
+        switch (parsed.kind) {
+            case NULL_LITERAL:
+                return parseNullLiteral(expression, types);
+            case INT_LITERAL:
+                return parseIntLiteral(expression, types);
+            case LONG_LITERAL:
+                return parseLongLiteral(expression, types);
+            case STRING_LITERAL:
+                return parseStringLiteral(expression, types, env.getElementUtils());
+            case THIS_LITERAL:
+                return parseThis(expression, context);
+            case SUPER_LITERAL:
+                return parseSuper(expression, types, context);
+            case IDENTIFIER:
+                return parseIdentifier(expression, env, path, context);
+            case PARAMETER:
+                return parseParameter(parsed, context);
+            case ARRAY_ACCESS:
+                return parseArray(parsed, context, path);
+            case METHOD_CALL:
+                return parseMethod(parsed, context, path, env);
+            case MEMBER_SELECT:
+                return parseMemberSelect(parsed, env, context, path);
+            case PARENTHESES:
+                // Do not modify the value of recursiveCall, since a parenthesis match is
+                // essentially a match to a no-op and should not semantically affect the parsing.
+                return parseHelper(parsed.first, context, path);
+            default:
+                throw constructParserException(expression);
+        }
+    }
+
+    /** The syntactic kinds of flow expressions. */
+    private enum ExpressionKind {
+        NULL_LITERAL,
+        INT_LITERAL,
+        LONG_LITERAL,
+        STRING_LITERAL,
+        THIS_LITERAL,
+        SUPER_LITERAL,
+        IDENTIFIER,
+        PARAMETER,
+        ARRAY_ACCESS,
+        METHOD_CALL,
+        MEMBER_SELECT,
+        PARENTHESES,
+        INVALID
+    }
+
+    /**
+     * An expression string split into its kind and its direct subexpressions, which are parsed
+     * again, through the cache, when they are resolved. Names are not resolved: that depends on
+     * the context, and decides, for example, whether {@code a.b.c} selects a field of package
+     * {@code a} or of variable {@code a}.
+     */
+    private static final class ParsedExpression {
+        /** The trimmed expression string. */
+        final String expression;
+
+        /** The kind of the expression. */
+        final ExpressionKind kind;
+
+        /**
+         * The first part of the expression: the index of a parameter, the array of an array
+         * access, the name of a method, the receiver of a member select, or the expression in
+         * parentheses; null for other kinds.
+         */
+        final /*@Nullable*/ String first;
+
+        /**
+         * The second part of the expression: the index of an array access, the arguments of a
+         * method call, or the member of a member select; null for other kinds.
+         */
+        final /*@Nullable*/ String second;
+
+        ParsedExpression(
+                String expression,
+                ExpressionKind kind,
+                /*@Nullable*/ String first,
+                /*@Nullable*/ String second) {
+            this.expression = expression;
+            this.kind = kind;
+            this.first = first;
+            this.second = second;
         }
     }
 
-    private static boolean isMemberSelect(String s, FlowExpressionContext context) {
-        return parseMemberSelect(s) != null;
+    /**
+     * Returns the syntax of {@code expression}, from the cache if possible.
+     *
+     * @param expression the expression string, possibly surrounded by whitespace
+     * @param parsingMember whether the expression is the member of a receiver
+     */
+    private static ParsedExpression parseSyntax(String expression, boolean parsingMember) {
+        Map<String, ParsedExpression> cache = parsingMember ? parsedMembers : parsedExpressions;
+        ParsedExpression parsed = cache.get(expression);
+        if (parsed == null) {
+            parsed = computeSyntax(expression.trim(), parsingMember);
+            cache.put(expression, parsed);
+        }
+        return parsed;
+    }
+
+    /**
+     * Determines the syntax of the trimmed string {@code s}. Literals and parameters cannot be the
+     * member of a receiver; otherwise, the kinds are tried in the order of {@link
+     * ExpressionKind}.
+     */
+    private static ParsedExpression computeSyntax(String s, boolean parsingMember) {
+        if (!parsingMember) {
+            if (s.equals("null")) {
+                return new ParsedExpression(s, ExpressionKind.NULL_LITERAL, null, null);
+            } else if (isIntLiteral(s)) {
+                return new ParsedExpression(s, ExpressionKind.INT_LITERAL, null, null);
+            } else if (isLongLiteral(s)) {
+                return new ParsedExpression(s, ExpressionKind.LONG_LITERAL, null, null);
+            } else if (isStringLiteral(s)) {
+                return new ParsedExpression(s, ExpressionKind.STRING_LITERAL, null, null);
+            } else if (s.equals("this")) {
+                // Do not allow "#0" because it's ambiguous:  a reader might assume that #0 is the
+                // first formal parameter.
+                return new ParsedExpression(s, ExpressionKind.THIS_LITERAL, null, null);
+            } else if (s.equals("super")) {
+                return new ParsedExpression(s, ExpressionKind.SUPER_LITERAL, null, null);
+            }
+        }
+        if (isIdentifier(s)) {
+            return new ParsedExpression(s, ExpressionKind.IDENTIFIER, null, null);
+        }
+        if (!parsingMember && isParameter(s)) {
+            return new ParsedExpression(s, ExpressionKind.PARAMETER, s.substring(1), null);
+        }
+        Pair<Pair<String, String>, String> array = parseArray(s);
+        if (array != null && array.second.isEmpty()) {
+            return new ParsedExpression(
+                    s, ExpressionKind.ARRAY_ACCESS, array.first.first, array.first.second);
+        }
+        Pair<Pair<String, String>, String> method = parseMethod(s);
+        if (method != null && method.second.isEmpty()) {
+            return new ParsedExpression(
+                    s, ExpressionKind.METHOD_CALL, method.first.first, method.first.second);
+        }
+        Pair<String, String> select = parseMemberSelect(s);
+        if (select != null) {
+            return new ParsedExpression(
+                    s, ExpressionKind.MEMBER_SELECT, select.first, select.second);
+        }
+        // TODO: this accepts "(a)+(b)" where the inital and final parens do not match.
+        if (s.length() > 2 && s.charAt(0) == '(' && s.charAt(s.length() - 1) == ')') {
+            return new ParsedExpression(
+                    s, ExpressionKind.PARENTHESES, s.substring(1, s.length() - 1), null);
+        }
+        return new ParsedExpression(s, ExpressionKind.INVALID, null, null);
     }
 
     /**
@@ -186,10 +364,9 @@ public class FlowExpressionParseUtil {
                     array.first.first + "[" + array.first.second + "]", array.second.substring(1));
         }
 
-        Pattern memberSelectOfStringPattern = anchored("(" + stringRegex + ")" + "\\.(.*)");
-        Matcher m = memberSelectOfStringPattern.matcher(s);
-        if (m.matches()) {
-            return Pair.of(m.group(1), m.group(2));
+        int stringEnd = stringLiteralEnd(s, 0);
+        if (stringEnd != -1 && stringEnd < s.length() && s.charAt(stringEnd) == '.') {
+            return Pair.of(s.substring(0, stringEnd), s.substring(stringEnd + 1));
         }
 
         int nextRParenPos = matchingCloseParen(s, 0, '(', ')');
@@ -215,11 +392,12 @@ public class FlowExpressionParseUtil {
     }
 
     private static Receiver parseMemberSelect(
-            String s, ProcessingEnvironment env, FlowExpressionContext context, TreePath path)
+            ParsedExpression parsed,
+            ProcessingEnvironment env,
+            FlowExpressionContext context,
+            TreePath path)
             throws FlowExpressionParseException {
-        Pair<String, String> select = parseMemberSelect(s);
-        assert select != null : "isMemberSelect must be called first";
-
+        String s = parsed.expression;
         Receiver receiver;
         String memberSelected;
 
@@ -236,8 +414,8 @@ public class FlowExpressionParseUtil {
                         s, "a class cannot terminate a flow expression string");
             }
         } else {
-            String receiverString = select.first;
-            memberSelected = select.second;
+            String receiverString = parsed.first;
+            memberSelected = parsed.second;
             receiver = parseHelper(receiverString, context, path);
         }
 
@@ -256,23 +434,26 @@ public class FlowExpressionParseUtil {
 
     // ########
 
-    private static boolean isNullLiteral(String s, FlowExpressionContext context) {
-        if (context.parsingMember) {
-            return false;
-        }
-        return s.equals("null");
-    }
-
     private static Receiver parseNullLiteral(String expression, Types types) {
         return new ValueLiteral(types.getNullType(), (Object) null);
     }
 
-    private static boolean isIntLiteral(String s, FlowExpressionContext context) {
-        if (context.parsingMember) {
-            return false;
+    /** Returns the index after the optional sign and the digits that start at {@code start}. */
+    private static int digitsEnd(String s, int start) {
+        int i = start;
+        if (i < s.length() && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            i++;
+        }
+        int digitsStart = i;
+        while (i < s.length() && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+            i++;
         }
-        Matcher intMatcher = intPattern.matcher(s);
-        return intMatcher.matches();
+        return i == digitsStart ? -1 : i;
+    }
+
+    /** Return true iff s is an int literal, like {@code -12}. */
+    private static boolean isIntLiteral(String s) {
+        return digitsEnd(s, 0) == s.length();
     }
 
     private static Receiver parseIntLiteral(String s, Types types) {
@@ -280,12 +461,12 @@ public class FlowExpressionParseUtil {
         return new ValueLiteral(types.getPrimitiveType(TypeKind.INT), val);
     }
 
-    private static boolean isLongLiteral(String s, FlowExpressionContext context) {
-        if (context.parsingMember) {
-            return false;
-        }
-        Matcher longMatcher = longPattern.matcher(s);
-        return longMatcher.matches();
+    /** Return true iff s is a long literal, like {@code 12L}. */
+    private static boolean isLongLiteral(String s) {
+        int end = digitsEnd(s, 0);
+        return end != -1
+                && end == s.length() - 1
+                && (s.charAt(end) == 'L' || s.charAt(end) == 'l');
     }
 
     private static Receiver parseLongLiteral(String s, Types types) {
@@ -296,12 +477,27 @@ public class FlowExpressionParseUtil {
     }
 
     /** Return true iff s is a string literal. */
-    private static boolean isStringLiteral(String s, FlowExpressionContext context) {
-        if (context.parsingMember) {
-            return false;
+    private static boolean isStringLiteral(String s) {
+        return stringLiteralEnd(s, 0) == s.length();
+    }
+
+    /**
+     * Returns the index after the string literal that starts at {@code start}, or -1 if there is
+     * no string literal at {@code start}. A backslash escapes the next character.
+     */
+    private static int stringLiteralEnd(String s, int start) {
+        if (start >= s.length() || s.charAt(start) != '"') {
+            return -1;
         }
-        Matcher stringMatcher = stringPattern.matcher(s);
-        return stringMatcher.matches();
+        int i = start + 1;
+        while (i < s.length()) {
+            char ch = s.charAt(i);
+            if (ch == '"') {
+                return i + 1;
+            }
+            i += ch == '\\' ? 2 : 1;
+        }
+        return -1;
     }
 
     private static Receiver parseStringLiteral(String s, Types types, Elements elements) {
@@ -310,17 +506,6 @@ public class FlowExpressionParseUtil {
                 types.getDeclaredType(stringTypeElem), s.substring(1, s.length() - 1));
     }
 
-    private static boolean isThisLiteral(String s, FlowExpressionContext context) {
-        if (context.parsingMember) {
-            // TODO: this is probably wrong because you could have and inner class receiver
-            // Outer.this
-            return false;
-        }
-        // Do not allow "#0" because it's ambiguous:  a reader might assume that #0 is the first
-        // formal parameter.
-        return s.equals("this");
-    }
-
     private static Receiver parseThis(String s, FlowExpressionContext context) {
         if (!(context.receiver == null || context.receiver.containsUnknown())) {
             // "this" is the receiver of the context
@@ -330,13 +515,6 @@ public class FlowExpressionParseUtil {
         }
     }
 
-    private static boolean isSuperLiteral(String s, FlowExpressionContext context) {
-        if (context.parsingMember) {
-            return false;
-        }
-        return s.equals("super");
-    }
-
     private static Receiver parseSuper(String s, Types types, FlowExpressionContext context)
             throws FlowExpressionParseException {
         // super literal
@@ -360,9 +538,26 @@ public class FlowExpressionParseUtil {
         return new ThisReference(superType);
     }
 
-    private static boolean isIdentifier(String s, FlowExpressionContext context) {
-        Matcher identifierMatcher = identifierPattern.matcher(s);
-        return identifierMatcher.matches();
+    /**
+     * Returns the length of the identifier at the start of {@code s}, or 0 if {@code s} does not
+     * start with an identifier. Like {@link #identifierRegex}, permits '$' in the name.
+     */
+    private static int identifierLength(String s) {
+        int i = 0;
+        while (i < s.length()) {
+            char ch = s.charAt(i);
+            boolean letter =
+                    (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || ch == '_' || ch == '$';
+            if (!letter && (i == 0 || ch < '0' || ch > '9')) {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isIdentifier(String s) {
+        return !s.isEmpty() && identifierLength(s) == s.length();
     }
 
     private static Receiver parseIdentifier(
@@ -445,29 +640,31 @@ public class FlowExpressionParseUtil {
         return new FieldAccess(locationOfField, fieldType, fieldElem);
     }
 
-    private static boolean isParameter(String s, FlowExpressionContext contex) {
-        if (contex.parsingMember) {
+    /** Return true iff s is a formal parameter use, like {@code #2}. */
+    private static boolean isParameter(String s) {
+        if (s.length() < 2 || s.charAt(0) != '#' || s.charAt(1) == '0') {
             return false;
         }
-        Matcher parameterMatcher = parameterPattern.matcher(s);
-        return parameterMatcher.matches();
+        for (int i = 1; i < s.length(); i++) {
+            if (s.charAt(i) < '0' || s.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
     }
 
-    private static Receiver parseParameter(String s, FlowExpressionContext context)
+    private static Receiver parseParameter(ParsedExpression parsed, FlowExpressionContext context)
             throws FlowExpressionParseException {
-        Matcher parameterMatcher = parameterPattern.matcher(s);
-        if (!parameterMatcher.matches()) {
-            return null;
-        }
+        String s = parsed.expression;
         if (context.arguments == null) {
             throw constructParserException(s, "no parameter found");
         }
-        int idx = -1;
+        int idx;
         try {
-            idx = Integer.parseInt(parameterMatcher.group(1));
+            idx = Integer.parseInt(parsed.first);
         } catch (NumberFormatException e) {
-            // cannot occur by the way the pattern is defined (matches only numbers)
-            assert false;
+            // The index has too many digits.
+            throw new FlowExpressionParseException("flowexpr.parse.index.too.big", parsed.first);
         }
         if (idx > context.arguments.size()) {
             throw new FlowExpressionParseException(
@@ -485,13 +682,11 @@ public class FlowExpressionParseUtil {
      */
     private static Pair<Pair<String, String>, String> parseMethod(String s) {
         // Parse Identifier
-        Pattern identParser = Pattern.compile("^(" + identifierRegex + ").*$");
-        Matcher m = identParser.matcher(s);
-        if (!m.matches()) {
+        int i = identifierLength(s);
+        if (i == 0) {
             return null;
         }
-        String ident = m.group(1);
-        int i = ident.length();
+        String ident = s.substring(0, i);
 
         int rparenPos = matchingCloseParen(s, i, '(', ')');
         if (rparenPos == -1) {
@@ -503,23 +698,17 @@ public class FlowExpressionParseUtil {
         return Pair.of(Pair.of(ident, arguments), remaining);
     }
 
-    private static boolean isMethod(String s, FlowExpressionContext contex) {
-        Pair<Pair<String, String>, String> result = parseMethod(s);
-        return result != null && result.second.isEmpty();
-    }
-
     private static Receiver parseMethod(
-            String s, FlowExpressionContext context, TreePath path, ProcessingEnvironment env)
+            ParsedExpression parsed,
+            FlowExpressionContext context,
+            TreePath path,
+            ProcessingEnvironment env)
             throws FlowExpressionParseException {
-        Pair<Pair<String, String>, String> method = parseMethod(s);
-        if (method == null) {
-            return null;
-        }
-
-        String methodName = method.first.first;
+        String s = parsed.expression;
+        String methodName = parsed.first;
 
         // parse parameter list
-        String parameterList = method.first.second;
+        String parameterList = parsed.second;
         List<Receiver> parameters =
                 ParameterListParser.parseParameterList(
                         parameterList, true, context.copyAndUseOuterReceiver(), path);
@@ -657,14 +846,10 @@ public class FlowExpressionParseUtil {
         while (i < s.length()) {
             char ch = s.charAt(i++);
             if (ch == '"') {
-                i--;
-                // TODO: inefficient to re-compute this on every iteration, should be static
-                Pattern stringPattern = anchored("(" + stringRegex + ").*");
-                Matcher m = stringPattern.matcher(s.substring(i));
-                if (!m.matches()) {
+                i = stringLiteralEnd(s, i - 1);
+                if (i == -1) {
                     break;
                 }
-                i += m.group(1).length();
             } else if (ch == open) {
                 depth++;
             } else if (ch == close) {
@@ -679,20 +864,12 @@ public class FlowExpressionParseUtil {
         return -1;
     }
 
-    private static boolean isArray(String s, FlowExpressionContext context) {
-        Pair<Pair<String, String>, String> result = parseArray(s);
-        return result != null && result.second.isEmpty();
-    }
-
-    private static Receiver parseArray(String s, FlowExpressionContext context, TreePath path)
+    private static Receiver parseArray(
+            ParsedExpression parsed, FlowExpressionContext context, TreePath path)
             throws FlowExpressionParseException {
-        Pair<Pair<String, String>, String> array = parseArray(s);
-        if (array == null) {
-            return null;
-        }
-
-        String receiverStr = array.first.first;
-        String indexStr = array.first.second;
+        String s = parsed.expression;
+        String receiverStr = parsed.first;
+        String indexStr = parsed.second;
         Receiver receiver = parseHelper(receiverStr, context, path);
         FlowExpressionContext contextForIndex = context.copyAndUseOuterReceiver();
         Receiver index = parseHelper(indexStr, contextForIndex, path);
@@ -706,23 +883,6 @@ public class FlowExpressionParseUtil {
         return result;
     }
 
-    // TODO: this returns true for "(a)+(b)" where the inital and final parens do not match.
-    private static boolean isParentheses(String s, FlowExpressionContext contex) {
-        return s.length() > 2 && s.charAt(0) == '(' && s.charAt(s.length() - 1) == ')';
-    }
-
-    private static Receiver parseParentheses(String s, FlowExpressionContext context, TreePath path)
-            throws FlowExpressionParseException {
-        if (!isParentheses(s, context)) {
-            return null;
-        }
-        // TODO: this is the wrong thing for an expression like "(a)+(b)".
-        String expressionString = s.substring(1, s.length() - 1);
-        // Do not modify the value of recursiveCall, since a parenthesis match is essentially
-        // a match to a no-op and should not semantically affect the parsing.
-        return parseHelper(expressionString, context, path);
-    }
-
     /**
      * Matches a substring of {@code expression} to a package and class name (starting from the
      * beginning of the string).
@@ -8,6 +8,7 @@ import org.checkerframework.checker.nullness.qual.PolyNull;
 */
 
 import java.lang.annotation.Annotation;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -16,6 +17,8 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
 import org.checkerframework.dataflow.qual.Pure;
 import org.checkerframework.dataflow.qual.SideEffectFree;
 import org.checkerframework.framework.qual.PolymorphicQualifier;
@@ -177,6 +180,38 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
     /** All qualifiers, including polymorphic qualifiers. */
     private final Set<AnnotationMirror> typeQualifiers;
 
+    /**
+     * The qualifiers whose annotation type has no elements, numbered from 0. Two annotations of
+     * such a type are the same if they have the same annotation type, so these qualifiers can be
+     * looked up by the element of their annotation type instead of by comparing annotations.
+     */
+    private final AnnotationMirror[] indexedQualifiers;
+
+    /**
+     * The index in {@link #indexedQualifiers} of each qualifier in it, by the element of its
+     * annotation type. Elements are compared by identity, so a lookup does not compute the name of
+     * the annotation.
+     */
+    private final Map<Element, Integer> qualifierIndices;
+
+    /**
+     * For each qualifier in {@link #indexedQualifiers}, the indices of the qualifiers in {@link
+     * #indexedQualifiers} that it is a subtype of, including itself.
+     */
+    private final BitSet[] indexedSupertypes;
+
+    /**
+     * The lubs of all pairs of qualifiers in {@link #indexedQualifiers}, by their indices; null if
+     * not yet computed. An entry is null if the two qualifiers are in different hierarchies.
+     */
+    private AnnotationMirror[][] indexedLubs = null;
+
+    /**
+     * The glbs of all pairs of qualifiers in {@link #indexedQualifiers}, by their indices; null if
+     * not yet computed. An entry is null if the two qualifiers are in different hierarchies.
+     */
+    private AnnotationMirror[][] indexedGlbs = null;
+
     public MultiGraphQualifierHierarchy(MultiGraphFactory f) {
         this(f, (Object[]) null);
     }
@@ -212,9 +247,64 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
         Set<AnnotationMirror> typeQualifiers = AnnotationUtils.createAnnotationSet();
         typeQualifiers.addAll(supertypesMap.keySet());
         this.typeQualifiers = Collections.unmodifiableSet(typeQualifiers);
+
+        Map<Element, Integer> qualifierIndices = new HashMap<>();
+        for (AnnotationMirror qual : supertypesMap.keySet()) {
+            if (hasNoElements(qual)) {
+                qualifierIndices.put(annotationType(qual), qualifierIndices.size());
+            }
+        }
+        this.qualifierIndices = qualifierIndices;
+        this.indexedQualifiers = new AnnotationMirror[qualifierIndices.size()];
+        for (AnnotationMirror qual : supertypesMap.keySet()) {
+            Integer index = qualifierIndices.get(annotationType(qual));
+            if (index != null) {
+                indexedQualifiers[index] = qual;
+            }
+        }
+        this.indexedSupertypes = new BitSet[indexedQualifiers.length];
+        for (int i = 0; i < indexedQualifiers.length; i++) {
+            BitSet supers = new BitSet(indexedQualifiers.length);
+            supers.set(i);
+            for (AnnotationMirror sup : supertypesMap.get(indexedQualifiers[i])) {
+                Integer j = qualifierIndices.get(annotationType(sup));
+                if (j != null) {
+                    supers.set(j);
+                }
+            }
+            indexedSupertypes[i] = supers;
+        }
         // System.out.println("MGH: " + this);
     }
 
+    /** Returns the element of the annotation type of {@code qual}. */
+    private static Element annotationType(AnnotationMirror qual) {
+        return qual.getAnnotationType().asElement();
+    }
+
+    /** Returns true if the annotation type of {@code qual} declares no elements. */
+    private static boolean hasNoElements(AnnotationMirror qual) {
+        for (Element member : annotationType(qual).getEnclosedElements()) {
+            if (member.getKind() == ElementKind.METHOD) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the index of {@code qual} in {@link #indexedQualifiers}, or -1 if it is null or not
+     * indexed. An annotation whose annotation type is another element with the same name, such as
+     * one from another compilation, is not indexed; callers then compare the annotations.
+     */
+    private int indexOf(/*@Nullable*/ AnnotationMirror qual) {
+        if (qual == null) {
+            return -1;
+        }
+        Integer index = qualifierIndices.get(annotationType(qual));
+        return index == null ? -1 : index;
+    }
+
     /**
      * Method to finalize the qualifier hierarchy before it becomes unmodifiable. The parameters
      * pass all fields and allow modification.
@@ -401,6 +491,27 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
 
     @Override
     public AnnotationMirror leastUpperBound(AnnotationMirror a1, AnnotationMirror a2) {
+        int i1 = indexOf(a1);
+        int i2 = indexOf(a2);
+        if (i1 >= 0 && i2 >= 0) {
+            if (indexedLubs == null) {
+                AnnotationMirror[][] newlubs =
+                        new AnnotationMirror[indexedQualifiers.length][indexedQualifiers.length];
+                for (int i = 0; i < indexedQualifiers.length; i++) {
+                    for (int j = 0; j < indexedQualifiers.length; j++) {
+                        newlubs[i][j] =
+                                computeLeastUpperBound(indexedQualifiers[i], indexedQualifiers[j]);
+                    }
+                }
+                indexedLubs = newlubs;
+            }
+            return indexedLubs[i1][i2];
+        }
+        return computeLeastUpperBound(a1, a2);
+    }
+
+    /** Computes the lub of two qualifiers without using {@link #indexedLubs}. */
+    private AnnotationMirror computeLeastUpperBound(AnnotationMirror a1, AnnotationMirror a2) {
         if (!AnnotationUtils.areSameIgnoringValues(getTopAnnotation(a1), getTopAnnotation(a2))) {
             return null;
         } else if (isSubtype(a1, a2)) {
@@ -431,6 +542,28 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
 
     @Override
     public AnnotationMirror greatestLowerBound(AnnotationMirror a1, AnnotationMirror a2) {
+        int i1 = indexOf(a1);
+        int i2 = indexOf(a2);
+        if (i1 >= 0 && i2 >= 0) {
+            if (indexedGlbs == null) {
+                AnnotationMirror[][] newglbs =
+                        new AnnotationMirror[indexedQualifiers.length][indexedQualifiers.length];
+                for (int i = 0; i < indexedQualifiers.length; i++) {
+                    for (int j = 0; j < indexedQualifiers.length; j++) {
+                        newglbs[i][j] =
+                                computeGreatestLowerBound(
+                                        indexedQualifiers[i], indexedQualifiers[j]);
+                    }
+                }
+                indexedGlbs = newglbs;
+            }
+            return indexedGlbs[i1][i2];
+        }
+        return computeGreatestLowerBound(a1, a2);
+    }
+
+    /** Computes the glb of two qualifiers without using {@link #indexedGlbs}. */
+    private AnnotationMirror computeGreatestLowerBound(AnnotationMirror a1, AnnotationMirror a2) {
         if (AnnotationUtils.areSameIgnoringValues(a1, a2)) {
             return AnnotationUtils.areSame(a1, a2) ? a1 : getBottomAnnotation(a1);
         }
@@ -469,6 +602,11 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
      */
     @Override
     public boolean isSubtype(AnnotationMirror subAnno, AnnotationMirror superAnno) {
+        int subIndex = indexOf(subAnno);
+        int superIndex = indexOf(superAnno);
+        if (subIndex >= 0 && superIndex >= 0) {
+            return indexedSupertypes[subIndex].get(superIndex);
+        }
         checkAnnoInGraph(subAnno);
         checkAnnoInGraph(superAnno);
 
@@ -0,0 +1,187 @@
+package org.checkerframework.framework.util;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import javax.lang.model.element.AnnotationMirror;
+import org.checkerframework.javacutil.AnnotationUtils;
+
+/**
+ * A set of annotations that is backed by a sorted array. It has the same behavior as the sets
+ * returned by {@link AnnotationUtils#createAnnotationSet()}: annotations are compared, and iterated
+ * over, according to {@link AnnotationUtils#annotationOrdering()}.
+ *
+ * <p>Most annotated types and abstract values have one annotation per qualifier hierarchy, so
+ * their sets contain very few elements. For such sets a linear scan is as fast as a tree lookup,
+ * and an array uses much less memory than the entries of a {@link java.util.TreeSet}. Use this
+ * class only for sets that stay small: insertion and removal take time linear in the size of the
+ * set.
+ *
+ * <p>Like the iterators of {@link java.util.TreeSet}, the iterators of this set are fail-fast: if
+ * the set is modified after an iterator is created, other than through the iterator's own {@code
+ * remove} method, the iterator throws a {@link ConcurrentModificationException}.
+ */
+public class SmallAnnotationMirrorSet extends AbstractSet<AnnotationMirror> {
+
+    /** The array shared by all empty sets. */
+    private static final AnnotationMirror[] EMPTY = new AnnotationMirror[0];
+
+    /** The order of the annotations in {@link #elements}. */
+    private static final Comparator<AnnotationMirror> ordering =
+            AnnotationUtils.annotationOrdering();
+
+    /** The annotations in this set, sorted; the entries at {@link #size} and after are null. */
+    private AnnotationMirror[] elements = EMPTY;
+
+    /** The number of annotations in this set. */
+    private int size = 0;
+
+    /** The number of times this set has been modified, to detect concurrent modifications. */
+    private int modCount = 0;
+
+    /** Creates an empty set. */
+    public SmallAnnotationMirrorSet() {}
+
+    /**
+     * Creates a set that contains the given annotations.
+     *
+     * @param annos the annotations to add to the new set
+     */
+    public SmallAnnotationMirrorSet(Collection<? extends AnnotationMirror> annos) {
+        addAll(annos);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof AnnotationMirror && indexOf((AnnotationMirror) o) >= 0;
+    }
+
+    /**
+     * Returns the index of the annotation in {@link #elements} that {@link #ordering} considers
+     * equal to {@code anno}, or -1 if there is none.
+     */
+    private int indexOf(AnnotationMirror anno) {
+        for (int i = 0; i < size; i++) {
+            int cmp = ordering.compare(anno, elements[i]);
+            if (cmp == 0) {
+                return i;
+            }
+            if (cmp < 0) {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean add(AnnotationMirror anno) {
+        if (anno == null) {
+            throw new NullPointerException("SmallAnnotationMirrorSet.add: null annotation");
+        }
+        int index = 0;
+        while (index < size) {
+            // Same loop as in indexOf, but the insertion point is needed as well.
+            int cmp = ordering.compare(anno, elements[index]);
+            if (cmp == 0) {
+                return false;
+            }
+            if (cmp < 0) {
+                break;
+            }
+            index++;
+        }
+        if (size == elements.length) {
+            // Grow by one for the first few annotations, which covers most sets exactly.
+            elements = Arrays.copyOf(elements, size < 4 ? size + 1 : size * 2);
+        }
+        System.arraycopy(elements, index, elements, index + 1, size - index);
+        elements[index] = anno;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof AnnotationMirror)) {
+            return false;
+        }
+        int index = indexOf((AnnotationMirror) o);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    /** Removes the annotation at the given index of {@link #elements}. */
+    private void removeAt(int index) {
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+        size--;
+        elements[size] = null;
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(elements, 0, size, null);
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Iterator<AnnotationMirror> iterator() {
+        return new Iterator<AnnotationMirror>() {
+            /** The index of the next annotation to return. */
+            private int next = 0;
+
+            /** The index of the last annotation returned, or -1 if it was removed. */
+            private int last = -1;
+
+            /** The value of {@link #modCount} that this iterator expects. */
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public AnnotationMirror next() {
+                checkForComodification();
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                last = next++;
+                return elements[last];
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+                checkForComodification();
+                removeAt(last);
+                next = last;
+                last = -1;
+                expectedModCount = modCount;
+            }
+
+            private void checkForComodification() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+            }
+        };
+    }
+}
@@ -4,26 +4,37 @@ import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.util.TreePath;
 import com.sun.source.util.TreeScanner;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
 /**
- * TreePathCacher is a TreeScanner that creates and caches a TreePath for a target Tree.
+ * TreePathCacher is an index from every Tree of a compilation unit to its TreePath.
+ *
+ * <p>The first query for a compilation unit scans the whole unit once and records the TreePath of
+ * every tree in it. Each TreePath refers to the TreePath of the parent tree, so the index is also
+ * the map from each tree to its parent. Later queries are answered by a lookup, and enclosing
+ * trees, such as the enclosing method or class, are found by walking up the returned path, for
+ * example with {@link org.checkerframework.javacutil.TreeUtils#enclosingOfKind}, in time
+ * proportional to the depth of the tree. A tree that is not in the compilation unit, such as a
+ * tree created by the Checker Framework, is looked up without scanning the unit again.
  *
- * <p>This class replicates some logic from TreePath.getPath but also adds caching to all
- * intermediate TreePaths that are generated. The intermediate TreePaths are reused when other
- * targets have overlapping paths.
+ * <p>The index reflects the compilation unit at the time of the first query. Call {@link #clear}
+ * when the trees may have changed, for example when the type factory moves on to another
+ * compilation unit.
  *
  * @author mcarthur
  */
-public class TreePathCacher extends TreeScanner<TreePath, Tree> {
+public class TreePathCacher {
 
-    private final Map<Tree, TreePath> foundPaths = new HashMap<>();
-    /**
-     * The TreePath of the previous tree scanned. It is always set back to null after a scan has
-     * completed.
-     */
-    private TreePath path;
+    /** The path of every tree in {@link #indexedRoot}. Trees are compared by identity. */
+    private final Map<Tree, TreePath> foundPaths = new IdentityHashMap<>();
+
+    /** The compilation unit that {@link #foundPaths} indexes, or null if there is none. */
+    private /*@Nullable*/ CompilationUnitTree indexedRoot;
 
     /**
      * @param target the tree to search for
@@ -36,64 +47,46 @@ public class TreePathCacher extends TreeScanner<TreePath, Tree> {
     /**
      * Return the TreePath for a Tree.
      *
-     * <p>This method uses try/catch and the Result Error for control flow to stop the superclass
-     * from scanning other subtrees when target is found.
-     *
      * @param root the compilation unit to search in
      * @param target the target tree to look for
      * @return the TreePath corresponding to target, or null if target is not found in the
      *     compilation root
      */
-    public TreePath getPath(CompilationUnitTree root, Tree target) {
-        if (foundPaths.containsKey(target)) {
-            return foundPaths.get(target);
-        }
-
-        TreePath path = new TreePath(root);
-        if (path.getLeaf() == target) {
-            return path;
-        }
-
-        try {
-            this.scan(path, target);
-        } catch (Result result) {
-            return result.path;
-        }
-        return null;
-    }
-
-    private static class Result extends Error {
-        private static final long serialVersionUID = 4948452207518392627L;
-        TreePath path;
-
-        Result(TreePath path) {
-            this.path = path;
+    public /*@Nullable*/ TreePath getPath(CompilationUnitTree root, Tree target) {
+        if (root != indexedRoot) {
+            index(root);
         }
+        return foundPaths.get(target);
     }
 
     public void clear() {
         foundPaths.clear();
+        indexedRoot = null;
     }
 
-    /** Scan a single node. The current path is updated for the duration of the scan. */
-    @Override
-    public TreePath scan(Tree tree, Tree target) {
-        TreePath prev = path;
-        if (tree != null && foundPaths.get(tree) == null) {
-            TreePath current = new TreePath(path, tree);
-            foundPaths.put(tree, current);
-            path = current;
-        } else {
-            this.path = foundPaths.get(tree);
-        }
+    /** Replaces the index by one of {@code root}. */
+    private void index(CompilationUnitTree root) {
+        foundPaths.clear();
+        new Indexer().scan(root, null);
+        indexedRoot = root;
+    }
 
-        if (tree == target) {
-            throw new Result(path);
-        }
-        try {
-            return super.scan(tree, target);
-        } finally {
-            this.path = prev;
+    /** Records the path of every tree that it scans; the parameter is the path of the parent. */
+    private class Indexer extends TreeScanner<Void, TreePath> {
+        @Override
+        public Void scan(Tree tree, TreePath parent) {
+            if (tree == null) {
+                return null;
+            }
+            // javac shares a few trees between several places of a compilation unit, for example
+            // the type of several variables declared together; keep the first path, as a scan for
+            // the tree would find it.
+            TreePath path = foundPaths.get(tree);
+            if (path == null) {
+                path = new TreePath(parent, tree);
+                foundPaths.put(tree, path);
+            }
+            return super.scan(tree, path);
         }
     }
 }
@@ -13,6 +13,7 @@ import com.sun.source.util.TreePath;
 import com.sun.tools.javac.code.Type.WildcardType;
 import java.lang.annotation.Annotation;
 import java.util.EnumSet;
+import java.util.Collections;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
@@ -90,8 +91,11 @@ public class QualifierDefaults {
     /** Mapping from an Element to the source Tree of the declaration. */
     private static final int CACHE_SIZE = 300;
 
+    // An LRU cache changes on every lookup, and compilations may run concurrently in one JVM.
     protected static final Map<Element, BoundType> elementToBoundType =
-            CollectionUtils.createLRUCache(CACHE_SIZE);
+            Collections.synchronizedMap(
+                    CollectionUtils.<Element, BoundType>createLRUCache(
+                            CACHE_SIZE, "QualifierDefaults.elementToBoundType"));
 
     /**
      * Defaults that apply for a certain Element. On the one hand this is used for caching (an
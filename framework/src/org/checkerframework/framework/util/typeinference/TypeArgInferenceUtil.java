@@ -18,7 +18,7 @@ import com.sun.source.util.TreePath;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
@@ -429,11 +429,6 @@ public class TypeArgInferenceUtil {
      */
     private static final TypeVariableSubstitutor substitutor = new TypeVariableSubstitutor();
 
-    // Substituter requires an input map that the substitute methods build.  We just reuse the same
-    // map rather than
-    // recreate it each time.
-    private static final Map<TypeVariable, AnnotatedTypeMirror> substituteMap = new HashMap<>(5);
-
     /**
      * Replace all uses of typeVariable with substitution in a copy of toModify using the normal
      * substitution rules, (@see TypeVariableSubstitutor).Return the copy
@@ -442,8 +437,9 @@ public class TypeArgInferenceUtil {
             final TypeVariable typeVariable,
             final AnnotatedTypeMirror substitution,
             final AnnotatedTypeMirror toModify) {
-        substituteMap.clear();
-        substituteMap.put(typeVariable, substitution.deepCopy());
+        // Not a shared map: compilations in the same JVM may run concurrently.
+        final Map<TypeVariable, AnnotatedTypeMirror> substituteMap =
+                Collections.singletonMap(typeVariable, substitution.deepCopy());
 
         final AnnotatedTypeMirror toModifyCopy = toModify.deepCopy();
         substitutor.substitute(substituteMap, toModifyCopy);
@@ -1,6 +1,8 @@
 package tests;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import com.sun.tools.javac.processing.JavacProcessingEnvironment;
@@ -48,6 +50,22 @@ public class AnnotationBuilderTest {
         assertEquals(1, anno.getElementValues().size());
     }
 
+    @Test
+    public void sameAnnotationsAreShared() {
+        AnnotationBuilder builder1 = new AnnotationBuilder(env, AnnoWithStringArg.class);
+        builder1.setValue("value", "m");
+        AnnotationBuilder builder2 = new AnnotationBuilder(env, AnnoWithStringArg.class);
+        builder2.setValue("value", "m");
+        AnnotationBuilder builder3 = new AnnotationBuilder(env, AnnoWithStringArg.class);
+        builder3.setValue("value", "n");
+        AnnotationMirror anno1 = builder1.build();
+        assertSame(anno1, builder2.build());
+        assertNotSame(anno1, builder3.build());
+        assertSame(
+                AnnotationBuilder.fromClass(env.getElementUtils(), Encrypted.class),
+                new AnnotationBuilder(env, Encrypted.class).build());
+    }
+
     @Test(expected = SourceChecker.CheckerError.class)
     public void buildingTwice() {
         AnnotationBuilder builder = new AnnotationBuilder(env, Encrypted.class);
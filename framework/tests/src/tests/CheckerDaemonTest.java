@@ -0,0 +1,199 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import org.checkerframework.framework.util.CheckerDaemon;
+import org.checkerframework.framework.util.PluginUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * This class tests that a {@link CheckerDaemon} does not run a compilation whose client stopped
+ * waiting for it. The test starts a daemon with short timeouts, keeps it busy with a slow
+ * compilation, and sends it a second compilation that times out.
+ */
+public class CheckerDaemonTest {
+
+    /** The number of milliseconds that the daemon and the clients wait for each other. */
+    private static final int REQUEST_TIMEOUT_MILLIS = 1000;
+
+    /**
+     * An annotation processor that keeps the daemon busy: it creates the file that its {@code
+     * marker} option names, and then sleeps for several request timeouts.
+     */
+    @SupportedAnnotationTypes("*")
+    @SupportedOptions("marker")
+    public static final class SlowProcessor extends AbstractProcessor {
+        @Override
+        public synchronized void init(ProcessingEnvironment env) {
+            super.init(env);
+            try {
+                new File(env.getOptions().get("marker")).createNewFile();
+                Thread.sleep(4 * REQUEST_TIMEOUT_MILLIS);
+            } catch (IOException | InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment env) {
+            return false;
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+    }
+
+    /** The directory that contains the daemon file, the sources, and the class files. */
+    private File dir;
+
+    /** The user.home system property before the test. */
+    private String userHome;
+
+    /** The JVM arguments of the daemon. */
+    private List<String> jvmArguments;
+
+    /** The file that stands in for checker.jar, which only identifies the daemon. */
+    private File checkerJar;
+
+    @BeforeClass
+    public static void setUpClass() {
+        // The clients run in this JVM.
+        System.setProperty(
+                CheckerDaemon.REQUEST_TIMEOUT_PROPERTY, Integer.toString(REQUEST_TIMEOUT_MILLIS));
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("daemon").toFile().getCanonicalFile();
+        // The daemon file is in the home directory.
+        userHome = System.getProperty("user.home");
+        System.setProperty("user.home", dir.getPath());
+        jvmArguments =
+                Arrays.asList(
+                        PluginUtil.getJavaCommand(System.getProperty("java.home"), System.out),
+                        "-classpath",
+                        System.getProperty("java.class.path"),
+                        "-D"
+                                + CheckerDaemon.REQUEST_TIMEOUT_PROPERTY
+                                + "="
+                                + REQUEST_TIMEOUT_MILLIS,
+                        // The daemon exits soon after the test.
+                        "-D"
+                                + CheckerDaemon.IDLE_TIMEOUT_PROPERTY
+                                + "="
+                                + 10 * REQUEST_TIMEOUT_MILLIS);
+        checkerJar = new File(dir, "checker.jar");
+        checkerJar.createNewFile();
+    }
+
+    @After
+    public void tearDown() {
+        System.setProperty("user.home", userHome);
+        delete(dir);
+    }
+
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        f.delete();
+    }
+
+    /**
+     * Compiles class {@code name} into a directory of the same name in the daemon, with {@code
+     * options}.
+     *
+     * @return the exit status of javac, or null if the daemon did not run the compilation
+     */
+    private Integer compile(String name, String... options) throws IOException {
+        File source = new File(dir, name + ".java");
+        Files.write(
+                source.toPath(), ("class " + name + " {}\n").getBytes(StandardCharsets.UTF_8));
+        File classDir = new File(dir, name);
+        classDir.mkdir();
+        List<String> args = new ArrayList<>(Arrays.asList(options));
+        args.add("-d");
+        args.add(classDir.getPath());
+        args.add(source.getPath());
+        PrintStream out = new PrintStream(new ByteArrayOutputStream(), true, "UTF-8");
+        return CheckerDaemon.compile(jvmArguments, checkerJar, args, out, out);
+    }
+
+    private boolean isCompiled(String name) {
+        return new File(new File(dir, name), name + ".class").exists();
+    }
+
+    @Test
+    public void abandonedRequest() throws Exception {
+        // Start the daemon.
+        assertEquals(Integer.valueOf(0), compile("Warm", "-proc:none"));
+
+        final File marker = new File(dir, "marker");
+        final Integer[] slowResult = new Integer[1];
+        Thread slow =
+                new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            slowResult[0] =
+                                    compile(
+                                            "Slow",
+                                            "-processorpath",
+                                            System.getProperty("java.class.path"),
+                                            "-processor",
+                                            SlowProcessor.class.getName(),
+                                            "-Amarker=" + marker);
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                };
+        slow.start();
+        long deadline = System.currentTimeMillis() + 60 * 1000;
+        while (!marker.exists() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(marker.exists());
+
+        // The daemon is busy, so this client times out and would run javac itself.
+        assertNull(compile("Abandoned", "-proc:none"));
+
+        slow.join();
+        assertEquals(Integer.valueOf(0), slowResult[0]);
+
+        // The daemon serves one request at a time, so it has handled the abandoned request before
+        // this one.
+        assertNotNull(compile("Next", "-proc:none"));
+        assertTrue(isCompiled("Next"));
+        assertFalse(isCompiled("Abandoned"));
+    }
+}
@@ -0,0 +1,294 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+import com.sun.tools.javac.api.BasicJavacTask;
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import org.checkerframework.dataflow.analysis.FlowExpressions;
+import org.checkerframework.dataflow.analysis.FlowExpressions.ArrayAccess;
+import org.checkerframework.dataflow.analysis.FlowExpressions.ClassName;
+import org.checkerframework.dataflow.analysis.FlowExpressions.FieldAccess;
+import org.checkerframework.dataflow.analysis.FlowExpressions.MethodCall;
+import org.checkerframework.dataflow.analysis.FlowExpressions.Receiver;
+import org.checkerframework.dataflow.analysis.FlowExpressions.ThisReference;
+import org.checkerframework.dataflow.analysis.FlowExpressions.ValueLiteral;
+import org.checkerframework.framework.util.BaseContext;
+import org.checkerframework.framework.util.FlowExpressionParseUtil;
+import org.checkerframework.framework.util.FlowExpressionParseUtil.FlowExpressionContext;
+import org.checkerframework.framework.util.FlowExpressionParseUtil.FlowExpressionParseException;
+import org.checkerframework.framework.util.OptionConfiguration;
+import org.checkerframework.javacutil.AnnotationProvider;
+import org.junit.Test;
+
+/**
+ * This class tests the FlowExpressionParseUtil class, independent of any checker. The expressions
+ * are parsed in the body of method {@code m} of the class in {@link #SOURCE}, where {@code #1} and
+ * {@code #2} are its parameters.
+ */
+public class FlowExpressionParseUtilTest {
+
+    /** The class in which the expressions are parsed. */
+    private static final String SOURCE =
+            "class Test {\n"
+                    + "    int[] array;\n"
+                    + "    String s;\n"
+                    + "    int size(int i) { return i; }\n"
+                    + "    static int twice(int i) { return 2 * i; }\n"
+                    + "    void m(int[] a, int i) { }\n"
+                    + "}\n";
+
+    /** The path to the body of method {@code m}. */
+    private final TreePath path;
+
+    /** The context for the body of method {@code m}. */
+    private final FlowExpressionContext context;
+
+    public FlowExpressionParseUtilTest() throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        JavaFileObject source =
+                new SimpleJavaFileObject(
+                        URI.create("string:///Test.java"), JavaFileObject.Kind.SOURCE) {
+                    @Override
+                    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                        return SOURCE;
+                    }
+                };
+        JavacTask task =
+                (JavacTask)
+                        compiler.getTask(
+                                null,
+                                null,
+                                null,
+                                Arrays.asList("-proc:none"),
+                                null,
+                                Collections.singletonList(source));
+        CompilationUnitTree unit = task.parse().iterator().next();
+        task.analyze();
+        final ProcessingEnvironment env =
+                JavacProcessingEnvironment.instance(((BasicJavacTask) task).getContext());
+        final Trees trees = Trees.instance(task);
+
+        final List<TreePath> methodBodies = new ArrayList<>();
+        new TreePathScanner<Void, Void>() {
+            @Override
+            public Void visitMethod(MethodTree tree, Void p) {
+                if (tree.getName().contentEquals("m")) {
+                    methodBodies.add(new TreePath(getCurrentPath(), tree.getBody()));
+                }
+                return super.visitMethod(tree, p);
+            }
+        }.scan(unit, null);
+        path = methodBodies.get(0);
+
+        ExecutableElement m = (ExecutableElement) trees.getElement(path.getParentPath());
+        Receiver receiver = new ThisReference(m.getEnclosingElement().asType());
+        List<Receiver> arguments = new ArrayList<>();
+        for (VariableElement param : m.getParameters()) {
+            arguments.add(new FlowExpressions.LocalVariable(param));
+        }
+        BaseContext checkerContext =
+                new BaseContext() {
+                    @Override
+                    public ProcessingEnvironment getProcessingEnvironment() {
+                        return env;
+                    }
+
+                    @Override
+                    public Elements getElementUtils() {
+                        return env.getElementUtils();
+                    }
+
+                    @Override
+                    public Types getTypeUtils() {
+                        return env.getTypeUtils();
+                    }
+
+                    @Override
+                    public Trees getTreeUtils() {
+                        return trees;
+                    }
+
+                    @Override
+                    public AnnotationProvider getAnnotationProvider() {
+                        return new AnnotationProvider() {
+                            @Override
+                            public AnnotationMirror getDeclAnnotation(
+                                    Element elt, Class<? extends Annotation> anno) {
+                                return null;
+                            }
+
+                            @Override
+                            public AnnotationMirror getAnnotationMirror(
+                                    Tree tree, Class<? extends Annotation> target) {
+                                return null;
+                            }
+                        };
+                    }
+
+                    @Override
+                    public OptionConfiguration getOptionConfiguration() {
+                        return null;
+                    }
+                };
+        context = new FlowExpressionContext(receiver, arguments, checkerContext);
+    }
+
+    private Receiver parse(String expression) throws FlowExpressionParseException {
+        return FlowExpressionParseUtil.parse(expression, context, path, true);
+    }
+
+    /** Asserts that {@code expression} cannot be parsed. */
+    private void assertInvalid(String expression) {
+        try {
+            Receiver result = parse(expression);
+            fail("parsed invalid expression " + expression + " as " + result);
+        } catch (FlowExpressionParseException e) {
+            // expected
+        }
+    }
+
+    private static void assertLiteral(Object value, TypeKind kind, Receiver r) {
+        assertTrue(r instanceof ValueLiteral);
+        assertEquals(value, ((ValueLiteral) r).getValue());
+        assertEquals(kind, r.getType().getKind());
+    }
+
+    @Test
+    public void literals() throws FlowExpressionParseException {
+        assertLiteral(null, TypeKind.NULL, parse("null"));
+        assertLiteral(42, TypeKind.INT, parse("42"));
+        assertLiteral(-7, TypeKind.INT, parse(" -7 "));
+        assertLiteral(+3, TypeKind.INT, parse("+3"));
+        assertLiteral(42L, TypeKind.LONG, parse("42L"));
+        assertLiteral(-1L, TypeKind.LONG, parse("-1l"));
+        assertLiteral("a\\\"b", TypeKind.DECLARED, parse("\"a\\\"b\""));
+        assertLiteral("", TypeKind.DECLARED, parse("\"\""));
+        assertTrue(parse("this") instanceof ThisReference);
+        assertInvalid("42LL");
+        assertInvalid("\"unterminated");
+        assertInvalid("-");
+    }
+
+    @Test
+    public void parentheses() throws FlowExpressionParseException {
+        assertLiteral(42, TypeKind.INT, parse("(42)"));
+        assertLiteral(42, TypeKind.INT, parse("((42))"));
+        assertSame(context.arguments.get(0), parse("(#1)"));
+        assertTrue(parse("(this)") instanceof ThisReference);
+        assertInvalid("()");
+        assertInvalid("(42");
+    }
+
+    @Test
+    public void parameters() throws FlowExpressionParseException {
+        assertSame(context.arguments.get(0), parse("#1"));
+        assertSame(context.arguments.get(1), parse("#2"));
+        assertInvalid("#3");
+        assertInvalid("#0");
+        assertInvalid("#01");
+        assertInvalid("#99999999999");
+        assertEquals(Arrays.asList(1, 22), FlowExpressionParseUtil.parameterIndices("#1 + #22"));
+        assertEquals(
+                Collections.<Integer>emptyList(), FlowExpressionParseUtil.parameterIndices("a.b"));
+    }
+
+    @Test
+    public void fields() throws FlowExpressionParseException {
+        Receiver array = parse("array");
+        assertTrue(array instanceof FieldAccess);
+        assertTrue(((FieldAccess) array).getReceiver() instanceof ThisReference);
+        assertEquals("array", ((FieldAccess) array).getField().getSimpleName().toString());
+        assertEquals(array, parse("this.array"));
+        assertInvalid("noSuchField");
+    }
+
+    @Test
+    public void methodCalls() throws FlowExpressionParseException {
+        Receiver size = parse("size(1)");
+        assertTrue(size instanceof MethodCall);
+        MethodCall sizeCall = (MethodCall) size;
+        assertEquals("size", sizeCall.getElement().getSimpleName().toString());
+        assertTrue(sizeCall.getReceiver() instanceof ThisReference);
+        assertEquals(1, sizeCall.getParameters().size());
+        assertLiteral(1, TypeKind.INT, sizeCall.getParameters().get(0));
+        assertEquals(size, parse("this.size(1)"));
+
+        Receiver twice = parse("twice(#2)");
+        assertTrue(twice instanceof MethodCall);
+        MethodCall twiceCall = (MethodCall) twice;
+        assertTrue(twiceCall.getReceiver() instanceof ClassName);
+        assertSame(context.arguments.get(1), twiceCall.getParameters().get(0));
+
+        Receiver length = parse("s.length()");
+        assertTrue(length instanceof MethodCall);
+        assertTrue(((MethodCall) length).getReceiver() instanceof FieldAccess);
+
+        Receiver nested = parse("size(twice(size(#2)))");
+        assertTrue(nested instanceof MethodCall);
+        assertTrue(((MethodCall) nested).getParameters().get(0) instanceof MethodCall);
+
+        assertInvalid("noSuchMethod()");
+        assertInvalid("size(1");
+    }
+
+    @Test
+    public void arrayAccesses() throws FlowExpressionParseException {
+        Receiver first = parse("#1[0]");
+        assertTrue(first instanceof ArrayAccess);
+        ArrayAccess firstAccess = (ArrayAccess) first;
+        assertSame(context.arguments.get(0), firstAccess.getReceiver());
+        assertLiteral(0, TypeKind.INT, firstAccess.getIndex());
+        assertEquals(TypeKind.INT, first.getType().getKind());
+
+        Receiver field = parse("array[#2]");
+        assertTrue(field instanceof ArrayAccess);
+        assertTrue(((ArrayAccess) field).getReceiver() instanceof FieldAccess);
+        assertSame(context.arguments.get(1), ((ArrayAccess) field).getIndex());
+
+        Receiver call = parse("#1[size(#2)]");
+        assertTrue(call instanceof ArrayAccess);
+        assertTrue(((ArrayAccess) call).getIndex() instanceof MethodCall);
+
+        assertInvalid("#2[0]");
+        assertInvalid("#1[0");
+    }
+
+    @Test
+    public void cachedSyntax() throws FlowExpressionParseException {
+        // The second parse of each string uses the cached syntax.
+        for (int i = 0; i < 2; i++) {
+            assertSame(context.arguments.get(0), parse("(#1)"));
+            assertTrue(parse("#1[size(0)]") instanceof ArrayAccess);
+            assertInvalid("#3");
+        }
+    }
+}
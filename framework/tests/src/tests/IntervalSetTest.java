@@ -0,0 +1,147 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.lang.model.type.TypeKind;
+import org.checkerframework.common.value.util.IntervalSet;
+import org.checkerframework.common.value.util.Range;
+import org.junit.Test;
+
+/** This class tests the IntervalSet class, independent of the Value Checker. */
+public class IntervalSetTest {
+
+    /** Returns a random set of small values, made of up to five intervals. */
+    private static IntervalSet randomSet(Random random) {
+        IntervalSet result = IntervalSet.EMPTY;
+        int intervals = random.nextInt(6);
+        for (int i = 0; i < intervals; i++) {
+            long from = random.nextInt(60) - 30;
+            long to = from + random.nextInt(random.nextBoolean() ? 3 : 15);
+            result = result.union(IntervalSet.of(from, to));
+        }
+        return result;
+    }
+
+    /** Returns the values of a set of small values. */
+    private static Set<Long> elements(IntervalSet set) {
+        Set<Long> result = new TreeSet<>();
+        for (int i = 0; i < set.intervalCount(); i++) {
+            for (long value = set.lowerBound(i); value <= set.upperBound(i); value++) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks that {@code actual} contains {@code expected}, is normalized, and is exact unless it
+     * has the maximum number of intervals.
+     */
+    private static void assertContains(Set<Long> expected, IntervalSet actual) {
+        Set<Long> elements = elements(actual);
+        assertTrue(expected + " not in " + actual, elements.containsAll(expected));
+        if (actual.intervalCount() < IntervalSet.MAX_INTERVALS) {
+            assertEquals(expected, elements);
+        }
+        for (int i = 1; i < actual.intervalCount(); i++) {
+            assertTrue(actual.toString(), actual.upperBound(i - 1) + 1 < actual.lowerBound(i));
+        }
+    }
+
+    @Test
+    public void testOperationsAgainstValues() {
+        Random random = new Random(42);
+        for (int round = 0; round < 5000; round++) {
+            IntervalSet left = randomSet(random);
+            IntervalSet right = randomSet(random);
+            Set<Long> union = new TreeSet<>(elements(left));
+            union.addAll(elements(right));
+            Set<Long> intersection = new TreeSet<>(elements(left));
+            intersection.retainAll(elements(right));
+            Set<Long> sums = new TreeSet<>();
+            Set<Long> differences = new TreeSet<>();
+            Set<Long> products = new TreeSet<>();
+            Set<Long> negations = new TreeSet<>();
+            Set<Long> inRange = new TreeSet<>();
+            for (long l : elements(left)) {
+                negations.add(-l);
+                if (-10 <= l && l <= 10) {
+                    inRange.add(l);
+                }
+                for (long r : elements(right)) {
+                    sums.add(l + r);
+                    differences.add(l - r);
+                    products.add(l * r);
+                }
+            }
+            assertContains(union, left.union(right));
+            assertContains(intersection, left.intersect(right));
+            assertContains(sums, left.plus(right));
+            assertContains(differences, left.minus(right));
+            assertContains(negations, left.unaryMinus());
+            assertContains(inRange, left.intersect(new Range(-10, 10)));
+            assertTrue(elements(left.times(right)).containsAll(products));
+        }
+    }
+
+    @Test
+    public void testProductsAreEnumerated() {
+        IntervalSet oneTwo = IntervalSet.of(Arrays.asList(2L, 1L, 2L));
+        assertEquals(IntervalSet.of(Arrays.asList(1L, 2L, 4L)), oneTwo.times(oneTwo));
+    }
+
+    @Test
+    public void testUnionKeepsGaps() {
+        IntervalSet union = IntervalSet.of(0, 5).union(IntervalSet.of(100, 105));
+        assertEquals(2, union.intervalCount());
+        assertTrue(union.isWiderThan(11));
+        assertFalse(union.isWiderThan(12));
+        assertFalse(union.contains(50));
+        assertEquals(new Range(0, 105), union.toRange());
+        assertEquals(IntervalSet.of(0, 5), union.intersect(new Range(Long.MIN_VALUE, 49)));
+    }
+
+    @Test
+    public void testMaxIntervals() {
+        IntervalSet set = IntervalSet.EMPTY;
+        for (long i = 0; i < 2 * IntervalSet.MAX_INTERVALS; i++) {
+            set = set.union(IntervalSet.of(i * i * 10, i * i * 10));
+        }
+        assertEquals(IntervalSet.MAX_INTERVALS, set.intervalCount());
+        assertEquals(0, set.lowerBound(0));
+        assertEquals(3610, set.upperBound(IntervalSet.MAX_INTERVALS - 1));
+    }
+
+    @Test
+    public void testOverflow() {
+        IntervalSet intMax = IntervalSet.of(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        IntervalSet one = IntervalSet.of(1, 1);
+        assertEquals(
+                IntervalSet.of(Integer.MIN_VALUE, Integer.MIN_VALUE),
+                intMax.plus(one).castTo(TypeKind.INT));
+        IntervalSet longMax = IntervalSet.of(Long.MAX_VALUE, Long.MAX_VALUE);
+        assertEquals(IntervalSet.of(Long.MIN_VALUE, Long.MIN_VALUE), longMax.plus(one));
+        assertEquals(
+                IntervalSet.EVERYTHING,
+                IntervalSet.of(Long.MAX_VALUE - 5, Long.MAX_VALUE).plus(IntervalSet.of(1, 2)));
+        assertEquals(
+                IntervalSet.EVERYTHING,
+                IntervalSet.of(Long.MIN_VALUE, Long.MIN_VALUE + 3).unaryMinus());
+    }
+
+    @Test
+    public void testCastTo() {
+        assertEquals(
+                IntervalSet.of(Byte.MIN_VALUE, Byte.MAX_VALUE),
+                IntervalSet.of(-200, 200).castTo(TypeKind.BYTE));
+        IntervalSet wrapped = IntervalSet.of(120, 130).castTo(TypeKind.BYTE);
+        assertEquals(IntervalSet.of(-128, -126).union(IntervalSet.of(120, 127)), wrapped);
+        assertEquals(IntervalSet.of(120, 130), IntervalSet.of(120, 130).castTo(TypeKind.LONG));
+    }
+}
@@ -0,0 +1,126 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import org.checkerframework.dataflow.util.PersistentHashMap;
+import org.junit.Test;
+
+/** This class tests the PersistentHashMap class, independent of any store. */
+public class PersistentHashMapTest {
+
+    /** A key with a configurable hash code, to exercise hash collisions. */
+    private static class Key {
+        final int id;
+        final int hash;
+
+        Key(int id, int hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return "Key" + id;
+        }
+    }
+
+    @Test
+    public void randomOperationsAgreeWithHashMap() {
+        Random random = new Random(42);
+        PersistentHashMap<Key, Integer> map = new PersistentHashMap<>();
+        Map<Key, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            // Few distinct hashes, so that collision nodes are created.
+            int id = random.nextInt(2000);
+            Key key = new Key(id, id % 700);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        assertEquals(expected, map);
+        assertEquals(map, expected);
+        assertEquals(expected.hashCode(), map.hashCode());
+    }
+
+    @Test
+    public void copiesAreIndependent() {
+        PersistentHashMap<String, Integer> map = new PersistentHashMap<>();
+        for (int i = 0; i < 100; i++) {
+            map.put("k" + i, i);
+        }
+        PersistentHashMap<String, Integer> copy = map.copy();
+        assertTrue(copy.sharesStructureWith(map));
+        assertEquals(map, copy);
+
+        copy.put("k0", -1);
+        copy.remove("k1");
+        copy.put("new", 100);
+        assertFalse(copy.sharesStructureWith(map));
+
+        assertEquals(Integer.valueOf(0), map.get("k0"));
+        assertEquals(Integer.valueOf(1), map.get("k1"));
+        assertNull(map.get("new"));
+        assertEquals(100, map.size());
+
+        assertEquals(Integer.valueOf(-1), copy.get("k0"));
+        assertFalse(copy.containsKey("k1"));
+        assertEquals(100, copy.size());
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(100, copy.size());
+    }
+
+    @Test
+    public void nullKeysAndValues() {
+        PersistentHashMap<String, String> map = new PersistentHashMap<>();
+        map.put(null, "a");
+        map.put("b", null);
+        assertEquals("a", map.get(null));
+        assertTrue(map.containsKey("b"));
+        assertNull(map.get("b"));
+        assertFalse(map.containsKey("c"));
+        assertEquals("a", map.remove(null));
+        assertFalse(map.containsKey(null));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void iteratorRemove() {
+        PersistentHashMap<Integer, Integer> map = new PersistentHashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            map.put(i, i);
+        }
+        PersistentHashMap<Integer, Integer> copy = map.copy();
+        for (Iterator<Map.Entry<Integer, Integer>> it = map.entrySet().iterator(); it.hasNext(); ) {
+            if (it.next().getKey() % 2 == 0) {
+                it.remove();
+            }
+        }
+        assertEquals(500, map.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 2 != 0, map.containsKey(i));
+        }
+        assertEquals(1000, copy.size());
+    }
+}
@@ -0,0 +1,142 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.processing.Processor;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.checkerframework.common.value.ValueChecker;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import testlib.aggregate.AggregateOfCompoundChecker;
+
+/**
+ * This class tests that the options that report on a compilation, {@code -AprofileCheck} and
+ * {@code -AresourceStats}, report once the compilation is over, both for a checker that is run on
+ * its own and for the checkers of an aggregate checker.
+ */
+public class ProfilingOptionsTest {
+
+    private static final String SOURCE =
+            "public class Profiled {\n"
+                    + "    int m(int i) {\n"
+                    + "        while (i > 0) {\n"
+                    + "            i--;\n"
+                    + "        }\n"
+                    + "        return i;\n"
+                    + "    }\n"
+                    + "}\n";
+
+    /** The directory that contains the source, the class files, and the reports. */
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("profiling").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        delete(dir);
+    }
+
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        f.delete();
+    }
+
+    /**
+     * Compiles {@link #SOURCE} with {@code checker} and {@code options}, and returns what was
+     * printed to standard output.
+     */
+    private String compile(Processor checker, String... options) throws IOException {
+        File source = new File(dir, "Profiled.java");
+        Files.write(source.toPath(), SOURCE.getBytes(StandardCharsets.UTF_8));
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        StandardJavaFileManager fileManager =
+                compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+        List<String> allOptions = new ArrayList<>(Arrays.asList(options));
+        allOptions.add("-d");
+        allOptions.add(dir.getPath());
+        JavaCompiler.CompilationTask task =
+                compiler.getTask(
+                        null,
+                        fileManager,
+                        diagnostics,
+                        allOptions,
+                        null,
+                        fileManager.getJavaFileObjects(source));
+        task.setProcessors(Collections.singletonList(checker));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream originalOut = System.out;
+        System.setOut(new PrintStream(out, true, "UTF-8"));
+        boolean success;
+        try {
+            success = task.call();
+        } finally {
+            System.setOut(originalOut);
+        }
+        assertTrue("compilation failed: " + diagnostics.getDiagnostics(), success);
+        return out.toString("UTF-8");
+    }
+
+    private String read(File f) throws IOException {
+        return new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void profileCheck() throws IOException {
+        File report = new File(dir, "profile.json");
+        String out = compile(new ValueChecker(), "-AprofileCheck=" + report);
+        assertTrue(out, out.contains("Check profile:"));
+        assertTrue(report.exists());
+        assertTrue(read(report).contains("\"checker\": \"ValueChecker\""));
+    }
+
+    @Test
+    public void profileCheckAggregate() throws IOException {
+        File report = new File(dir, "profile.json");
+        String out = compile(new AggregateOfCompoundChecker(), "-AprofileCheck=" + report);
+        assertTrue(out, out.contains("Check profile:"));
+        assertTrue(report.exists());
+        assertTrue(read(report).contains("\"checker\": \"ValueChecker\""));
+    }
+
+    /** Asserts that {@code out} contains the statistics that {@code -AresourceStats} prints. */
+    private static void assertResourceStats(String out) {
+        assertTrue(out, out.contains("control-flow graphs built:"));
+        assertTrue(out, out.contains("Evictions"));
+        assertTrue(out, out.contains("ValueAnnotatedTypeFactory.fromTreeCache"));
+    }
+
+    @Test
+    public void resourceStats() throws IOException {
+        assertResourceStats(compile(new ValueChecker(), "-AresourceStats"));
+    }
+
+    @Test
+    public void resourceStatsAggregate() throws IOException {
+        assertResourceStats(compile(new AggregateOfCompoundChecker(), "-AresourceStats"));
+    }
+}
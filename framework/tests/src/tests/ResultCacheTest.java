@@ -0,0 +1,275 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.source.tree.ClassTree;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.annotation.processing.SupportedOptions;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.common.basetype.BaseTypeVisitor;
+import org.checkerframework.common.subtyping.SubtypingAnnotatedTypeFactory;
+import org.checkerframework.javacutil.TreeUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This class tests the result cache that is enabled by the {@code -AresultCache} option. Each test
+ * compiles the same classes more than once with a checker that records which classes it
+ * type-checks, and compares the diagnostics of the compilations.
+ */
+public class ResultCacheTest {
+
+    /**
+     * A subtyping checker for {@code @Encrypted} that records the names of the classes that it
+     * type-checks; the classes whose results are replayed from the cache are not type-checked.
+     */
+    @SupportedOptions({"quals", "qualDirs"})
+    public static final class RecordingChecker extends BaseTypeChecker {
+        /** The simple names of the classes that were type-checked. */
+        final Set<String> checked = new TreeSet<>();
+
+        @Override
+        protected BaseTypeVisitor<?> createSourceVisitor() {
+            return new BaseTypeVisitor<SubtypingAnnotatedTypeFactory>(this) {
+                @Override
+                protected SubtypingAnnotatedTypeFactory createTypeFactory() {
+                    return new SubtypingAnnotatedTypeFactory(checker);
+                }
+
+                @Override
+                public void processClassTree(ClassTree classTree) {
+                    checked.add(
+                            TreeUtils.elementFromDeclaration(classTree).getSimpleName().toString());
+                    super.processClassTree(classTree);
+                }
+            };
+        }
+    }
+
+    private static final String USE =
+            "import testlib.util.Encrypted;\n"
+                    + "public class Use {\n"
+                    + "    @Encrypted String e = Dep.plain();\n"
+                    + "}\n";
+
+    private static final String DEP =
+            "public class Dep {\n"
+                    + "    public static String plain() { return \"\"; }\n"
+                    + "}\n";
+
+    private static final String ENCRYPTED_DEP =
+            "import testlib.util.Encrypted;\n"
+                    + "public class Dep {\n"
+                    + "    public static @Encrypted String plain() { return \"\"; }\n"
+                    + "}\n";
+
+    /** The directory that contains the sources, the class files, and the cache. */
+    private File dir;
+
+    /** The file that stores the cache. */
+    private File cacheFile;
+
+    /** Options that {@link #compile} passes in addition to its own. */
+    private List<String> extraOptions = Collections.emptyList();
+
+    /** The classes that were type-checked by the last compilation. */
+    private Set<String> checked;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("resultcache").toFile();
+        cacheFile = new File(dir, "cache.ser");
+    }
+
+    @After
+    public void tearDown() {
+        delete(dir);
+    }
+
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        f.delete();
+    }
+
+    private File write(String name, String content) throws IOException {
+        File f = new File(dir, name);
+        Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return f;
+    }
+
+    /**
+     * Compiles {@code sources} with {@link RecordingChecker} and the result cache, and returns its
+     * diagnostics. Sets {@link #checked} to the classes that were type-checked.
+     */
+    private List<String> compile(File... sources) {
+        RecordingChecker checker = new RecordingChecker();
+        List<String> options = new ArrayList<>();
+        options.add("-AresultCache=" + cacheFile);
+        options.add("-Awarns");
+        options.add(
+                "-Aquals=testlib.util.Encrypted,testlib.util.PolyEncrypted,"
+                        + "org.checkerframework.framework.qual.Unqualified");
+        options.addAll(extraOptions);
+        List<String> result = run(checker, options, sources);
+        checked = checker.checked;
+        return result;
+    }
+
+    /** Compiles {@code sources} without annotation processing, to create class files. */
+    private void compileWithoutChecker(File... sources) {
+        run(null, Arrays.asList("-proc:none"), sources);
+    }
+
+    /** Compiles {@code sources} with {@code checker}, or without a processor if it is null. */
+    private List<String> run(RecordingChecker checker, List<String> options, File... sources) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        StandardJavaFileManager fileManager =
+                compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+        List<String> allOptions = new ArrayList<>(options);
+        allOptions.add("-d");
+        allOptions.add(dir.getPath());
+        allOptions.add("-classpath");
+        allOptions.add(dir.getPath() + File.pathSeparator + System.getProperty("java.class.path"));
+        JavaCompiler.CompilationTask task =
+                compiler.getTask(
+                        null,
+                        fileManager,
+                        diagnostics,
+                        allOptions,
+                        null,
+                        fileManager.getJavaFileObjects(sources));
+        if (checker != null) {
+            task.setProcessors(Collections.singletonList(checker));
+        }
+        boolean success = task.call();
+        List<String> result = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            result.add(
+                    diagnostic.getKind()
+                            + " "
+                            + diagnostic.getLineNumber()
+                            + ":"
+                            + diagnostic.getColumnNumber()
+                            + " "
+                            + diagnostic.getMessage(null));
+        }
+        assertTrue("compilation failed: " + result, success);
+        return result;
+    }
+
+    @Test
+    public void replayHit() throws IOException {
+        File use = write("Use.java", USE);
+        File dep = write("Dep.java", DEP);
+        List<String> first = compile(use, dep);
+        assertEquals(1, first.size());
+        assertEquals(new TreeSet<>(Arrays.asList("Dep", "Use")), checked);
+        assertTrue(cacheFile.exists());
+
+        assertEquals(first, compile(use, dep));
+        assertTrue(checked.isEmpty());
+    }
+
+    @Test
+    public void ownSourceChanged() throws IOException {
+        File use = write("Use.java", USE);
+        File dep = write("Dep.java", DEP);
+        List<String> first = compile(use, dep);
+
+        write("Use.java", "\n" + USE);
+        List<String> second = compile(use, dep);
+        assertEquals(Collections.singleton("Use"), checked);
+        assertEquals(1, second.size());
+        assertFalse(first.equals(second));
+    }
+
+    @Test
+    public void dependencySourceChanged() throws IOException {
+        File use = write("Use.java", USE);
+        File dep = write("Dep.java", DEP);
+        compile(use, dep);
+
+        write("Dep.java", "// changed\n" + DEP);
+        compile(use, dep);
+        assertEquals(new TreeSet<>(Arrays.asList("Dep", "Use")), checked);
+    }
+
+    @Test
+    public void dependencySignatureChanged() throws IOException {
+        File dep = write("Dep.java", DEP);
+        compileWithoutChecker(dep);
+        // Use is compiled against the class file of Dep.
+        assertTrue(dep.delete());
+        File use = write("Use.java", USE);
+        List<String> first = compile(use);
+        assertEquals(1, first.size());
+
+        // Recompiling Dep without changing its signature keeps the cached results.
+        compileWithoutChecker(write("Dep.java", "// changed\n" + DEP));
+        assertEquals(first, compile(use));
+        assertTrue(checked.isEmpty());
+
+        compileWithoutChecker(write("Dep.java", ENCRYPTED_DEP));
+        List<String> third = compile(use);
+        assertEquals(Collections.singleton("Use"), checked);
+        assertEquals(Collections.<String>emptyList(), third);
+    }
+
+    @Test
+    public void optionsChanged() throws IOException {
+        File use = write("Use.java", USE);
+        File dep = write("Dep.java", DEP);
+        List<String> first = compile(use, dep);
+
+        extraOptions = Arrays.asList("-Alint");
+        assertEquals(first, compile(use, dep));
+        assertEquals(new TreeSet<>(Arrays.asList("Dep", "Use")), checked);
+
+        // The results for the new options have been cached, too.
+        compile(use, dep);
+        assertTrue(checked.isEmpty());
+    }
+
+    @Test
+    public void corruptOrMissingCache() throws IOException {
+        File use = write("Use.java", USE);
+        File dep = write("Dep.java", DEP);
+        List<String> first = compile(use, dep);
+
+        write(cacheFile.getName(), "not a cache");
+        assertEquals(first, compile(use, dep));
+        assertEquals(new TreeSet<>(Arrays.asList("Dep", "Use")), checked);
+
+        assertTrue(cacheFile.delete());
+        assertEquals(first, compile(use, dep));
+        assertEquals(new TreeSet<>(Arrays.asList("Dep", "Use")), checked);
+
+        // The cache file has been written again.
+        assertEquals(first, compile(use, dep));
+        assertTrue(checked.isEmpty());
+    }
+}
@@ -0,0 +1,191 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+import com.sun.tools.javac.util.Context;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import org.checkerframework.framework.util.SmallAnnotationMirrorSet;
+import org.checkerframework.javacutil.AnnotationBuilder;
+import org.checkerframework.javacutil.AnnotationUtils;
+import org.junit.Test;
+import testlib.util.AnnoWithStringArg;
+import testlib.util.Critical;
+import testlib.util.Encrypted;
+import testlib.util.Even;
+import testlib.util.Odd;
+import testlib.util.PatternA;
+import testlib.util.SubQual;
+import testlib.util.SuperQual;
+
+/**
+ * This class tests the SmallAnnotationMirrorSet class by comparing it with a TreeSet that uses the
+ * same ordering.
+ */
+public class SmallAnnotationMirrorSetTest {
+
+    /** The annotations that the tests put into sets. */
+    private final List<AnnotationMirror> annos = new ArrayList<>();
+
+    public SmallAnnotationMirrorSetTest() {
+        ProcessingEnvironment env = JavacProcessingEnvironment.instance(new Context());
+        List<Class<? extends Annotation>> markers = new ArrayList<>();
+        markers.add(Critical.class);
+        markers.add(Encrypted.class);
+        markers.add(Even.class);
+        markers.add(Odd.class);
+        markers.add(PatternA.class);
+        markers.add(SubQual.class);
+        markers.add(SuperQual.class);
+        for (Class<? extends Annotation> marker : markers) {
+            annos.add(AnnotationBuilder.fromClass(env.getElementUtils(), marker));
+        }
+        // Annotations with the same name but different values.
+        for (String value : new String[] {"a", "b", "c"}) {
+            AnnotationBuilder builder = new AnnotationBuilder(env, AnnoWithStringArg.class);
+            builder.setValue("value", value);
+            annos.add(builder.build());
+        }
+    }
+
+    private static Set<AnnotationMirror> newTreeSet() {
+        return new TreeSet<>(AnnotationUtils.annotationOrdering());
+    }
+
+    private AnnotationMirror randomAnno(Random random) {
+        return annos.get(random.nextInt(annos.size()));
+    }
+
+    /** Asserts that {@code set} has the same annotations as {@code expected}, in the same order. */
+    private static void assertSameSet(
+            Set<AnnotationMirror> expected, SmallAnnotationMirrorSet set) {
+        assertEquals(expected.size(), set.size());
+        assertEquals(expected.isEmpty(), set.isEmpty());
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(set));
+        assertEquals(expected, set);
+        assertEquals(set, expected);
+        assertEquals(expected.hashCode(), set.hashCode());
+    }
+
+    @Test
+    public void randomOperations() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            Set<AnnotationMirror> expected = newTreeSet();
+            SmallAnnotationMirrorSet set = new SmallAnnotationMirrorSet();
+            for (int op = 0; op < 30; op++) {
+                AnnotationMirror anno = randomAnno(random);
+                switch (random.nextInt(4)) {
+                    case 0:
+                    case 1:
+                        assertEquals(expected.add(anno), set.add(anno));
+                        break;
+                    case 2:
+                        assertEquals(expected.remove(anno), set.remove(anno));
+                        break;
+                    default:
+                        if (random.nextInt(10) == 0) {
+                            expected.clear();
+                            set.clear();
+                        }
+                        break;
+                }
+                assertSameSet(expected, set);
+                for (AnnotationMirror other : annos) {
+                    assertEquals(expected.contains(other), set.contains(other));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void copyConstructor() {
+        Random random = new Random(7);
+        for (int round = 0; round < 100; round++) {
+            List<AnnotationMirror> list = new ArrayList<>();
+            for (int i = random.nextInt(8); i > 0; i--) {
+                list.add(randomAnno(random));
+            }
+            Set<AnnotationMirror> expected = newTreeSet();
+            expected.addAll(list);
+            assertSameSet(expected, new SmallAnnotationMirrorSet(list));
+        }
+    }
+
+    @Test
+    public void containsOtherObjects() {
+        SmallAnnotationMirrorSet set = new SmallAnnotationMirrorSet(annos);
+        assertFalse(set.contains("not an annotation"));
+        assertFalse(set.contains(null));
+        assertFalse(set.remove("not an annotation"));
+        assertEquals(annos.size(), set.size());
+    }
+
+    @Test
+    public void iteratorRemove() {
+        Random random = new Random(3);
+        for (int round = 0; round < 100; round++) {
+            Set<AnnotationMirror> expected = newTreeSet();
+            for (int i = random.nextInt(annos.size()); i > 0; i--) {
+                expected.add(randomAnno(random));
+            }
+            SmallAnnotationMirrorSet set = new SmallAnnotationMirrorSet(expected);
+            Iterator<AnnotationMirror> expectedIt = expected.iterator();
+            Iterator<AnnotationMirror> it = set.iterator();
+            while (expectedIt.hasNext()) {
+                assertTrue(it.hasNext());
+                assertEquals(expectedIt.next(), it.next());
+                if (random.nextBoolean()) {
+                    expectedIt.remove();
+                    it.remove();
+                }
+            }
+            assertFalse(it.hasNext());
+            assertSameSet(expected, set);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void iteratorRemoveTwice() {
+        Iterator<AnnotationMirror> it = new SmallAnnotationMirrorSet(annos).iterator();
+        it.next();
+        it.remove();
+        it.remove();
+    }
+
+    @Test
+    public void iteratorIsFailFast() {
+        SmallAnnotationMirrorSet set = new SmallAnnotationMirrorSet(annos.subList(0, 3));
+        Iterator<AnnotationMirror> it = set.iterator();
+        it.next();
+        set.remove(annos.get(2));
+        try {
+            it.next();
+            fail("expected a ConcurrentModificationException");
+        } catch (ConcurrentModificationException e) {
+            // expected
+        }
+
+        it = set.iterator();
+        it.next();
+        set.add(annos.get(2));
+        try {
+            it.remove();
+            fail("expected a ConcurrentModificationException");
+        } catch (ConcurrentModificationException e) {
+            // expected
+        }
+    }
+}
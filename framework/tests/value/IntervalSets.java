@@ -0,0 +1,53 @@
+import org.checkerframework.common.value.qual.*;
+
+class IntervalSets {
+
+    void disjointRanges(
+            boolean flag,
+            @IntRange(from = 0, to = 5) int x,
+            @IntRange(from = 100, to = 105) int y) {
+        int z;
+        if (flag) {
+            z = x;
+        } else {
+            z = y;
+        }
+        @IntRange(from = 0, to = 105) int all = z;
+        if (z < 50) {
+            @IntRange(from = 0, to = 5) int small = z;
+        } else {
+            @IntRange(from = 100, to = 105) int big = z;
+        }
+
+        int shifted = z + 1000;
+        if (shifted >= 1050) {
+            @IntRange(from = 1100, to = 1105) int big = shifted;
+        }
+
+        int negated = -z;
+        if (negated > -50) {
+            @IntRange(from = -5, to = 0) int small = negated;
+            // :: error: (assignment.type.incompatible)
+            @IntRange(from = -4, to = 0) int tooSmall = negated;
+        }
+    }
+
+    void sparseConstants(boolean flag) {
+        int x = 0;
+        if (flag) {
+            x = 1;
+        }
+        int y = x * 1000;
+        int z = y + x;
+        if (flag) {
+            z = z + 10;
+        }
+        if (flag) {
+            z = z + 20;
+        }
+        @IntRange(from = 0, to = 1031) int all = z;
+        if (z < 500) {
+            @IntVal({0, 1, 10, 11, 20, 21, 30, 31}) int small = z;
+        }
+    }
+}
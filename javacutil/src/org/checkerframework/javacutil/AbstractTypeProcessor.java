@@ -54,6 +54,13 @@ import javax.lang.model.util.ElementFilter;
  * rest of classes are analyzed. The tool is also permitted to stop type processing immediately if
  * any errors are raised, without invoking {@code typeProcessingOver}
  *
+ * <p>Type processing is single-threaded: {@link #typeProcess(TypeElement, TreePath) typeProcess}
+ * is invoked on the compiler's thread, from a {@link TaskListener}, as soon as a class has been
+ * analyzed. It cannot be deferred or moved to other threads. The compiler continues with the later
+ * phases of a class after the listener returns, and those phases rewrite the class's trees in
+ * place. Also, the compiler's symbol table, {@link javax.lang.model.util.Types}, and {@link
+ * javax.lang.model.util.Elements} complete symbols lazily and are not thread-safe.
+ *
  * <p>A subclass may override any of the methods in this class, as long as the general {@link
  * javax.annotation.processing.Processor Processor} contract is obeyed, with one notable exception.
  * {@link #process(Set, RoundEnvironment)} may not be overridden, as it is called during the
@@ -80,7 +87,7 @@ public abstract class AbstractTypeProcessor extends AbstractProcessor {
      * Method {@link #typeProcessingOver()} must be invoked exactly once, after the last invocation
      * of {@link #typeProcess(TypeElement, TreePath)}.
      */
-    private static boolean hasInvokedTypeProcessingOver = false;
+    private boolean hasInvokedTypeProcessingOver = false;
 
     /** The TaskListener registered for completion of attribution. */
     private final AttributionTaskListener listener = new AttributionTaskListener();
@@ -1,6 +1,7 @@
 package org.checkerframework.javacutil;
 
 import java.lang.annotation.Annotation;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -8,6 +9,7 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.AnnotationValue;
@@ -59,9 +61,54 @@ public class AnnotationBuilder {
     private final DeclaredType annotationType;
     private final Map<ExecutableElement, AnnotationValue> elementValues;
 
-    /** Caching for annotation creation. */
-    private static final Map<CharSequence, AnnotationMirror> annotationsFromNames =
-            Collections.synchronizedMap(new HashMap<CharSequence, AnnotationMirror>());
+    /**
+     * Caching for annotation creation: the annotation without values of each name, by processing
+     * environment. Like {@link #canonicalAnnotations}, the cache is kept per processing environment,
+     * so that concurrent compilations in one JVM neither share annotations nor clear each other's
+     * caches, and its entries are weak.
+     */
+    private static final Map<Elements, Map<String, WeakReference<AnnotationMirror>>>
+            annotationsFromNames =
+                    new WeakHashMap<Elements, Map<String, WeakReference<AnnotationMirror>>>();
+
+    /**
+     * The canonical instance of each annotation created by this class, by processing environment
+     * and then by the string representation of the annotation. Annotations with the same string
+     * representation are the same according to {@link AnnotationUtils#areSame}, so sharing one
+     * instance lets comparisons succeed on the identity check. The entries are weak, so that
+     * annotations that are no longer used, such as most value annotations, can be collected.
+     */
+    private static final Map<Elements, Map<String, WeakReference<AnnotationMirror>>>
+            canonicalAnnotations =
+                    new WeakHashMap<Elements, Map<String, WeakReference<AnnotationMirror>>>();
+
+    /**
+     * Returns the canonical instance of the given annotation: an earlier annotation with the same
+     * string representation, or {@code anno} itself if there is none.
+     *
+     * @param elements the element utilities of the processing environment of {@code anno}
+     * @param anno a newly created annotation
+     * @return an annotation that is the same as {@code anno}
+     */
+    private static AnnotationMirror intern(
+            Elements elements, CheckerFrameworkAnnotationMirror anno) {
+        String key = anno.toString();
+        synchronized (canonicalAnnotations) {
+            Map<String, WeakReference<AnnotationMirror>> canonical =
+                    canonicalAnnotations.get(elements);
+            if (canonical == null) {
+                canonical = new WeakHashMap<String, WeakReference<AnnotationMirror>>();
+                canonicalAnnotations.put(elements, canonical);
+            }
+            WeakReference<AnnotationMirror> ref = canonical.get(key);
+            AnnotationMirror result = ref == null ? null : ref.get();
+            if (result == null) {
+                canonical.put(key, new WeakReference<AnnotationMirror>(anno));
+                result = anno;
+            }
+            return result;
+        }
+    }
 
     public AnnotationBuilder(ProcessingEnvironment env, Class<? extends Annotation> anno) {
         this(env, anno.getCanonicalName());
@@ -112,9 +159,19 @@ public class AnnotationBuilder {
      * @return an {@link AnnotationMirror} of type {@code} name
      */
     public static AnnotationMirror fromName(Elements elements, CharSequence name) {
-        AnnotationMirror res = annotationsFromNames.get(name);
-        if (res != null) {
-            return res;
+        String nameString = name.toString();
+        Map<String, WeakReference<AnnotationMirror>> fromNames;
+        synchronized (annotationsFromNames) {
+            fromNames = annotationsFromNames.get(elements);
+            if (fromNames == null) {
+                fromNames = new HashMap<String, WeakReference<AnnotationMirror>>();
+                annotationsFromNames.put(elements, fromNames);
+            }
+            WeakReference<AnnotationMirror> ref = fromNames.get(nameString);
+            AnnotationMirror res = ref == null ? null : ref.get();
+            if (res != null) {
+                return res;
+            }
         }
         final TypeElement annoElt = elements.getTypeElement(name);
         if (annoElt == null) {
@@ -130,15 +187,22 @@ public class AnnotationBuilder {
             return null;
         }
         AnnotationMirror result =
-                new CheckerFrameworkAnnotationMirror(annoType, Collections.emptyMap());
-        annotationsFromNames.put(name, result);
+                intern(
+                        elements,
+                        new CheckerFrameworkAnnotationMirror(annoType, Collections.emptyMap()));
+        synchronized (annotationsFromNames) {
+            fromNames.put(nameString, new WeakReference<AnnotationMirror>(result));
+        }
         return result;
     }
 
-    // TODO: hack to clear out static state.
-    public static void clear() {
-        annotationsFromNames.clear();
-    }
+    /**
+     * Does nothing. The caches of this class are kept per processing environment and are dropped
+     * with it, so there is no static state to clear between compilations; clearing them would
+     * disturb compilations that run concurrently in the same JVM.
+     */
+    @Deprecated // Remove after 2.2.2 release
+    public static void clear() {}
 
     private boolean wasBuilt = false;
 
@@ -151,7 +215,7 @@ public class AnnotationBuilder {
     public AnnotationMirror build() {
         assertNotBuilt();
         wasBuilt = true;
-        return new CheckerFrameworkAnnotationMirror(annotationType, elementValues);
+        return intern(elements, new CheckerFrameworkAnnotationMirror(annotationType, elementValues));
     }
 
     public AnnotationBuilder setValue(CharSequence elementName, AnnotationMirror value) {
@@ -43,7 +43,6 @@ public class AnnotationUtils {
 
     // TODO: hack to clear out static state.
     public static void clear() {
-        AnnotationBuilder.clear();
         annotationClassNames.clear();
     }
 
@@ -60,7 +59,8 @@ public class AnnotationUtils {
     private static final Map<Class<? extends Annotation>, /*@Interned*/ String>
             annotationClassNames =
                     Collections.synchronizedMap(
-                            CollectionUtils.createLRUCache(ANNOTATION_CACHE_SIZE));
+                            CollectionUtils.createLRUCache(
+                                    ANNOTATION_CACHE_SIZE, "AnnotationUtils.annotationClassNames"));
 
     // **********************************************************************
     // Helper methods to handle annotations.  mainly workaround
@@ -0,0 +1,162 @@
+package org.checkerframework.javacutil;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hit, miss, and eviction counts for the named LRU caches created by {@link
+ * CollectionUtils#createLRUCache(int, String)}. All caches with the same name share one
+ * CacheStatistics; for example, the caches of every instance of a type factory class.
+ *
+ * <p>A lookup is a call to {@code get}, or a call to {@code containsKey} that returns false. A call
+ * to {@code containsKey} that returns true is not counted, because it is usually followed by a
+ * call to {@code get} for the same key.
+ *
+ * <p>Counting is disabled by default, and the checkers enable it for a compilation with the
+ * {@code -AresourceStats} option. The setting applies to the whole JVM.
+ */
+public class CacheStatistics {
+
+    /** The statistics of all named caches, by name. */
+    private static final Map<String, CacheStatistics> allStatistics = new TreeMap<>();
+
+    /** Whether caches count their lookups and evictions. */
+    private static volatile boolean enabled = false;
+
+    /** The name of the cache(s). */
+    private final String name;
+
+    /** The number of lookups that found an entry. */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** The number of lookups that did not find an entry. */
+    private final AtomicLong misses = new AtomicLong();
+
+    /** The number of entries removed to keep the cache(s) within their maximum size. */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /** The number of caches created with this name. */
+    private int caches = 0;
+
+    /** The largest maximum size of a cache with this name. */
+    private int maximumSize = 0;
+
+    /** The largest number of entries that any cache with this name has held. */
+    private volatile int peakSize = 0;
+
+    private CacheStatistics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Enables or disables counting. Caches that are created while counting is disabled are plain
+     * LRU caches, which are never counted; other caches count only while counting is enabled.
+     *
+     * @param enable whether caches should count their lookups and evictions
+     */
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /** Returns true if caches count their lookups and evictions. */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the statistics for the caches with the given name, and records that a new cache with
+     * that name and the given maximum size has been created.
+     *
+     * @param name the name of the cache
+     * @param maximumSize the maximum number of entries of the new cache
+     * @return the statistics shared by all caches with the given name
+     */
+    static synchronized CacheStatistics forNewCache(String name, int maximumSize) {
+        CacheStatistics stats = allStatistics.get(name);
+        if (stats == null) {
+            stats = new CacheStatistics(name);
+            allStatistics.put(name, stats);
+        }
+        stats.caches++;
+        stats.maximumSize = Math.max(stats.maximumSize, maximumSize);
+        return stats;
+    }
+
+    /** Records a lookup that found an entry. */
+    void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    /** Records a lookup that did not find an entry. */
+    void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    /** Records that an entry was evicted. */
+    void recordEviction() {
+        evictions.incrementAndGet();
+    }
+
+    /**
+     * Records the current number of entries of a cache.
+     *
+     * @param size the number of entries of a cache with this name
+     */
+    void recordSize(int size) {
+        if (size > peakSize) {
+            peakSize = size;
+        }
+    }
+
+    /**
+     * Returns a table with one line for each named cache, listing how many caches have that name,
+     * their maximum size, their peak number of entries, and their hits, misses, and evictions.
+     *
+     * @return a table of the statistics of all named caches
+     */
+    public static synchronized String formatTable() {
+        StringBuilder sb = new StringBuilder();
+        String format = "%-60s %7s %9s %9s %12s %12s %12s %8s%n";
+        sb.append(
+                String.format(
+                        format,
+                        "Cache",
+                        "Caches",
+                        "Max size",
+                        "Peak size",
+                        "Hits",
+                        "Misses",
+                        "Evictions",
+                        "Hit rate"));
+        for (CacheStatistics stats : allStatistics.values()) {
+            long hits = stats.hits.get();
+            long misses = stats.misses.get();
+            long lookups = hits + misses;
+            sb.append(
+                    String.format(
+                            format,
+                            stats.name,
+                            stats.caches,
+                            stats.maximumSize,
+                            stats.peakSize,
+                            hits,
+                            misses,
+                            stats.evictions.get(),
+                            lookups == 0
+                                    ? "-"
+                                    : String.format("%.1f%%", 100.0 * hits / lookups)));
+        }
+        return sb.toString();
+    }
+
+    /** Resets the counts of all named caches, for example at the end of a compilation. */
+    public static synchronized void resetAll() {
+        for (CacheStatistics stats : allStatistics.values()) {
+            stats.hits.set(0);
+            stats.misses.set(0);
+            stats.evictions.set(0);
+            stats.peakSize = 0;
+        }
+    }
+}
@@ -23,4 +23,61 @@ public class CollectionUtils {
             }
         };
     }
+
+    /**
+     * Creates an LRU cache that counts its hits, misses, and evictions in the {@link
+     * CacheStatistics} for the given name. If counting is not {@link CacheStatistics#isEnabled()
+     * enabled}, the result is the same as that of {@link #createLRUCache(int)}.
+     *
+     * @param size size of the cache
+     * @param name the name under which the cache's statistics are reported
+     * @return a new cache with the provided size
+     */
+    public static <K, V> Map<K, V> createLRUCache(final int size, String name) {
+        if (!CacheStatistics.isEnabled()) {
+            return createLRUCache(size);
+        }
+        final CacheStatistics stats = CacheStatistics.forNewCache(name, size);
+        return new LinkedHashMap<K, V>(size, .75F, true) {
+
+            private static final long serialVersionUID = -3806284611946734152L;
+
+            @Override
+            public V get(Object key) {
+                V value = super.get(key);
+                // Counting may have been disabled after this cache was created.
+                if (CacheStatistics.isEnabled()) {
+                    if (value != null || super.containsKey(key)) {
+                        stats.recordHit();
+                    } else {
+                        stats.recordMiss();
+                    }
+                }
+                return value;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                boolean result = super.containsKey(key);
+                if (!result && CacheStatistics.isEnabled()) {
+                    stats.recordMiss();
+                }
+                return result;
+            }
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> entry) {
+                if (size() > size) {
+                    if (CacheStatistics.isEnabled()) {
+                        stats.recordEviction();
+                    }
+                    return true;
+                }
+                if (CacheStatistics.isEnabled()) {
+                    stats.recordSize(size());
+                }
+                return false;
+            }
+        };
+    }
 }